@@ -0,0 +1,535 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jboss.netty.util.internal.DeadLockProofWorker;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An implementation of {@link ParsecNameResolver} that caches the addresses resolved by a delegate, by default
+ * {@link StandardNameResolver}, and looks them up on an executor instead of the calling thread.
+ *
+ * <p>Addresses are cached for a TTL, and refreshed in the background when they are used after the refresh time.
+ * Once the TTL has passed, or when a refresh fails, the last known good addresses keep being served for up to the
+ * max stale time while the name is looked up again. Names that cannot be resolved are cached for the negative TTL.
+ * Names are dropped once their addresses can no longer be served, and the least used ones beyond the maximum size.</p>
+ *
+ * <p>Only a name without cached addresses waits for its lookup, up to the lookup timeout. On a Netty I/O thread,
+ * e.g. when the client follows a redirect or reconnects, such a name fails fast with an {@link UnknownHostException}
+ * instead, while it is looked up in the background for the next attempt. {@link #prefetch(String...)} caches known
+ * names beforehand.</p>
+ */
+public class CachingNameResolver implements ParsecNameResolver {
+
+    /**
+     * Lookup thread name format.
+     */
+    private static final String THREAD_NAME_FORMAT = "parsec-dns-%d";
+
+    /**
+     * Lazily created shared lookup executor.
+     */
+    private static class Holder {
+        private static final Executor EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat(THREAD_NAME_FORMAT)
+            .setDaemon(true)
+            .build());
+    }
+
+    /**
+     * Delegate that looks up the names.
+     */
+    private final ParsecNameResolver delegate;
+
+    /**
+     * Executor of the lookups.
+     */
+    private final Executor executor;
+
+    /**
+     * Ticker.
+     */
+    private final Ticker ticker;
+
+    /**
+     * TTL of resolved addresses.
+     */
+    private final long ttlNanos;
+
+    /**
+     * Time after which resolved addresses are refreshed when used.
+     */
+    private final long refreshAfterNanos;
+
+    /**
+     * Time after the TTL during which the last known good addresses are served.
+     */
+    private final long maxStaleNanos;
+
+    /**
+     * TTL of names that cannot be resolved.
+     */
+    private final long negativeTtlNanos;
+
+    /**
+     * Time a name without cached addresses waits for its lookup.
+     */
+    private final long lookupTimeoutNanos;
+
+    /**
+     * Cached entries by name.
+     */
+    private final Cache<String, Entry> entries;
+
+    /**
+     * Lookups in flight by name.
+     */
+    private final Map<String, CompletableFuture<Entry>> lookups = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private CachingNameResolver(final Builder builder) {
+        Preconditions.checkArgument(builder.refreshAfterNanos <= builder.ttlNanos, "Refresh time cannot exceed TTL");
+        delegate = builder.delegate;
+        executor = builder.executor == null ? Holder.EXECUTOR : builder.executor;
+        ticker = builder.ticker;
+        ttlNanos = builder.ttlNanos;
+        refreshAfterNanos = builder.refreshAfterNanos;
+        maxStaleNanos = builder.maxStaleNanos;
+        negativeTtlNanos = builder.negativeTtlNanos;
+        lookupTimeoutNanos = builder.lookupTimeoutNanos;
+        entries = Caffeine.newBuilder()
+            .executor(executor)
+            .ticker(ticker)
+            .expireAfterWrite(Math.max(ttlNanos + maxStaleNanos, negativeTtlNanos), TimeUnit.NANOSECONDS)
+            .maximumSize(builder.maximumSize)
+            .build();
+    }
+
+    @Override
+    public InetAddress resolve(String name) throws UnknownHostException {
+        return resolveAll(name)[0];
+    }
+
+    @Override
+    public InetAddress[] resolveAll(String name) throws UnknownHostException {
+        long nowNanos = ticker.read();
+        Entry entry = entries.getIfPresent(name);
+        if (entry != null && (entry.isFresh(nowNanos)
+            || entry.addresses != null && nowNanos - entry.staleUntilNanos < 0)) {
+            if (nowNanos - entry.refreshAtNanos >= 0) {
+                lookup(name);
+            }
+            return entry.getAddresses(name);
+        }
+
+        CompletableFuture<Entry> lookup = lookup(name);
+        if (!lookup.isDone() && isIoThread()) {
+            // Waiting would stall the other connections served by the I/O thread
+            throw unknownHost(name, "not cached yet, looked up in the background", null);
+        }
+        try {
+            return lookup.get(lookupTimeoutNanos, TimeUnit.NANOSECONDS).getAddresses(name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unknownHost(name, "lookup interrupted", e);
+        } catch (TimeoutException e) {
+            throw unknownHost(name, "lookup timed out", e);
+        } catch (ExecutionException e) {
+            throw unknownHost(name, "lookup failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void onRequestStarted(InetAddress address) {
+        delegate.onRequestStarted(address);
+    }
+
+    @Override
+    public void onRequestCompleted(InetAddress address, int statusCode, Throwable throwable, long latencyMicros) {
+        delegate.onRequestCompleted(address, statusCode, throwable, latencyMicros);
+    }
+
+    /**
+     * Look up names in the background, so they are cached before they are first resolved.
+     *
+     * @param names host names
+     */
+    public void prefetch(final String... names) {
+        for (String name : names) {
+            lookup(name);
+        }
+    }
+
+    /**
+     * Remove all cached entries.
+     */
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * Start a lookup of a name, unless one is in flight.
+     *
+     * @param name host name
+     * @return future of the entry of the lookup
+     */
+    private CompletableFuture<Entry> lookup(final String name) {
+        CompletableFuture<Entry> future = lookups.computeIfAbsent(name,
+            n -> CompletableFuture.supplyAsync(() -> load(n), executor));
+        future.whenComplete((entry, throwable) -> lookups.remove(name, future));
+        return future;
+    }
+
+    /**
+     * Look up a name with the delegate and cache the result.
+     *
+     * @param name host name
+     * @return new entry of the name
+     */
+    private Entry load(final String name) {
+        Entry entry;
+        try {
+            InetAddress[] addresses = delegate.resolveAll(name);
+            Preconditions.checkState(addresses != null && addresses.length > 0, "No address for " + name);
+            long nowNanos = ticker.read();
+            long expireAtNanos = nowNanos + ttlNanos;
+            entry = new Entry(addresses, null, expireAtNanos, nowNanos + refreshAfterNanos,
+                expireAtNanos + maxStaleNanos);
+        } catch (UnknownHostException | RuntimeException e) {
+            long nowNanos = ticker.read();
+            Entry previous = entries.getIfPresent(name);
+            if (previous != null && previous.addresses != null && nowNanos - previous.staleUntilNanos < 0) {
+                // Keep serving the last known good addresses, and retry after the negative TTL
+                entry = new Entry(previous.addresses, null, previous.expireAtNanos, nowNanos + negativeTtlNanos,
+                    previous.staleUntilNanos);
+            } else {
+                long expireAtNanos = nowNanos + negativeTtlNanos;
+                entry = new Entry(null, e, expireAtNanos, expireAtNanos, expireAtNanos);
+            }
+        }
+        entries.put(name, entry);
+        return entry;
+    }
+
+    /**
+     * Whether the calling thread is a Netty I/O thread, which must not wait for a lookup.
+     *
+     * @return true if the calling thread is a Netty I/O thread
+     */
+    static boolean isIoThread() {
+        return DeadLockProofWorker.PARENT.get() != null;
+    }
+
+    /**
+     * Create an {@link UnknownHostException}.
+     *
+     * @param name    host name
+     * @param message message
+     * @param cause   cause
+     * @return {@link UnknownHostException}
+     */
+    private static UnknownHostException unknownHost(final String name, final String message, final Throwable cause) {
+        UnknownHostException exception = new UnknownHostException(name + ": " + message);
+        exception.initCause(cause);
+        return exception;
+    }
+
+    /**
+     * Addresses of a name, or the failure to resolve it.
+     */
+    private static final class Entry {
+
+        /**
+         * Addresses, null if the name cannot be resolved.
+         */
+        private final InetAddress[] addresses;
+
+        /**
+         * Failure, null if the name is resolved.
+         */
+        private final Throwable failure;
+
+        /**
+         * Time until which the entry is fresh.
+         */
+        private final long expireAtNanos;
+
+        /**
+         * Time after which the name is looked up again when the entry is used.
+         */
+        private final long refreshAtNanos;
+
+        /**
+         * Time until which the addresses are served while the name is looked up again.
+         */
+        private final long staleUntilNanos;
+
+        /**
+         * Constructor.
+         *
+         * @param addresses       addresses, null if the name cannot be resolved
+         * @param failure         failure, null if the name is resolved
+         * @param expireAtNanos   time until which the entry is fresh
+         * @param refreshAtNanos  time after which the name is looked up again when the entry is used
+         * @param staleUntilNanos time until which the addresses are served while the name is looked up again
+         */
+        private Entry(
+            final InetAddress[] addresses,
+            final Throwable failure,
+            final long expireAtNanos,
+            final long refreshAtNanos,
+            final long staleUntilNanos
+        ) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expireAtNanos = expireAtNanos;
+            this.refreshAtNanos = refreshAtNanos;
+            this.staleUntilNanos = staleUntilNanos;
+        }
+
+        /**
+         * Whether the entry is fresh.
+         *
+         * @param nowNanos current time
+         * @return true if the entry is fresh
+         */
+        private boolean isFresh(final long nowNanos) {
+            return nowNanos - expireAtNanos < 0;
+        }
+
+        /**
+         * Get a copy of the addresses.
+         *
+         * @param name host name
+         * @return addresses
+         * @throws UnknownHostException if the name cannot be resolved
+         */
+        private InetAddress[] getAddresses(final String name) throws UnknownHostException {
+            if (addresses == null) {
+                throw unknownHost(name, "cannot be resolved", failure);
+            }
+            return addresses.clone();
+        }
+    }
+
+    /**
+     * Static Builder class for {@link CachingNameResolver}.
+     */
+    public static class Builder {
+
+        /**
+         * Default TTL in seconds.
+         */
+        private static final long DEFAULT_TTL = 60;
+
+        /**
+         * Default max stale time in seconds.
+         */
+        private static final long DEFAULT_MAX_STALE = 3600;
+
+        /**
+         * Default negative TTL in seconds.
+         */
+        private static final long DEFAULT_NEGATIVE_TTL = 5;
+
+        /**
+         * Default lookup timeout in seconds.
+         */
+        private static final long DEFAULT_LOOKUP_TIMEOUT = 5;
+
+        /**
+         * Default maximum number of cached names.
+         */
+        private static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+        /**
+         * Delegate.
+         */
+        private ParsecNameResolver delegate = StandardNameResolver.getInstance();
+
+        /**
+         * Executor, null for the shared one.
+         */
+        private Executor executor;
+
+        /**
+         * Ticker.
+         */
+        private Ticker ticker = Ticker.systemTicker();
+
+        /**
+         * TTL.
+         */
+        private long ttlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TTL);
+
+        /**
+         * Refresh time.
+         */
+        private long refreshAfterNanos = ttlNanos * 4 / 5;
+
+        /**
+         * Max stale time.
+         */
+        private long maxStaleNanos = TimeUnit.SECONDS.toNanos(DEFAULT_MAX_STALE);
+
+        /**
+         * Negative TTL.
+         */
+        private long negativeTtlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_NEGATIVE_TTL);
+
+        /**
+         * Lookup timeout.
+         */
+        private long lookupTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_LOOKUP_TIMEOUT);
+
+        /**
+         * Maximum number of cached names.
+         */
+        private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+        /**
+         * Set the resolver that looks up the names. Defaults to {@link StandardNameResolver}.
+         *
+         * @param delegate delegate
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setDelegate(ParsecNameResolver delegate) {
+            Preconditions.checkNotNull(delegate, "Delegate cannot be null");
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Set the executor of the lookups. Defaults to a shared pool of daemon threads.
+         *
+         * @param executor executor
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setExecutor(Executor executor) {
+            Preconditions.checkNotNull(executor, "Executor cannot be null");
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set ticker.
+         *
+         * @param ticker ticker
+         * @return {@link CachingNameResolver.Builder}
+         */
+        Builder setTicker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Set how long resolved addresses are cached, also setting the refresh time to 80% of it.
+         * Defaults to 60 seconds.
+         *
+         * @param ttl  TTL
+         * @param unit time unit
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setTtl(long ttl, TimeUnit unit) {
+            Preconditions.checkArgument(ttl > 0, "TTL must be positive");
+            ttlNanos = unit.toNanos(ttl);
+            refreshAfterNanos = ttlNanos * 4 / 5;
+            return this;
+        }
+
+        /**
+         * Set the time after which resolved addresses are refreshed in the background when they are used.
+         * Defaults to 80% of the TTL.
+         *
+         * @param refreshAfter refresh time, at most the TTL
+         * @param unit         time unit
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setRefreshAfter(long refreshAfter, TimeUnit unit) {
+            Preconditions.checkArgument(refreshAfter >= 0, "Refresh time cannot be negative");
+            refreshAfterNanos = unit.toNanos(refreshAfter);
+            return this;
+        }
+
+        /**
+         * Set how long after the TTL the last known good addresses are served while the name is looked up again,
+         * or cannot be resolved. Defaults to an hour.
+         *
+         * @param maxStale max stale time
+         * @param unit     time unit
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setMaxStale(long maxStale, TimeUnit unit) {
+            Preconditions.checkArgument(maxStale >= 0, "Max stale time cannot be negative");
+            maxStaleNanos = unit.toNanos(maxStale);
+            return this;
+        }
+
+        /**
+         * Set how long names that cannot be resolved are cached. Defaults to 5 seconds.
+         *
+         * @param negativeTtl negative TTL
+         * @param unit        time unit
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setNegativeTtl(long negativeTtl, TimeUnit unit) {
+            Preconditions.checkArgument(negativeTtl > 0, "Negative TTL must be positive");
+            negativeTtlNanos = unit.toNanos(negativeTtl);
+            return this;
+        }
+
+        /**
+         * Set how long a name without cached addresses waits for its lookup, except on a Netty I/O thread where
+         * it fails fast instead. Defaults to 5 seconds.
+         *
+         * @param lookupTimeout lookup timeout
+         * @param unit          time unit
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setLookupTimeout(long lookupTimeout, TimeUnit unit) {
+            Preconditions.checkArgument(lookupTimeout > 0, "Lookup timeout must be positive");
+            lookupTimeoutNanos = unit.toNanos(lookupTimeout);
+            return this;
+        }
+
+        /**
+         * Set the maximum number of cached names, beyond which the least used ones are dropped. Defaults to 10000.
+         *
+         * @param maximumSize maximum size
+         * @return {@link CachingNameResolver.Builder}
+         */
+        public Builder setMaximumSize(long maximumSize) {
+            Preconditions.checkArgument(maximumSize > 0, "Maximum size must be positive");
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Build new {@link CachingNameResolver} instance.
+         *
+         * @return {@link CachingNameResolver}
+         */
+        public CachingNameResolver build() {
+            return new CachingNameResolver(this);
+        }
+    }
+}
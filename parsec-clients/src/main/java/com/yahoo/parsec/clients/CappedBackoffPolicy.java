@@ -0,0 +1,58 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * An implementation of {@link ParsecRetryBackoffPolicy} that caps the delays of a given policy,
+ * including the delays requested by a server through the {@code Retry-After} header.
+ */
+public class CappedBackoffPolicy implements ParsecRetryBackoffPolicy {
+
+    /**
+     * Delegate.
+     */
+    private final ParsecRetryBackoffPolicy delegate;
+
+    /**
+     * Maximum delay in milliseconds.
+     */
+    private final long capMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate  policy to cap
+     * @param capMillis maximum delay in milliseconds
+     */
+    public CappedBackoffPolicy(ParsecRetryBackoffPolicy delegate, long capMillis) {
+        Preconditions.checkNotNull(delegate, "Delegate cannot be null");
+        Preconditions.checkArgument(capMillis >= 0, "Cap cannot be negative");
+        this.delegate = delegate;
+        this.capMillis = capMillis;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return EqualsBuilder.reflectionEquals(this, object);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public long getDelayMillis(int retryCount, long previousDelayMillis) {
+        return Math.min(capMillis, delegate.getDelayMillis(retryCount, previousDelayMillis));
+    }
+
+    @Override
+    public long getMaxDelayMillis() {
+        return Math.min(capMillis, delegate.getMaxDelayMillis());
+    }
+}
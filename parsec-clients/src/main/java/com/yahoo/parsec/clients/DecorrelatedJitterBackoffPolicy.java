@@ -0,0 +1,71 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An implementation of {@link ParsecRetryBackoffPolicy} using decorrelated jitter:
+ * every delay is picked uniformly between the base delay and three times the previous delay,
+ * and never exceeds the cap.
+ */
+public class DecorrelatedJitterBackoffPolicy implements ParsecRetryBackoffPolicy {
+
+    /**
+     * Growth factor of the upper bound.
+     */
+    private static final long GROWTH_FACTOR = 3;
+
+    /**
+     * Minimum delay in milliseconds.
+     */
+    private final long baseMillis;
+
+    /**
+     * Maximum delay in milliseconds.
+     */
+    private final long capMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param baseMillis minimum delay in milliseconds
+     * @param capMillis  maximum delay in milliseconds
+     */
+    public DecorrelatedJitterBackoffPolicy(long baseMillis, long capMillis) {
+        Preconditions.checkArgument(baseMillis >= 0, "Base delay cannot be negative");
+        Preconditions.checkArgument(capMillis >= baseMillis, "Cap cannot be less than base delay");
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return EqualsBuilder.reflectionEquals(this, object);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public long getDelayMillis(int retryCount, long previousDelayMillis) {
+        long previous = Math.max(baseMillis, previousDelayMillis);
+        long upper = previous > capMillis / GROWTH_FACTOR ? capMillis : previous * GROWTH_FACTOR;
+        if (upper <= baseMillis) {
+            return baseMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(baseMillis, upper == Long.MAX_VALUE ? upper : upper + 1);
+    }
+
+    @Override
+    public long getMaxDelayMillis() {
+        return capMillis;
+    }
+}
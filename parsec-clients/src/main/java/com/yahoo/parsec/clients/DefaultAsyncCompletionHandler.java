@@ -2,38 +2,58 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.parsec.clients;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.Response;
 
 import javax.xml.ws.http.HTTPException;
+import java.io.InputStream;
 import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This handler is used to map the response body to object T.
  *
+ * <p>The body is parsed from the received bytes, without decoding it to a String first, unless the content type
+ * declares a charset other than UTF-8, UTF-16 or UTF-32. Object readers of the default object mapper are shared by
+ * all handlers of the same type, and the ones of a given object mapper are kept by the handler.</p>
+ *
  * @author yamlin
  */
 public class DefaultAsyncCompletionHandler<T> extends AsyncCompletionHandler<T> {
+    /**
+     * Object mapper shared by the handlers not given one.
+     */
+    private static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Object readers of the default object mapper by type. Readers reference their object mapper, so only the ones
+     * of the default object mapper are shared, and the others are kept by their handler.
+     */
+    private static final Map<JavaType, ObjectReader> DEFAULT_OBJECT_READERS = new ConcurrentHashMap<>();
+
     private final ObjectMapper objectMapper;
     private final Class<T> tClass;
+    private final TypeReference<T> typeReference;
     private final Set<Integer> expectedStatusCodes;
 
-    public DefaultAsyncCompletionHandler(Class<T> tClass, Set<Integer> expected, ObjectMapper o) {
-        this.objectMapper = o;
-        this.tClass = tClass;
+    /**
+     * Object reader for T, created on first use.
+     */
+    private volatile ObjectReader objectReader;
 
-        if (expected == null || expected.isEmpty()) {
-            this.expectedStatusCodes = new HashSet<>();
-            this.expectedStatusCodes.add(200);
-        } else {
-            this.expectedStatusCodes = expected;
-        }
+    public DefaultAsyncCompletionHandler(Class<T> tClass, Set<Integer> expected, ObjectMapper o) {
+        this(tClass, null, expected, o);
     }
 
     public DefaultAsyncCompletionHandler(Class<T> tClass, Set<Integer> expected) {
-        this(tClass, expected, new ObjectMapper());
+        this(tClass, expected, DEFAULT_OBJECT_MAPPER);
     }
 
     public DefaultAsyncCompletionHandler(Class<T> tClass, ObjectMapper o) {
@@ -41,7 +61,41 @@ public class DefaultAsyncCompletionHandler<T> extends AsyncCompletionHandler<T>
     }
 
     public DefaultAsyncCompletionHandler(Class<T> tClass) {
-        this(tClass, null, new ObjectMapper());
+        this(tClass, null, DEFAULT_OBJECT_MAPPER);
+    }
+
+    public DefaultAsyncCompletionHandler(TypeReference<T> typeReference, Set<Integer> expected, ObjectMapper o) {
+        this(null, typeReference, expected, o);
+    }
+
+    public DefaultAsyncCompletionHandler(TypeReference<T> typeReference, Set<Integer> expected) {
+        this(typeReference, expected, DEFAULT_OBJECT_MAPPER);
+    }
+
+    public DefaultAsyncCompletionHandler(TypeReference<T> typeReference, ObjectMapper o) {
+        this(typeReference, null, o);
+    }
+
+    public DefaultAsyncCompletionHandler(TypeReference<T> typeReference) {
+        this(typeReference, null, DEFAULT_OBJECT_MAPPER);
+    }
+
+    private DefaultAsyncCompletionHandler(
+        Class<T> tClass,
+        TypeReference<T> typeReference,
+        Set<Integer> expected,
+        ObjectMapper o
+    ) {
+        this.objectMapper = o;
+        this.tClass = tClass;
+        this.typeReference = typeReference;
+
+        if (expected == null || expected.isEmpty()) {
+            this.expectedStatusCodes = new HashSet<>();
+            this.expectedStatusCodes.add(200);
+        } else {
+            this.expectedStatusCodes = expected;
+        }
     }
 
     @Override
@@ -51,7 +105,7 @@ public class DefaultAsyncCompletionHandler<T> extends AsyncCompletionHandler<T>
                 if (tClass == String.class) {
                     return tClass.cast(response.getResponseBody());
                 } else {
-                    return objectMapper.readValue(response.getResponseBody(), tClass);
+                    return readValue(response);
                 }
             }
             return null;
@@ -59,4 +113,43 @@ public class DefaultAsyncCompletionHandler<T> extends AsyncCompletionHandler<T>
             throw new HTTPException(response.getStatusCode());
         }
     }
+
+    /**
+     * Read the response body as T.
+     *
+     * @param response response
+     * @return T
+     * @throws Exception exception
+     */
+    private T readValue(Response response) throws Exception {
+        ObjectReader objectReader = getObjectReader();
+        String charset = ParsecHttpUtil.parseCharsetFromContentType(response.getContentType(), null);
+        if (charset != null && !charset.toUpperCase(Locale.ENGLISH).startsWith("UTF-")) {
+            return objectReader.readValue(response.getResponseBody(charset));
+        }
+
+        // Jackson detects the UTF encoding from the bytes and reuses its buffers across reads on a thread
+        try (InputStream body = response.getResponseBodyAsStream()) {
+            return objectReader.readValue(body);
+        }
+    }
+
+    /**
+     * Get the object reader of the object mapper for T.
+     *
+     * @return object reader
+     */
+    private ObjectReader getObjectReader() {
+        ObjectReader reader = objectReader;
+        if (reader == null) {
+            JavaType javaType = tClass != null
+                ? objectMapper.constructType(tClass)
+                : objectMapper.getTypeFactory().constructType(typeReference);
+            reader = objectMapper == DEFAULT_OBJECT_MAPPER
+                ? DEFAULT_OBJECT_READERS.computeIfAbsent(javaType, objectMapper::readerFor)
+                : objectMapper.readerFor(javaType);
+            objectReader = reader;
+        }
+        return reader;
+    }
 }
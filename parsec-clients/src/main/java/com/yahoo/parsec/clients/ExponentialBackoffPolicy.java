@@ -0,0 +1,82 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An implementation of {@link ParsecRetryBackoffPolicy} that multiplies the delay after every retry.
+ * With full jitter enabled, the actual delay is picked uniformly between 0 and the exponential delay,
+ * so that clients retrying at the same time spread out instead of retrying in lockstep.
+ */
+public class ExponentialBackoffPolicy implements ParsecRetryBackoffPolicy {
+
+    /**
+     * Default multiplier.
+     */
+    private static final double DEFAULT_MULTIPLIER = 2.0;
+
+    /**
+     * Delay before the first retry in milliseconds.
+     */
+    private final long baseMillis;
+
+    /**
+     * Multiplier applied after every retry.
+     */
+    private final double multiplier;
+
+    /**
+     * Flag for full jitter.
+     */
+    private final boolean fullJitter;
+
+    /**
+     * Constructor.
+     *
+     * @param baseMillis delay before the first retry in milliseconds
+     */
+    public ExponentialBackoffPolicy(long baseMillis) {
+        this(baseMillis, DEFAULT_MULTIPLIER, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param baseMillis delay before the first retry in milliseconds
+     * @param multiplier multiplier applied after every retry
+     * @param fullJitter whether to pick the delay uniformly between 0 and the exponential delay
+     */
+    public ExponentialBackoffPolicy(long baseMillis, double multiplier, boolean fullJitter) {
+        Preconditions.checkArgument(baseMillis >= 0, "Base delay cannot be negative");
+        Preconditions.checkArgument(multiplier >= 1, "Multiplier cannot be less than 1");
+        this.baseMillis = baseMillis;
+        this.multiplier = multiplier;
+        this.fullJitter = fullJitter;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return EqualsBuilder.reflectionEquals(this, object);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public long getDelayMillis(int retryCount, long previousDelayMillis) {
+        double delay = baseMillis * Math.pow(multiplier, Math.max(0, retryCount - 1));
+        long delayMillis = delay >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) delay;
+        if (fullJitter && delayMillis > 0) {
+            return ThreadLocalRandom.current().nextLong(delayMillis == Long.MAX_VALUE ? delayMillis : delayMillis + 1);
+        }
+        return delayMillis;
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * An implementation of {@link ParsecRetryBackoffPolicy} that waits the same interval before every retry.
+ */
+public class FixedBackoffPolicy implements ParsecRetryBackoffPolicy {
+
+    /**
+     * Retry interval in milliseconds.
+     */
+    private final long intervalMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param intervalMillis retry interval in milliseconds
+     */
+    public FixedBackoffPolicy(long intervalMillis) {
+        Preconditions.checkArgument(intervalMillis >= 0, "Retry interval cannot be negative");
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return EqualsBuilder.reflectionEquals(this, object);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public long getDelayMillis(int retryCount, long previousDelayMillis) {
+        return intervalMillis;
+    }
+
+    /**
+     * Get retry interval.
+     *
+     * @return retry interval in milliseconds
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+}
@@ -0,0 +1,27 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * An implementation of {@link ParsecCacheKeyStrategy} that keys on the whole request, so only requests that are
+ * equal share a cached response. This is the default strategy.
+ */
+public class FullRequestCacheKeyStrategy implements ParsecCacheKeyStrategy {
+
+    private static final FullRequestCacheKeyStrategy INSTANCE = new FullRequestCacheKeyStrategy();
+
+    /**
+     * Get a shared static instance.
+     *
+     * @return A shared instance.
+     */
+    public static FullRequestCacheKeyStrategy getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Object getCacheKey(ParsecAsyncHttpRequest request) {
+        return request;
+    }
+}
@@ -0,0 +1,329 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.base.Preconditions;
+
+import javax.ws.rs.core.Response;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An implementation of {@link ParsecNameResolver} that balances the traffic among the addresses resolved by a
+ * delegate, preferring the ones with fewer requests in flight and lower latencies, unlike {@link RandomNameResolver}
+ * which picks any address.
+ *
+ * <p>The requests in flight and latencies of each address are fed back through
+ * {@link #onRequestStarted(InetAddress)} and {@link #onRequestCompleted(InetAddress, int, Throwable, long)} by the
+ * client when it opens a connection with the address. The latency of an address is its decayed peak latency: a
+ * slower request raises it at once, and faster requests and idle time lower it gradually over the decay time, so a
+ * slow address quickly loses traffic and gets some back once it recovers. Failed requests cannot lower it.</p>
+ */
+public class LatencyAwareNameResolver implements ParsecNameResolver {
+
+    /**
+     * Time after which the statistics of an unused address are dropped, in minutes.
+     */
+    private static final long STATS_EXPIRY_MINUTES = 60;
+
+    /**
+     * Delegate that resolves the addresses.
+     */
+    private final ParsecNameResolver delegate;
+
+    /**
+     * Strategy.
+     */
+    private final ParsecLoadBalancingStrategy strategy;
+
+    /**
+     * Ticker.
+     */
+    private final Ticker ticker;
+
+    /**
+     * Decay time of latencies.
+     */
+    private final long decayNanos;
+
+    /**
+     * Statistics by address.
+     */
+    private final Cache<InetAddress, AddressStats> stats;
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private LatencyAwareNameResolver(final Builder builder) {
+        delegate = builder.delegate;
+        strategy = builder.strategy;
+        ticker = builder.ticker;
+        decayNanos = builder.decayNanos;
+        stats = Caffeine.newBuilder()
+            .ticker(ticker)
+            .expireAfterAccess(STATS_EXPIRY_MINUTES, TimeUnit.MINUTES)
+            .build();
+    }
+
+    @Override
+    public InetAddress resolve(String name) throws UnknownHostException {
+        InetAddress[] addresses = delegate.resolveAll(name);
+        if (addresses.length == 1) {
+            return addresses[0];
+        }
+        long nowNanos = ticker.read();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (strategy == ParsecLoadBalancingStrategy.POWER_OF_TWO_CHOICES) {
+            int first = random.nextInt(addresses.length);
+            int second = random.nextInt(addresses.length - 1);
+            if (second >= first) {
+                second++;
+            }
+            return getCost(addresses[first], nowNanos) <= getCost(addresses[second], nowNanos)
+                ? addresses[first] : addresses[second];
+        }
+
+        // Start at a random address, so ties are spread
+        int start = random.nextInt(addresses.length);
+        InetAddress best = null;
+        int bestInFlight = Integer.MAX_VALUE;
+        double bestLatency = Double.MAX_VALUE;
+        for (int i = 0; i < addresses.length; i++) {
+            InetAddress address = addresses[(start + i) % addresses.length];
+            int inFlight = getInFlightRequests(address);
+            double latency = getLatency(address, nowNanos);
+            if (inFlight < bestInFlight || inFlight == bestInFlight && latency < bestLatency) {
+                best = address;
+                bestInFlight = inFlight;
+                bestLatency = latency;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public InetAddress[] resolveAll(String name) throws UnknownHostException {
+        return delegate.resolveAll(name);
+    }
+
+    @Override
+    public void onRequestStarted(InetAddress address) {
+        stats.get(address, a -> new AddressStats()).inFlight.incrementAndGet();
+        delegate.onRequestStarted(address);
+    }
+
+    @Override
+    public void onRequestCompleted(InetAddress address, int statusCode, Throwable throwable, long latencyMicros) {
+        AddressStats addressStats = stats.get(address, a -> new AddressStats());
+        addressStats.inFlight.updateAndGet(inFlight -> Math.max(0, inFlight - 1));
+        boolean failed = throwable != null
+            || statusCode >= Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+        addressStats.record(latencyMicros, failed, ticker.read(), decayNanos);
+        delegate.onRequestCompleted(address, statusCode, throwable, latencyMicros);
+    }
+
+    /**
+     * Get the number of requests in flight to an address.
+     *
+     * @param address address
+     * @return number of requests in flight
+     */
+    public int getInFlightRequests(final InetAddress address) {
+        AddressStats addressStats = stats.getIfPresent(address);
+        return addressStats == null ? 0 : addressStats.inFlight.get();
+    }
+
+    /**
+     * Get the decayed peak latency of an address.
+     *
+     * @param address address
+     * @return latency in microseconds, 0 if unknown
+     */
+    public long getLatencyMicros(final InetAddress address) {
+        return Math.round(getLatency(address, ticker.read()));
+    }
+
+    /**
+     * Get the decayed peak latency of an address.
+     *
+     * @param address  address
+     * @param nowNanos current time
+     * @return latency in microseconds, 0 if unknown
+     */
+    private double getLatency(final InetAddress address, final long nowNanos) {
+        AddressStats addressStats = stats.getIfPresent(address);
+        return addressStats == null ? 0 : addressStats.getLatency(nowNanos, decayNanos);
+    }
+
+    /**
+     * Get the cost of sending a request to an address: its latency weighted by its requests in flight, including the
+     * request being sent. Addresses without a latency yet cost the least, so they are tried.
+     *
+     * @param address  address
+     * @param nowNanos current time
+     * @return cost
+     */
+    private double getCost(final InetAddress address, final long nowNanos) {
+        return (getLatency(address, nowNanos) + 1) * (getInFlightRequests(address) + 1);
+    }
+
+    /**
+     * Requests in flight and latency of an address.
+     */
+    private static final class AddressStats {
+
+        /**
+         * Requests in flight.
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * Latency in microseconds when last updated.
+         */
+        private double latencyMicros;
+
+        /**
+         * Time of the last update.
+         */
+        private long updatedNanos;
+
+        /**
+         * Whether a latency was recorded.
+         */
+        private boolean sampled;
+
+        /**
+         * Record the latency of a request.
+         *
+         * @param sampleMicros latency in microseconds
+         * @param failed       whether the request failed
+         * @param nowNanos     current time
+         * @param decayNanos   decay time
+         */
+        synchronized void record(final long sampleMicros, final boolean failed, final long nowNanos,
+                                 final long decayNanos) {
+            double current = getLatency(nowNanos, decayNanos);
+            double sample = failed ? Math.max(sampleMicros, current) : sampleMicros;
+            if (!sampled || sample > current) {
+                latencyMicros = sample;
+            } else {
+                double weight = Math.exp(-(double) Math.max(0, nowNanos - updatedNanos) / decayNanos);
+                latencyMicros = current + sample * (1 - weight);
+            }
+            updatedNanos = nowNanos;
+            sampled = true;
+        }
+
+        /**
+         * Get the latency, decayed towards 0 since the last update.
+         *
+         * @param nowNanos   current time
+         * @param decayNanos decay time
+         * @return latency in microseconds
+         */
+        synchronized double getLatency(final long nowNanos, final long decayNanos) {
+            if (!sampled) {
+                return 0;
+            }
+            return latencyMicros * Math.exp(-(double) Math.max(0, nowNanos - updatedNanos) / decayNanos);
+        }
+    }
+
+    /**
+     * Static Builder class for {@link LatencyAwareNameResolver}.
+     */
+    public static class Builder {
+
+        /**
+         * Default decay time in seconds.
+         */
+        private static final long DEFAULT_DECAY_TIME = 10;
+
+        /**
+         * Delegate.
+         */
+        private ParsecNameResolver delegate = StandardNameResolver.getInstance();
+
+        /**
+         * Strategy.
+         */
+        private ParsecLoadBalancingStrategy strategy = ParsecLoadBalancingStrategy.POWER_OF_TWO_CHOICES;
+
+        /**
+         * Ticker.
+         */
+        private Ticker ticker = Ticker.systemTicker();
+
+        /**
+         * Decay time.
+         */
+        private long decayNanos = TimeUnit.SECONDS.toNanos(DEFAULT_DECAY_TIME);
+
+        /**
+         * Build new {@link LatencyAwareNameResolver} instance.
+         *
+         * @return new {@link LatencyAwareNameResolver} instance
+         */
+        public LatencyAwareNameResolver build() {
+            return new LatencyAwareNameResolver(this);
+        }
+
+        /**
+         * Set the delegate that resolves the addresses, e.g. a {@link CachingNameResolver}. Defaults to
+         * {@link StandardNameResolver}.
+         *
+         * @param delegate delegate
+         * @return {@link LatencyAwareNameResolver.Builder}
+         */
+        public Builder setDelegate(final ParsecNameResolver delegate) {
+            Preconditions.checkNotNull(delegate, "Delegate cannot be null");
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Set the strategy. Defaults to {@link ParsecLoadBalancingStrategy#POWER_OF_TWO_CHOICES}.
+         *
+         * @param strategy strategy
+         * @return {@link LatencyAwareNameResolver.Builder}
+         */
+        public Builder setStrategy(final ParsecLoadBalancingStrategy strategy) {
+            Preconditions.checkNotNull(strategy, "Strategy cannot be null");
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Set the ticker.
+         *
+         * @param ticker ticker
+         * @return {@link LatencyAwareNameResolver.Builder}
+         */
+        Builder setTicker(final Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Set the time over which latencies decay by a factor of e. Defaults to 10 seconds.
+         *
+         * @param decayTime decay time
+         * @param unit      time unit
+         * @return {@link LatencyAwareNameResolver.Builder}
+         */
+        public Builder setDecayTime(final long decayTime, final TimeUnit unit) {
+            Preconditions.checkArgument(decayTime > 0, "Decay time must be positive");
+            this.decayNanos = unit.toNanos(decayTime);
+            return this;
+        }
+    }
+}
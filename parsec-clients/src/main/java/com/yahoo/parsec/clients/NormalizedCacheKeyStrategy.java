@@ -0,0 +1,272 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+import com.ning.http.client.Request;
+import com.ning.http.client.uri.Uri;
+
+import javax.ws.rs.core.NewCookie;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An implementation of {@link ParsecCacheKeyStrategy} that keys on a normalized form of the request, so requests
+ * that only differ in ways that do not change the response share a cached response.
+ *
+ * <p>The key is made of the method, the scheme, host and port in lower case with the default port made explicit,
+ * the path, the decoded query params, the selected headers, the cookies that are not ignored, the virtual host,
+ * the proxy server and the body. Retry and hedging settings never take part in the key.</p>
+ */
+public class NormalizedCacheKeyStrategy implements ParsecCacheKeyStrategy {
+
+    /**
+     * Names of the headers taking part in the key in lower case, null if all do.
+     */
+    private final Set<String> includedHeaders;
+
+    /**
+     * Names of the query params not taking part in the key.
+     */
+    private final Set<String> ignoredQueryParams;
+
+    /**
+     * Names of the cookies not taking part in the key.
+     */
+    private final Set<String> ignoredCookies;
+
+    /**
+     * Whether query params are sorted, so their order does not matter.
+     */
+    private final boolean sortQueryParams;
+
+    /**
+     * Private constructor.
+     *
+     * @param builder builder
+     */
+    private NormalizedCacheKeyStrategy(final Builder builder) {
+        includedHeaders = builder.includedHeaders == null ? null : new HashSet<>(builder.includedHeaders);
+        ignoredQueryParams = new HashSet<>(builder.ignoredQueryParams);
+        ignoredCookies = new HashSet<>(builder.ignoredCookies);
+        sortQueryParams = builder.sortQueryParams;
+    }
+
+    @Override
+    public Object getCacheKey(ParsecAsyncHttpRequest request) {
+        Request ningRequest = request.getNingRequest();
+        Uri uri = ningRequest.getUri();
+        String scheme = uri.getScheme().toLowerCase(Locale.ENGLISH);
+        String path = uri.getPath();
+
+        return new ParsecRequestKey(
+            request,
+            request.getMethod().toUpperCase(Locale.ENGLISH),
+            scheme,
+            uri.getHost().toLowerCase(Locale.ENGLISH),
+            getPort(scheme, uri.getPort()),
+            path == null || path.isEmpty() ? "/" : path,
+            getQueryParams(uri.getQuery()),
+            getHeaders(request.getHeaders()),
+            getCookies(request.getCookies()),
+            ningRequest.getVirtualHost(),
+            request.getProxyServer(),
+            ningRequest.getStringData(),
+            ningRequest.getByteData(),
+            request.getFormParams()
+        );
+    }
+
+    /**
+     * Get the port, making the default port of the scheme explicit.
+     *
+     * @param scheme scheme in lower case
+     * @param port   port, -1 if not set
+     * @return port
+     */
+    private static int getPort(final String scheme, final int port) {
+        if (port != -1) {
+            return port;
+        }
+        return "https".equals(scheme) || "wss".equals(scheme) ? 443 : 80;
+    }
+
+    /**
+     * Get the decoded query params taking part in the key, sorted by name then value if configured.
+     *
+     * @param query raw query string, possibly null
+     * @return query params
+     */
+    private List<Map.Entry<String, String>> getQueryParams(final String query) {
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Map.Entry<String, String>> params = new ArrayList<>();
+        for (String param : query.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int separator = param.indexOf('=');
+            String name = decode(separator < 0 ? param : param.substring(0, separator));
+            if (ignoredQueryParams.contains(name)) {
+                continue;
+            }
+            String value = separator < 0 ? "" : decode(param.substring(separator + 1));
+            params.add(new AbstractMap.SimpleImmutableEntry<>(name, value));
+        }
+
+        if (sortQueryParams) {
+            params.sort(Map.Entry.<String, String>comparingByKey().thenComparing(Map.Entry.comparingByValue()));
+        }
+        return params;
+    }
+
+    /**
+     * Decode a query string component, keeping it as is if it is malformed.
+     *
+     * @param component query string component
+     * @return decoded component
+     */
+    private static String decode(final String component) {
+        try {
+            return URLDecoder.decode(component, StandardCharsets.UTF_8.name());
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            return component;
+        }
+    }
+
+    /**
+     * Get the headers taking part in the key, by name in lower case.
+     *
+     * @param headers request headers
+     * @return headers
+     */
+    private Map<String, List<String>> getHeaders(final Map<String, List<String>> headers) {
+        Map<String, List<String>> selected = new TreeMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ENGLISH);
+            if (includedHeaders == null || includedHeaders.contains(name)) {
+                selected.computeIfAbsent(name, k -> new ArrayList<>()).addAll(header.getValue());
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Get the cookie values taking part in the key, by name.
+     *
+     * @param cookies request cookies
+     * @return cookie values
+     */
+    private Map<String, List<String>> getCookies(final Iterable<NewCookie> cookies) {
+        Map<String, List<String>> selected = new TreeMap<>();
+        for (NewCookie cookie : cookies) {
+            if (!ignoredCookies.contains(cookie.getName())) {
+                selected.computeIfAbsent(cookie.getName(), k -> new ArrayList<>()).add(cookie.getValue());
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Static Builder class for {@link NormalizedCacheKeyStrategy}.
+     */
+    public static class Builder {
+
+        /**
+         * Names of the headers taking part in the key in lower case, null if all do.
+         */
+        private Set<String> includedHeaders;
+
+        /**
+         * Names of the query params not taking part in the key.
+         */
+        private final Set<String> ignoredQueryParams = new HashSet<>();
+
+        /**
+         * Names of the cookies not taking part in the key.
+         */
+        private final Set<String> ignoredCookies = new HashSet<>();
+
+        /**
+         * Whether query params are sorted.
+         */
+        private boolean sortQueryParams;
+
+        /**
+         * Build new {@link NormalizedCacheKeyStrategy} instance.
+         *
+         * @return {@link NormalizedCacheKeyStrategy}
+         */
+        public NormalizedCacheKeyStrategy build() {
+            return new NormalizedCacheKeyStrategy(this);
+        }
+
+        /**
+         * Only let the given headers take part in the key, ignoring case. All headers take part by default.
+         * May be called several times to add headers.
+         *
+         * @param names header names
+         * @return {@link NormalizedCacheKeyStrategy.Builder}
+         */
+        public Builder includeHeaders(final String... names) {
+            Preconditions.checkNotNull(names, "Header names cannot be null");
+            if (includedHeaders == null) {
+                includedHeaders = new HashSet<>();
+            }
+            for (String name : names) {
+                includedHeaders.add(name.toLowerCase(Locale.ENGLISH));
+            }
+            return this;
+        }
+
+        /**
+         * Ignore the given query params.
+         *
+         * @param names query param names
+         * @return {@link NormalizedCacheKeyStrategy.Builder}
+         */
+        public Builder ignoreQueryParams(final String... names) {
+            Preconditions.checkNotNull(names, "Query param names cannot be null");
+            ignoredQueryParams.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * Ignore the given cookies.
+         *
+         * @param names cookie names
+         * @return {@link NormalizedCacheKeyStrategy.Builder}
+         */
+        public Builder ignoreCookies(final String... names) {
+            Preconditions.checkNotNull(names, "Cookie names cannot be null");
+            ignoredCookies.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * Set whether query params are sorted by name then value, so their order does not matter.
+         * Disabled by default.
+         *
+         * @param sortQueryParams sort query params
+         * @return {@link NormalizedCacheKeyStrategy.Builder}
+         */
+        public Builder setSortQueryParams(final boolean sortQueryParams) {
+            this.sortQueryParams = sortQueryParams;
+            return this;
+        }
+    }
+}
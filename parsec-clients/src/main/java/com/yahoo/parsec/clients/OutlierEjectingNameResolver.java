@@ -0,0 +1,374 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.base.Preconditions;
+
+import javax.ws.rs.core.Response;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of {@link ParsecNameResolver} that passively checks the health of the addresses resolved by a
+ * delegate, and skips the unhealthy ones.
+ *
+ * <p>The outcome of the requests to each address is fed back through
+ * {@link #onRequestCompleted(InetAddress, int, Throwable, long)} by the client when it opens a connection with the
+ * address. After a number of consecutive failures, i.e. exceptions such as timeouts, or 5xx responses, the address is
+ * ejected: it is skipped for the ejection time, which doubles with each ejection up to the max ejection time. The
+ * ejection time is reset by a success once the address has been back for as long as its last ejection. Ejected
+ * addresses are still returned when skipping them would leave fewer than the minimum healthy percentage of the
+ * addresses of a name, starting with the ones that are due back first.</p>
+ */
+public class OutlierEjectingNameResolver implements ParsecNameResolver {
+
+    /**
+     * Time after which the health of an unused address is dropped, in minutes.
+     */
+    private static final long HEALTH_EXPIRY_MINUTES = 60;
+
+    /**
+     * Delegate that resolves the addresses.
+     */
+    private final ParsecNameResolver delegate;
+
+    /**
+     * Ticker.
+     */
+    private final Ticker ticker;
+
+    /**
+     * Number of consecutive failures that eject an address.
+     */
+    private final int consecutiveFailures;
+
+    /**
+     * Time of the first ejection of an address.
+     */
+    private final long baseEjectionNanos;
+
+    /**
+     * Max ejection time.
+     */
+    private final long maxEjectionNanos;
+
+    /**
+     * Minimum percentage of the addresses of a name that are returned.
+     */
+    private final int minHealthyPercent;
+
+    /**
+     * Health by address.
+     */
+    private final Cache<InetAddress, AddressHealth> health;
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private OutlierEjectingNameResolver(final Builder builder) {
+        Preconditions.checkArgument(builder.baseEjectionNanos <= builder.maxEjectionNanos,
+            "Base ejection time cannot exceed max ejection time");
+        delegate = builder.delegate;
+        ticker = builder.ticker;
+        consecutiveFailures = builder.consecutiveFailures;
+        baseEjectionNanos = builder.baseEjectionNanos;
+        maxEjectionNanos = builder.maxEjectionNanos;
+        minHealthyPercent = builder.minHealthyPercent;
+        health = Caffeine.newBuilder()
+            .ticker(ticker)
+            .expireAfterAccess(HEALTH_EXPIRY_MINUTES, TimeUnit.MINUTES)
+            .build();
+    }
+
+    @Override
+    public InetAddress resolve(String name) throws UnknownHostException {
+        InetAddress address = delegate.resolve(name);
+        if (!isEjected(address)) {
+            return address;
+        }
+        InetAddress[] addresses = resolveAll(name);
+        return addresses[ThreadLocalRandom.current().nextInt(addresses.length)];
+    }
+
+    @Override
+    public InetAddress[] resolveAll(String name) throws UnknownHostException {
+        InetAddress[] addresses = delegate.resolveAll(name);
+        long nowNanos = ticker.read();
+        List<InetAddress> healthy = new ArrayList<>(addresses.length);
+        List<InetAddress> ejected = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            if (getEjectedUntilNanos(address, nowNanos) == 0) {
+                healthy.add(address);
+            } else {
+                ejected.add(address);
+            }
+        }
+        if (ejected.isEmpty()) {
+            return addresses;
+        }
+
+        int minHealthy = Math.max(1, (addresses.length * minHealthyPercent + 99) / 100);
+        if (healthy.size() < minHealthy) {
+            ejected.sort(Comparator.comparingLong(address -> getEjectedUntilNanos(address, nowNanos) - nowNanos));
+            healthy.addAll(ejected.subList(0, minHealthy - healthy.size()));
+            // Keep the order of the delegate
+            List<InetAddress> order = Arrays.asList(addresses);
+            healthy.sort(Comparator.comparingInt(order::indexOf));
+        }
+        return healthy.toArray(new InetAddress[healthy.size()]);
+    }
+
+    @Override
+    public void onRequestStarted(InetAddress address) {
+        delegate.onRequestStarted(address);
+    }
+
+    @Override
+    public void onRequestCompleted(InetAddress address, int statusCode, Throwable throwable, long latencyMicros) {
+        // Cancelled requests, e.g. hedged requests that lost, say nothing about the address
+        if (!(throwable instanceof CancellationException)) {
+            boolean failed = throwable != null
+                || statusCode >= Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+            health.get(address, a -> new AddressHealth()).record(failed, ticker.read());
+        }
+        delegate.onRequestCompleted(address, statusCode, throwable, latencyMicros);
+    }
+
+    /**
+     * Whether an address is ejected.
+     *
+     * @param address address
+     * @return true if the address is ejected
+     */
+    public boolean isEjected(final InetAddress address) {
+        return getEjectedUntilNanos(address, ticker.read()) != 0;
+    }
+
+    /**
+     * Get the end of the ejection of an address.
+     *
+     * @param address  address
+     * @param nowNanos current time
+     * @return time the ejection ends, 0 if the address is not ejected
+     */
+    private long getEjectedUntilNanos(final InetAddress address, final long nowNanos) {
+        AddressHealth addressHealth = health.getIfPresent(address);
+        return addressHealth == null ? 0 : addressHealth.getEjectedUntilNanos(nowNanos);
+    }
+
+    /**
+     * Consecutive failures and ejections of an address.
+     */
+    private final class AddressHealth {
+
+        /**
+         * Consecutive failures since the last success or ejection.
+         */
+        private int failures;
+
+        /**
+         * Whether the address is or was ejected since it was last reset.
+         */
+        private boolean ejected;
+
+        /**
+         * Time the last ejection ends.
+         */
+        private long ejectedUntilNanos;
+
+        /**
+         * Duration of the last ejection.
+         */
+        private long ejectionNanos;
+
+        /**
+         * Record the outcome of a request.
+         *
+         * @param failed   whether the request failed
+         * @param nowNanos current time
+         */
+        synchronized void record(final boolean failed, final long nowNanos) {
+            if (ejected && nowNanos - ejectedUntilNanos < 0) {
+                // Requests sent before the ejection
+                return;
+            }
+            if (!failed) {
+                failures = 0;
+                if (ejected && nowNanos - ejectedUntilNanos >= ejectionNanos) {
+                    ejected = false;
+                    ejectionNanos = 0;
+                }
+                return;
+            }
+            if (++failures >= consecutiveFailures) {
+                failures = 0;
+                ejectionNanos = ejectionNanos == 0 ? baseEjectionNanos : Math.min(ejectionNanos * 2, maxEjectionNanos);
+                ejectedUntilNanos = nowNanos + ejectionNanos;
+                ejected = true;
+            }
+        }
+
+        /**
+         * Get the end of the current ejection.
+         *
+         * @param nowNanos current time
+         * @return time the ejection ends, 0 if the address is not ejected
+         */
+        synchronized long getEjectedUntilNanos(final long nowNanos) {
+            return ejected && nowNanos - ejectedUntilNanos < 0 ? ejectedUntilNanos : 0;
+        }
+    }
+
+    /**
+     * Static Builder class for {@link OutlierEjectingNameResolver}.
+     */
+    public static class Builder {
+
+        /**
+         * Default number of consecutive failures that eject an address.
+         */
+        private static final int DEFAULT_CONSECUTIVE_FAILURES = 5;
+
+        /**
+         * Default base ejection time in seconds.
+         */
+        private static final long DEFAULT_BASE_EJECTION_TIME = 30;
+
+        /**
+         * Default max ejection time in seconds.
+         */
+        private static final long DEFAULT_MAX_EJECTION_TIME = 300;
+
+        /**
+         * Default minimum healthy percentage.
+         */
+        private static final int DEFAULT_MIN_HEALTHY_PERCENT = 50;
+
+        /**
+         * Delegate.
+         */
+        private ParsecNameResolver delegate = StandardNameResolver.getInstance();
+
+        /**
+         * Ticker.
+         */
+        private Ticker ticker = Ticker.systemTicker();
+
+        /**
+         * Number of consecutive failures that eject an address.
+         */
+        private int consecutiveFailures = DEFAULT_CONSECUTIVE_FAILURES;
+
+        /**
+         * Base ejection time.
+         */
+        private long baseEjectionNanos = TimeUnit.SECONDS.toNanos(DEFAULT_BASE_EJECTION_TIME);
+
+        /**
+         * Max ejection time.
+         */
+        private long maxEjectionNanos = TimeUnit.SECONDS.toNanos(DEFAULT_MAX_EJECTION_TIME);
+
+        /**
+         * Minimum healthy percentage.
+         */
+        private int minHealthyPercent = DEFAULT_MIN_HEALTHY_PERCENT;
+
+        /**
+         * Build new {@link OutlierEjectingNameResolver} instance.
+         *
+         * @return new {@link OutlierEjectingNameResolver} instance
+         */
+        public OutlierEjectingNameResolver build() {
+            return new OutlierEjectingNameResolver(this);
+        }
+
+        /**
+         * Set the delegate that resolves the addresses, e.g. a {@link CachingNameResolver}. Defaults to
+         * {@link StandardNameResolver}.
+         *
+         * @param delegate delegate
+         * @return {@link OutlierEjectingNameResolver.Builder}
+         */
+        public Builder setDelegate(final ParsecNameResolver delegate) {
+            Preconditions.checkNotNull(delegate, "Delegate cannot be null");
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Set the ticker.
+         *
+         * @param ticker ticker
+         * @return {@link OutlierEjectingNameResolver.Builder}
+         */
+        Builder setTicker(final Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive failures that eject an address. Defaults to 5.
+         *
+         * @param consecutiveFailures number of consecutive failures
+         * @return {@link OutlierEjectingNameResolver.Builder}
+         */
+        public Builder setConsecutiveFailures(final int consecutiveFailures) {
+            Preconditions.checkArgument(consecutiveFailures > 0, "Consecutive failures must be positive");
+            this.consecutiveFailures = consecutiveFailures;
+            return this;
+        }
+
+        /**
+         * Set the time of the first ejection of an address. Defaults to 30 seconds.
+         *
+         * @param baseEjectionTime base ejection time
+         * @param unit             time unit
+         * @return {@link OutlierEjectingNameResolver.Builder}
+         */
+        public Builder setBaseEjectionTime(final long baseEjectionTime, final TimeUnit unit) {
+            Preconditions.checkArgument(baseEjectionTime > 0, "Base ejection time must be positive");
+            this.baseEjectionNanos = unit.toNanos(baseEjectionTime);
+            return this;
+        }
+
+        /**
+         * Set the max ejection time. Defaults to 300 seconds.
+         *
+         * @param maxEjectionTime max ejection time
+         * @param unit            time unit
+         * @return {@link OutlierEjectingNameResolver.Builder}
+         */
+        public Builder setMaxEjectionTime(final long maxEjectionTime, final TimeUnit unit) {
+            Preconditions.checkArgument(maxEjectionTime > 0, "Max ejection time must be positive");
+            this.maxEjectionNanos = unit.toNanos(maxEjectionTime);
+            return this;
+        }
+
+        /**
+         * Set the minimum percentage of the addresses of a name that are returned, ejected or not. Defaults to 50.
+         *
+         * @param minHealthyPercent minimum healthy percentage, between 0 and 100
+         * @return {@link OutlierEjectingNameResolver.Builder}
+         */
+        public Builder setMinHealthyPercent(final int minHealthyPercent) {
+            Preconditions.checkArgument(minHealthyPercent >= 0 && minHealthyPercent <= 100,
+                "Min healthy percent must be between 0 and 100");
+            this.minHealthyPercent = minHealthyPercent;
+            return this;
+        }
+    }
+}
@@ -3,9 +3,13 @@
 
 package com.yahoo.parsec.clients;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Preconditions;
 import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.ProxyServerSelector;
 import com.ning.http.client.Request;
 import com.ning.http.client.filter.IOExceptionFilter;
 import com.ning.http.client.filter.RequestFilter;
@@ -20,17 +24,29 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.core.Response;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiPredicate;
+import java.util.function.Supplier;
 
 
 /**
@@ -45,15 +61,40 @@ public class ParsecAsyncHttpClient {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ParsecAsyncHttpClient.class);
 
+    /**
+     * By default, do not delay the retries.
+     */
+    private static final ParsecRetryBackoffPolicy DEFAULT_RETRY_BACKOFF_POLICY = new FixedBackoffPolicy(0);
+
+    /**
+     * By default, hedged attempts may add up to 10% extra requests to a host.
+     */
+    private static final double DEFAULT_HEDGE_BUDGET_RATIO = 0.1;
+
+    /**
+     * By default, one hedged attempt per second is allowed to a host regardless of the ratio.
+     */
+    private static final int DEFAULT_HEDGE_BUDGET_MIN_PER_SECOND = 1;
+
+    /**
+     * Time after which the circuit breaker and concurrency limiter of a host not requested are dropped, in minutes.
+     */
+    private static final long PER_HOST_EXPIRY_MINUTES = 60;
+
+    /**
+     * Maximum number of hosts whose circuit breaker and concurrency limiter are kept.
+     */
+    private static final int MAX_HOSTS = 10000;
+
     /**
      * Client.
      */
     private AsyncHttpClient client;
 
     /**
-     * Retry interval
+     * Retry backoff policy.
      */
-    private Optional<Long> retryIntervalMillisOpt;
+    private ParsecRetryBackoffPolicy retryBackoffPolicy;
 
     /**
      * Ning client config.
@@ -70,6 +111,61 @@ public class ParsecAsyncHttpClient {
      */
     private ThreadPoolExecutor executorService;
 
+    /**
+     * Timer for waiting out retry and hedge delays, batch deadlines and queue timeouts.
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * Shared client resources, null if the client owns its threads.
+     */
+    private final AtomicReference<ParsecClientResources> clientResources = new AtomicReference<>();
+
+    /**
+     * Number of requests sent through the Ning client and not completed yet.
+     */
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    /**
+     * Retry budget, or null if retries are not limited.
+     */
+    private ParsecRetryBudget retryBudget;
+
+    /**
+     * Circuit breaker config, or null if circuit breakers are disabled.
+     */
+    private ParsecCircuitBreakerConfig circuitBreakerConfig;
+
+    /**
+     * Circuit breakers keyed by host.
+     */
+    private final Cache<String, ParsecCircuitBreaker> circuitBreakers = newPerHostCache();
+
+    /**
+     * Concurrency limit config, or null if concurrency limits are disabled.
+     */
+    private ParsecConcurrencyLimitConfig concurrencyLimitConfig;
+
+    /**
+     * Concurrency limiters keyed by host.
+     */
+    private final Cache<String, ParsecConcurrencyLimiter> concurrencyLimiters = newPerHostCache();
+
+    /**
+     * Hedge budget.
+     */
+    private ParsecRetryBudget hedgeBudget;
+
+    /**
+     * Latencies of hedged requests, used for percentile based hedge delays.
+     */
+    private final ParsecLatencyTracker latencyTracker = new ParsecLatencyTracker();
+
+    /**
+     * Identical requests in flight, shared by their callers, null if single flight is disabled.
+     */
+    private ParsecSingleFlight<ParsecAsyncHttpRequest, Response> singleFlight;
+
     private static final BiPredicate<Request, ResponseOrThrowable> PROFILE_LOGGING_PREDICATE
             = new AlwaysTruePredicate();
 
@@ -97,42 +193,41 @@ public class ParsecAsyncHttpClient {
      */
     private ParsecAsyncHttpClient(final Builder builder) {
         this(builder.configBuilder,
-                builder.cacheRefreshAfterWrite,
-                builder.cacheExpireAfterWrite,
-                builder.cacheMaximumSize,
                 builder.enableProfilingFilter,
-                builder.recordCacheStats,
-                builder.retryIntervalMillisOpt);
+                builder.retryBackoffPolicy,
+                builder.clientResources);
+        builder.unsetNingDefaults();
+
+        if (builder.clientResources != null) {
+            clientResources.set(builder.clientResources.retain());
+            timer = builder.clientResources.getTimer();
+        }
+        responseLoadingCache = newResponseLoadingCache(builder);
+
+        if (builder.retryBudgetRatio >= 0) {
+            retryBudget = new ParsecRetryBudget(builder.retryBudgetRatio, builder.retryBudgetMinRetriesPerSecond);
+        }
+        hedgeBudget = new ParsecRetryBudget(builder.hedgeBudgetRatio, builder.hedgeBudgetMinPerSecond);
+        circuitBreakerConfig = builder.circuitBreakerConfig;
+        concurrencyLimitConfig = builder.concurrencyLimitConfig;
+        if (builder.enableSingleFlight) {
+            singleFlight = new ParsecSingleFlight<>();
+        }
     }
 
     /**
      * Private constructor.
      * @param ningClientConfigBuilder Ning client config builder
-     * @param cacheExpireAfterWrite cache expire time
-     * @param cacheMaximumSize cache maximum size
+     * @param enableProfilingFilter enable profiling filter
+     * @param retryBackoffPolicy retry backoff policy
+     * @param clientResources shared client resources, null if none
      */
     private ParsecAsyncHttpClient(
         final AsyncHttpClientConfig.Builder ningClientConfigBuilder,
-        int cacheRefreshAfterWrite,
-        int cacheExpireAfterWrite,
-        int cacheMaximumSize,
         boolean enableProfilingFilter,
-        boolean recordCacheStats,
-        Optional<Long> retryIntervalMillisOpt
+        ParsecRetryBackoffPolicy retryBackoffPolicy,
+        ParsecClientResources clientResources
     ) {
-        ParsecAsyncHttpResponseLoadingCache.Builder cacheBuilder = new ParsecAsyncHttpResponseLoadingCache.Builder(this)
-                .expireAfterWrite(cacheExpireAfterWrite, TimeUnit.SECONDS)
-                .maximumSize(cacheMaximumSize);
-
-        if(cacheRefreshAfterWrite > 0)
-            cacheBuilder.refreshAfterWrite(cacheRefreshAfterWrite, TimeUnit.SECONDS);
-
-        if (recordCacheStats) {
-            cacheBuilder.recordStats();
-        }
-
-        responseLoadingCache = cacheBuilder.build();
-
         if (enableProfilingFilter) {
             //so that there's only one filter.
             ningClientConfigBuilder.removeRequestFilter(PROFILING_FILTER);
@@ -140,16 +235,88 @@ public class ParsecAsyncHttpClient {
             oldFashionProfiling = false;
         }
 
+        if (clientResources != null) {
+            AsyncHttpClientConfig config = ningClientConfigBuilder.build();
+            ningClientConfigBuilder.setAsyncHttpClientProviderConfig(
+                clientResources.mergeProviderConfig(config.getAsyncHttpProviderConfig()));
+        }
         this.ningClientConfig = ningClientConfigBuilder.build();
 
         executorService = (ThreadPoolExecutor) ningClientConfig.executorService();
         client = new AsyncHttpClient(ningClientConfig);
+        timer = ParsecSharedTimer.getInstance();
+
+        this.retryBackoffPolicy = retryBackoffPolicy;
+    }
+
+    /**
+     * New cache of per host state, dropping the state of hosts not requested for {@value #PER_HOST_EXPIRY_MINUTES}
+     * minutes. Requests in flight keep using the state they got.
+     *
+     * @param <V> state type
+     * @return cache keyed by host
+     */
+    private static <V> Cache<String, V> newPerHostCache() {
+        return Caffeine.newBuilder()
+            .expireAfterAccess(PER_HOST_EXPIRY_MINUTES, TimeUnit.MINUTES)
+            .maximumSize(MAX_HOSTS)
+            .build();
+    }
+
+    /**
+     * New response loading cache.
+     * @param builder builder
+     * @return response loading cache
+     */
+    private ParsecAsyncHttpResponseLoadingCache newResponseLoadingCache(final Builder builder) {
+        ParsecAsyncHttpResponseLoadingCache.Builder cacheBuilder = new ParsecAsyncHttpResponseLoadingCache.Builder(this)
+                .expireAfterWrite(builder.cacheExpireAfterWrite, TimeUnit.SECONDS)
+                .maximumResponseWeight(builder.cacheMaximumResponseWeight)
+                .keyStrategy(builder.cacheKeyStrategy)
+                .httpSemantics(builder.enableCacheHttpSemantics)
+                .revalidationWindow(builder.cacheRevalidationWindow, TimeUnit.SECONDS)
+                .staleIfError(builder.cacheStaleIfError, TimeUnit.SECONDS)
+                .negativeCache(builder.negativeCacheConfig);
+
+        builder.cacheTtlRoutes.forEach((urlPattern, ttl) -> cacheBuilder.ttlRoute(urlPattern, ttl, TimeUnit.SECONDS));
+
+        if (builder.cacheHardExpireAfterWrite > builder.cacheExpireAfterWrite) {
+            cacheBuilder.staleWhileRevalidate(
+                builder.cacheHardExpireAfterWrite - builder.cacheExpireAfterWrite, TimeUnit.SECONDS);
+        }
 
-        this.retryIntervalMillisOpt = retryIntervalMillisOpt;
+        if (builder.cacheMaximumWeight > 0) {
+            cacheBuilder.maximumWeight(builder.cacheMaximumWeight);
+        } else {
+            cacheBuilder.maximumSize(builder.cacheMaximumSize);
+        }
+
+        if (builder.cacheOffHeapMaximumSize > 0) {
+            cacheBuilder.offHeap(builder.cacheOffHeapMaximumSize);
+        }
+
+        if (builder.cacheSnapshotFile != null) {
+            cacheBuilder.snapshotFile(Paths.get(builder.cacheSnapshotFile))
+                .snapshotInterval(builder.cacheSnapshotInterval, TimeUnit.SECONDS);
+        }
+
+        if (builder.clientResources != null) {
+            cacheBuilder.cleanUpExecutorService(builder.clientResources.getCleanUpExecutorService());
+        }
+
+        if (builder.cacheRefreshAfterWrite > 0) {
+            cacheBuilder.refreshAfterWrite(builder.cacheRefreshAfterWrite, TimeUnit.SECONDS);
+        }
+
+        if (builder.recordCacheStats) {
+            cacheBuilder.recordStats();
+        }
+
+        return cacheBuilder.build();
     }
 
     /**
-     * Close the under-lying connections and shut down executor service.
+     * Close the under-lying connections and shut down executor service, or release the shared client resources.
      */
     public void close() {
         if (!client.isClosed()) {
@@ -160,7 +327,12 @@ public class ParsecAsyncHttpClient {
             executorService.shutdown();
         }
 
-        responseLoadingCache.shutdownCleanUpExecutorService();
+        responseLoadingCache.close();
+
+        ParsecClientResources resources = clientResources.getAndSet(null);
+        if (resources != null) {
+            resources.release();
+        }
     }
 
     /**
@@ -181,19 +353,65 @@ public class ParsecAsyncHttpClient {
         return futures;
     }
 
+    /**
+     * Critical execute a batch of requests with bounded parallelism (will not lookup in cache nor load into cache).
+     *
+     * @param requests Requests to critical execute
+     * @param batchConfig Batch config
+     * @return {@literal CompletableFuture<List<ParsecBatchResult>>}, results ordered as the requests
+     */
+    public CompletableFuture<List<ParsecBatchResult>> criticalExecute(
+        final List<ParsecAsyncHttpRequest> requests,
+        final ParsecBatchConfig batchConfig
+    ) {
+        return new ParsecBatchExecution(requests, batchConfig, request -> {
+            try {
+                return criticalExecute(request);
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            }
+        }, timer, executorService).execute();
+    }
+
+    /**
+     * Scatter requests and gather their results at a deadline (will not lookup in cache nor load into cache).
+     * All requests are sent at once. The results complete when every request has completed or at the deadline,
+     * whichever comes first, with the status of each request. Requests still in flight at the deadline are cancelled.
+     *
+     * @param requests Requests to critical execute
+     * @param deadline Deadline
+     * @param unit Time unit of the deadline
+     * @return {@literal CompletableFuture<List<ParsecBatchResult>>}, results ordered as the requests
+     */
+    public CompletableFuture<List<ParsecBatchResult>> scatterGather(
+        final List<ParsecAsyncHttpRequest> requests,
+        long deadline,
+        TimeUnit unit
+    ) {
+        return criticalExecute(requests, new ParsecBatchConfig.Builder()
+            .setParallelism(Math.max(1, requests.size()))
+            .setDeadline(deadline, unit)
+            .build());
+    }
+
     /**
      * Critical execute a request (will not lookup in cache nor load into cache).
+     * With single flight enabled, a GET, HEAD or OPTIONS request joins the identical request already in flight if any.
      *
      * @param request Request to critical execute
      * @return {@literal CompletableFuture<Response>}
      * @throws ExecutionException execution exception
      */
     public CompletableFuture<Response> criticalExecute(final ParsecAsyncHttpRequest request) throws ExecutionException {
-        return criticalExecute(request, new ParsecAsyncCompletionHandlerBase());
+        if (singleFlight != null && request.isIdempotent()) {
+            return singleFlight.execute(request, () -> criticalExecute(request, ParsecAsyncCompletionHandlerBase::new));
+        }
+        return criticalExecute(request, ParsecAsyncCompletionHandlerBase::new);
     }
 
     /**
      * Critical execute a request (will not lookup in cache nor load into cache).
+     * The request is not hedged, as a single async handler cannot be shared by several attempts.
      *
      * @param request Request to critical execute
      * @param asyncHandler Request async handler
@@ -204,22 +422,235 @@ public class ParsecAsyncHttpClient {
         final ParsecAsyncHttpRequest request,
         AsyncHandler<T> asyncHandler
     ) {
-        AsyncHandler<T> practicalAsyncHandler =
-            oldFashionProfiling? new ParsecAsyncHandlerWrapper<>(asyncHandler, request.getNingRequest()): asyncHandler;
+        depositRetryBudget(request);
+        return executeAttempt(request, asyncHandler);
+    }
+
+    /**
+     * Critical execute a request (will not lookup in cache nor load into cache), hedging it if the request
+     * sets a hedge delay or percentile. A new async handler is created for each attempt.
+     *
+     * @param request Request to critical execute
+     * @param asyncHandlerSupplier Supplier of request async handlers
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    public <T> CompletableFuture<T> criticalExecute(
+        final ParsecAsyncHttpRequest request,
+        Supplier<AsyncHandler<T>> asyncHandlerSupplier
+    ) {
+        depositRetryBudget(request);
+        if (!request.isHedged()) {
+            return executeAttempt(request, asyncHandlerSupplier.get());
+        }
+
+        Supplier<CompletableFuture<T>> attemptSupplier = () -> {
+            long startNanos = System.nanoTime();
+            CompletableFuture<T> attempt = executeAttempt(request, asyncHandlerSupplier.get());
+            if (request.getHedgePercentile() > 0) {
+                attempt.whenComplete((response, throwable) -> {
+                    if (throwable == null) {
+                        latencyTracker.record(request.getHostKey(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    }
+                });
+            }
+            return attempt;
+        };
+
+        long hedgeDelayMillis = getHedgeDelayMillis(request);
+        if (hedgeDelayMillis < 0) {
+            return attemptSupplier.get();
+        }
+
+        hedgeBudget.deposit(request.getHostKey());
+        return new ParsecHedgedRequestFuture<>(
+            attemptSupplier,
+            hedgeDelayMillis,
+            timer,
+            executorService,
+            hedgeBudget,
+            request.getHostKey()
+        ).execute();
+    }
+
+    /**
+     * Get the hedge delay of a request, from the latency percentile of its host if set and known,
+     * otherwise from its fixed hedge delay.
+     *
+     * @param request Request
+     * @return Hedge delay in milliseconds, -1 if unknown
+     */
+    private long getHedgeDelayMillis(final ParsecAsyncHttpRequest request) {
+        if (request.getHedgePercentile() > 0) {
+            long percentileMillis = latencyTracker.getPercentileMillis(request.getHostKey(), request.getHedgePercentile());
+            if (percentileMillis >= 0) {
+                return percentileMillis;
+            }
+        }
+        return request.getHedgeDelayMillis();
+    }
+
+    /**
+     * Record a first attempt in the retry budget.
+     *
+     * @param request Request
+     */
+    private void depositRetryBudget(final ParsecAsyncHttpRequest request) {
+        if (retryBudget != null) {
+            retryBudget.deposit(request.getHostKey());
+        }
+    }
+
+    /**
+     * Execute one attempt of a request, retrying it if needed.
+     *
+     * @param request Request to execute
+     * @param asyncHandler Request async handler
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    private <T> CompletableFuture<T> executeAttempt(
+        final ParsecAsyncHttpRequest request,
+        AsyncHandler<T> asyncHandler
+    ) {
+        // The name resolver is fed whether or not the profiling filter replaces the profiling wrapper
+        AsyncHandler<T> feedbackAsyncHandler =
+            ParsecNameResolverFeedbackHandler.wrap(asyncHandler, request.getNingRequest());
+        AsyncHandler<T> practicalAsyncHandler = oldFashionProfiling
+            ? new ParsecAsyncHandlerWrapper<>(feedbackAsyncHandler, request.getNingRequest()) : feedbackAsyncHandler;
 
         if (request.getRetryStatusCodes().isEmpty() && request.getRetryExceptions().isEmpty()) {
-            return new ParsecCompletableFuture<>(
-                client.executeRequest(request.getNingRequest(), practicalAsyncHandler)
-            );
+            return executeNingRequest(request, practicalAsyncHandler);
         } else {
-            ParsecHttpRequestRetryCallable<T> retryCallable;
-            retryCallable = retryIntervalMillisOpt.map(retryIntervalMillis -> new ParsecHttpRequestRetryCallable<>(
-                client, request, practicalAsyncHandler, retryIntervalMillis))
-                .orElseGet(() -> new ParsecHttpRequestRetryCallable<>(client, request, practicalAsyncHandler));
-            return new ParsecCompletableFuture<>(executorService.submit(retryCallable));
+            return new ParsecHttpRequestRetryFuture<>(
+                () -> executeNingRequest(request, practicalAsyncHandler),
+                request,
+                request.getRetryBackoffPolicy() == null ? retryBackoffPolicy : request.getRetryBackoffPolicy(),
+                timer,
+                executorService,
+                retryBudget
+            ).execute();
         }
     }
 
+    /**
+     * Send a request through the Ning client, guarded by the circuit breaker and the concurrency limiter
+     * of its host if enabled. Every retried or hedged attempt goes through here.
+     *
+     * @param request Request to send
+     * @param asyncHandler Request async handler
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    private <T> CompletableFuture<T> executeNingRequest(
+        final ParsecAsyncHttpRequest request,
+        final AsyncHandler<T> asyncHandler
+    ) {
+        final ParsecCircuitBreaker circuitBreaker = circuitBreakerConfig == null ? null
+            : circuitBreakers.get(request.getHostKey(),
+                hostKey -> new ParsecCircuitBreaker(hostKey, circuitBreakerConfig));
+        final long permission = circuitBreaker == null ? ParsecCircuitBreaker.PERMITTED
+            : circuitBreaker.tryAcquirePermission();
+        if (permission == ParsecCircuitBreaker.NOT_PERMITTED) {
+            return failBeforeSending(new ParsecCircuitBreakerOpenException(request.getHostKey()), asyncHandler);
+        }
+
+        if (concurrencyLimitConfig == null) {
+            return sendNingRequest(request, asyncHandler, circuitBreaker, permission);
+        }
+
+        ParsecConcurrencyLimiter concurrencyLimiter = concurrencyLimiters.get(request.getHostKey(),
+            hostKey -> new ParsecConcurrencyLimiter(hostKey, concurrencyLimitConfig, timer, executorService));
+        // Claimed either by sending the request, or by the limiter completing the future without sending it,
+        // e.g. rejected, or cancelled while queued
+        final AtomicBoolean claimed = new AtomicBoolean();
+        CompletableFuture<T> future = concurrencyLimiter.submit(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                CompletableFuture<T> cancelled = new CompletableFuture<>();
+                cancelled.cancel(false);
+                return cancelled;
+            }
+            return sendNingRequest(request, asyncHandler, circuitBreaker, permission);
+        });
+        future.whenComplete((response, throwable) -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            // The request was never sent
+            if (throwable instanceof ParsecConcurrencyLimitExceededException) {
+                asyncHandler.onThrowable(throwable);
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnored(permission);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Send a request through the Ning client, recording its outcome in the circuit breaker of its host.
+     *
+     * @param request Request to send
+     * @param asyncHandler Request async handler
+     * @param circuitBreaker Circuit breaker of the host, or null if disabled
+     * @param permission Circuit breaker permission of the request
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    private <T> CompletableFuture<T> sendNingRequest(
+        final ParsecAsyncHttpRequest request,
+        final AsyncHandler<T> asyncHandler,
+        final ParsecCircuitBreaker circuitBreaker,
+        final long permission
+    ) {
+        final long startNanos = System.nanoTime();
+        inFlightRequests.incrementAndGet();
+        CompletableFuture<T> future;
+        try {
+            future = new ParsecCompletableFuture<>(client.executeRequest(request.getNingRequest(), asyncHandler));
+        } catch (RuntimeException e) {
+            inFlightRequests.decrementAndGet();
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnored(permission);
+            }
+            throw e;
+        }
+        future.whenComplete((response, throwable) -> inFlightRequests.decrementAndGet());
+        if (circuitBreaker == null) {
+            return future;
+        }
+
+        future.whenComplete((response, throwable) -> {
+            long durationNanos = System.nanoTime() - startNanos;
+            if (throwable instanceof CancellationException) {
+                circuitBreaker.onIgnored(permission);
+            } else if (throwable != null) {
+                circuitBreaker.onResult(permission, true, durationNanos);
+            } else {
+                int statusCode = ParsecHttpUtil.getStatusCode(response);
+                circuitBreaker.onResult(permission, circuitBreakerConfig.isRecordServerErrors()
+                    && statusCode >= Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), durationNanos);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Fail a request that is not sent.
+     *
+     * @param throwable Reason the request is not sent
+     * @param asyncHandler Request async handler
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>} failed with the given throwable
+     */
+    private static <T> CompletableFuture<T> failBeforeSending(Throwable throwable, AsyncHandler<T> asyncHandler) {
+        asyncHandler.onThrowable(throwable);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
     /**
      * Execute requests.
      *
@@ -239,6 +670,26 @@ public class ParsecAsyncHttpClient {
         return futures;
     }
 
+    /**
+     * Execute a batch of requests with bounded parallelism.
+     *
+     * @param requests Requests to execute
+     * @param batchConfig Batch config
+     * @return {@literal CompletableFuture<List<ParsecBatchResult>>}, results ordered as the requests
+     */
+    public CompletableFuture<List<ParsecBatchResult>> execute(
+        final List<ParsecAsyncHttpRequest> requests,
+        final ParsecBatchConfig batchConfig
+    ) {
+        return new ParsecBatchExecution(requests, batchConfig, request -> {
+            try {
+                return execute(request);
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            }
+        }, timer, executorService).execute();
+    }
+
     /**
      * Execute request.
      * @param request Request to execute
@@ -259,7 +710,48 @@ public class ParsecAsyncHttpClient {
      * @return cache statistics
      */
     public CacheStats getCacheStats() {
-        return new CacheStats(responseLoadingCache.synchronous().stats());
+        return new CacheStats(responseLoadingCache.synchronous().stats(), responseLoadingCache.getNegativeHitCount());
+    }
+
+    /**
+     * Get connection pool and executor usage.
+     *
+     * @return pool statistics
+     */
+    public PoolStats getPoolStats() {
+        return new PoolStats(this);
+    }
+
+    /**
+     * Get retry budget statistics.
+     *
+     * @return retry budget statistics, or null if no retry budget is set
+     */
+    public RetryBudgetStats getRetryBudgetStats() {
+        return retryBudget == null ? null : new RetryBudgetStats(retryBudget);
+    }
+
+    /**
+     * Get circuit breaker states of the hosts requested in the last hour.
+     *
+     * @return circuit breaker states keyed by host:port, empty if circuit breakers are disabled
+     */
+    public Map<String, ParsecCircuitBreakerState> getCircuitBreakerStates() {
+        Map<String, ParsecCircuitBreakerState> states = new HashMap<>();
+        circuitBreakers.asMap().forEach((hostKey, circuitBreaker) -> states.put(hostKey, circuitBreaker.getState()));
+        return states;
+    }
+
+    /**
+     * Get current concurrency limits of the hosts requested in the last hour.
+     *
+     * @return concurrency limits keyed by host:port, empty if concurrency limits are disabled
+     */
+    public Map<String, Integer> getConcurrencyLimits() {
+        Map<String, Integer> limits = new HashMap<>();
+        concurrencyLimiters.asMap().forEach((hostKey, concurrencyLimiter) ->
+            limits.put(hostKey, concurrencyLimiter.getLimit()));
+        return limits;
     }
 
     /**
@@ -289,6 +781,15 @@ public class ParsecAsyncHttpClient {
         return executorService;
     }
 
+    /**
+     * Get retry backoff policy.
+     *
+     * @return Retry backoff policy used by requests that do not set their own
+     */
+    public ParsecRetryBackoffPolicy getRetryBackoffPolicy() {
+        return retryBackoffPolicy;
+    }
+
     /**
      * Get IO exception filters.
      *
@@ -470,6 +971,11 @@ public class ParsecAsyncHttpClient {
          */
         private static final int DEFAULT_CACHE_MAX_SIZE = 10000;
 
+        /**
+         * Default cache revalidation window in seconds.
+         */
+        private static final int DEFAULT_CACHE_REVALIDATION_WINDOW = 60;
+
         /**
          * Config builder.
          */
@@ -480,6 +986,21 @@ public class ParsecAsyncHttpClient {
          */
         private int cacheExpireAfterWrite = 2;
 
+        /**
+         * Cache hard expire time, -1 if not set.
+         */
+        private int cacheHardExpireAfterWrite = -1;
+
+        /**
+         * Cache TTL by URL pattern, in the order they are tried.
+         */
+        private final Map<String, Integer> cacheTtlRoutes = new LinkedHashMap<>();
+
+        /**
+         * How long a stale response is served from cache when refreshing it fails, in seconds.
+         */
+        private int cacheStaleIfError = 0;
+
         /**
          * Cache refresh time.
          */
@@ -491,19 +1012,124 @@ public class ParsecAsyncHttpClient {
         private int cacheMaximumSize = DEFAULT_CACHE_MAX_SIZE;
 
         /**
-         * Retry interval
+         * Cache max weight in bytes, -1 if the cache is bounded by size.
+         */
+        private long cacheMaximumWeight = -1;
+
+        /**
+         * Weight in bytes above which a response is not cached.
+         */
+        private long cacheMaximumResponseWeight = Long.MAX_VALUE;
+
+        /**
+         * Maximum bytes of the off-heap cache tier, 0 if none.
+         */
+        private long cacheOffHeapMaximumSize = 0;
+
+        /**
+         * Cache snapshot file, null if none.
+         */
+        private String cacheSnapshotFile;
+
+        /**
+         * Cache snapshot interval in seconds, 0 if only saved on close.
+         */
+        private int cacheSnapshotInterval = 0;
+
+        /**
+         * Cache key strategy.
+         */
+        private ParsecCacheKeyStrategy cacheKeyStrategy = FullRequestCacheKeyStrategy.getInstance();
+
+        /**
+         * Whether the cache follows HTTP caching semantics.
+         */
+        private boolean enableCacheHttpSemantics = false;
+
+        /**
+         * How long a stale response that can be revalidated is kept in cache, in seconds.
+         */
+        private int cacheRevalidationWindow = DEFAULT_CACHE_REVALIDATION_WINDOW;
+
+        /**
+         * Negative cache config, null if negative caching is disabled.
+         */
+        private ParsecNegativeCacheConfig negativeCacheConfig;
+
+        /**
+         * Retry backoff policy.
+         */
+        private ParsecRetryBackoffPolicy retryBackoffPolicy = DEFAULT_RETRY_BACKOFF_POLICY;
+
+        /**
+         * Retry budget ratio, negative if retries are not limited.
+         */
+        private double retryBudgetRatio = -1;
+
+        /**
+         * Retry budget minimum retries per second.
          */
-        private Optional<Long> retryIntervalMillisOpt = Optional.empty();
+        private int retryBudgetMinRetriesPerSecond;
+
+        /**
+         * Circuit breaker config.
+         */
+        private ParsecCircuitBreakerConfig circuitBreakerConfig;
+
+        /**
+         * Concurrency limit config.
+         */
+        private ParsecConcurrencyLimitConfig concurrencyLimitConfig;
+
+        /**
+         * Hedge budget ratio.
+         */
+        private double hedgeBudgetRatio = DEFAULT_HEDGE_BUDGET_RATIO;
+
+        /**
+         * Hedge budget minimum hedged attempts per second.
+         */
+        private int hedgeBudgetMinPerSecond = DEFAULT_HEDGE_BUDGET_MIN_PER_SECOND;
 
         private boolean enableProfilingFilter = false;
 
         private boolean recordCacheStats = false;
 
+        /**
+         * Whether identical requests in flight are shared.
+         */
+        private boolean enableSingleFlight = false;
+
+        /**
+         * Shared client resources, null if the client owns its threads.
+         */
+        private ParsecClientResources clientResources;
+
+        /**
+         * Whether the config builder was created by this builder, so the settings its build() fills in are known.
+         */
+        private final boolean ownsConfigBuilder;
+
+        /**
+         * Executor service set on the config builder, null for a new one per client.
+         */
+        private ExecutorService executorService;
+
+        /**
+         * Proxy server selector set on the config builder, null for the default one.
+         */
+        private ProxyServerSelector proxyServerSelector;
+
+        /**
+         * Hostname verifier set on the config builder, null for the default one.
+         */
+        private HostnameVerifier hostnameVerifier;
+
         /**
          * Constructor.
          */
         public Builder() {
-            this(new AsyncHttpClientConfig.Builder());
+            this(new AsyncHttpClientConfig.Builder(), true);
         }
 
         /**
@@ -511,15 +1137,29 @@ public class ParsecAsyncHttpClient {
          * @param config config
          */
         public Builder(final AsyncHttpClientConfig config) {
-            this(new AsyncHttpClientConfig.Builder(config));
+            this(new AsyncHttpClientConfig.Builder(config), true);
+            executorService = config.executorService();
+            proxyServerSelector = config.getProxyServerSelector();
+            hostnameVerifier = config.getHostnameVerifier();
         }
 
         /**
-         * Constructor.
+         * Constructor. The defaults that Ning fills in when it builds a config, such as the executor service, stay set
+         * on the config builder, so it is not reused once the client built first is closed.
          * @param configBuilder config builder
          */
         public Builder(final AsyncHttpClientConfig.Builder configBuilder) {
+            this(configBuilder, false);
+        }
+
+        /**
+         * Private constructor.
+         * @param configBuilder     config builder
+         * @param ownsConfigBuilder whether the config builder was created by this builder
+         */
+        private Builder(final AsyncHttpClientConfig.Builder configBuilder, final boolean ownsConfigBuilder) {
             this.configBuilder = configBuilder;
+            this.ownsConfigBuilder = ownsConfigBuilder;
         }
 
         @Override
@@ -589,6 +1229,31 @@ public class ParsecAsyncHttpClient {
             return new ParsecAsyncHttpClient(this);
         }
 
+        /**
+         * Get the fingerprint of the effective configuration, equal for builders that are configured identically.
+         *
+         * @return {@link ParsecClientFingerprint}
+         */
+        ParsecClientFingerprint fingerprint() {
+            // Added by build(), so a builder has the same fingerprint before and after building a client
+            return enableProfilingFilter
+                ? ParsecClientFingerprint.of(Collections.singleton(PROFILING_FILTER), this)
+                : ParsecClientFingerprint.of(Collections.emptySet(), this);
+        }
+
+        /**
+         * Unset the settings that the config builder fills in when it builds a config, so the builder keeps the same
+         * fingerprint, and a later build gets a new executor service instead of the one shut down by the client built
+         * first. Only done for a config builder created by this builder, whose settings are known.
+         */
+        private void unsetNingDefaults() {
+            if (ownsConfigBuilder) {
+                configBuilder.setExecutorService(executorService)
+                    .setProxyServerSelector(proxyServerSelector)
+                    .setHostnameVerifier(hostnameVerifier);
+            }
+        }
+
         /**
          * Remove IO exception filter.
          *
@@ -688,13 +1353,33 @@ public class ParsecAsyncHttpClient {
         }
 
         /**
-         * Set executor service for executing requests, handling retries, and asynchronous cache loading.
+         * Attach the client to shared client resources, so it uses their timer, cache clean up scheduler, Netty
+         * I/O event loop and callback executor instead of starting its own threads. The client holds a reference
+         * to the resources from when it is built until it is closed. Replaces the executor service. A Netty provider
+         * config set on the Ning config builder is kept, with the shared event loop and timer set on it when the client
+         * is built; building fails with {@link IllegalStateException} if it has its own event loop, boss executor or
+         * timer, or is not a Netty one.
+         *
+         * @param clientResources Shared client resources
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setClientResources(ParsecClientResources clientResources) {
+            Preconditions.checkNotNull(clientResources, "Client resources cannot be null");
+            configBuilder.setExecutorService(clientResources.getCallbackExecutorService());
+            this.executorService = clientResources.getCallbackExecutorService();
+            this.clientResources = clientResources;
+            return this;
+        }
+
+        /**
+         * Set executor service for executing requests and asynchronous cache loading.
          *
          * @param executorService Executor service
          * @return {@link ParsecAsyncHttpClient.Builder}
          */
         public Builder setExecutorService(ExecutorService executorService) {
             configBuilder.setExecutorService(executorService);
+            this.executorService = executorService;
             return this;
         }
 
@@ -817,6 +1502,20 @@ public class ParsecAsyncHttpClient {
             return this;
         }
 
+        /**
+         * Add a cache TTL route: responses to GET requests whose URL contains a match of the pattern are kept
+         * in cache for the route TTL instead of the cache expire time, unless the request sets its own cache TTL.
+         * Routes are tried in the order they are added, and the first match applies.
+         * @param urlPattern Regular expression found in the request URLs, e.g. {@code "/v1/quotes/"}
+         * @param ttl Cache TTL in seconds
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder addCacheTtlRoute(String urlPattern, int ttl) {
+            Preconditions.checkArgument(ttl >= 0, "Cache TTL cannot be negative");
+            cacheTtlRoutes.put(urlPattern, ttl);
+            return this;
+        }
+
         /**
          * Set whether cache need auto refresh mechanism. 
          * @param cacheRefreshAfterWrite How long will a key become eligible for refresh after write
@@ -827,6 +1526,30 @@ public class ParsecAsyncHttpClient {
             return this;
         }
 
+        /**
+         * Set cache hard expire time. Between the cache expire time and the hard expire time, a stale response is
+         * served right away from cache while one request refreshes it in the background. Past the hard expire time,
+         * callers wait for the refreshed response. Not set by default, i.e. no stale response is served.
+         * @param cacheHardExpireAfterWrite Hard expire time in seconds, later than the cache expire time
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheHardExpireAfterWrite(int cacheHardExpireAfterWrite) {
+            this.cacheHardExpireAfterWrite = cacheHardExpireAfterWrite;
+            return this;
+        }
+
+        /**
+         * Set how long after it became stale a response keeps being served from cache when refreshing it fails
+         * or gets a 5xx response. Defaults to 0, i.e. the failure is returned.
+         * @param cacheStaleIfError Stale if error time in seconds
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheStaleIfError(int cacheStaleIfError) {
+            Preconditions.checkArgument(cacheStaleIfError >= 0, "Cache stale if error time cannot be negative");
+            this.cacheStaleIfError = cacheStaleIfError;
+            return this;
+        }
+
         /**
          * Set cache maximum size.
          * @param cacheMaximumSize Maximum entries to keep in cache
@@ -837,13 +1560,211 @@ public class ParsecAsyncHttpClient {
             return this;
         }
 
+        /**
+         * Set cache maximum weight, bounding the cache by the estimated bytes of the cached response bodies
+         * and headers instead of by the number of entries. Overrides the cache maximum size.
+         * @param cacheMaximumWeight Maximum bytes to keep in cache
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheMaximumWeight(long cacheMaximumWeight) {
+            Preconditions.checkArgument(cacheMaximumWeight > 0, "Cache maximum weight must be positive");
+            this.cacheMaximumWeight = cacheMaximumWeight;
+            return this;
+        }
+
+        /**
+         * Set the estimated bytes of body and headers above which a response is not cached, so huge responses
+         * bypass the cache. Not limited by default.
+         * @param cacheMaximumResponseWeight Maximum bytes of a cached response
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheMaximumResponseWeight(long cacheMaximumResponseWeight) {
+            Preconditions.checkArgument(cacheMaximumResponseWeight >= 0,
+                "Cache maximum response weight cannot be negative");
+            this.cacheMaximumResponseWeight = cacheMaximumResponseWeight;
+            return this;
+        }
+
+        /**
+         * Enable an off-heap cache tier: responses evicted from the in memory cache for size, and responses above
+         * the cache maximum response weight, are kept serialised in direct buffers, in least recently used order up
+         * to the given size, and promoted back to the in memory cache when requested again while fresh.
+         * Direct memory must allow for this size, see {@code -XX:MaxDirectMemorySize}. Disabled by default.
+         * @param cacheOffHeapMaximumSize Maximum bytes of the off-heap tier
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheOffHeapMaximumSize(long cacheOffHeapMaximumSize) {
+            Preconditions.checkArgument(cacheOffHeapMaximumSize > 0, "Cache off-heap maximum size must be positive");
+            this.cacheOffHeapMaximumSize = cacheOffHeapMaximumSize;
+            return this;
+        }
+
+        /**
+         * Set a cache snapshot file, so a restarted client starts with a warm cache: the cached responses are
+         * saved to the file on {@link ParsecAsyncHttpClient#close()}, and restored from it when the client is built,
+         * with the time elapsed since the snapshot taken off their TTLs. Requests carrying credentials are not saved,
+         * but responses are, so the file is as sensitive as the responses. Restored requests are refreshed with the
+         * default name resolver, retry backoff policy and hedging settings. Not set by default.
+         * @param cacheSnapshotFile Path of the snapshot file
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheSnapshotFile(String cacheSnapshotFile) {
+            Preconditions.checkNotNull(cacheSnapshotFile, "Cache snapshot file cannot be null");
+            this.cacheSnapshotFile = cacheSnapshotFile;
+            return this;
+        }
+
+        /**
+         * Set how often the cached responses are also saved to the cache snapshot file, e.g. in case the process
+         * is killed. Defaults to 0, i.e. only saved on close.
+         * @param cacheSnapshotInterval Snapshot interval in seconds
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheSnapshotInterval(int cacheSnapshotInterval) {
+            Preconditions.checkArgument(cacheSnapshotInterval >= 0, "Cache snapshot interval cannot be negative");
+            this.cacheSnapshotInterval = cacheSnapshotInterval;
+            return this;
+        }
+
+        /**
+         * Enable HTTP caching semantics for the response cache: the freshness of a response follows its
+         * {@code Cache-Control} and {@code Expires} headers, falling back to the cache expire time,
+         * {@code no-store}, {@code private} and {@code Vary: *} responses are not cached, {@code Vary} is respected,
+         * and a stale response with an {@code ETag} or a {@code Last-Modified} is revalidated with a conditional
+         * request. Disabled by default.
+         * @param enable Enable HTTP caching semantics
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder enableCacheHttpSemantics(boolean enable) {
+            enableCacheHttpSemantics = enable;
+            return this;
+        }
+
+        /**
+         * Set how long a stale response with an {@code ETag} or a {@code Last-Modified} is kept in cache to be
+         * revalidated, when HTTP caching semantics are enabled. Defaults to 60 seconds.
+         * @param cacheRevalidationWindow Revalidation window in seconds
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheRevalidationWindow(int cacheRevalidationWindow) {
+            Preconditions.checkArgument(cacheRevalidationWindow >= 0, "Cache revalidation window cannot be negative");
+            this.cacheRevalidationWindow = cacheRevalidationWindow;
+            return this;
+        }
+
+        /**
+         * Enable negative caching: responses with a negative status code, e.g. {@code 404} or {@code 5xx},
+         * and failed requests, e.g. timeouts, are kept in cache for a short negative TTL instead of the cache
+         * expire time, so callers get them right away instead of each sending the request again.
+         * Disabled by default.
+         * @param negativeCacheConfig Negative cache config
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setNegativeCache(ParsecNegativeCacheConfig negativeCacheConfig) {
+            Preconditions.checkNotNull(negativeCacheConfig, "Negative cache config cannot be null");
+            this.negativeCacheConfig = negativeCacheConfig;
+            return this;
+        }
+
+        /**
+         * Set cache key strategy, deciding which requests share a cached response.
+         * Defaults to {@link FullRequestCacheKeyStrategy}, only sharing responses between equal requests.
+         * @param cacheKeyStrategy Cache key strategy, e.g. a {@link NormalizedCacheKeyStrategy}
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheKeyStrategy(ParsecCacheKeyStrategy cacheKeyStrategy) {
+            Preconditions.checkNotNull(cacheKeyStrategy, "Cache key strategy cannot be null");
+            this.cacheKeyStrategy = cacheKeyStrategy;
+            return this;
+        }
+
         /**
          * Set retry interval
          * @param milliseconds the retry interval in milliseconds
          * @return {@link ParsecAsyncHttpClient.Builder}
          */
         public Builder setRetryIntervalInMilliSeconds(long milliseconds) {
-            this.retryIntervalMillisOpt = Optional.of(milliseconds);
+            this.retryBackoffPolicy = new FixedBackoffPolicy(milliseconds);
+            return this;
+        }
+
+        /**
+         * Set a retry budget that caps retries to each host to a ratio of the first attempts sent to that host
+         * over the last 10 seconds. Retries beyond the budget are not made,
+         * and the last response or exception is returned right away.
+         * @param retryRatio Retries allowed per first attempt, e.g. 0.1 for 10%
+         * @param minRetriesPerSecond Minimum retries per second to each host allowed regardless of the ratio
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setRetryBudget(double retryRatio, int minRetriesPerSecond) {
+            Preconditions.checkArgument(retryRatio >= 0, "Retry ratio cannot be negative");
+            Preconditions.checkArgument(minRetriesPerSecond >= 0, "Min retries per second cannot be negative");
+            this.retryBudgetRatio = retryRatio;
+            this.retryBudgetMinRetriesPerSecond = minRetriesPerSecond;
+            return this;
+        }
+
+        /**
+         * Enable per host circuit breakers. While the circuit breaker of a host is open, requests to the host fail
+         * fast with {@link ParsecCircuitBreakerOpenException}.
+         * @param circuitBreakerConfig Circuit breaker config
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCircuitBreaker(ParsecCircuitBreakerConfig circuitBreakerConfig) {
+            Preconditions.checkNotNull(circuitBreakerConfig, "Circuit breaker config cannot be null");
+            this.circuitBreakerConfig = circuitBreakerConfig;
+            return this;
+        }
+
+        /**
+         * Enable adaptive per host concurrency limits. Requests over the limit of their host are queued
+         * or fail fast with {@link ParsecConcurrencyLimitExceededException}.
+         * @param concurrencyLimitConfig Concurrency limit config
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setConcurrencyLimit(ParsecConcurrencyLimitConfig concurrencyLimitConfig) {
+            Preconditions.checkNotNull(concurrencyLimitConfig, "Concurrency limit config cannot be null");
+            this.concurrencyLimitConfig = concurrencyLimitConfig;
+            return this;
+        }
+
+        /**
+         * Enable single flight: concurrent identical GET, HEAD or OPTIONS requests sent by
+         * {@link ParsecAsyncHttpClient#criticalExecute(ParsecAsyncHttpRequest)} share one request to the host.
+         * Requests are only shared while in flight, nothing is kept once they complete.
+         * Disabled by default.
+         *
+         * @param enable Enable single flight
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder enableSingleFlight(boolean enable) {
+            enableSingleFlight = enable;
+            return this;
+        }
+
+        /**
+         * Set the budget of hedged attempts, capping them to each host to a ratio of the hedged requests sent
+         * to that host over the last 10 seconds. Defaults to 10% plus one hedged attempt per second.
+         * @param hedgeRatio Hedged attempts allowed per hedged request, e.g. 0.1 for 10%
+         * @param minHedgesPerSecond Minimum hedged attempts per second to each host allowed regardless of the ratio
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setHedgeBudget(double hedgeRatio, int minHedgesPerSecond) {
+            Preconditions.checkArgument(hedgeRatio >= 0, "Hedge ratio cannot be negative");
+            Preconditions.checkArgument(minHedgesPerSecond >= 0, "Min hedges per second cannot be negative");
+            this.hedgeBudgetRatio = hedgeRatio;
+            this.hedgeBudgetMinPerSecond = minHedgesPerSecond;
+            return this;
+        }
+
+        /**
+         * Set retry backoff policy, used by requests that do not set their own.
+         * @param retryBackoffPolicy Retry backoff policy
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setRetryBackoffPolicy(ParsecRetryBackoffPolicy retryBackoffPolicy) {
+            Preconditions.checkNotNull(retryBackoffPolicy, "Retry backoff policy cannot be null");
+            this.retryBackoffPolicy = retryBackoffPolicy;
             return this;
         }
     }
@@ -854,8 +1775,18 @@ public class ParsecAsyncHttpClient {
     public static class CacheStats {
         com.github.benmanes.caffeine.cache.stats.CacheStats cacheStats;
 
+        /**
+         * Number of hits that got a negative entry.
+         */
+        long negativeHitCount;
+
         public CacheStats(com.github.benmanes.caffeine.cache.stats.CacheStats cacheStats) {
+            this(cacheStats, 0);
+        }
+
+        public CacheStats(com.github.benmanes.caffeine.cache.stats.CacheStats cacheStats, long negativeHitCount) {
             this.cacheStats = cacheStats;
+            this.negativeHitCount = negativeHitCount;
         }
 
         public double hitRate() {
@@ -878,6 +1809,15 @@ public class ParsecAsyncHttpClient {
             return this.cacheStats.hitCount();
         }
 
+        /**
+         * Number of hits that got a negative response or failure, included in {@link #hitCount()}.
+         *
+         * @return negative hit count
+         */
+        public long negativeHitCount() {
+            return this.negativeHitCount;
+        }
+
         public long missCount() {
             return this.cacheStats.missCount();
         }
@@ -898,4 +1838,104 @@ public class ParsecAsyncHttpClient {
             return this.cacheStats.loadSuccessCount();
         }
     }
+
+    /**
+     * Connection pool and executor usage.
+     */
+    public static class PoolStats {
+        private final int inFlightRequests;
+        private final int maxConnections;
+        private final int maxConnectionsPerHost;
+        private final int executorPoolSize;
+        private final int executorActiveCount;
+        private final int executorQueueSize;
+
+        PoolStats(ParsecAsyncHttpClient client) {
+            this.inFlightRequests = client.inFlightRequests.get();
+            this.maxConnections = client.getMaxConnections();
+            this.maxConnectionsPerHost = client.getMaxConnectionsPerHost();
+            this.executorPoolSize = client.executorService.getPoolSize();
+            this.executorActiveCount = client.executorService.getActiveCount();
+            this.executorQueueSize = client.executorService.getQueue().size();
+        }
+
+        /**
+         * Number of requests sent and not completed yet, each holding a connection.
+         *
+         * @return in flight request count
+         */
+        public int inFlightRequests() {
+            return inFlightRequests;
+        }
+
+        /**
+         * Maximum number of connections, -1 if unbounded.
+         *
+         * @return max connections
+         */
+        public int maxConnections() {
+            return maxConnections;
+        }
+
+        /**
+         * Maximum number of connections per host, -1 if unbounded.
+         *
+         * @return max connections per host
+         */
+        public int maxConnectionsPerHost() {
+            return maxConnectionsPerHost;
+        }
+
+        /**
+         * Number of threads of the executor.
+         *
+         * @return executor pool size
+         */
+        public int executorPoolSize() {
+            return executorPoolSize;
+        }
+
+        /**
+         * Number of threads of the executor running a task.
+         *
+         * @return executor active count
+         */
+        public int executorActiveCount() {
+            return executorActiveCount;
+        }
+
+        /**
+         * Number of tasks waiting for a thread of the executor.
+         *
+         * @return executor queue size
+         */
+        public int executorQueueSize() {
+            return executorQueueSize;
+        }
+    }
+
+    /**
+     * Retry budget statistics.
+     */
+    public static class RetryBudgetStats {
+        private final long retryCount;
+        private final Map<String, Long> budgetExhaustedCounts;
+
+        RetryBudgetStats(ParsecRetryBudget retryBudget) {
+            this.retryCount = retryBudget.getRetryCount();
+            this.budgetExhaustedCounts = retryBudget.getExhaustedCountsByHost();
+        }
+
+        public long retryCount() {
+            return retryCount;
+        }
+
+        public long budgetExhaustedCount() {
+            return budgetExhaustedCounts.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public Map<String, Long> budgetExhaustedCountsByHost() {
+            return budgetExhaustedCounts;
+        }
+    }
 }
@@ -13,6 +13,10 @@ import java.util.concurrent.ExecutionException;
 /**
  * ParsecAsyncHttpClientFactory.
  *
+ * <p>Clients are keyed by builder instance, and removing a client does not close it. See
+ * {@link ParsecAsyncHttpClientRegistry} to share clients between builders that are configured identically, and close
+ * them once they are no longer used.</p>
+ *
  * @author sho
  */
 public final class ParsecAsyncHttpClientFactory {
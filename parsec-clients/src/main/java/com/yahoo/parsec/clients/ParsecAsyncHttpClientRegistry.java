@@ -0,0 +1,208 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registry of {@link ParsecAsyncHttpClient}s keyed by the {@link ParsecClientFingerprint} of their builders, so
+ * builders that are configured identically share one client and its connection pools.
+ *
+ * <p>Clients are handed out through reference counted {@link Handle}s: a client is built by the first
+ * {@link #acquire(ParsecAsyncHttpClient.Builder)} of its configuration, and closed once the last handle to it is
+ * released.</p>
+ */
+public final class ParsecAsyncHttpClientRegistry {
+
+    /**
+     * Lazily created shared instance.
+     */
+    private static class Holder {
+        private static final ParsecAsyncHttpClientRegistry INSTANCE = new ParsecAsyncHttpClientRegistry();
+    }
+
+    /**
+     * Registered clients by fingerprint.
+     */
+    private final Map<ParsecClientFingerprint, Registration> registrations = new HashMap<>();
+
+    /**
+     * Get the process wide registry.
+     *
+     * @return shared {@link ParsecAsyncHttpClientRegistry}
+     */
+    public static ParsecAsyncHttpClientRegistry getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Get a handle to the client of a configuration, building the client if none is registered.
+     *
+     * @param builder client builder
+     * @return {@link Handle}, to be released once the client is no longer used
+     */
+    public Handle acquire(final ParsecAsyncHttpClient.Builder builder) {
+        Preconditions.checkNotNull(builder, "Builder cannot be null");
+        ParsecClientFingerprint fingerprint = builder.fingerprint();
+        synchronized (this) {
+            Registration registration = registrations.get(fingerprint);
+            if (registration == null) {
+                registration = new Registration(fingerprint, builder.build());
+                registrations.put(fingerprint, registration);
+            }
+            registration.referenceCount++;
+            return new Handle(registration);
+        }
+    }
+
+    /**
+     * Release a handle, closing its client if it is the last one.
+     *
+     * @param registration registered client of the handle
+     */
+    private void release(final Registration registration) {
+        synchronized (this) {
+            registration.referenceCount--;
+            if (registration.referenceCount > 0) {
+                return;
+            }
+            registrations.remove(registration.fingerprint);
+        }
+        registration.client.close();
+    }
+
+    /**
+     * Get the number of registered clients.
+     *
+     * @return number of registered clients
+     */
+    public synchronized int size() {
+        return registrations.size();
+    }
+
+    /**
+     * Get the number of handles to the client of a configuration.
+     *
+     * @param fingerprint configuration fingerprint
+     * @return number of handles not released yet, 0 if no client is registered
+     */
+    public synchronized int getReferenceCount(final ParsecClientFingerprint fingerprint) {
+        Registration registration = registrations.get(fingerprint);
+        return registration == null ? 0 : registration.referenceCount;
+    }
+
+    /**
+     * Get the connection pool and executor usage of the registered clients.
+     *
+     * @return pool statistics by configuration fingerprint
+     */
+    public Map<ParsecClientFingerprint, ParsecAsyncHttpClient.PoolStats> getPoolStats() {
+        Map<ParsecClientFingerprint, ParsecAsyncHttpClient> clients = new HashMap<>();
+        synchronized (this) {
+            registrations.forEach((fingerprint, registration) -> clients.put(fingerprint, registration.client));
+        }
+        Map<ParsecClientFingerprint, ParsecAsyncHttpClient.PoolStats> poolStats = new HashMap<>();
+        clients.forEach((fingerprint, client) -> poolStats.put(fingerprint, client.getPoolStats()));
+        return poolStats;
+    }
+
+    /**
+     * Registered client with its number of handles.
+     */
+    private static final class Registration {
+
+        /**
+         * Configuration fingerprint.
+         */
+        private final ParsecClientFingerprint fingerprint;
+
+        /**
+         * Client.
+         */
+        private final ParsecAsyncHttpClient client;
+
+        /**
+         * Number of handles not released yet, guarded by the registry.
+         */
+        private int referenceCount;
+
+        /**
+         * Constructor.
+         *
+         * @param fingerprint configuration fingerprint
+         * @param client      client
+         */
+        private Registration(final ParsecClientFingerprint fingerprint, final ParsecAsyncHttpClient client) {
+            this.fingerprint = fingerprint;
+            this.client = client;
+        }
+    }
+
+    /**
+     * Reference to a registered client. Releasing it more than once has no effect.
+     */
+    public final class Handle implements AutoCloseable {
+
+        /**
+         * Registered client.
+         */
+        private final Registration registration;
+
+        /**
+         * Whether the handle is released.
+         */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Constructor.
+         *
+         * @param registration registered client
+         */
+        private Handle(final Registration registration) {
+            this.registration = registration;
+        }
+
+        /**
+         * Get the client.
+         *
+         * @return {@link ParsecAsyncHttpClient}
+         * @throws IllegalStateException if the handle is released
+         */
+        public ParsecAsyncHttpClient getClient() {
+            Preconditions.checkState(!released.get(), "Handle is released");
+            return registration.client;
+        }
+
+        /**
+         * Get the fingerprint of the configuration of the client, e.g. to find it in
+         * {@link ParsecAsyncHttpClientRegistry#getPoolStats()}.
+         *
+         * @return {@link ParsecClientFingerprint}
+         */
+        public ParsecClientFingerprint getFingerprint() {
+            return registration.fingerprint;
+        }
+
+        /**
+         * Release the handle, closing the client if it is the last one.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                ParsecAsyncHttpClientRegistry.this.release(registration);
+            }
+        }
+
+        /**
+         * Release the handle.
+         */
+        @Override
+        public void close() {
+            release();
+        }
+    }
+}
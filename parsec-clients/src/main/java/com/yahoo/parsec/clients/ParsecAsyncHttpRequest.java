@@ -11,8 +11,6 @@ import com.ning.http.client.multipart.FilePart;
 import com.ning.http.client.multipart.Part;
 import com.ning.http.client.multipart.StringPart;
 import com.ning.http.client.uri.Uri;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
@@ -49,6 +47,26 @@ public class ParsecAsyncHttpRequest {
      */
     private final List<Class<? extends Throwable>> retryExceptions;
 
+    /**
+     * Retry backoff policy.
+     */
+    private final ParsecRetryBackoffPolicy retryBackoffPolicy;
+
+    /**
+     * Delay before sending a hedged attempt, -1 if not set.
+     */
+    private final long hedgeDelayMillis;
+
+    /**
+     * Latency percentile of the host after which a hedged attempt is sent, 0 if not set.
+     */
+    private final double hedgePercentile;
+
+    /**
+     * Time the response is kept in cache, -1 if not set.
+     */
+    private final long cacheTtlMillis;
+
     /**
      * Cookies.
      */
@@ -79,6 +97,16 @@ public class ParsecAsyncHttpRequest {
      */
     private final boolean acceptCompression;
 
+    /**
+     * Host and port the request is sent to.
+     */
+    private final String hostKey;
+
+    /**
+     * Key identifying the request, used for equals and hash code.
+     */
+    private final ParsecRequestKey key;
+
     /**
      * Unused constructor.
      */
@@ -94,8 +122,12 @@ public class ParsecAsyncHttpRequest {
     private ParsecAsyncHttpRequest(final Builder builder) {
         criticalGet = builder.criticalGet;
         maxRetries = builder.maxRetries;
-        retryStatusCodes = builder.retryStatusCodes;
-        retryExceptions = builder.retryExceptions;
+        retryStatusCodes = new ArrayList<>(builder.retryStatusCodes);
+        retryExceptions = new ArrayList<>(builder.retryExceptions);
+        retryBackoffPolicy = builder.retryBackoffPolicy;
+        hedgeDelayMillis = builder.hedgeDelayMillis;
+        hedgePercentile = builder.hedgePercentile;
+        cacheTtlMillis = builder.cacheTtlMillis;
         ningRequest = builder.ningRequestBuilder.build();
         acceptCompression = builder.acceptCompression;
 
@@ -103,6 +135,113 @@ public class ParsecAsyncHttpRequest {
         cookies = ParsecHttpUtil.getCookies(ningRequest.getCookies());
         formParams = ParsecHttpUtil.getParamsMap(ningRequest.getFormParams());
         queryParams = ParsecHttpUtil.getParamsMap(ningRequest.getQueryParams());
+        hostKey = ParsecHttpUtil.getHostKey(ningRequest.getUri());
+        key = newKey();
+    }
+
+    /**
+     * Private constructor of a copy of a request with another Ning request.
+     * @param request request to copy
+     * @param ningRequest Ning request of the copy
+     */
+    private ParsecAsyncHttpRequest(final ParsecAsyncHttpRequest request, final Request ningRequest) {
+        criticalGet = request.criticalGet;
+        maxRetries = request.maxRetries;
+        retryStatusCodes = request.retryStatusCodes;
+        retryExceptions = request.retryExceptions;
+        retryBackoffPolicy = request.retryBackoffPolicy;
+        hedgeDelayMillis = request.hedgeDelayMillis;
+        hedgePercentile = request.hedgePercentile;
+        cacheTtlMillis = request.cacheTtlMillis;
+        this.ningRequest = ningRequest;
+        acceptCompression = request.acceptCompression;
+
+        headers = new FluentCaseInsensitiveStringsMap(ningRequest.getHeaders());
+        cookies = request.cookies;
+        formParams = request.formParams;
+        queryParams = request.queryParams;
+        hostKey = request.hostKey;
+        key = newKey();
+    }
+
+    /**
+     * Get a copy of the request with headers set, replacing the values of headers of the same names.
+     *
+     * @param headers headers to set
+     * @return copy of the request
+     */
+    ParsecAsyncHttpRequest withHeaders(final Map<String, String> headers) {
+        RequestBuilder ningRequestBuilder = new RequestBuilder(ningRequest);
+        headers.forEach(ningRequestBuilder::setHeader);
+        return new ParsecAsyncHttpRequest(this, ningRequestBuilder.build());
+    }
+
+    /**
+     * Make the key identifying the request, from all its fields but the retry backoff policy, the hedging settings
+     * and the cache TTL.
+     *
+     * @return key
+     */
+    private ParsecRequestKey newKey() {
+        ProxyServer proxyServer = ningRequest.getProxyServer();
+        List<byte[]> compositeByteData = ningRequest.getCompositeByteData();
+        List<Part> parts = ningRequest.getParts();
+
+        return new ParsecRequestKey(
+            this,
+            ningRequest.getMethod(),
+            ningRequest.getUrl(),
+            ningRequest.getVirtualHost(),
+            proxyServer == null ? null : proxyServer.toString(),
+            ningRequest.getBodyEncoding(),
+            ningRequest.getStringData(),
+            ningRequest.getByteData(),
+            compositeByteData == null ? null : compositeByteData.toArray(new byte[compositeByteData.size()][]),
+            parts == null ? null : parts.stream().map(ParsecAsyncHttpRequest::getPartKey).toArray(),
+            ningRequest.getContentLength(),
+            ningRequest.getFollowRedirect(),
+            ningRequest.getRangeOffset(),
+            ningRequest.getRequestTimeout(),
+            criticalGet,
+            maxRetries,
+            retryStatusCodes,
+            retryExceptions,
+            cookies,
+            formParams,
+            queryParams,
+            headers,
+            acceptCompression
+        );
+    }
+
+    /**
+     * Get the values identifying a body part.
+     *
+     * @param part body part
+     * @return values identifying the body part, or the part itself if its type is unknown
+     */
+    private static Object getPartKey(final Part part) {
+        Object content;
+        if (part instanceof ByteArrayPart) {
+            content = ((ByteArrayPart) part).getBytes();
+        } else if (part instanceof FilePart) {
+            content = ((FilePart) part).getFile();
+        } else if (part instanceof StringPart) {
+            content = ((StringPart) part).getValue();
+        } else {
+            return part;
+        }
+
+        return new Object[] {
+            part.getClass(),
+            part.getCharset(),
+            part.getContentId(),
+            part.getContentType(),
+            part.getDispositionType(),
+            part.getName(),
+            part.getTransferEncoding(),
+            content
+        };
     }
 
     @Override
@@ -115,31 +254,12 @@ public class ParsecAsyncHttpRequest {
             return false;
         }
 
-        // Compare local fields except Ning request
-        if (!EqualsBuilder.reflectionEquals(this, object, new String[] {"ningRequest"})) {
-            return false;
-        }
-
-        // Compare Ning request fields
-        return ParsecEqualsUtil.ningRequestEquals(ningRequest, ((ParsecAsyncHttpRequest) object).ningRequest);
+        return key.equals(((ParsecAsyncHttpRequest) object).key);
     }
 
     @Override
     public int hashCode() {
-        // Calculate Ning request hash by custom algorithm
-        int ningRequestHash = new HashCodeBuilder()
-            .append(ningRequest.getBodyEncoding())
-            .append(ningRequest.getContentLength())
-            .append(ningRequest.getFollowRedirect())
-            .append(ningRequest.getMethod())
-            .append(ningRequest.getRangeOffset())
-            .append(ningRequest.getRequestTimeout())
-            .append(ningRequest.getStringData())
-            .append(ningRequest.getUrl())
-            .append(ningRequest.getVirtualHost())
-            .hashCode();
-
-        return HashCodeBuilder.reflectionHashCode(this, new String[] {"ningRequest"}) + ningRequestHash;
+        return key.hashCode();
     }
 
     /**
@@ -219,6 +339,54 @@ public class ParsecAsyncHttpRequest {
         return Collections.unmodifiableMap(headers);
     }
 
+    /**
+     * Get hedge delay.
+     *
+     * @return Hedge delay in milliseconds, -1 if not set
+     */
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    /**
+     * Get hedge percentile.
+     *
+     * @return Hedge percentile, 0 if not set
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Get cache TTL.
+     *
+     * @return Time the response is kept in cache in milliseconds, -1 if not set
+     */
+    public long getCacheTtlMillis() {
+        return cacheTtlMillis;
+    }
+
+    /**
+     * Whether a hedged attempt may be sent for this request, i.e. hedging is set and the method is idempotent.
+     *
+     * @return true if the request is hedged
+     */
+    boolean isHedged() {
+        return (hedgeDelayMillis >= 0 || hedgePercentile > 0) && isIdempotent();
+    }
+
+    /**
+     * Whether the request method is safe to send several times or to share, i.e. GET, HEAD or OPTIONS.
+     *
+     * @return true if the method is idempotent
+     */
+    boolean isIdempotent() {
+        String method = getMethod();
+        return "GET".equalsIgnoreCase(method)
+            || "HEAD".equalsIgnoreCase(method)
+            || "OPTIONS".equalsIgnoreCase(method);
+    }
+
     /**
      * Get max retries.
      *
@@ -237,6 +405,24 @@ public class ParsecAsyncHttpRequest {
         return ningRequest.getMethod();
     }
 
+    /**
+     * Get host key, i.e. host:port the request is sent to.
+     *
+     * @return Host key
+     */
+    String getHostKey() {
+        return hostKey;
+    }
+
+    /**
+     * Get key identifying the request.
+     *
+     * @return Key
+     */
+    ParsecRequestKey getKey() {
+        return key;
+    }
+
     /**
      * Get Ning {@link Request}.
      *
@@ -304,6 +490,15 @@ public class ParsecAsyncHttpRequest {
         return Collections.unmodifiableList(retryExceptions);
     }
 
+    /**
+     * Get retry backoff policy.
+     *
+     * @return Retry backoff policy, or null to use the client's policy
+     */
+    public ParsecRetryBackoffPolicy getRetryBackoffPolicy() {
+        return retryBackoffPolicy;
+    }
+
     /**
      * Get URI.
      *
@@ -435,6 +630,26 @@ public class ParsecAsyncHttpRequest {
          */
         private List<Class<? extends Throwable>> retryExceptions;
 
+        /**
+         * Retry backoff policy.
+         */
+        private ParsecRetryBackoffPolicy retryBackoffPolicy;
+
+        /**
+         * Hedge delay in milliseconds.
+         */
+        private long hedgeDelayMillis;
+
+        /**
+         * Hedge percentile.
+         */
+        private double hedgePercentile;
+
+        /**
+         * Cache TTL in milliseconds.
+         */
+        private long cacheTtlMillis;
+
         /**
          * Query params.
          */
@@ -512,6 +727,8 @@ public class ParsecAsyncHttpRequest {
             // Init default values
             method = "GET";
             maxRetries = DEFAULT_MAX_RETRIES;
+            hedgeDelayMillis = -1;
+            cacheTtlMillis = -1;
             headers = new FluentCaseInsensitiveStringsMap();
             retryStatusCodes = new ArrayList<>();
             retryExceptions = new ArrayList<>();
@@ -886,6 +1103,49 @@ public class ParsecAsyncHttpRequest {
             return this;
         }
 
+        /**
+         * Set hedge delay. If the request has not completed after this delay, a second attempt is sent
+         * and whichever completes first is used. Only GET, HEAD and OPTIONS requests are hedged.
+         * When a hedge percentile is also set, this delay is used until enough latencies are recorded.
+         *
+         * @param hedgeDelayMillis Hedge delay in milliseconds
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setHedgeDelay(long hedgeDelayMillis) {
+            Preconditions.checkArgument(hedgeDelayMillis >= 0, "Hedge delay cannot be negative");
+            this.hedgeDelayMillis = hedgeDelayMillis;
+            return this;
+        }
+
+        /**
+         * Set hedge percentile. If the request has not completed after the given latency percentile
+         * (e.g. 95 for p95) recently observed for the host, a second attempt is sent and whichever completes
+         * first is used. Only GET, HEAD and OPTIONS requests are hedged.
+         *
+         * @param hedgePercentile Hedge percentile, between 0 (exclusive) and 100 (exclusive)
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setHedgePercentile(double hedgePercentile) {
+            Preconditions.checkArgument(hedgePercentile > 0 && hedgePercentile < 100,
+                "Hedge percentile must be between 0 and 100");
+            this.hedgePercentile = hedgePercentile;
+            return this;
+        }
+
+        /**
+         * Set cache TTL, the time the response of this GET request is kept in the client response cache,
+         * overriding the cache expire time and the cache TTL routes of the client. With HTTP caching semantics
+         * enabled, it only applies to responses without explicit freshness.
+         *
+         * @param cacheTtlMillis Cache TTL in milliseconds, 0 to not keep the response
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setCacheTtl(long cacheTtlMillis) {
+            Preconditions.checkArgument(cacheTtlMillis >= 0, "Cache TTL cannot be negative");
+            this.cacheTtlMillis = cacheTtlMillis;
+            return this;
+        }
+
         /**
          * Set max retries.
          *
@@ -958,6 +1218,17 @@ public class ParsecAsyncHttpRequest {
             return this;
         }
 
+        /**
+         * Set retry backoff policy, overriding the client's policy for this request.
+         *
+         * @param retryBackoffPolicy Retry backoff policy
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setRetryBackoffPolicy(ParsecRetryBackoffPolicy retryBackoffPolicy) {
+            this.retryBackoffPolicy = retryBackoffPolicy;
+            return this;
+        }
+
         /**
          * Set URI.
          *
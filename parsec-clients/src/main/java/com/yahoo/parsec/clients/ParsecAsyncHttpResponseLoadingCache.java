@@ -6,19 +6,71 @@ package com.yahoo.parsec.clients;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.Weigher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
 
 
 /**
  * An asynchronous loading cache.
- * key: {@link ParsecAsyncHttpRequest}
+ * key: {@link ParsecAsyncHttpRequest}, compared through its {@link ParsecCacheKeyStrategy} key
  * value: CompletableFuture&lt;{@link Response}&gt;.
  *
+ * <p>By default a response is kept for the expire after write duration, whatever the host says. The duration can
+ * be set per request with its cache TTL, or per URL with TTL routes: the first route whose pattern is found in the
+ * URL of the request applies. Each entry then expires at its own time. With HTTP semantics
+ * enabled, the response freshness follows its {@code Cache-Control} ({@code s-maxage}, {@code max-age},
+ * {@code no-cache}) and {@code Expires} headers, falling back to the expire after write duration.
+ * {@code no-store}, {@code private} and {@code Vary: *} responses are not kept, since the cache is shared by all
+ * callers of the client, and a response is only used for requests with the same values of the headers in its
+ * {@code Vary}. A stale response with an {@code ETag} or a {@code Last-Modified} is kept for the revalidation
+ * window, and revalidated with {@code If-None-Match} or {@code If-Modified-Since} when requested again:
+ * a {@code 304} refreshes it without transferring the body.</p>
+ *
+ * <p>Once a response is stale, it is still served right away during the stale while revalidate window, while one
+ * revalidation runs in the background. Past that window, callers wait for the revalidation. If the revalidation
+ * fails, or gets a 5xx response, the stale response keeps being served during the stale if error window. With HTTP
+ * semantics enabled, the {@code stale-while-revalidate} and {@code stale-if-error} directives of the response
+ * override both windows, and {@code must-revalidate} turns them off.</p>
+ *
+ * <p>With negative caching enabled, responses with a negative status code and loads failing with a negative
+ * exception are kept for the negative TTL instead, fresh until they are removed, and served or rethrown to callers
+ * without sending the request again. {@code no-store}, {@code private} and {@code Vary: *} are still respected.</p>
+ *
+ * <p>The cache is bounded by a maximum number of entries, or by a maximum weight, entries then weighing the estimated
+ * bytes of their response body and headers. Responses weighing more than the maximum response weight are not kept.</p>
+ *
+ * <p>With an off-heap tier, entries evicted for size and responses weighing more than the maximum response weight
+ * are kept serialised off heap instead, up to the maximum off-heap size. A miss looks up the off-heap tier before
+ * sending the request: a fresh entry found there is promoted back, unless its response is too heavy, in which case it
+ * is served from the off-heap tier. Entries that are no longer fresh are removed from the off-heap tier.</p>
+ *
+ * <p>With a snapshot file, the in memory entries are saved to the file periodically and on {@link #close()}, and
+ * restored from it when the cache is built, with the time elapsed since the snapshot taken off their TTLs.</p>
+ *
  * @author sho
  */
 @SuppressWarnings("unused")
@@ -29,21 +81,127 @@ final class ParsecAsyncHttpResponseLoadingCache {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ParsecAsyncHttpResponseLoadingCache.class);
 
+    /**
+     * Age header.
+     */
+    private static final String AGE = "Age";
+
+    /**
+     * Lowest status code of server errors.
+     */
+    private static final int SERVER_ERROR_STATUS_CODE = 500;
+
+    /**
+     * Weight of an entry keeping a failure.
+     */
+    private static final int FAILURE_WEIGHT = 1;
+
+    /**
+     * Status codes of responses kept without explicit freshness, with HTTP semantics enabled.
+     */
+    private static final Set<Integer> HEURISTICALLY_CACHEABLE_STATUS_CODES =
+        new HashSet<>(Arrays.asList(200, 203, 204, 206, 300, 301, 404, 405, 410, 414, 501));
+
     /**
      * Base async loading cache.
      */
-    private AsyncLoadingCache<ParsecAsyncHttpRequest, Response> asyncLoadingCache;
+    private AsyncLoadingCache<ParsecRequestKey, ParsecCacheEntry> asyncLoadingCache;
+
+    /**
+     * Synchronous view keyed by request.
+     */
+    private LoadingCache<ParsecAsyncHttpRequest, Response> synchronousView;
+
+    /**
+     * Cache key strategy.
+     */
+    private ParsecCacheKeyStrategy keyStrategy;
 
     /**
      * Response cache loader.
      */
     private ResponseCacheLoader responseCacheLoader;
 
+    /**
+     * Client.
+     */
+    private ParsecAsyncHttpClient client;
+
+    /**
+     * Ticker.
+     */
+    private Ticker ticker;
+
+    /**
+     * Expire after write duration in nanoseconds.
+     */
+    private long expireAfterWriteNanos;
+
+    /**
+     * TTL routes, in the order they are tried.
+     */
+    private List<TtlRoute> ttlRoutes;
+
+    /**
+     * Whether HTTP caching semantics are followed.
+     */
+    private boolean httpSemantics;
+
+    /**
+     * How long a stale response that can be revalidated is kept, in nanoseconds.
+     */
+    private long revalidationWindowNanos;
+
+    /**
+     * How long a stale response is served while it is revalidated in the background, in nanoseconds.
+     */
+    private long staleWhileRevalidateNanos;
+
+    /**
+     * How long a stale response is served when revalidating it fails, in nanoseconds.
+     */
+    private long staleIfErrorNanos;
+
+    /**
+     * Negative cache config, null if negative caching is disabled.
+     */
+    private ParsecNegativeCacheConfig negativeCacheConfig;
+
+    /**
+     * Weight above which a response is not kept.
+     */
+    private long maximumResponseWeight;
+
+    /**
+     * Off-heap tier, null if none.
+     */
+    private ParsecOffHeapResponseStore offHeapStore;
+
+    /**
+     * Snapshot file, null if none.
+     */
+    private Path snapshotFile;
+
+    /**
+     * Number of lookups that got a negative entry.
+     */
+    private final LongAdder negativeHitCount = new LongAdder();
+
     /**
      * Executor for cleaning up cache periodically.
      */
     private ScheduledExecutorService cleanUpExecutorService;
 
+    /**
+     * Whether the clean up executor is shared with other caches, so it is not shut down with the cache.
+     */
+    private boolean sharedCleanUpExecutorService;
+
+    /**
+     * Clean up and snapshot tasks, cancelled when the cache is shut down.
+     */
+    private final List<ScheduledFuture<?>> scheduledTasks = new ArrayList<>();
+
     /**
      * Unused private constructor.
      */
@@ -58,18 +216,58 @@ final class ParsecAsyncHttpResponseLoadingCache {
      */
     @SuppressWarnings("unchecked")
     private ParsecAsyncHttpResponseLoadingCache(final Builder builder) {
-        responseCacheLoader = new ResponseCacheLoader(builder.client);
-        asyncLoadingCache = builder.caffeine.buildAsync(responseCacheLoader);
+        keyStrategy = builder.keyStrategy;
+        client = builder.client;
+        ticker = builder.ticker;
+        expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        ttlRoutes = Collections.unmodifiableList(new ArrayList<>(builder.ttlRoutes));
+        httpSemantics = builder.httpSemantics;
+        revalidationWindowNanos = builder.revalidationWindowNanos;
+        staleWhileRevalidateNanos = builder.staleWhileRevalidateNanos;
+        staleIfErrorNanos = builder.staleIfErrorNanos;
+        negativeCacheConfig = builder.negativeCacheConfig;
+        maximumResponseWeight = builder.maximumResponseWeight;
+        responseCacheLoader = new ResponseCacheLoader();
+        if (builder.weighed) {
+            builder.caffeine.weigher((Weigher<ParsecRequestKey, ParsecCacheEntry>) this::weigh);
+        }
+        if (builder.offHeapMaximumBytes > 0) {
+            offHeapStore = new ParsecOffHeapResponseStore(builder.offHeapMaximumBytes);
+            builder.caffeine.removalListener((RemovalListener<ParsecRequestKey, ParsecCacheEntry>) this::onRemoval);
+        }
+        asyncLoadingCache = builder.caffeine
+            .ticker(ticker)
+            .expireAfter(new EntryExpiry())
+            .buildAsync(responseCacheLoader);
+        synchronousView = new ParsecCacheSynchronousView(
+            this, asyncLoadingCache.synchronous(), this::getKey, this::newEntry);
 
-        cleanUpExecutorService = Executors.newSingleThreadScheduledExecutor();
-        cleanUpExecutorService.scheduleWithFixedDelay(() -> {
+        sharedCleanUpExecutorService = builder.cleanUpExecutorService != null;
+        cleanUpExecutorService = sharedCleanUpExecutorService
+            ? builder.cleanUpExecutorService : Executors.newSingleThreadScheduledExecutor();
+        scheduledTasks.add(cleanUpExecutorService.scheduleWithFixedDelay(() -> {
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Performing cache cleanup");
                 }
                 asyncLoadingCache.synchronous().cleanUp();
             },
             builder.cleanUpInterval, builder.cleanUpInterval, builder.cleanUpTimeUnit
-        );
+        ));
+
+        snapshotFile = builder.snapshotFile;
+        if (snapshotFile != null) {
+            if (Files.exists(snapshotFile)) {
+                try {
+                    LOGGER.info("Restored {} cache entries from {}", restore(snapshotFile), snapshotFile);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("Failed to restore cache snapshot " + snapshotFile, e);
+                }
+            }
+            if (builder.snapshotInterval > 0) {
+                scheduledTasks.add(cleanUpExecutorService.scheduleWithFixedDelay(this::snapshotQuietly,
+                    builder.snapshotInterval, builder.snapshotInterval, builder.snapshotTimeUnit));
+            }
+        }
     }
 
     /**
@@ -79,7 +277,7 @@ final class ParsecAsyncHttpResponseLoadingCache {
      * @return CompletableFuture&lt;{@link Response}&gt;
      */
     public CompletableFuture<Response> get(ParsecAsyncHttpRequest request) {
-        return asyncLoadingCache.get(request);
+        return get(request, null);
     }
 
     /**
@@ -90,7 +288,48 @@ final class ParsecAsyncHttpResponseLoadingCache {
      * @return CompletableFuture&lt;{@link Response}&gt;
      */
     public CompletableFuture<Response> get(ParsecAsyncHttpRequest request, ExecutorService executorService) {
-        return asyncLoadingCache.get(request, (k, e) -> responseCacheLoader.asyncLoad(request, executorService));
+        ParsecRequestKey key = getKey(request);
+        boolean[] loaded = new boolean[1];
+        CompletableFuture<ParsecCacheEntry> future = asyncLoadingCache.get(key, (k, e) -> {
+            loaded[0] = true;
+            return responseCacheLoader.asyncLoad(k, executorService != null ? executorService : e);
+        });
+
+        // A caller that loaded the response or waited for it to load gets it, even if it is not fresh
+        boolean waited = loaded[0] || !future.isDone();
+        return future.thenCompose(entry -> {
+            if (!entry.matches(request)) {
+                return send(request);
+            }
+            if (!loaded[0] && entry.isNegative()) {
+                negativeHitCount.increment();
+            }
+            long now = ticker.read();
+            if (waited || entry.isFresh(now)) {
+                return respond(entry);
+            }
+
+            CompletableFuture<ParsecCacheEntry> revalidation = revalidate(key, future, entry);
+            if (entry.isStaleWhileRevalidate(now)) {
+                return respond(entry);
+            }
+            return revalidation.thenCompose(ParsecAsyncHttpResponseLoadingCache::respond);
+        });
+    }
+
+    /**
+     * Get the outcome kept in an entry.
+     *
+     * @param entry cache entry
+     * @return CompletableFuture&lt;{@link Response}&gt;, failed if the entry keeps a failure
+     */
+    private static CompletableFuture<Response> respond(final ParsecCacheEntry entry) {
+        if (entry.getFailure() != null) {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            future.completeExceptionally(entry.getFailure());
+            return future;
+        }
+        return CompletableFuture.completedFuture(entry.getResponse());
     }
 
     /**
@@ -100,7 +339,8 @@ final class ParsecAsyncHttpResponseLoadingCache {
      * @return CompletableFuture&lt;{@link Response}&gt; or null if not in cache
      */
     public CompletableFuture<Response> getIfPresent(ParsecAsyncHttpRequest request) {
-        return asyncLoadingCache.getIfPresent(request);
+        CompletableFuture<ParsecCacheEntry> future = asyncLoadingCache.getIfPresent(getKey(request));
+        return future == null ? null : future.thenCompose(ParsecAsyncHttpResponseLoadingCache::respond);
     }
 
     /**
@@ -110,7 +350,400 @@ final class ParsecAsyncHttpResponseLoadingCache {
      * @param completableFuture CompletableFuture&lt;{@link Response}&gt; to store
      */
     public void put(ParsecAsyncHttpRequest request, CompletableFuture<Response> completableFuture) {
-        asyncLoadingCache.put(request, completableFuture);
+        ParsecRequestKey key = getKey(request);
+        asyncLoadingCache.put(key, completableFuture.thenApply(response -> newEntry(key, response)));
+    }
+
+    /**
+     * Get the cache key of a request. The key keeps the request, so a miss or a refresh sends the first
+     * request that was looked up with this key.
+     *
+     * @param request request
+     * @return cache key
+     */
+    private ParsecRequestKey getKey(ParsecAsyncHttpRequest request) {
+        return new ParsecRequestKey(request, keyStrategy.getCacheKey(request));
+    }
+
+    /**
+     * Send a request, bypassing the cache.
+     *
+     * @param request request
+     * @return CompletableFuture&lt;{@link Response}&gt;
+     */
+    private CompletableFuture<Response> send(ParsecAsyncHttpRequest request) {
+        try {
+            return client.criticalExecute(request);
+        } catch (ExecutionException e) {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            future.completeExceptionally(e.getCause());
+            return future;
+        }
+    }
+
+    /**
+     * Revalidate a stale entry with a conditional request, unless a revalidation of the entry is in flight.
+     * The revalidated entry replaces the stale one in the cache, unless the revalidation fails or gets a 5xx response
+     * during the stale if error window of the stale entry: the stale entry is then kept and returned.
+     * A negative failure replaces the stale entry as well.
+     *
+     * @param key    cache key
+     * @param future future of the stale entry in the cache
+     * @param entry  stale entry
+     * @return future of the revalidated entry
+     */
+    private CompletableFuture<ParsecCacheEntry> revalidate(
+        final ParsecRequestKey key,
+        final CompletableFuture<ParsecCacheEntry> future,
+        final ParsecCacheEntry entry
+    ) {
+        CompletableFuture<ParsecCacheEntry> revalidation = new CompletableFuture<>();
+        CompletableFuture<ParsecCacheEntry> inFlight = entry.startRevalidation(revalidation);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        ParsecAsyncHttpRequest request = key.getRequest();
+        Map<String, String> conditions = new HashMap<>();
+        if (entry.getETag() != null) {
+            conditions.put(HttpHeaders.IF_NONE_MATCH, entry.getETag());
+        }
+        if (entry.getLastModified() != null) {
+            conditions.put(HttpHeaders.IF_MODIFIED_SINCE, entry.getLastModified());
+        }
+
+        send(conditions.isEmpty() ? request : request.withHeaders(conditions)).whenComplete((response, throwable) -> {
+            entry.finishRevalidation(revalidation);
+            boolean failed = throwable != null || response.getStatus() >= SERVER_ERROR_STATUS_CODE;
+            if (failed && entry.isStaleIfError(ticker.read())) {
+                LOGGER.debug("Serving stale response after failed revalidation", throwable);
+                revalidation.complete(entry);
+                return;
+            }
+            ParsecCacheEntry revalidated;
+            if (throwable != null) {
+                revalidated = newFailureEntry(throwable);
+                if (revalidated == null) {
+                    revalidation.completeExceptionally(throwable);
+                    return;
+                }
+            } else {
+                revalidated = newEntry(key,
+                    response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()
+                        ? merge(entry.getResponse(), response) : response);
+            }
+            asyncLoadingCache.asMap().replace(key, future, CompletableFuture.completedFuture(revalidated));
+            revalidation.complete(revalidated);
+        });
+        return revalidation;
+    }
+
+    /**
+     * Update the headers of a stored response with those of a {@code 304} response.
+     *
+     * @param stored      stored response
+     * @param notModified {@code 304} response
+     * @return updated response
+     */
+    private static Response merge(final Response stored, final Response notModified) {
+        Response.ResponseBuilder builder = Response.fromResponse(stored);
+        notModified.getStringHeaders().forEach((name, values) -> {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                builder.header(name, null);
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Make the cache entry of a response. A response weighing more than the maximum response weight gets an entry
+     * that expires right away, and its entry is kept in the off-heap tier instead, if any.
+     *
+     * @param key      cache key of the request that got the response
+     * @param response response
+     * @return cache entry
+     */
+    private ParsecCacheEntry newEntry(final ParsecRequestKey key, final Response response) {
+        ParsecCacheEntry entry = newEntry(key.getRequest(), response);
+        if (getWeight(response) <= maximumResponseWeight) {
+            return entry;
+        }
+        if (offHeapStore != null) {
+            offHeapStore.put(key, entry);
+        }
+        return newPassingEntry(response);
+    }
+
+    /**
+     * Make a cache entry that expires right away, only returned to the callers waiting for it.
+     *
+     * @param response response
+     * @return cache entry
+     */
+    private ParsecCacheEntry newPassingEntry(final Response response) {
+        long now = ticker.read();
+        return new ParsecCacheEntry(response, now, now, now, now, null, null, null);
+    }
+
+    /**
+     * Keep an entry evicted for size in the off-heap tier, if it is still fresh.
+     *
+     * @param key   cache key
+     * @param entry cache entry, possibly null
+     * @param cause removal cause
+     */
+    private void onRemoval(final ParsecRequestKey key, final ParsecCacheEntry entry, final RemovalCause cause) {
+        if (cause == RemovalCause.SIZE && key != null && entry != null && entry.isFresh(ticker.read())) {
+            offHeapStore.put(key, entry);
+        }
+    }
+
+    /**
+     * Make the cache entry of a response.
+     *
+     * @param request  request that got the response
+     * @param response response
+     * @return cache entry
+     */
+    private ParsecCacheEntry newEntry(final ParsecAsyncHttpRequest request, final Response response) {
+        long now = ticker.read();
+        boolean negative = negativeCacheConfig != null && negativeCacheConfig.isNegative(response.getStatus());
+        if (!httpSemantics) {
+            if (negative) {
+                return new ParsecCacheEntry(response, null, saturatedAdd(now, getNegativeTtlNanos()), null);
+            }
+            return newEntry(response, saturatedAdd(now, getExpireAfterWriteNanos(request)),
+                staleWhileRevalidateNanos, staleIfErrorNanos, null, null, null);
+        }
+
+        ParsecCacheControl cacheControl = ParsecCacheControl.parse(response.getHeaderString(HttpHeaders.CACHE_CONTROL));
+        String vary = response.getHeaderString(HttpHeaders.VARY);
+        if (cacheControl.isNoStore() || cacheControl.isPrivate() || (vary != null && vary.trim().equals("*"))) {
+            return new ParsecCacheEntry(response, now, now, now, now, null, null, null);
+        }
+        if (negative) {
+            return new ParsecCacheEntry(response, null, saturatedAdd(now, getNegativeTtlNanos()),
+                getVaryHeaders(request, vary));
+        }
+
+        long staleWhileRevalidate = cacheControl.getStaleWhileRevalidateSeconds() >= 0
+            ? TimeUnit.SECONDS.toNanos(cacheControl.getStaleWhileRevalidateSeconds()) : staleWhileRevalidateNanos;
+        long staleIfError = cacheControl.getStaleIfErrorSeconds() >= 0
+            ? TimeUnit.SECONDS.toNanos(cacheControl.getStaleIfErrorSeconds()) : staleIfErrorNanos;
+        if (cacheControl.isMustRevalidate()) {
+            staleWhileRevalidate = 0;
+            staleIfError = 0;
+        } else if (cacheControl.isNoCache()) {
+            staleWhileRevalidate = 0;
+        }
+
+        return newEntry(
+            response,
+            saturatedAdd(now, getFreshnessNanos(request, response, cacheControl)),
+            staleWhileRevalidate,
+            staleIfError,
+            response.getHeaderString(HttpHeaders.ETAG),
+            response.getHeaderString(HttpHeaders.LAST_MODIFIED),
+            getVaryHeaders(request, vary)
+        );
+    }
+
+    /**
+     * Make the negative cache entry of a failure.
+     *
+     * @param throwable failure
+     * @return cache entry, null if the failure is not negative
+     */
+    private ParsecCacheEntry newFailureEntry(final Throwable throwable) {
+        Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        if (negativeCacheConfig == null || !negativeCacheConfig.isNegative(failure)) {
+            return null;
+        }
+        return new ParsecCacheEntry(null, failure, saturatedAdd(ticker.read(), getNegativeTtlNanos()), null);
+    }
+
+    /**
+     * Get the negative TTL.
+     *
+     * @return negative TTL in nanoseconds
+     */
+    private long getNegativeTtlNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(negativeCacheConfig.getTtlMillis());
+    }
+
+    /**
+     * Make the cache entry of a response, kept until the end of its freshness, of its stale windows and, if it can
+     * be revalidated, of the revalidation window.
+     *
+     * @param response             response
+     * @param freshUntil           time until which the response is fresh
+     * @param staleWhileRevalidate stale while revalidate window in nanoseconds
+     * @param staleIfError         stale if error window in nanoseconds
+     * @param eTag                 {@code ETag} of the response, null if none
+     * @param lastModified         {@code Last-Modified} of the response, null if none
+     * @param varyHeaders          values of the request headers the response varies on, null if it does not vary
+     * @return cache entry
+     */
+    private ParsecCacheEntry newEntry(
+        final Response response,
+        final long freshUntil,
+        final long staleWhileRevalidate,
+        final long staleIfError,
+        final String eTag,
+        final String lastModified,
+        final Map<String, String> varyHeaders
+    ) {
+        long staleWhileRevalidateUntil = saturatedAdd(freshUntil, staleWhileRevalidate);
+        long staleIfErrorUntil = saturatedAdd(freshUntil, staleIfError);
+        long expireAt = Math.max(staleWhileRevalidateUntil, staleIfErrorUntil);
+        if (eTag != null || lastModified != null) {
+            expireAt = Math.max(expireAt, saturatedAdd(freshUntil, revalidationWindowNanos));
+        }
+        return new ParsecCacheEntry(response, freshUntil, staleWhileRevalidateUntil, staleIfErrorUntil, expireAt,
+            eTag, lastModified, varyHeaders);
+    }
+
+    /**
+     * Get how long the response of a request is kept without HTTP semantics: the cache TTL of the request if set,
+     * else the TTL of the first route found in its URL, else the expire after write duration.
+     *
+     * @param request request
+     * @return duration in nanoseconds
+     */
+    private long getExpireAfterWriteNanos(final ParsecAsyncHttpRequest request) {
+        if (request.getCacheTtlMillis() >= 0) {
+            return TimeUnit.MILLISECONDS.toNanos(request.getCacheTtlMillis());
+        }
+        String url = request.getUrl();
+        for (TtlRoute route : ttlRoutes) {
+            if (route.pattern.matcher(url).find()) {
+                return route.ttlNanos;
+            }
+        }
+        return expireAfterWriteNanos;
+    }
+
+    /**
+     * Get how long a response is fresh, from its {@code Cache-Control}, {@code Expires} and {@code Age} headers,
+     * or the expire after write duration of the request if it has no explicit freshness and its status code
+     * allows it.
+     *
+     * @param request      request that got the response
+     * @param response     response
+     * @param cacheControl {@code Cache-Control} of the response
+     * @return freshness in nanoseconds
+     */
+    private long getFreshnessNanos(
+        final ParsecAsyncHttpRequest request,
+        final Response response,
+        final ParsecCacheControl cacheControl
+    ) {
+        if (cacheControl.isNoCache()) {
+            return 0;
+        }
+
+        long freshnessMillis;
+        String expires = response.getHeaderString(HttpHeaders.EXPIRES);
+        if (cacheControl.getSharedMaxAgeSeconds() >= 0) {
+            freshnessMillis = TimeUnit.SECONDS.toMillis(cacheControl.getSharedMaxAgeSeconds());
+        } else if (cacheControl.getMaxAgeSeconds() >= 0) {
+            freshnessMillis = TimeUnit.SECONDS.toMillis(cacheControl.getMaxAgeSeconds());
+        } else if (expires != null) {
+            long expiresMillis = ParsecHttpUtil.parseHttpDateMillis(expires);
+            long dateMillis = ParsecHttpUtil.parseHttpDateMillis(response.getHeaderString(HttpHeaders.DATE));
+            if (dateMillis == -1) {
+                dateMillis = System.currentTimeMillis();
+            }
+            freshnessMillis = expiresMillis == -1 ? 0 : Math.max(0, expiresMillis - dateMillis);
+        } else {
+            return HEURISTICALLY_CACHEABLE_STATUS_CODES.contains(response.getStatus())
+                ? getExpireAfterWriteNanos(request) : 0;
+        }
+
+        long ageMillis = 0;
+        try {
+            String age = response.getHeaderString(AGE);
+            ageMillis = age == null ? 0 : TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(age.trim())));
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Ignoring invalid Age header", e);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, freshnessMillis - ageMillis));
+    }
+
+    /**
+     * Get the values of the request headers a response varies on.
+     *
+     * @param request request that got the response
+     * @param vary    {@code Vary} of the response, possibly null
+     * @return header values by header name, null if the response does not vary
+     */
+    private static Map<String, String> getVaryHeaders(final ParsecAsyncHttpRequest request, final String vary) {
+        if (vary == null || vary.trim().isEmpty()) {
+            return null;
+        }
+
+        Map<String, String> varyHeaders = new HashMap<>();
+        for (String name : vary.split(",")) {
+            String headerName = name.trim().toLowerCase(Locale.ENGLISH);
+            if (!headerName.isEmpty()) {
+                varyHeaders.put(headerName, request.getHeaderString(headerName));
+            }
+        }
+        return varyHeaders;
+    }
+
+    /**
+     * Weigh an entry, for the {@link Weigher} of the cache. An entry with a response heavier than the maximum
+     * response weight expires right away, and weighs nothing so it does not evict other entries meanwhile.
+     *
+     * @param key   cache key
+     * @param entry cache entry
+     * @return weight
+     */
+    private int weigh(final ParsecRequestKey key, final ParsecCacheEntry entry) {
+        if (entry.getResponse() == null) {
+            return FAILURE_WEIGHT;
+        }
+        long weight = getWeight(entry.getResponse());
+        return weight > maximumResponseWeight ? 0 : (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    /**
+     * Get the estimated heap bytes of the body and headers of a response, 2 bytes per character of strings.
+     * Bodies other than strings and byte arrays are not weighed.
+     *
+     * @param response response
+     * @return weight in bytes
+     */
+    static long getWeight(final Response response) {
+        long weight = 0;
+        Object entity = response.getEntity();
+        if (entity instanceof String) {
+            weight += Character.BYTES * (long) ((String) entity).length();
+        } else if (entity instanceof byte[]) {
+            weight += ((byte[]) entity).length;
+        }
+
+        for (Map.Entry<String, List<String>> header : response.getStringHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                weight += Character.BYTES * (long) (header.getKey().length() + value.length());
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Add durations or times, saturating at {@link Long#MAX_VALUE}.
+     *
+     * @param a time or duration in nanoseconds
+     * @param b duration in nanoseconds
+     * @return sum, or {@link Long#MAX_VALUE} if it overflows
+     */
+    private static long saturatedAdd(final long a, final long b) {
+        long sum = a + b;
+        return b > 0 && sum < a ? Long.MAX_VALUE : sum;
     }
 
     /**
@@ -118,20 +751,102 @@ final class ParsecAsyncHttpResponseLoadingCache {
      * A mapping is not present if the value is currently being loaded. Modifications made to the
      * synchronous cache directly affect the asynchronous cache. If a modification is made to a
      * mapping that is currently loading, the operation blocks until the computation completes.
+     * Requests are looked up by their cache keys. Failures kept by negative caching are not present in the view,
+     * and {@link LoadingCache#get(Object)} throws them wrapped in a {@link CompletionException}. The view has no
+     * {@link LoadingCache#policy()}.
      *
      * @return a thread-safe synchronous view of this cache
      */
     public LoadingCache<ParsecAsyncHttpRequest, Response> synchronous() {
-        return asyncLoadingCache.synchronous();
+        return synchronousView;
+    }
+
+    /**
+     * Get the number of lookups that got a negative entry, also counted as hits in the cache stats.
+     *
+     * @return number of negative hits
+     */
+    long getNegativeHitCount() {
+        return negativeHitCount.sum();
+    }
+
+    /**
+     * Save the in memory entries to a snapshot file, replacing it atomically. Failures kept by negative caching,
+     * and responses with bodies other than strings and byte arrays, are not saved.
+     *
+     * @param file snapshot file
+     * @return number of entries saved
+     * @throws IOException IO exception
+     */
+    int snapshot(final Path file) throws IOException {
+        return ParsecCacheSnapshot.write(file, asyncLoadingCache.synchronous().asMap(), ticker.read(),
+            System.currentTimeMillis());
+    }
+
+    /**
+     * Restore the entries of a snapshot file that have not expired since, unless the cache has an entry for them.
+     *
+     * @param file snapshot file
+     * @return number of entries restored
+     * @throws IOException IO exception
+     */
+    int restore(final Path file) throws IOException {
+        int restored = 0;
+        Map<ParsecAsyncHttpRequest, ParsecCacheEntry> entries =
+            ParsecCacheSnapshot.read(file, ticker.read(), System.currentTimeMillis());
+        for (Map.Entry<ParsecAsyncHttpRequest, ParsecCacheEntry> entry : entries.entrySet()) {
+            if (asyncLoadingCache.asMap().putIfAbsent(getKey(entry.getKey()),
+                CompletableFuture.completedFuture(entry.getValue())) == null) {
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Save the in memory entries to the snapshot file, logging failures.
+     */
+    private void snapshotQuietly() {
+        try {
+            int saved = snapshot(snapshotFile);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Saved {} cache entries to {}", saved, snapshotFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to save cache snapshot " + snapshotFile, e);
+        }
     }
 
     /**
-     * Shutdown.
+     * Save the snapshot file if any, and shutdown.
+     */
+    void close() {
+        if (snapshotFile != null && !scheduledTasks.get(0).isCancelled()) {
+            snapshotQuietly();
+        }
+        shutdownCleanUpExecutorService();
+    }
+
+    /**
+     * Shutdown, or only cancel the tasks of the cache if the clean up executor is shared.
      */
     void shutdownCleanUpExecutorService() {
-        if (!cleanUpExecutorService.isShutdown()) {
+        scheduledTasks.forEach(task -> task.cancel(false));
+        if (!sharedCleanUpExecutorService && !cleanUpExecutorService.isShutdown()) {
             cleanUpExecutorService.shutdown();
         }
+        if (offHeapStore != null) {
+            offHeapStore.clear();
+        }
+    }
+
+    /**
+     * Get the off-heap tier.
+     *
+     * @return off-heap tier, null if none
+     */
+    ParsecOffHeapResponseStore getOffHeapStore() {
+        return offHeapStore;
     }
 
     /**
@@ -155,6 +870,81 @@ final class ParsecAsyncHttpResponseLoadingCache {
          */
         private ParsecAsyncHttpClient client;
 
+        /**
+         * Cache key strategy.
+         */
+        private ParsecCacheKeyStrategy keyStrategy;
+
+        /**
+         * Ticker.
+         */
+        private Ticker ticker;
+
+        /**
+         * Expire after write duration in nanoseconds.
+         */
+        private long expireAfterWriteNanos;
+
+        /**
+         * TTL routes, in the order they are tried.
+         */
+        private List<TtlRoute> ttlRoutes;
+
+        /**
+         * Whether HTTP caching semantics are followed.
+         */
+        private boolean httpSemantics;
+
+        /**
+         * How long a stale response that can be revalidated is kept, in nanoseconds.
+         */
+        private long revalidationWindowNanos;
+
+        /**
+         * How long a stale response is served while it is revalidated in the background, in nanoseconds.
+         */
+        private long staleWhileRevalidateNanos;
+
+        /**
+         * How long a stale response is served when revalidating it fails, in nanoseconds.
+         */
+        private long staleIfErrorNanos;
+
+        /**
+         * Negative cache config, null if negative caching is disabled.
+         */
+        private ParsecNegativeCacheConfig negativeCacheConfig;
+
+        /**
+         * Weight above which a response is not kept.
+         */
+        private long maximumResponseWeight;
+
+        /**
+         * Whether the cache is bounded by weight.
+         */
+        private boolean weighed;
+
+        /**
+         * Maximum bytes of the off-heap tier, 0 if none.
+         */
+        private long offHeapMaximumBytes;
+
+        /**
+         * Snapshot file, null if none.
+         */
+        private Path snapshotFile;
+
+        /**
+         * Snapshot interval, 0 if only saved on close.
+         */
+        private long snapshotInterval;
+
+        /**
+         * Snapshot time unit.
+         */
+        private TimeUnit snapshotTimeUnit;
+
         /**
          * Clean up interval.
          */
@@ -165,6 +955,11 @@ final class ParsecAsyncHttpResponseLoadingCache {
          */
         private TimeUnit cleanUpTimeUnit;
 
+        /**
+         * Shared clean up executor, null if the cache creates its own.
+         */
+        private ScheduledExecutorService cleanUpExecutorService;
+
         /**
          * Constructor.
          * @param client client
@@ -172,6 +967,11 @@ final class ParsecAsyncHttpResponseLoadingCache {
         public Builder(final ParsecAsyncHttpClient client) {
             caffeine = Caffeine.newBuilder();
             this.client = client;
+            keyStrategy = FullRequestCacheKeyStrategy.getInstance();
+            ticker = Ticker.systemTicker();
+            expireAfterWriteNanos = Long.MAX_VALUE;
+            ttlRoutes = new ArrayList<>();
+            maximumResponseWeight = Long.MAX_VALUE;
             cleanUpInterval = DEFAULT_CLEANUP_INTERVAL;
             cleanUpTimeUnit = TimeUnit.SECONDS;
         }
@@ -211,13 +1011,91 @@ final class ParsecAsyncHttpResponseLoadingCache {
 
         /**
          * Set cache expire after write duration.
+         * With HTTP semantics enabled, it only applies to responses without explicit freshness.
          *
          * @param duration Expire duration
          * @param unit Expire time unit
          * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
          */
         public Builder expireAfterWrite(final long duration, final TimeUnit unit) {
-            caffeine.expireAfterWrite(duration, unit);
+            expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Add a TTL route: responses to requests whose URL contains a match of the pattern, and without a cache TTL
+         * of their own, are kept for the route TTL instead of the expire after write duration. Routes are tried in
+         * the order they are added.
+         *
+         * @param urlPattern Regular expression found in the request URLs
+         * @param duration TTL duration
+         * @param unit TTL time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder ttlRoute(final String urlPattern, final long duration, final TimeUnit unit) {
+            ttlRoutes.add(new TtlRoute(Pattern.compile(urlPattern), unit.toNanos(duration)));
+            return this;
+        }
+
+        /**
+         * Set whether HTTP caching semantics are followed: {@code Cache-Control}, {@code Expires} and {@code Vary}
+         * response headers, and conditional revalidation of stale responses.
+         *
+         * @param httpSemantics Follow HTTP caching semantics
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder httpSemantics(final boolean httpSemantics) {
+            this.httpSemantics = httpSemantics;
+            return this;
+        }
+
+        /**
+         * Set how long a stale response with an {@code ETag} or a {@code Last-Modified} is kept to be revalidated,
+         * with HTTP semantics enabled.
+         *
+         * @param duration Revalidation window duration
+         * @param unit Revalidation window time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder revalidationWindow(final long duration, final TimeUnit unit) {
+            revalidationWindowNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Set how long a stale response is served right away while it is revalidated in the background, i.e. the
+         * hard expire time is the expire after write duration plus this window.
+         *
+         * @param duration Stale while revalidate duration
+         * @param unit Stale while revalidate time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder staleWhileRevalidate(final long duration, final TimeUnit unit) {
+            staleWhileRevalidateNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Set how long after it became stale a response is served when revalidating it fails or gets a 5xx response.
+         *
+         * @param duration Stale if error duration
+         * @param unit Stale if error time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder staleIfError(final long duration, final TimeUnit unit) {
+            staleIfErrorNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Set negative caching: responses with a negative status code and negative failures are kept for the
+         * negative TTL.
+         *
+         * @param negativeCacheConfig Negative cache config, null to disable negative caching
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder negativeCache(final ParsecNegativeCacheConfig negativeCacheConfig) {
+            this.negativeCacheConfig = negativeCacheConfig;
             return this;
         }
 
@@ -232,11 +1110,93 @@ final class ParsecAsyncHttpResponseLoadingCache {
             return this;
         }
 
+        /**
+         * Set cache maximum weight, instead of a maximum size. Entries weigh the estimated bytes of their response
+         * body and headers.
+         *
+         * @param weight Cache maximum weight in bytes
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder maximumWeight(final long weight) {
+            caffeine.maximumWeight(weight);
+            weighed = true;
+            return this;
+        }
+
+        /**
+         * Set the weight above which a response is not kept, so huge responses bypass the cache.
+         *
+         * @param weight Maximum response weight in bytes
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder maximumResponseWeight(final long weight) {
+            maximumResponseWeight = weight;
+            return this;
+        }
+
         public Builder recordStats() {
             caffeine.recordStats();
             return this;
         }
 
+        /**
+         * Add an off-heap tier, keeping the responses of entries evicted for size, and of responses weighing more
+         * than the maximum response weight, serialised in direct buffers. Only string and byte array bodies are kept.
+         *
+         * @param maximumBytes Maximum bytes of the off-heap tier
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder offHeap(final long maximumBytes) {
+            offHeapMaximumBytes = maximumBytes;
+            return this;
+        }
+
+        /**
+         * Set a snapshot file: entries are restored from it when the cache is built, and saved to it on close.
+         *
+         * @param file Snapshot file
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder snapshotFile(final Path file) {
+            snapshotFile = file;
+            return this;
+        }
+
+        /**
+         * Set how often entries are also saved to the snapshot file.
+         *
+         * @param interval Snapshot interval
+         * @param unit Snapshot time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder snapshotInterval(final long interval, final TimeUnit unit) {
+            snapshotInterval = interval;
+            snapshotTimeUnit = unit;
+            return this;
+        }
+
+        /**
+         * Set cache key strategy.
+         *
+         * @param keyStrategy Cache key strategy
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder keyStrategy(final ParsecCacheKeyStrategy keyStrategy) {
+            this.keyStrategy = keyStrategy;
+            return this;
+        }
+
+        /**
+         * Set ticker, for tests.
+         *
+         * @param ticker Ticker
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        Builder ticker(final Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
         /**
          * Set cache clean up interval.
          *
@@ -249,40 +1209,148 @@ final class ParsecAsyncHttpResponseLoadingCache {
             cleanUpTimeUnit = unit;
             return this;
         }
+
+        /**
+         * Set a clean up executor shared with other caches, which also saves the snapshots. The cache only cancels
+         * its tasks when it is shut down, instead of shutting the executor down.
+         *
+         * @param cleanUpExecutorService shared clean up executor
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder cleanUpExecutorService(final ScheduledExecutorService cleanUpExecutorService) {
+            this.cleanUpExecutorService = cleanUpExecutorService;
+            return this;
+        }
     }
 
     /**
-     * {@link CacheLoader} implementation that loads {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache}.
+     * TTL of the requests whose URL contains a match of a pattern.
      */
-    private final class ResponseCacheLoader implements CacheLoader<ParsecAsyncHttpRequest, Response> {
+    private static final class TtlRoute {
+
         /**
-         * Client.
+         * URL pattern.
          */
-        private ParsecAsyncHttpClient client;
+        private final Pattern pattern;
 
         /**
-         * Private constructor.
+         * TTL in nanoseconds.
+         */
+        private final long ttlNanos;
+
+        /**
+         * Constructor.
          *
-         * @param client client
+         * @param pattern  URL pattern
+         * @param ttlNanos TTL in nanoseconds
          */
-        private ResponseCacheLoader(final ParsecAsyncHttpClient client) {
-            this.client = client;
+        private TtlRoute(final Pattern pattern, final long ttlNanos) {
+            this.pattern = pattern;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+    /**
+     * {@link Expiry} that removes an entry from the cache at its expire time, so each entry can have its own TTL.
+     */
+    private static final class EntryExpiry implements Expiry<ParsecRequestKey, ParsecCacheEntry> {
+
+        @Override
+        public long expireAfterCreate(ParsecRequestKey key, ParsecCacheEntry entry, long currentTime) {
+            long expireAt = entry.getExpireAtNanos();
+            return expireAt == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, expireAt - currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(
+            ParsecRequestKey key,
+            ParsecCacheEntry entry,
+            long currentTime,
+            long currentDuration
+        ) {
+            return expireAfterCreate(key, entry, currentTime);
         }
 
+        @Override
+        public long expireAfterRead(
+            ParsecRequestKey key,
+            ParsecCacheEntry entry,
+            long currentTime,
+            long currentDuration
+        ) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * {@link CacheLoader} implementation that loads {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache}.
+     */
+    private final class ResponseCacheLoader implements CacheLoader<ParsecRequestKey, ParsecCacheEntry> {
+
         /**
          * Load {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache}.
          *
-         * @param request {@link ParsecAsyncHttpRequest} as {@link ParsecAsyncHttpResponseLoadingCache} key
-         * @return {@link Response}
+         * @param key {@link ParsecAsyncHttpResponseLoadingCache} key of the {@link ParsecAsyncHttpRequest}
+         * @return {@link ParsecCacheEntry}
          * @throws RuntimeException Run time exception
          */
-        public Response load(final ParsecAsyncHttpRequest request) throws RuntimeException {
+        public ParsecCacheEntry load(final ParsecRequestKey key) throws RuntimeException {
             try {
-                return client.criticalExecute(request).get();
+                return asyncLoad(key, null).get();
             } catch (ExecutionException | InterruptedException e) {
                 throw new RuntimeException(e);
             }
         }
+
+        /**
+         * Load {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache} without blocking a thread
+         * of the executor.
+         *
+         * @param key {@link ParsecAsyncHttpResponseLoadingCache} key of the {@link ParsecAsyncHttpRequest}
+         * @param executor executor, unused
+         * @return future of the {@link ParsecCacheEntry}
+         */
+        @Override
+        public CompletableFuture<ParsecCacheEntry> asyncLoad(final ParsecRequestKey key, final Executor executor) {
+            ParsecCacheEntry stored = offHeapStore == null ? null : offHeapStore.get(key, ticker.read());
+            if (stored == null) {
+                return fetch(key);
+            }
+            if (getWeight(stored.getResponse()) > maximumResponseWeight) {
+                return CompletableFuture.completedFuture(newPassingEntry(stored.getResponse()));
+            }
+            offHeapStore.remove(key);
+            return CompletableFuture.completedFuture(stored);
+        }
+
+        /**
+         * Send the request of a key and make the cache entry of the response, or of the failure if it is negative.
+         *
+         * @param key {@link ParsecAsyncHttpResponseLoadingCache} key of the {@link ParsecAsyncHttpRequest}
+         * @return future of the {@link ParsecCacheEntry}
+         */
+        private CompletableFuture<ParsecCacheEntry> fetch(final ParsecRequestKey key) {
+            return send(key.getRequest()).handle((response, throwable) -> {
+                if (throwable == null) {
+                    return newEntry(key, response);
+                }
+                ParsecCacheEntry failed = newFailureEntry(throwable);
+                if (failed == null) {
+                    throw throwable instanceof CompletionException
+                        ? (CompletionException) throwable : new CompletionException(throwable);
+                }
+                return failed;
+            });
+        }
+
+        @Override
+        public CompletableFuture<ParsecCacheEntry> asyncReload(
+            final ParsecRequestKey key,
+            final ParsecCacheEntry oldValue,
+            final Executor executor
+        ) {
+            return fetch(key);
+        }
     }
 
 }
@@ -0,0 +1,24 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Completion modes of a batch of requests.
+ */
+public enum ParsecBatchCompletionMode {
+    /**
+     * The batch completes once every request has completed, successfully or not.
+     */
+    ALL,
+
+    /**
+     * The batch completes once a given number of requests have succeeded.
+     */
+    FIRST_N,
+
+    /**
+     * The batch completes once any request has succeeded.
+     */
+    ANY
+}
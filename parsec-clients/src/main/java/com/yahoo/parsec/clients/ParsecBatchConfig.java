@@ -0,0 +1,206 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Configuration of a batch of requests executed by {@link ParsecAsyncHttpClient}.
+ *
+ * <p>At most {@code parallelism} requests of the batch are in flight at once, the next one being sent when one
+ * completes. The batch completes according to its {@link ParsecBatchCompletionMode}, or at its deadline, whichever
+ * comes first. Requests still in flight are then cancelled, and requests not sent yet are never sent.</p>
+ */
+public final class ParsecBatchConfig {
+
+    /**
+     * Maximum number of requests in flight.
+     */
+    private final int parallelism;
+
+    /**
+     * Time after which the batch completes with the results it has, -1 for none.
+     */
+    private final long deadlineMillis;
+
+    /**
+     * Completion mode.
+     */
+    private final ParsecBatchCompletionMode completionMode;
+
+    /**
+     * Number of successful requests completing the batch in {@link ParsecBatchCompletionMode#FIRST_N} mode.
+     */
+    private final int firstN;
+
+    /**
+     * Listener called with each result as it completes, null for none.
+     */
+    private final Consumer<ParsecBatchResult> resultListener;
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private ParsecBatchConfig(final Builder builder) {
+        parallelism = builder.parallelism;
+        deadlineMillis = builder.deadlineMillis;
+        completionMode = builder.completionMode;
+        firstN = builder.firstN;
+        resultListener = builder.resultListener;
+    }
+
+    /**
+     * Get parallelism.
+     *
+     * @return Maximum number of requests in flight
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Get deadline.
+     *
+     * @return Time in milliseconds after which the batch completes with the results it has, -1 for none
+     */
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Get completion mode.
+     *
+     * @return Completion mode
+     */
+    public ParsecBatchCompletionMode getCompletionMode() {
+        return completionMode;
+    }
+
+    /**
+     * Get number of successful requests completing the batch in {@link ParsecBatchCompletionMode#FIRST_N} mode.
+     *
+     * @return Number of successful requests
+     */
+    public int getFirstN() {
+        return firstN;
+    }
+
+    /**
+     * Get result listener.
+     *
+     * @return Listener called with each result as it completes, null for none
+     */
+    public Consumer<ParsecBatchResult> getResultListener() {
+        return resultListener;
+    }
+
+    /**
+     * Static Builder class for {@link ParsecBatchConfig}.
+     */
+    public static class Builder {
+        /**
+         * Maximum number of requests in flight.
+         */
+        private int parallelism = 10;
+
+        /**
+         * Time after which the batch completes with the results it has, -1 for none.
+         */
+        private long deadlineMillis = -1;
+
+        /**
+         * Completion mode.
+         */
+        private ParsecBatchCompletionMode completionMode = ParsecBatchCompletionMode.ALL;
+
+        /**
+         * Number of successful requests completing the batch in {@link ParsecBatchCompletionMode#FIRST_N} mode.
+         */
+        private int firstN = 1;
+
+        /**
+         * Listener called with each result as it completes.
+         */
+        private Consumer<ParsecBatchResult> resultListener;
+
+        /**
+         * Set maximum number of requests in flight, 10 by default.
+         *
+         * @param parallelism Maximum number of requests in flight
+         * @return {@link ParsecBatchConfig.Builder}
+         */
+        public Builder setParallelism(int parallelism) {
+            Preconditions.checkArgument(parallelism > 0, "Parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Set time after which the batch completes with the results it has. There is no deadline by default.
+         *
+         * @param deadline Deadline
+         * @param unit Time unit of the deadline
+         * @return {@link ParsecBatchConfig.Builder}
+         */
+        public Builder setDeadline(long deadline, TimeUnit unit) {
+            Preconditions.checkArgument(deadline > 0, "Deadline must be positive");
+            this.deadlineMillis = unit.toMillis(deadline);
+            return this;
+        }
+
+        /**
+         * Set completion mode, {@link ParsecBatchCompletionMode#ALL} by default.
+         * Use {@link #setFirstN(int)} for {@link ParsecBatchCompletionMode#FIRST_N}.
+         *
+         * @param completionMode Completion mode
+         * @return {@link ParsecBatchConfig.Builder}
+         */
+        public Builder setCompletionMode(ParsecBatchCompletionMode completionMode) {
+            Preconditions.checkNotNull(completionMode, "Completion mode cannot be null");
+            this.completionMode = completionMode;
+            if (completionMode == ParsecBatchCompletionMode.ANY) {
+                firstN = 1;
+            }
+            return this;
+        }
+
+        /**
+         * Complete the batch once a given number of requests have succeeded.
+         *
+         * @param firstN Number of successful requests
+         * @return {@link ParsecBatchConfig.Builder}
+         */
+        public Builder setFirstN(int firstN) {
+            Preconditions.checkArgument(firstN > 0, "First n must be positive");
+            this.completionMode = ParsecBatchCompletionMode.FIRST_N;
+            this.firstN = firstN;
+            return this;
+        }
+
+        /**
+         * Set listener called with each result as it completes, on the thread that completed the request.
+         * The listener must not block.
+         *
+         * @param resultListener Result listener
+         * @return {@link ParsecBatchConfig.Builder}
+         */
+        public Builder setResultListener(Consumer<ParsecBatchResult> resultListener) {
+            this.resultListener = resultListener;
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecBatchConfig} instance.
+         *
+         * @return {@link ParsecBatchConfig}
+         */
+        public ParsecBatchConfig build() {
+            return new ParsecBatchConfig(this);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Execution of a batch of requests with bounded parallelism.
+ *
+ * <p>Requests are sent in order, at most {@code parallelism} at once. When one completes, the next ones are sent
+ * from an executor rather than from the I/O thread that completed it, as sending may block.</p>
+ *
+ * @see ParsecBatchConfig
+ */
+final class ParsecBatchExecution {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecBatchExecution.class);
+
+    /**
+     * Requests.
+     */
+    private final List<ParsecAsyncHttpRequest> requests;
+
+    /**
+     * Config.
+     */
+    private final ParsecBatchConfig config;
+
+    /**
+     * Function that sends a request.
+     */
+    private final Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> call;
+
+    /**
+     * Timer for the deadline.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Executor for sending the next requests.
+     */
+    private final Executor executor;
+
+    /**
+     * Results by request index.
+     */
+    private final ParsecBatchResult[] results;
+
+    /**
+     * Futures of the requests in flight by request index.
+     */
+    private final CompletableFuture<?>[] futures;
+
+    /**
+     * Future of the batch.
+     */
+    private final CompletableFuture<List<ParsecBatchResult>> result = new CompletableFuture<>();
+
+    /**
+     * Index of the next request to send.
+     */
+    private int nextIndex;
+
+    /**
+     * Number of requests in flight.
+     */
+    private int inFlight;
+
+    /**
+     * Number of completed requests.
+     */
+    private int completedCount;
+
+    /**
+     * Number of successful requests.
+     */
+    private int successCount;
+
+    /**
+     * Whether the batch is done.
+     */
+    private boolean done;
+
+    /**
+     * Deadline timeout, null if none.
+     */
+    private volatile Future<?> deadline;
+
+    /**
+     * Constructor.
+     *
+     * @param requests requests
+     * @param config   config
+     * @param call     function that sends a request
+     * @param timer    timer for the deadline
+     * @param executor executor for sending the next requests
+     */
+    ParsecBatchExecution(
+        List<ParsecAsyncHttpRequest> requests,
+        ParsecBatchConfig config,
+        Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> call,
+        ScheduledExecutorService timer,
+        Executor executor
+    ) {
+        this.requests = new ArrayList<>(requests);
+        this.config = config;
+        this.call = call;
+        this.timer = timer;
+        this.executor = executor;
+        this.results = new ParsecBatchResult[this.requests.size()];
+        this.futures = new CompletableFuture<?>[this.requests.size()];
+    }
+
+    /**
+     * Execute the batch.
+     *
+     * @return future of the results, ordered as the requests. Cancelling it cancels the requests in flight
+     */
+    CompletableFuture<List<ParsecBatchResult>> execute() {
+        if (requests.isEmpty()) {
+            result.complete(Collections.emptyList());
+            return result;
+        }
+
+        if (config.getDeadlineMillis() > 0) {
+            deadline = timer.schedule(
+                () -> finish(
+                    new TimeoutException("Batch deadline of " + config.getDeadlineMillis() + "ms reached"),
+                    ParsecBatchResultStatus.TIMED_OUT
+                ),
+                config.getDeadlineMillis(),
+                TimeUnit.MILLISECONDS
+            );
+        }
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                finish(new CancellationException(), ParsecBatchResultStatus.CANCELLED);
+            }
+        });
+        sendNext();
+        return result;
+    }
+
+    /**
+     * Send the next requests that fit in the parallelism.
+     */
+    private void sendNext() {
+        while (true) {
+            int index;
+            synchronized (this) {
+                if (done || nextIndex >= requests.size() || inFlight >= config.getParallelism()) {
+                    return;
+                }
+                index = nextIndex++;
+                inFlight++;
+            }
+            send(index);
+        }
+    }
+
+    /**
+     * Send a request.
+     *
+     * @param index request index
+     */
+    private void send(final int index) {
+        CompletableFuture<Response> future;
+        try {
+            future = call.apply(requests.get(index));
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        boolean cancel;
+        synchronized (this) {
+            cancel = done;
+            if (!cancel) {
+                futures[index] = future;
+            }
+        }
+        if (cancel) {
+            future.cancel(true);
+            return;
+        }
+        future.whenComplete((response, throwable) -> onCompleted(index, response, throwable));
+    }
+
+    /**
+     * Record the outcome of a request, then complete the batch or send the next requests.
+     *
+     * @param index     request index
+     * @param response  response
+     * @param throwable failure
+     */
+    private void onCompleted(int index, Response response, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        ParsecBatchResult batchResult = new ParsecBatchResult(index, requests.get(index), response, cause,
+            cause == null ? ParsecBatchResultStatus.DONE : ParsecBatchResultStatus.FAILED);
+        boolean satisfied;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            results[index] = batchResult;
+            futures[index] = null;
+            inFlight--;
+            completedCount++;
+            if (cause == null) {
+                successCount++;
+            }
+            satisfied = isSatisfied();
+        }
+
+        Consumer<ParsecBatchResult> listener = config.getResultListener();
+        if (listener != null) {
+            try {
+                listener.accept(batchResult);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Batch result listener failed", e);
+            }
+        }
+
+        if (satisfied) {
+            finish(new CancellationException("Batch completed"), ParsecBatchResultStatus.CANCELLED);
+            return;
+        }
+        try {
+            executor.execute(this::sendNext);
+        } catch (RejectedExecutionException e) {
+            sendNext();
+        }
+    }
+
+    /**
+     * Whether the batch can complete, because its completion mode is met or can no longer be.
+     * Must be called while holding the lock.
+     *
+     * @return true if the batch can complete
+     */
+    private boolean isSatisfied() {
+        if (completedCount == requests.size()) {
+            return true;
+        }
+        if (config.getCompletionMode() == ParsecBatchCompletionMode.ALL) {
+            return false;
+        }
+
+        int required = Math.min(config.getFirstN(), requests.size());
+        int failedCount = completedCount - successCount;
+        return successCount >= required || requests.size() - failedCount < required;
+    }
+
+    /**
+     * Complete the batch, cancelling the requests in flight and never sending the others.
+     *
+     * @param pendingFailure failure of the requests that did not complete
+     * @param pendingStatus  status of the requests that did not complete
+     */
+    private void finish(Throwable pendingFailure, ParsecBatchResultStatus pendingStatus) {
+        List<CompletableFuture<?>> cancelled = new ArrayList<>();
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = new ParsecBatchResult(i, requests.get(i), null, pendingFailure, pendingStatus);
+                }
+                if (futures[i] != null) {
+                    cancelled.add(futures[i]);
+                    futures[i] = null;
+                }
+            }
+        }
+
+        Future<?> timeout = deadline;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        for (CompletableFuture<?> future : cancelled) {
+            future.cancel(true);
+        }
+        result.complete(Collections.unmodifiableList(Arrays.asList(results)));
+    }
+}
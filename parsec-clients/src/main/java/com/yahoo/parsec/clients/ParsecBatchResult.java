@@ -0,0 +1,118 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Result of one request of a batch.
+ *
+ * <p>A request that did not complete before the batch completed has a {@link java.util.concurrent.TimeoutException}
+ * and {@link ParsecBatchResultStatus#TIMED_OUT} status if the batch reached its deadline, or a
+ * {@link java.util.concurrent.CancellationException} and {@link ParsecBatchResultStatus#CANCELLED} status otherwise.</p>
+ */
+public final class ParsecBatchResult {
+
+    /**
+     * Index of the request in the batch.
+     */
+    private final int index;
+
+    /**
+     * Request.
+     */
+    private final ParsecAsyncHttpRequest request;
+
+    /**
+     * Response, null if the request failed.
+     */
+    private final Response response;
+
+    /**
+     * Failure, null if the request succeeded.
+     */
+    private final Throwable throwable;
+
+    /**
+     * Status.
+     */
+    private final ParsecBatchResultStatus status;
+
+    /**
+     * Constructor.
+     *
+     * @param index     index of the request in the batch
+     * @param request   request
+     * @param response  response
+     * @param throwable failure
+     * @param status    status
+     */
+    ParsecBatchResult(
+        int index,
+        ParsecAsyncHttpRequest request,
+        Response response,
+        Throwable throwable,
+        ParsecBatchResultStatus status
+    ) {
+        this.index = index;
+        this.request = request;
+        this.response = response;
+        this.throwable = throwable;
+        this.status = status;
+    }
+
+    /**
+     * Get index of the request in the batch.
+     *
+     * @return Index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get request.
+     *
+     * @return Request
+     */
+    public ParsecAsyncHttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Get response.
+     *
+     * @return Response, null if the request failed
+     */
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * Get failure.
+     *
+     * @return Failure, null if the request succeeded
+     */
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    /**
+     * Get status.
+     *
+     * @return Status
+     */
+    public ParsecBatchResultStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Whether the request succeeded, i.e. got a response whatever its status code.
+     *
+     * @return true if the request succeeded
+     */
+    public boolean isSuccessful() {
+        return status == ParsecBatchResultStatus.DONE;
+    }
+}
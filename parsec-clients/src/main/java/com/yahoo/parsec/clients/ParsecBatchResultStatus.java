@@ -0,0 +1,29 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Statuses of the result of one request of a batch.
+ */
+public enum ParsecBatchResultStatus {
+    /**
+     * The request got a response, whatever its status code.
+     */
+    DONE,
+
+    /**
+     * The request failed.
+     */
+    FAILED,
+
+    /**
+     * The request did not complete before the batch deadline, and was cancelled or never sent.
+     */
+    TIMED_OUT,
+
+    /**
+     * The request did not complete before the batch completed or was cancelled, and was cancelled or never sent.
+     */
+    CANCELLED
+}
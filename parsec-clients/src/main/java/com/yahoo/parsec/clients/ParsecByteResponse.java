@@ -0,0 +1,145 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import javax.ws.rs.core.NewCookie;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response keeping its body as the received bytes, as an alternative to the {@link Response} with a String
+ * entity returned by {@link ParsecAsyncCompletionHandlerBase}.
+ *
+ * <p>The body is not decoded: {@link #getBodyAsStream()} reads the received body parts in place, without copying
+ * them. Headers and cookies are only converted when asked for.</p>
+ *
+ * @see ParsecByteResponseCompletionHandler
+ */
+public final class ParsecByteResponse {
+
+    /**
+     * Ning response.
+     */
+    private final com.ning.http.client.Response ningResponse;
+
+    /**
+     * Constructor.
+     *
+     * @param ningResponse Ning response
+     */
+    public ParsecByteResponse(final com.ning.http.client.Response ningResponse) {
+        this.ningResponse = ningResponse;
+    }
+
+    /**
+     * Get status code.
+     *
+     * @return Status code
+     */
+    public int getStatus() {
+        return ningResponse.getStatusCode();
+    }
+
+    /**
+     * Get content type.
+     *
+     * @return Content type, null if none
+     */
+    public String getContentType() {
+        return ningResponse.getContentType();
+    }
+
+    /**
+     * Get first value of a header.
+     *
+     * @param name Header name, case insensitive
+     * @return Header value, null if none
+     */
+    public String getHeader(final String name) {
+        return ningResponse.getHeader(name);
+    }
+
+    /**
+     * Get headers.
+     *
+     * @return Case insensitive map of header values by name
+     */
+    public Map<String, List<String>> getHeaders() {
+        return ningResponse.getHeaders();
+    }
+
+    /**
+     * Get cookies.
+     *
+     * @return List&lt;{@link NewCookie}&gt;
+     */
+    public List<NewCookie> getCookies() {
+        return ParsecHttpUtil.getCookies(ningResponse.getCookies());
+    }
+
+    /**
+     * Whether the response has a body.
+     *
+     * @return true if the response has a body
+     */
+    public boolean hasBody() {
+        return ningResponse.hasResponseBody();
+    }
+
+    /**
+     * Get body as a stream reading the received bytes in place.
+     *
+     * @return Body stream
+     * @throws IOException IO exception
+     */
+    public InputStream getBodyAsStream() throws IOException {
+        return ningResponse.getResponseBodyAsStream();
+    }
+
+    /**
+     * Get body as bytes. The body is copied into a new array.
+     *
+     * @return Body bytes
+     * @throws IOException IO exception
+     */
+    public byte[] getBodyAsBytes() throws IOException {
+        return ningResponse.getResponseBodyAsBytes();
+    }
+
+    /**
+     * Get body as a byte buffer. The body is copied into a new buffer.
+     *
+     * @return Body byte buffer
+     * @throws IOException IO exception
+     */
+    public ByteBuffer getBodyAsByteBuffer() throws IOException {
+        return ningResponse.getResponseBodyAsByteBuffer();
+    }
+
+    /**
+     * Get body decoded with the charset of the content type, UTF-8 if none.
+     *
+     * @return Body
+     * @throws IOException IO exception
+     */
+    public String getBody() throws IOException {
+        return ningResponse.getResponseBody(ParsecHttpUtil.parseCharsetFromContentType(
+            ningResponse.getContentType(), StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * Convert to a {@link Response} with a String entity, as returned by {@link ParsecAsyncCompletionHandlerBase}.
+     *
+     * @return {@link Response}
+     * @throws IOException IO exception
+     */
+    public Response toResponse() throws IOException {
+        return ParsecHttpUtil.getResponse(ningResponse);
+    }
+}
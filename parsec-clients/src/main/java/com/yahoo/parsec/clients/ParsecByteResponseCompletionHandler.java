@@ -0,0 +1,16 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncCompletionHandler;
+
+/**
+ * Simple AsyncHandler that returns {@link ParsecByteResponse}, keeping the body as the received bytes.
+ */
+public class ParsecByteResponseCompletionHandler extends AsyncCompletionHandler<ParsecByteResponse> {
+    @Override
+    public ParsecByteResponse onCompleted(final com.ning.http.client.Response ningResponse) throws Exception {
+        return new ParsecByteResponse(ningResponse);
+    }
+}
@@ -0,0 +1,235 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Directives of a {@code Cache-Control} response header that the response cache acts on.
+ */
+final class ParsecCacheControl {
+
+    /**
+     * {@code max-age} in seconds, -1 if absent.
+     */
+    private long maxAgeSeconds = -1;
+
+    /**
+     * {@code s-maxage} in seconds, -1 if absent.
+     */
+    private long sharedMaxAgeSeconds = -1;
+
+    /**
+     * {@code stale-while-revalidate} in seconds, -1 if absent.
+     */
+    private long staleWhileRevalidateSeconds = -1;
+
+    /**
+     * {@code stale-if-error} in seconds, -1 if absent.
+     */
+    private long staleIfErrorSeconds = -1;
+
+    /**
+     * Whether {@code no-store} is set.
+     */
+    private boolean noStore;
+
+    /**
+     * Whether {@code no-cache} is set.
+     */
+    private boolean noCache;
+
+    /**
+     * Whether {@code private} is set.
+     */
+    private boolean privateResponse;
+
+    /**
+     * Whether {@code must-revalidate} or {@code proxy-revalidate} is set.
+     */
+    private boolean mustRevalidate;
+
+    /**
+     * Private constructor.
+     */
+    private ParsecCacheControl() {
+
+    }
+
+    /**
+     * Parse a {@code Cache-Control} header value. Unknown directives are ignored, and a delta seconds value that
+     * is not a number is read as 0.
+     *
+     * @param cacheControl {@code Cache-Control} header value, possibly null
+     * @return {@link ParsecCacheControl}
+     */
+    static ParsecCacheControl parse(final String cacheControl) {
+        ParsecCacheControl parsed = new ParsecCacheControl();
+        if (cacheControl == null) {
+            return parsed;
+        }
+
+        for (String directive : split(cacheControl)) {
+            int separator = directive.indexOf('=');
+            String name = (separator < 0 ? directive : directive.substring(0, separator))
+                .trim().toLowerCase(Locale.ENGLISH);
+            String value = separator < 0 ? null : unquote(directive.substring(separator + 1).trim());
+
+            switch (name) {
+                case "max-age":
+                    parsed.maxAgeSeconds = parseSeconds(value);
+                    break;
+                case "s-maxage":
+                    parsed.sharedMaxAgeSeconds = parseSeconds(value);
+                    break;
+                case "stale-while-revalidate":
+                    parsed.staleWhileRevalidateSeconds = parseSeconds(value);
+                    break;
+                case "stale-if-error":
+                    parsed.staleIfErrorSeconds = parseSeconds(value);
+                    break;
+                case "must-revalidate":
+                case "proxy-revalidate":
+                    parsed.mustRevalidate = true;
+                    break;
+                case "no-store":
+                    parsed.noStore = true;
+                    break;
+                case "no-cache":
+                    parsed.noCache = true;
+                    break;
+                case "private":
+                    parsed.privateResponse = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Split a header value on the commas that are not quoted.
+     *
+     * @param value header value
+     * @return directives
+     */
+    private static List<String> split(final String value) {
+        List<String> directives = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                directives.add(value.substring(start, i));
+                start = i + 1;
+            }
+        }
+        directives.add(value.substring(start));
+        return directives;
+    }
+
+    /**
+     * Remove the quotes around a directive value.
+     *
+     * @param value directive value
+     * @return unquoted value
+     */
+    private static String unquote(final String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Parse delta seconds.
+     *
+     * @param value delta seconds, possibly null
+     * @return seconds, 0 if the value is not a number
+     */
+    private static long parseSeconds(final String value) {
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Get {@code max-age}.
+     *
+     * @return {@code max-age} in seconds, -1 if absent
+     */
+    long getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    /**
+     * Get {@code s-maxage}.
+     *
+     * @return {@code s-maxage} in seconds, -1 if absent
+     */
+    long getSharedMaxAgeSeconds() {
+        return sharedMaxAgeSeconds;
+    }
+
+    /**
+     * Get {@code stale-while-revalidate}.
+     *
+     * @return {@code stale-while-revalidate} in seconds, -1 if absent
+     */
+    long getStaleWhileRevalidateSeconds() {
+        return staleWhileRevalidateSeconds;
+    }
+
+    /**
+     * Get {@code stale-if-error}.
+     *
+     * @return {@code stale-if-error} in seconds, -1 if absent
+     */
+    long getStaleIfErrorSeconds() {
+        return staleIfErrorSeconds;
+    }
+
+    /**
+     * Whether {@code no-store} is set.
+     *
+     * @return true if {@code no-store} is set
+     */
+    boolean isNoStore() {
+        return noStore;
+    }
+
+    /**
+     * Whether {@code no-cache} is set.
+     *
+     * @return true if {@code no-cache} is set
+     */
+    boolean isNoCache() {
+        return noCache;
+    }
+
+    /**
+     * Whether {@code private} is set.
+     *
+     * @return true if {@code private} is set
+     */
+    boolean isPrivate() {
+        return privateResponse;
+    }
+
+    /**
+     * Whether {@code must-revalidate} or {@code proxy-revalidate} is set.
+     *
+     * @return true if a stale response must not be used without revalidating it
+     */
+    boolean isMustRevalidate() {
+        return mustRevalidate;
+    }
+}
@@ -0,0 +1,355 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import javax.ws.rs.core.Response;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Response kept in {@link ParsecAsyncHttpResponseLoadingCache}, with how long it is fresh, how long it may be
+ * served stale and what is needed to revalidate it. Times are read from the ticker of the cache, in nanoseconds.
+ */
+final class ParsecCacheEntry {
+
+    /**
+     * Response.
+     */
+    private final Response response;
+
+    /**
+     * Time until which the response is fresh.
+     */
+    private final long freshUntilNanos;
+
+    /**
+     * Time until which the stale response is served while it is revalidated in the background.
+     */
+    private final long staleWhileRevalidateUntilNanos;
+
+    /**
+     * Time until which the stale response is served when revalidating it fails.
+     */
+    private final long staleIfErrorUntilNanos;
+
+    /**
+     * Time at which the entry is removed from the cache.
+     */
+    private final long expireAtNanos;
+
+    /**
+     * {@code ETag} of the response, null if none.
+     */
+    private final String eTag;
+
+    /**
+     * {@code Last-Modified} of the response, null if none.
+     */
+    private final String lastModified;
+
+    /**
+     * Values of the request headers the response varies on by header name, null if it does not vary.
+     */
+    private final Map<String, String> varyHeaders;
+
+    /**
+     * Whether the entry is a negative one, kept for the negative TTL.
+     */
+    private final boolean negative;
+
+    /**
+     * Failure kept instead of a response, null if none.
+     */
+    private final Throwable failure;
+
+    /**
+     * Revalidation in flight, null if none.
+     */
+    private final AtomicReference<CompletableFuture<ParsecCacheEntry>> revalidation = new AtomicReference<>();
+
+    /**
+     * Constructor.
+     *
+     * @param response                       response
+     * @param freshUntilNanos                time until which the response is fresh
+     * @param staleWhileRevalidateUntilNanos time until which the stale response is served while it is revalidated
+     * @param staleIfErrorUntilNanos         time until which the stale response is served when revalidating fails
+     * @param expireAtNanos                  time at which the entry is removed from the cache
+     * @param eTag                           {@code ETag} of the response, null if none
+     * @param lastModified                   {@code Last-Modified} of the response, null if none
+     * @param varyHeaders                    values of the request headers the response varies on, null if it does
+     *                                       not vary
+     */
+    ParsecCacheEntry(
+        final Response response,
+        final long freshUntilNanos,
+        final long staleWhileRevalidateUntilNanos,
+        final long staleIfErrorUntilNanos,
+        final long expireAtNanos,
+        final String eTag,
+        final String lastModified,
+        final Map<String, String> varyHeaders
+    ) {
+        this(response, freshUntilNanos, staleWhileRevalidateUntilNanos, staleIfErrorUntilNanos, expireAtNanos,
+            eTag, lastModified, varyHeaders, false, null);
+    }
+
+    /**
+     * Constructor of a negative entry, fresh until it is removed from the cache, with no stale windows and
+     * no validator.
+     *
+     * @param response      response, null if the entry keeps a failure
+     * @param failure       failure, null if the entry keeps a response
+     * @param expireAtNanos time at which the entry is removed from the cache
+     * @param varyHeaders   values of the request headers the response varies on, null if it does not vary
+     */
+    ParsecCacheEntry(
+        final Response response,
+        final Throwable failure,
+        final long expireAtNanos,
+        final Map<String, String> varyHeaders
+    ) {
+        this(response, expireAtNanos, expireAtNanos, expireAtNanos, expireAtNanos, null, null, varyHeaders, true,
+            failure);
+    }
+
+    /**
+     * Private constructor.
+     *
+     * @param response                       response
+     * @param freshUntilNanos                time until which the response is fresh
+     * @param staleWhileRevalidateUntilNanos time until which the stale response is served while it is revalidated
+     * @param staleIfErrorUntilNanos         time until which the stale response is served when revalidating fails
+     * @param expireAtNanos                  time at which the entry is removed from the cache
+     * @param eTag                           {@code ETag} of the response, null if none
+     * @param lastModified                   {@code Last-Modified} of the response, null if none
+     * @param varyHeaders                    values of the request headers the response varies on, null if it does
+     *                                       not vary
+     * @param negative                       whether the entry is a negative one
+     * @param failure                        failure, null if the entry keeps a response
+     */
+    private ParsecCacheEntry(
+        final Response response,
+        final long freshUntilNanos,
+        final long staleWhileRevalidateUntilNanos,
+        final long staleIfErrorUntilNanos,
+        final long expireAtNanos,
+        final String eTag,
+        final String lastModified,
+        final Map<String, String> varyHeaders,
+        final boolean negative,
+        final Throwable failure
+    ) {
+        this.response = response;
+        this.freshUntilNanos = freshUntilNanos;
+        this.staleWhileRevalidateUntilNanos = staleWhileRevalidateUntilNanos;
+        this.staleIfErrorUntilNanos = staleIfErrorUntilNanos;
+        this.expireAtNanos = expireAtNanos;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.varyHeaders = varyHeaders;
+        this.negative = negative;
+        this.failure = failure;
+    }
+
+    /**
+     * Get a copy of the entry with another response, e.g. to keep the response elsewhere.
+     *
+     * @param newResponse response of the copy, possibly null
+     * @return copy of the entry
+     */
+    ParsecCacheEntry withResponse(final Response newResponse) {
+        return new ParsecCacheEntry(newResponse, freshUntilNanos, staleWhileRevalidateUntilNanos,
+            staleIfErrorUntilNanos, expireAtNanos, eTag, lastModified, varyHeaders, negative, failure);
+    }
+
+    /**
+     * Get response.
+     *
+     * @return response, null if the entry keeps a failure
+     */
+    Response getResponse() {
+        return response;
+    }
+
+    /**
+     * Get failure.
+     *
+     * @return failure, null if the entry keeps a response
+     */
+    Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Whether the entry is a negative one, i.e. a response with a negative status code or a failure.
+     *
+     * @return true if the entry is kept for the negative TTL
+     */
+    boolean isNegative() {
+        return negative;
+    }
+
+    /**
+     * Get the time until which the response is fresh.
+     *
+     * @return time in nanoseconds
+     */
+    long getFreshUntilNanos() {
+        return freshUntilNanos;
+    }
+
+    /**
+     * Get the time until which the stale response is served while it is revalidated in the background.
+     *
+     * @return time in nanoseconds
+     */
+    long getStaleWhileRevalidateUntilNanos() {
+        return staleWhileRevalidateUntilNanos;
+    }
+
+    /**
+     * Get the time until which the stale response is served when revalidating it fails.
+     *
+     * @return time in nanoseconds
+     */
+    long getStaleIfErrorUntilNanos() {
+        return staleIfErrorUntilNanos;
+    }
+
+    /**
+     * Get the time at which the entry is removed from the cache.
+     *
+     * @return time in nanoseconds
+     */
+    long getExpireAtNanos() {
+        return expireAtNanos;
+    }
+
+    /**
+     * Get {@code ETag}.
+     *
+     * @return {@code ETag}, null if none
+     */
+    String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Get {@code Last-Modified}.
+     *
+     * @return {@code Last-Modified}, null if none
+     */
+    String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the values of the request headers the response varies on.
+     *
+     * @return header values by header name, null if the response does not vary
+     */
+    Map<String, String> getVaryHeaders() {
+        return varyHeaders;
+    }
+
+    /**
+     * Whether the response is fresh.
+     *
+     * @param nowNanos current time
+     * @return true if the response is fresh
+     */
+    boolean isFresh(final long nowNanos) {
+        return isBefore(nowNanos, freshUntilNanos);
+    }
+
+    /**
+     * Whether the stale response may be served while it is revalidated in the background.
+     *
+     * @param nowNanos current time
+     * @return true if the stale response may be served
+     */
+    boolean isStaleWhileRevalidate(final long nowNanos) {
+        return isBefore(nowNanos, staleWhileRevalidateUntilNanos);
+    }
+
+    /**
+     * Whether the stale response may be served when revalidating it fails.
+     *
+     * @param nowNanos current time
+     * @return true if the stale response may be served
+     */
+    boolean isStaleIfError(final long nowNanos) {
+        return isBefore(nowNanos, staleIfErrorUntilNanos);
+    }
+
+    /**
+     * Whether a time is before a deadline, {@link Long#MAX_VALUE} meaning no deadline.
+     *
+     * @param nowNanos      time
+     * @param deadlineNanos deadline
+     * @return true if the time is before the deadline
+     */
+    private static boolean isBefore(final long nowNanos, final long deadlineNanos) {
+        return deadlineNanos == Long.MAX_VALUE || nowNanos - deadlineNanos < 0;
+    }
+
+    /**
+     * Whether the response can be revalidated with a conditional request.
+     *
+     * @return true if the response has an {@code ETag} or a {@code Last-Modified}
+     */
+    boolean hasValidator() {
+        return eTag != null || lastModified != null;
+    }
+
+    /**
+     * Whether the response may be used for a request, i.e. the request has the same values as the request that
+     * got the response for the headers the response varies on.
+     *
+     * @param request request
+     * @return true if the response may be used for the request
+     */
+    boolean matches(final ParsecAsyncHttpRequest request) {
+        if (varyHeaders == null) {
+            return true;
+        }
+
+        for (Map.Entry<String, String> header : varyHeaders.entrySet()) {
+            if (!Objects.equals(request.getHeaderString(header.getKey()), header.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start a revalidation of the entry, unless one is in flight.
+     *
+     * @param future future of the revalidation to start
+     * @return future of the revalidation in flight, null if the given one was started
+     */
+    CompletableFuture<ParsecCacheEntry> startRevalidation(final CompletableFuture<ParsecCacheEntry> future) {
+        while (true) {
+            CompletableFuture<ParsecCacheEntry> current = revalidation.get();
+            if (current != null) {
+                return current;
+            }
+            if (revalidation.compareAndSet(null, future)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Mark a revalidation of the entry as done, so another may be started.
+     *
+     * @param future future of the revalidation
+     */
+    void finishRevalidation(final CompletableFuture<ParsecCacheEntry> future) {
+        revalidation.compareAndSet(future, null);
+    }
+}
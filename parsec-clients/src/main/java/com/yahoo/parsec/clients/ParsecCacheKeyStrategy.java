@@ -0,0 +1,18 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Strategy that decides which requests share a response in the client response cache.
+ */
+public interface ParsecCacheKeyStrategy {
+
+    /**
+     * Get the cache key of a request. Requests with equal keys share the cached response.
+     *
+     * @param request request
+     * @return cache key, implementing {@code equals} and {@code hashCode}
+     */
+    Object getCacheKey(ParsecAsyncHttpRequest request);
+}
@@ -0,0 +1,472 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot file of the entries of {@link ParsecAsyncHttpResponseLoadingCache}, to start warm after a restart.
+ *
+ * <p>The file is gzipped binary: a header with the wall clock time of the snapshot, then for each entry the request
+ * fields that identify it, the time left until each deadline of the entry and its response. Entries are reloaded
+ * with the time elapsed since the snapshot taken off their deadlines, and requests are rebuilt with the default
+ * name resolver, retry backoff policy and hedging settings, which then also apply to their refreshes. Failures kept
+ * by negative caching are not saved.</p>
+ *
+ * <p>Requests carrying credentials, i.e. authorization or cookie headers, cookies or user info in the URL, are not
+ * saved. Responses are saved as they are, so the file is only readable by its owner where the file system allows.</p>
+ */
+final class ParsecCacheSnapshot {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecCacheSnapshot.class);
+
+    /**
+     * Magic number at the start of a snapshot.
+     */
+    private static final int MAGIC = 0x50435348;
+
+    /**
+     * Snapshot format version.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Maximum length of a string or response read from a snapshot.
+     */
+    static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Size of the chunks bytes are read in.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Time left of a deadline that never comes.
+     */
+    private static final long NO_DEADLINE = -1;
+
+    /**
+     * Request headers that carry credentials.
+     */
+    private static final List<String> CREDENTIAL_HEADERS =
+        Arrays.asList(HttpHeaders.AUTHORIZATION, "Proxy-Authorization", HttpHeaders.COOKIE);
+
+    /**
+     * Permissions of a snapshot file on POSIX file systems.
+     */
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    /**
+     * Private constructor.
+     */
+    private ParsecCacheSnapshot() {
+
+    }
+
+    /**
+     * Write a snapshot, replacing the file atomically.
+     *
+     * @param file      snapshot file
+     * @param entries   cache entries by cache key
+     * @param nowNanos  current time of the cache ticker
+     * @param nowMillis current wall clock time
+     * @return number of entries written
+     * @throws IOException IO exception
+     */
+    static int write(
+        final Path file,
+        final Map<ParsecRequestKey, ParsecCacheEntry> entries,
+        final long nowNanos,
+        final long nowMillis
+    ) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.getFileSystem().supportedFileAttributeViews().contains("posix")
+            ? Files.createTempFile(directory, file.getFileName().toString(), ".tmp",
+                PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS))
+            : Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        int count = 0;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(nowMillis);
+                for (Map.Entry<ParsecRequestKey, ParsecCacheEntry> entry : entries.entrySet()) {
+                    ParsecCacheEntry cacheEntry = entry.getValue();
+                    long expireIn = getTimeLeft(cacheEntry.getExpireAtNanos(), nowNanos);
+                    if (cacheEntry.getResponse() == null || expireIn == 0
+                        || hasCredentials(entry.getKey().getRequest())) {
+                        continue;
+                    }
+                    byte[] response = ParsecResponseCodec.toBytes(cacheEntry.getResponse());
+                    if (response == null) {
+                        continue;
+                    }
+
+                    out.writeBoolean(true);
+                    writeRequest(out, entry.getKey().getRequest());
+                    writeEntry(out, cacheEntry, nowNanos);
+                    out.writeInt(response.length);
+                    out.write(response);
+                    count++;
+                }
+                out.writeBoolean(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return count;
+    }
+
+    /**
+     * Read a snapshot. Entries that expired since, or whose request cannot be rebuilt, are skipped.
+     *
+     * @param file      snapshot file
+     * @param nowNanos  current time of the cache ticker
+     * @param nowMillis current wall clock time
+     * @return cache entries by request
+     * @throws IOException IO exception, e.g. if the file is not a snapshot or is truncated or corrupt, in which case
+     *                     none of its entries are read
+     */
+    static Map<ParsecAsyncHttpRequest, ParsecCacheEntry> read(
+        final Path file,
+        final long nowNanos,
+        final long nowMillis
+    ) throws IOException {
+        Map<ParsecAsyncHttpRequest, ParsecCacheEntry> entries = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a cache snapshot of this version: " + file);
+            }
+            long elapsedNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMillis - in.readLong()));
+            long startNanos = nowNanos - elapsedNanos;
+
+            while (in.readBoolean()) {
+                ParsecAsyncHttpRequest request = readRequest(in);
+                ParsecCacheEntry entry = readEntry(in, startNanos);
+                if (request != null && (entry.getExpireAtNanos() == Long.MAX_VALUE
+                    || entry.getExpireAtNanos() - nowNanos > 0)) {
+                    entries.put(request, entry);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt cache snapshot: " + file, e);
+        }
+        return entries;
+    }
+
+    /**
+     * Whether a request carries credentials, which are not saved.
+     *
+     * @param request request
+     * @return true if the request has an authorization or cookie header, cookies or user info in its URL
+     */
+    private static boolean hasCredentials(final ParsecAsyncHttpRequest request) {
+        if (!request.getCookies().isEmpty()) {
+            return true;
+        }
+        for (String header : request.getHeaders().keySet()) {
+            if (CREDENTIAL_HEADERS.stream().anyMatch(header::equalsIgnoreCase)) {
+                return true;
+            }
+        }
+        try {
+            return request.getUri().getRawUserInfo() != null;
+        } catch (URISyntaxException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Write the fields of a request that identify it. Cookies are not written, requests with cookies are not saved.
+     *
+     * @param out     output
+     * @param request request
+     * @throws IOException IO exception
+     */
+    private static void writeRequest(final DataOutputStream out, final ParsecAsyncHttpRequest request)
+        throws IOException {
+        out.writeUTF(request.getMethod());
+        writeString(out, request.getUrl());
+        writeNullableString(out, request.getVirtualHost());
+
+        Map<String, List<String>> headers = request.getHeaders();
+        out.writeInt(headers.values().stream().mapToInt(List::size).sum());
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                writeString(out, header.getKey());
+                writeString(out, value);
+            }
+        }
+
+        writeNullableString(out, request.getBody());
+        out.writeBoolean(request.isFollowRedirect());
+        out.writeInt(request.getRequestTimeout());
+        out.writeInt(request.getMaxRetries());
+        out.writeInt(request.getRetryStatusCodes().size());
+        for (int statusCode : request.getRetryStatusCodes()) {
+            out.writeInt(statusCode);
+        }
+        out.writeInt(request.getRetryExceptions().size());
+        for (Class<? extends Throwable> exception : request.getRetryExceptions()) {
+            out.writeUTF(exception.getName());
+        }
+        out.writeBoolean(request.isAcceptCompression());
+        out.writeLong(request.getCacheTtlMillis());
+    }
+
+    /**
+     * Read and rebuild a request written by {@link #writeRequest(DataOutputStream, ParsecAsyncHttpRequest)}.
+     *
+     * @param in input
+     * @return request, null if it cannot be rebuilt
+     * @throws IOException IO exception
+     */
+    private static ParsecAsyncHttpRequest readRequest(final DataInputStream in) throws IOException {
+        ParsecAsyncHttpRequest.Builder builder = new ParsecAsyncHttpRequest.Builder()
+            .setMethod(in.readUTF());
+        String url = readString(in);
+        String virtualHost = readNullableString(in);
+        if (virtualHost != null) {
+            builder.setVirtualHost(virtualHost);
+        }
+
+        int headerCount = in.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            builder.addHeader(readString(in), readString(in));
+        }
+
+        String body = readNullableString(in);
+        if (body != null) {
+            builder.setBody(body);
+        }
+        builder.setFollowRedirects(in.readBoolean())
+            .setRequestTimeout(in.readInt())
+            .setMaxRetries(in.readInt());
+        int retryStatusCodeCount = in.readInt();
+        for (int i = 0; i < retryStatusCodeCount; i++) {
+            builder.addRetryStatusCode(in.readInt());
+        }
+
+        boolean rebuildable = true;
+        int retryExceptionCount = in.readInt();
+        for (int i = 0; i < retryExceptionCount; i++) {
+            String exception = in.readUTF();
+            try {
+                builder.addRetryException(Class.forName(exception).asSubclass(Exception.class));
+            } catch (ClassNotFoundException | ClassCastException e) {
+                LOGGER.debug("Skipping cache snapshot entry with unknown retry exception {}", exception);
+                rebuildable = false;
+            }
+        }
+        builder.setAcceptCompression(in.readBoolean());
+        long cacheTtlMillis = in.readLong();
+        if (cacheTtlMillis >= 0) {
+            builder.setCacheTtl(cacheTtlMillis);
+        }
+
+        if (!rebuildable) {
+            return null;
+        }
+        try {
+            return builder.setUrl(url).build();
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Skipping cache snapshot entry with invalid URL {}", url);
+            return null;
+        }
+    }
+
+    /**
+     * Write the deadlines and validators of an entry.
+     *
+     * @param out      output
+     * @param entry    cache entry
+     * @param nowNanos current time of the cache ticker
+     * @throws IOException IO exception
+     */
+    private static void writeEntry(final DataOutputStream out, final ParsecCacheEntry entry, final long nowNanos)
+        throws IOException {
+        out.writeBoolean(entry.isNegative());
+        out.writeLong(getTimeLeft(entry.getFreshUntilNanos(), nowNanos));
+        out.writeLong(getTimeLeft(entry.getStaleWhileRevalidateUntilNanos(), nowNanos));
+        out.writeLong(getTimeLeft(entry.getStaleIfErrorUntilNanos(), nowNanos));
+        out.writeLong(getTimeLeft(entry.getExpireAtNanos(), nowNanos));
+        writeNullableString(out, entry.getETag());
+        writeNullableString(out, entry.getLastModified());
+
+        Map<String, String> varyHeaders = entry.getVaryHeaders();
+        out.writeInt(varyHeaders == null ? -1 : varyHeaders.size());
+        if (varyHeaders != null) {
+            for (Map.Entry<String, String> header : varyHeaders.entrySet()) {
+                writeString(out, header.getKey());
+                writeNullableString(out, header.getValue());
+            }
+        }
+    }
+
+    /**
+     * Read an entry written by {@link #writeEntry(DataOutputStream, ParsecCacheEntry, long)} and its response.
+     *
+     * @param in         input
+     * @param startNanos time of the cache ticker the times left are counted from
+     * @return cache entry
+     * @throws IOException IO exception
+     */
+    private static ParsecCacheEntry readEntry(final DataInputStream in, final long startNanos) throws IOException {
+        boolean negative = in.readBoolean();
+        long freshUntil = getDeadline(in.readLong(), startNanos);
+        long staleWhileRevalidateUntil = getDeadline(in.readLong(), startNanos);
+        long staleIfErrorUntil = getDeadline(in.readLong(), startNanos);
+        long expireAt = getDeadline(in.readLong(), startNanos);
+        String eTag = readNullableString(in);
+        String lastModified = readNullableString(in);
+
+        Map<String, String> varyHeaders = null;
+        int varyHeaderCount = in.readInt();
+        if (varyHeaderCount >= 0) {
+            varyHeaders = new HashMap<>();
+            for (int i = 0; i < varyHeaderCount; i++) {
+                varyHeaders.put(readString(in), readNullableString(in));
+            }
+        }
+
+        Response response = ParsecResponseCodec.decode(new ByteArrayInputStream(readBytes(in)));
+        if (negative) {
+            return new ParsecCacheEntry(response, null, expireAt, varyHeaders);
+        }
+        return new ParsecCacheEntry(response, freshUntil, staleWhileRevalidateUntil, staleIfErrorUntil, expireAt,
+            eTag, lastModified, varyHeaders);
+    }
+
+    /**
+     * Get the time left until a deadline.
+     *
+     * @param deadlineNanos deadline, {@link Long#MAX_VALUE} meaning no deadline
+     * @param nowNanos      current time
+     * @return time left in nanoseconds, 0 if past, {@link #NO_DEADLINE} if no deadline
+     */
+    private static long getTimeLeft(final long deadlineNanos, final long nowNanos) {
+        return deadlineNanos == Long.MAX_VALUE ? NO_DEADLINE : Math.max(0, deadlineNanos - nowNanos);
+    }
+
+    /**
+     * Get a deadline from the time left until it.
+     *
+     * @param timeLeftNanos time left in nanoseconds, {@link #NO_DEADLINE} if no deadline
+     * @param startNanos    time the time left is counted from
+     * @return deadline, {@link Long#MAX_VALUE} meaning no deadline
+     */
+    private static long getDeadline(final long timeLeftNanos, final long startNanos) {
+        return timeLeftNanos == NO_DEADLINE ? Long.MAX_VALUE : startNanos + timeLeftNanos;
+    }
+
+    /**
+     * Write a string of any length.
+     *
+     * @param out   output
+     * @param value string
+     * @throws IOException IO exception
+     */
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in input
+     * @return string
+     * @throws IOException IO exception
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read bytes written after their length. The bytes are read in chunks, so that a corrupt length fails at the end
+     * of the file instead of allocating it upfront.
+     *
+     * @param in input
+     * @return bytes
+     * @throws IOException IO exception, e.g. if the length is negative or over {@link #MAX_LENGTH}
+     */
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid length in cache snapshot: " + length);
+        }
+        if (length <= CHUNK_SIZE) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+            in.readFully(chunk, 0, Math.min(remaining, chunk.length));
+            bytes.write(chunk, 0, Math.min(remaining, chunk.length));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a string, possibly null.
+     *
+     * @param out   output
+     * @param value string, possibly null
+     * @throws IOException IO exception
+     */
+    private static void writeNullableString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Read a string written by {@link #writeNullableString(DataOutputStream, String)}.
+     *
+     * @param in input
+     * @return string, possibly null
+     * @throws IOException IO exception
+     */
+    private static String readNullableString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+}
@@ -0,0 +1,350 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import javax.ws.rs.core.Response;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Synchronous view of the response cache keyed by request, over the cache of entries keyed by cache key.
+ *
+ * <p>Requests are mapped to their cache keys by the key strategy of the cache, and entries to their responses.
+ * Entries that keep a failure, from negative caching, are not present in the view.</p>
+ */
+final class ParsecCacheSynchronousView implements LoadingCache<ParsecAsyncHttpRequest, Response> {
+
+    /**
+     * Response cache.
+     */
+    private final ParsecAsyncHttpResponseLoadingCache cache;
+
+    /**
+     * Cache of entries keyed by cache key.
+     */
+    private final LoadingCache<ParsecRequestKey, ParsecCacheEntry> entries;
+
+    /**
+     * Maps a request to its cache key.
+     */
+    private final Function<ParsecAsyncHttpRequest, ParsecRequestKey> keyFunction;
+
+    /**
+     * Makes the cache entry of a response.
+     */
+    private final BiFunction<ParsecRequestKey, Response, ParsecCacheEntry> entryFunction;
+
+    /**
+     * Map view, created on first use.
+     */
+    private ConcurrentMap<ParsecAsyncHttpRequest, Response> mapView;
+
+    /**
+     * Constructor.
+     *
+     * @param cache         response cache
+     * @param entries       cache of entries keyed by cache key
+     * @param keyFunction   maps a request to its cache key
+     * @param entryFunction makes the cache entry of a response
+     */
+    ParsecCacheSynchronousView(
+        final ParsecAsyncHttpResponseLoadingCache cache,
+        final LoadingCache<ParsecRequestKey, ParsecCacheEntry> entries,
+        final Function<ParsecAsyncHttpRequest, ParsecRequestKey> keyFunction,
+        final BiFunction<ParsecRequestKey, Response, ParsecCacheEntry> entryFunction
+    ) {
+        this.cache = cache;
+        this.entries = entries;
+        this.keyFunction = keyFunction;
+        this.entryFunction = entryFunction;
+    }
+
+    /**
+     * Get the cache key of an object looked up in the view.
+     *
+     * @param object object
+     * @return cache key, or null if the object is not a request
+     */
+    private ParsecRequestKey toKey(final Object object) {
+        return object instanceof ParsecAsyncHttpRequest ? keyFunction.apply((ParsecAsyncHttpRequest) object) : null;
+    }
+
+    /**
+     * Get the response of an entry.
+     *
+     * @param entry cache entry, possibly null
+     * @return response, or null if there is no entry or it keeps a failure
+     */
+    private static Response toResponse(final ParsecCacheEntry entry) {
+        return entry == null || entry.getFailure() != null ? null : entry.getResponse();
+    }
+
+    @Override
+    public Response get(final ParsecAsyncHttpRequest request) {
+        return cache.get(request).join();
+    }
+
+    @Override
+    public Map<ParsecAsyncHttpRequest, Response> getAll(final Iterable<? extends ParsecAsyncHttpRequest> requests) {
+        Map<ParsecAsyncHttpRequest, Response> responses = new HashMap<>();
+        for (ParsecAsyncHttpRequest request : requests) {
+            responses.put(request, get(request));
+        }
+        return responses;
+    }
+
+    @Override
+    public void refresh(final ParsecAsyncHttpRequest request) {
+        entries.refresh(keyFunction.apply(request));
+    }
+
+    @Override
+    public Response getIfPresent(final Object request) {
+        ParsecRequestKey key = toKey(request);
+        return key == null ? null : toResponse(entries.getIfPresent(key));
+    }
+
+    @Override
+    public Response get(
+        final ParsecAsyncHttpRequest request,
+        final Function<? super ParsecAsyncHttpRequest, ? extends Response> mappingFunction
+    ) {
+        return toResponse(entries.get(keyFunction.apply(request), key -> {
+            Response response = mappingFunction.apply(request);
+            return response == null ? null : entryFunction.apply(key, response);
+        }));
+    }
+
+    @Override
+    public Map<ParsecAsyncHttpRequest, Response> getAllPresent(final Iterable<?> requests) {
+        Map<ParsecAsyncHttpRequest, Response> responses = new HashMap<>();
+        for (Object request : requests) {
+            Response response = getIfPresent(request);
+            if (response != null) {
+                responses.put((ParsecAsyncHttpRequest) request, response);
+            }
+        }
+        return responses;
+    }
+
+    @Override
+    public void put(final ParsecAsyncHttpRequest request, final Response response) {
+        ParsecRequestKey key = keyFunction.apply(request);
+        entries.put(key, entryFunction.apply(key, response));
+    }
+
+    @Override
+    public void putAll(final Map<? extends ParsecAsyncHttpRequest, ? extends Response> responses) {
+        responses.forEach(this::put);
+    }
+
+    @Override
+    public void invalidate(final Object request) {
+        ParsecRequestKey key = toKey(request);
+        if (key != null) {
+            entries.invalidate(key);
+        }
+    }
+
+    @Override
+    public void invalidateAll(final Iterable<?> requests) {
+        requests.forEach(this::invalidate);
+    }
+
+    @Override
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    @Override
+    public long estimatedSize() {
+        return entries.estimatedSize();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return entries.stats();
+    }
+
+    @Override
+    public synchronized ConcurrentMap<ParsecAsyncHttpRequest, Response> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    @Override
+    public void cleanUp() {
+        entries.cleanUp();
+    }
+
+    /**
+     * Not supported, the eviction and expiration of the cache are set by its builder.
+     *
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Policy<ParsecAsyncHttpRequest, Response> policy() {
+        throw new UnsupportedOperationException("Cache policy is set by ParsecAsyncHttpResponseLoadingCache.Builder");
+    }
+
+    /**
+     * Map view of the responses by request.
+     */
+    private final class MapView extends AbstractMap<ParsecAsyncHttpRequest, Response>
+        implements ConcurrentMap<ParsecAsyncHttpRequest, Response> {
+
+        /**
+         * Map of entries keyed by cache key.
+         */
+        private final ConcurrentMap<ParsecRequestKey, ParsecCacheEntry> map = entries.asMap();
+
+        @Override
+        public Response get(final Object request) {
+            return getIfPresent(request);
+        }
+
+        @Override
+        public boolean containsKey(final Object request) {
+            return getIfPresent(request) != null;
+        }
+
+        @Override
+        public Response put(final ParsecAsyncHttpRequest request, final Response response) {
+            ParsecRequestKey key = keyFunction.apply(request);
+            return toResponse(map.put(key, entryFunction.apply(key, response)));
+        }
+
+        @Override
+        public Response putIfAbsent(final ParsecAsyncHttpRequest request, final Response response) {
+            ParsecRequestKey key = keyFunction.apply(request);
+            return toResponse(map.putIfAbsent(key, entryFunction.apply(key, response)));
+        }
+
+        @Override
+        public Response remove(final Object request) {
+            ParsecRequestKey key = toKey(request);
+            return key == null ? null : toResponse(map.remove(key));
+        }
+
+        @Override
+        public boolean remove(final Object request, final Object response) {
+            ParsecRequestKey key = toKey(request);
+            ParsecCacheEntry entry = key == null ? null : map.get(key);
+            return entry != null && response != null && response == toResponse(entry) && map.remove(key, entry);
+        }
+
+        @Override
+        public boolean replace(final ParsecAsyncHttpRequest request, final Response oldResponse,
+                               final Response newResponse) {
+            ParsecRequestKey key = keyFunction.apply(request);
+            ParsecCacheEntry entry = map.get(key);
+            return entry != null && oldResponse != null && oldResponse == toResponse(entry)
+                && map.replace(key, entry, entryFunction.apply(key, newResponse));
+        }
+
+        @Override
+        public Response replace(final ParsecAsyncHttpRequest request, final Response response) {
+            ParsecRequestKey key = keyFunction.apply(request);
+            return toResponse(map.replace(key, entryFunction.apply(key, response)));
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public int size() {
+            return entrySet().size();
+        }
+
+        @Override
+        public Set<Entry<ParsecAsyncHttpRequest, Response>> entrySet() {
+            return new AbstractSet<Entry<ParsecAsyncHttpRequest, Response>>() {
+                @Override
+                public Iterator<Entry<ParsecAsyncHttpRequest, Response>> iterator() {
+                    return new EntryIterator(map.entrySet().iterator());
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (ParsecCacheEntry entry : map.values()) {
+                        if (toResponse(entry) != null) {
+                            size++;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Iterator over the responses by request, skipping the entries that keep a failure.
+     */
+    private static final class EntryIterator implements Iterator<Map.Entry<ParsecAsyncHttpRequest, Response>> {
+
+        /**
+         * Iterator over the entries by cache key.
+         */
+        private final Iterator<Map.Entry<ParsecRequestKey, ParsecCacheEntry>> iterator;
+
+        /**
+         * Next response by request, or null if not found yet.
+         */
+        private Map.Entry<ParsecAsyncHttpRequest, Response> next;
+
+        /**
+         * Constructor.
+         *
+         * @param iterator iterator over the entries by cache key
+         */
+        private EntryIterator(final Iterator<Map.Entry<ParsecRequestKey, ParsecCacheEntry>> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && iterator.hasNext()) {
+                Map.Entry<ParsecRequestKey, ParsecCacheEntry> entry = iterator.next();
+                Response response = toResponse(entry.getValue());
+                if (response != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(entry.getKey().getRequest(), response);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<ParsecAsyncHttpRequest, Response> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<ParsecAsyncHttpRequest, Response> entry = next;
+            next = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one host, recording request outcomes over a count based sliding window.
+ *
+ * @see ParsecCircuitBreakerConfig
+ */
+final class ParsecCircuitBreaker {
+
+    /**
+     * Permission of a call sent while the circuit is closed.
+     */
+    static final long PERMITTED = 0;
+
+    /**
+     * No permission, the call should fail fast.
+     */
+    static final long NOT_PERMITTED = -1;
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecCircuitBreaker.class);
+
+    /**
+     * Outcome flag of a failed call.
+     */
+    private static final byte FAILED = 1;
+
+    /**
+     * Outcome flag of a slow call.
+     */
+    private static final byte SLOW = 2;
+
+    /**
+     * Host key.
+     */
+    private final String hostKey;
+
+    /**
+     * Config.
+     */
+    private final ParsecCircuitBreakerConfig config;
+
+    /**
+     * Clock in nanoseconds.
+     */
+    private final LongSupplier nanoClock;
+
+    /**
+     * Outcomes of the last calls, as {@link #FAILED} and {@link #SLOW} flags.
+     */
+    private final byte[] outcomes;
+
+    /**
+     * Number of outcomes recorded in the window.
+     */
+    private int recordedCount;
+
+    /**
+     * Index of the next outcome in the window.
+     */
+    private int nextIndex;
+
+    /**
+     * Number of failed calls in the window.
+     */
+    private int failedCount;
+
+    /**
+     * Number of slow calls in the window.
+     */
+    private int slowCount;
+
+    /**
+     * Current state.
+     */
+    private ParsecCircuitBreakerState state = ParsecCircuitBreakerState.CLOSED;
+
+    /**
+     * Time the circuit was opened.
+     */
+    private long openedAtNanos;
+
+    /**
+     * Number of probe calls let through in half open state.
+     */
+    private int halfOpenPermits;
+
+    /**
+     * Number of times the circuit went half open, which is the permission of the probe calls of the current half
+     * open state.
+     */
+    private long halfOpenGeneration;
+
+    /**
+     * Constructor.
+     *
+     * @param hostKey host key
+     * @param config  config
+     */
+    ParsecCircuitBreaker(String hostKey, ParsecCircuitBreakerConfig config) {
+        this(hostKey, config, System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param hostKey   host key
+     * @param config    config
+     * @param nanoClock clock in nanoseconds
+     */
+    ParsecCircuitBreaker(String hostKey, ParsecCircuitBreakerConfig config, LongSupplier nanoClock) {
+        this.hostKey = hostKey;
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.outcomes = new byte[config.getSlidingWindowSize()];
+    }
+
+    /**
+     * Get current state.
+     *
+     * @return state
+     */
+    synchronized ParsecCircuitBreakerState getState() {
+        return state;
+    }
+
+    /**
+     * Try to get permission to send a call. The permission is then passed with the outcome of the call.
+     *
+     * @return {@link #PERMITTED} if the circuit is closed, a positive permission owned by a probe call if it is half
+     * open, {@link #NOT_PERMITTED} if the call should fail fast
+     */
+    long tryAcquirePermission() {
+        ParsecCircuitBreakerState from;
+        long permission;
+        synchronized (this) {
+            from = state;
+            switch (state) {
+                case CLOSED:
+                    return PERMITTED;
+                case OPEN:
+                    long openNanos = nanoClock.getAsLong() - openedAtNanos;
+                    if (openNanos < TimeUnit.MILLISECONDS.toNanos(config.getWaitDurationInOpenStateMillis())) {
+                        return NOT_PERMITTED;
+                    }
+                    transitionTo(ParsecCircuitBreakerState.HALF_OPEN);
+                    halfOpenPermits = 1;
+                    permission = ++halfOpenGeneration;
+                    break;
+                default:
+                    if (halfOpenPermits >= config.getPermittedCallsInHalfOpenState()) {
+                        return NOT_PERMITTED;
+                    }
+                    halfOpenPermits++;
+                    return halfOpenGeneration;
+            }
+        }
+        notifyListeners(from, ParsecCircuitBreakerState.HALF_OPEN);
+        return permission;
+    }
+
+    /**
+     * Record the outcome of a call. In half open state, only the outcomes of its probe calls are recorded, not
+     * those of calls sent before.
+     *
+     * @param permission    permission of the call
+     * @param failed        whether the call failed
+     * @param durationNanos duration of the call in nanoseconds
+     */
+    void onResult(long permission, boolean failed, long durationNanos) {
+        boolean slow = durationNanos >= TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationThresholdMillis());
+        ParsecCircuitBreakerState from;
+        ParsecCircuitBreakerState to;
+        synchronized (this) {
+            if (state == ParsecCircuitBreakerState.OPEN || !isCurrentProbeOrClosed(permission)) {
+                return;
+            }
+            from = state;
+            record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+            to = evaluate();
+            if (to == from) {
+                return;
+            }
+            transitionTo(to);
+        }
+        notifyListeners(from, to);
+    }
+
+    /**
+     * Release the permission of a call that was abandoned, e.g. cancelled, without recording an outcome. Only a probe
+     * call of the current half open state gives its permit back.
+     *
+     * @param permission permission of the call
+     */
+    synchronized void onIgnored(long permission) {
+        if (state == ParsecCircuitBreakerState.HALF_OPEN && permission == halfOpenGeneration && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    /**
+     * Whether a call may record its outcome: any call while the circuit is closed, only a probe call of the
+     * current half open state while it is half open.
+     *
+     * @param permission permission of the call
+     * @return true if the outcome is recorded
+     */
+    private boolean isCurrentProbeOrClosed(long permission) {
+        return state != ParsecCircuitBreakerState.HALF_OPEN || permission == halfOpenGeneration;
+    }
+
+    /**
+     * Record an outcome in the sliding window.
+     *
+     * @param outcome outcome flags
+     */
+    private void record(byte outcome) {
+        if (recordedCount == outcomes.length) {
+            byte evicted = outcomes[nextIndex];
+            failedCount -= evicted & FAILED;
+            slowCount -= (evicted & SLOW) >> 1;
+        } else {
+            recordedCount++;
+        }
+        outcomes[nextIndex] = outcome;
+        failedCount += outcome & FAILED;
+        slowCount += (outcome & SLOW) >> 1;
+        nextIndex = (nextIndex + 1) % outcomes.length;
+    }
+
+    /**
+     * Evaluate the state the circuit should be in after recording an outcome.
+     *
+     * @return new state
+     */
+    private ParsecCircuitBreakerState evaluate() {
+        int minimumCalls = state == ParsecCircuitBreakerState.HALF_OPEN
+            ? Math.min(config.getPermittedCallsInHalfOpenState(), outcomes.length)
+            : config.getMinimumNumberOfCalls();
+        if (recordedCount < minimumCalls) {
+            return state;
+        }
+
+        float failureRate = failedCount * 100f / recordedCount;
+        float slowCallRate = slowCount * 100f / recordedCount;
+        if (failureRate >= config.getFailureRateThreshold() || slowCallRate >= config.getSlowCallRateThreshold()) {
+            LOGGER.warn("Opening circuit breaker for " + hostKey + ", failure rate: " + failureRate
+                + "%, slow call rate: " + slowCallRate + "%");
+            return ParsecCircuitBreakerState.OPEN;
+        }
+        return ParsecCircuitBreakerState.CLOSED;
+    }
+
+    /**
+     * Change state and reset the sliding window.
+     *
+     * @param to new state
+     */
+    private void transitionTo(ParsecCircuitBreakerState to) {
+        state = to;
+        if (to == ParsecCircuitBreakerState.OPEN) {
+            openedAtNanos = nanoClock.getAsLong();
+        }
+        recordedCount = 0;
+        nextIndex = 0;
+        failedCount = 0;
+        slowCount = 0;
+        halfOpenPermits = 0;
+    }
+
+    /**
+     * Notify listeners of a state transition.
+     *
+     * @param from previous state
+     * @param to   new state
+     */
+    private void notifyListeners(ParsecCircuitBreakerState from, ParsecCircuitBreakerState to) {
+        LOGGER.info("Circuit breaker for " + hostKey + " changed from " + from + " to " + to);
+        for (ParsecCircuitBreakerListener listener : config.getListeners()) {
+            try {
+                listener.onStateTransition(hostKey, from, to);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Circuit breaker listener failed", e);
+            }
+        }
+    }
+}
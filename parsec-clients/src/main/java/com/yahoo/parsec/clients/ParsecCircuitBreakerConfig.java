@@ -0,0 +1,334 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Configuration of the per host circuit breakers of {@link ParsecAsyncHttpClient}.
+ *
+ * <p>Outcomes of the last {@code slidingWindowSize} requests to each host are recorded. Once at least
+ * {@code minimumNumberOfCalls} are recorded, the circuit opens when the failure rate or the slow call rate reaches
+ * its threshold. A failure is an exception, or a 5xx response unless disabled. After {@code waitDurationInOpenState},
+ * {@code permittedCallsInHalfOpenState} probe requests are let through to decide whether to close or to open again.</p>
+ */
+public final class ParsecCircuitBreakerConfig {
+
+    /**
+     * Failure rate threshold in percent.
+     */
+    private final float failureRateThreshold;
+
+    /**
+     * Slow call rate threshold in percent.
+     */
+    private final float slowCallRateThreshold;
+
+    /**
+     * Duration above which a call is slow.
+     */
+    private final long slowCallDurationThresholdMillis;
+
+    /**
+     * Number of calls recorded.
+     */
+    private final int slidingWindowSize;
+
+    /**
+     * Minimum number of calls before rates are evaluated.
+     */
+    private final int minimumNumberOfCalls;
+
+    /**
+     * Time spent in open state before probing.
+     */
+    private final long waitDurationInOpenStateMillis;
+
+    /**
+     * Number of probe calls in half open state.
+     */
+    private final int permittedCallsInHalfOpenState;
+
+    /**
+     * Whether 5xx responses count as failures.
+     */
+    private final boolean recordServerErrors;
+
+    /**
+     * State transition listeners.
+     */
+    private final List<ParsecCircuitBreakerListener> listeners;
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private ParsecCircuitBreakerConfig(final Builder builder) {
+        failureRateThreshold = builder.failureRateThreshold;
+        slowCallRateThreshold = builder.slowCallRateThreshold;
+        slowCallDurationThresholdMillis = builder.slowCallDurationThresholdMillis;
+        slidingWindowSize = builder.slidingWindowSize;
+        minimumNumberOfCalls = Math.min(builder.minimumNumberOfCalls, builder.slidingWindowSize);
+        waitDurationInOpenStateMillis = builder.waitDurationInOpenStateMillis;
+        permittedCallsInHalfOpenState = builder.permittedCallsInHalfOpenState;
+        recordServerErrors = builder.recordServerErrors;
+        listeners = Collections.unmodifiableList(new ArrayList<>(builder.listeners));
+    }
+
+    /**
+     * Get failure rate threshold.
+     *
+     * @return Failure rate threshold in percent
+     */
+    public float getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * Get slow call rate threshold.
+     *
+     * @return Slow call rate threshold in percent
+     */
+    public float getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    /**
+     * Get slow call duration threshold.
+     *
+     * @return Slow call duration threshold in milliseconds
+     */
+    public long getSlowCallDurationThresholdMillis() {
+        return slowCallDurationThresholdMillis;
+    }
+
+    /**
+     * Get sliding window size.
+     *
+     * @return Sliding window size
+     */
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    /**
+     * Get minimum number of calls.
+     *
+     * @return Minimum number of calls
+     */
+    public int getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    /**
+     * Get wait duration in open state.
+     *
+     * @return Wait duration in open state in milliseconds
+     */
+    public long getWaitDurationInOpenStateMillis() {
+        return waitDurationInOpenStateMillis;
+    }
+
+    /**
+     * Get permitted calls in half open state.
+     *
+     * @return Permitted calls in half open state
+     */
+    public int getPermittedCallsInHalfOpenState() {
+        return permittedCallsInHalfOpenState;
+    }
+
+    /**
+     * Whether 5xx responses count as failures.
+     *
+     * @return true if 5xx responses count as failures
+     */
+    public boolean isRecordServerErrors() {
+        return recordServerErrors;
+    }
+
+    /**
+     * Get state transition listeners.
+     *
+     * @return State transition listeners
+     */
+    public List<ParsecCircuitBreakerListener> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Static Builder class for {@link ParsecCircuitBreakerConfig}.
+     */
+    public static class Builder {
+        /**
+         * Failure rate threshold in percent.
+         */
+        private float failureRateThreshold = 50;
+
+        /**
+         * Slow call rate threshold in percent.
+         */
+        private float slowCallRateThreshold = 100;
+
+        /**
+         * Duration above which a call is slow.
+         */
+        private long slowCallDurationThresholdMillis = 60000;
+
+        /**
+         * Number of calls recorded.
+         */
+        private int slidingWindowSize = 100;
+
+        /**
+         * Minimum number of calls before rates are evaluated.
+         */
+        private int minimumNumberOfCalls = 20;
+
+        /**
+         * Time spent in open state before probing.
+         */
+        private long waitDurationInOpenStateMillis = 10000;
+
+        /**
+         * Number of probe calls in half open state.
+         */
+        private int permittedCallsInHalfOpenState = 5;
+
+        /**
+         * Whether 5xx responses count as failures.
+         */
+        private boolean recordServerErrors = true;
+
+        /**
+         * State transition listeners.
+         */
+        private final List<ParsecCircuitBreakerListener> listeners = new ArrayList<>();
+
+        /**
+         * Set failure rate threshold, 50 by default.
+         *
+         * @param failureRateThreshold Failure rate threshold in percent
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setFailureRateThreshold(float failureRateThreshold) {
+            Preconditions.checkArgument(failureRateThreshold > 0 && failureRateThreshold <= 100,
+                "Failure rate threshold must be between 0 and 100");
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Set slow call rate threshold, 100 by default.
+         *
+         * @param slowCallRateThreshold Slow call rate threshold in percent
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setSlowCallRateThreshold(float slowCallRateThreshold) {
+            Preconditions.checkArgument(slowCallRateThreshold > 0 && slowCallRateThreshold <= 100,
+                "Slow call rate threshold must be between 0 and 100");
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Set slow call duration threshold, 60 seconds by default.
+         *
+         * @param slowCallDurationThresholdMillis Slow call duration threshold in milliseconds
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setSlowCallDurationThreshold(long slowCallDurationThresholdMillis) {
+            Preconditions.checkArgument(slowCallDurationThresholdMillis > 0,
+                "Slow call duration threshold must be positive");
+            this.slowCallDurationThresholdMillis = slowCallDurationThresholdMillis;
+            return this;
+        }
+
+        /**
+         * Set sliding window size, 100 by default.
+         *
+         * @param slidingWindowSize Number of calls recorded
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setSlidingWindowSize(int slidingWindowSize) {
+            Preconditions.checkArgument(slidingWindowSize > 0, "Sliding window size must be positive");
+            this.slidingWindowSize = slidingWindowSize;
+            return this;
+        }
+
+        /**
+         * Set minimum number of calls before rates are evaluated, 20 by default.
+         *
+         * @param minimumNumberOfCalls Minimum number of calls
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+            Preconditions.checkArgument(minimumNumberOfCalls > 0, "Minimum number of calls must be positive");
+            this.minimumNumberOfCalls = minimumNumberOfCalls;
+            return this;
+        }
+
+        /**
+         * Set wait duration in open state, 10 seconds by default.
+         *
+         * @param waitDurationInOpenStateMillis Wait duration in open state in milliseconds
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setWaitDurationInOpenState(long waitDurationInOpenStateMillis) {
+            Preconditions.checkArgument(waitDurationInOpenStateMillis >= 0,
+                "Wait duration in open state cannot be negative");
+            this.waitDurationInOpenStateMillis = waitDurationInOpenStateMillis;
+            return this;
+        }
+
+        /**
+         * Set permitted calls in half open state, 5 by default.
+         *
+         * @param permittedCallsInHalfOpenState Permitted calls in half open state
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+            Preconditions.checkArgument(permittedCallsInHalfOpenState > 0,
+                "Permitted calls in half open state must be positive");
+            this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+            return this;
+        }
+
+        /**
+         * Set whether 5xx responses count as failures, true by default.
+         *
+         * @param recordServerErrors Whether 5xx responses count as failures
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder setRecordServerErrors(boolean recordServerErrors) {
+            this.recordServerErrors = recordServerErrors;
+            return this;
+        }
+
+        /**
+         * Add state transition listener.
+         *
+         * @param listener State transition listener
+         * @return {@link ParsecCircuitBreakerConfig.Builder}
+         */
+        public Builder addListener(ParsecCircuitBreakerListener listener) {
+            Preconditions.checkNotNull(listener, "Listener cannot be null");
+            listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecCircuitBreakerConfig} instance.
+         *
+         * @return {@link ParsecCircuitBreakerConfig}
+         */
+        public ParsecCircuitBreakerConfig build() {
+            return new ParsecCircuitBreakerConfig(this);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Listener notified of circuit breaker state transitions.
+ * Notifications are made from I/O or timer threads and must not block.
+ */
+@FunctionalInterface
+public interface ParsecCircuitBreakerListener {
+    /**
+     * Called when the circuit breaker of a host changes state.
+     *
+     * @param hostKey Host and port of the circuit breaker
+     * @param from    Previous state
+     * @param to      New state
+     */
+    void onStateTransition(String hostKey, ParsecCircuitBreakerState from, ParsecCircuitBreakerState to);
+}
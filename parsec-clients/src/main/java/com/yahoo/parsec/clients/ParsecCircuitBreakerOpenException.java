@@ -0,0 +1,39 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Exception for requests not sent because the circuit breaker of their host is open.
+ */
+public class ParsecCircuitBreakerOpenException extends RuntimeException {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Host and port of the open circuit breaker.
+     */
+    private final String hostKey;
+
+    /**
+     * Constructor.
+     *
+     * @param hostKey Host and port of the open circuit breaker
+     */
+    public ParsecCircuitBreakerOpenException(String hostKey) {
+        super("Circuit breaker is open for " + hostKey);
+        this.hostKey = hostKey;
+    }
+
+    /**
+     * Get host key.
+     *
+     * @return Host and port of the open circuit breaker
+     */
+    public String getHostKey() {
+        return hostKey;
+    }
+}
@@ -0,0 +1,24 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Circuit breaker states.
+ */
+public enum ParsecCircuitBreakerState {
+    /**
+     * Requests are sent, and their outcomes recorded.
+     */
+    CLOSED,
+
+    /**
+     * Requests fail fast with {@link ParsecCircuitBreakerOpenException}.
+     */
+    OPEN,
+
+    /**
+     * A limited number of probe requests are sent to decide whether to close or to open again.
+     */
+    HALF_OPEN
+}
@@ -0,0 +1,246 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.filter.IOExceptionFilter;
+import com.ning.http.client.filter.RequestFilter;
+import com.ning.http.client.filter.ResponseFilter;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Immutable fingerprint of the effective configuration of a {@link ParsecAsyncHttpClient.Builder}, equal for
+ * separate builders that are configured identically.
+ *
+ * <p>The configuration is copied into value objects: primitives, strings, enums and objects that define their own
+ * equality are kept as they are, collections, maps and arrays are copied, and the other objects of the client and
+ * Ning packages are copied field by field, e.g. a circuit breaker config. Any other object, and objects with state
+ * of their own such as filters, executors and client resources, are compared by identity.</p>
+ */
+public final class ParsecClientFingerprint {
+
+    /**
+     * Packages whose objects are copied field by field.
+     */
+    private static final List<String> VALUE_PACKAGES = Arrays.asList("com.yahoo.parsec.clients.", "com.ning.http.");
+
+    /**
+     * Copied configuration.
+     */
+    private final List<Object> values;
+
+    /**
+     * Hash code.
+     */
+    private final int hashCode;
+
+    /**
+     * Private constructor.
+     * @param values copied configuration
+     */
+    private ParsecClientFingerprint(final List<Object> values) {
+        this.values = values;
+        this.hashCode = values.hashCode();
+    }
+
+    /**
+     * Create the fingerprint of configuration objects.
+     *
+     * @param ignored    elements left out of the copied collections, e.g. a filter added when a client is built
+     * @param components configuration objects
+     * @return {@link ParsecClientFingerprint}
+     */
+    static ParsecClientFingerprint of(final Set<?> ignored, final Object... components) {
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        List<Object> values = new ArrayList<>();
+        for (Object component : components) {
+            values.add(copyFields(component, ignored, visited));
+        }
+        return new ParsecClientFingerprint(Collections.unmodifiableList(values));
+    }
+
+    /**
+     * Copy a configuration value.
+     *
+     * @param value   value
+     * @param ignored elements left out of the copied collections
+     * @param visited objects being copied, to compare cycles by identity
+     * @return copy
+     */
+    private static Object copy(final Object value, final Set<?> ignored, final Map<Object, Boolean> visited) {
+        if (value == null || value instanceof Number || value instanceof CharSequence || value instanceof Boolean
+            || value instanceof Character || value instanceof Enum || value instanceof Class) {
+            return value instanceof CharSequence ? value.toString() : value;
+        }
+        if (value.getClass().isArray()) {
+            List<Object> copy = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                Object element = Array.get(value, i);
+                if (!ignored.contains(element)) {
+                    copy.add(copy(element, ignored, visited));
+                }
+            }
+            return copy;
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            ((List<?>) value).stream().filter(element -> !ignored.contains(element))
+                .forEach(element -> copy.add(copy(element, ignored, visited)));
+            return copy;
+        }
+        if (value instanceof Set) {
+            Set<Object> copy = new HashSet<>();
+            ((Set<?>) value).stream().filter(element -> !ignored.contains(element))
+                .forEach(element -> copy.add(copy(element, ignored, visited)));
+            return copy;
+        }
+        if (value instanceof LinkedHashMap || value instanceof SortedMap) {
+            // Ordered, e.g. cache TTL routes, so compared as a list of entries
+            List<Object> copy = new ArrayList<>();
+            ((Map<?, ?>) value).forEach((k, v) ->
+                copy.add(Arrays.asList(copy(k, ignored, visited), copy(v, ignored, visited))));
+            return copy;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new HashMap<>();
+            ((Map<?, ?>) value).forEach((k, v) -> copy.put(copy(k, ignored, visited), copy(v, ignored, visited)));
+            return copy;
+        }
+        if (definesEquals(value.getClass())) {
+            return value;
+        }
+        if (isStateful(value)) {
+            return new Identity(value);
+        }
+        if (isValuePackage(value.getClass()) && !visited.containsKey(value)) {
+            return copyFields(value, ignored, visited);
+        }
+        return new Identity(value);
+    }
+
+    /**
+     * Copy the fields of an object.
+     *
+     * @param value   object
+     * @param ignored elements left out of the copied collections
+     * @param visited objects being copied
+     * @return class of the object followed by the copies of its instance fields
+     */
+    private static List<Object> copyFields(final Object value, final Set<?> ignored,
+                                           final Map<Object, Boolean> visited) {
+        visited.put(value, Boolean.TRUE);
+        List<Object> copy = new ArrayList<>();
+        copy.add(value.getClass());
+        for (Class<?> type = value.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    copy.add(copy(field.get(value), ignored, visited));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        visited.remove(value);
+        return copy;
+    }
+
+    /**
+     * Whether a class defines its own equality.
+     *
+     * @param type class
+     * @return true if a class other than {@link Object} declares {@code equals}
+     */
+    private static boolean definesEquals(final Class<?> type) {
+        try {
+            return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether an object has state of its own, e.g. threads or counters, even if it belongs to the client or Ning
+     * packages.
+     *
+     * @param value object
+     * @return true if the object is compared by identity
+     */
+    private static boolean isStateful(final Object value) {
+        return value instanceof Executor || value instanceof ParsecClientResources || value instanceof RequestFilter
+            || value instanceof ResponseFilter || value instanceof IOExceptionFilter;
+    }
+
+    /**
+     * Whether a class belongs to the client or Ning packages.
+     *
+     * @param type class
+     * @return true if the objects of the class are copied field by field
+     */
+    private static boolean isValuePackage(final Class<?> type) {
+        return VALUE_PACKAGES.stream().anyMatch(type.getName()::startsWith);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof ParsecClientFingerprint && values.equals(((ParsecClientFingerprint) object).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "ParsecClientFingerprint{" + Integer.toHexString(hashCode) + "}";
+    }
+
+    /**
+     * Object compared by identity.
+     */
+    private static final class Identity {
+
+        /**
+         * Object.
+         */
+        private final Object value;
+
+        /**
+         * Constructor.
+         *
+         * @param value object
+         */
+        private Identity(final Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Identity && ((Identity) object).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+}
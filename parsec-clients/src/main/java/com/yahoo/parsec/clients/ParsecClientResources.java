@@ -0,0 +1,364 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ning.http.client.AsyncHttpProviderConfig;
+import com.ning.http.client.providers.netty.NettyAsyncHttpProviderConfig;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads shared by the {@link ParsecAsyncHttpClient}s attached to it with
+ * {@link ParsecAsyncHttpClient.Builder#setClientResources(ParsecClientResources)}, instead of each client starting
+ * its own: a timer for retries, a scheduler for cache clean up and snapshots, a Netty I/O event loop with its
+ * request timeout timer, and an executor for response callbacks.
+ *
+ * <p>The resources are reference counted. They are created with one reference held by their creator, each client
+ * built with them holds another one until it is closed, and they are shut down once the last reference is
+ * released.</p>
+ */
+public final class ParsecClientResources {
+
+    /**
+     * Keep alive time of idle callback threads, in seconds.
+     */
+    private static final long CALLBACK_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Timer for issuing retries.
+     */
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Scheduler for cleaning up caches and saving their snapshots.
+     */
+    private final ScheduledThreadPoolExecutor cleanUpExecutorService;
+
+    /**
+     * Executor for response callbacks.
+     */
+    private final SharedThreadPoolExecutor callbackExecutorService;
+
+    /**
+     * Netty I/O event loop.
+     */
+    private final NioClientSocketChannelFactory socketChannelFactory;
+
+    /**
+     * Netty timer for request timeouts.
+     */
+    private final HashedWheelTimer nettyTimer;
+
+    /**
+     * Reference count, 0 once shut down.
+     */
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private ParsecClientResources(final Builder builder) {
+        timer = newScheduledExecutorService("parsec-shared-timer-%d");
+        cleanUpExecutorService = newScheduledExecutorService("parsec-shared-cleanup-%d");
+        callbackExecutorService = new SharedThreadPoolExecutor(builder.maxCallbackThreads,
+            newThreadFactory("parsec-shared-callback-%d"));
+        ExecutorService ioExecutorService = Executors.newCachedThreadPool(newThreadFactory("parsec-shared-io-%d"));
+        socketChannelFactory = new NioClientSocketChannelFactory(ioExecutorService, ioExecutorService, 1,
+            builder.ioThreads);
+        nettyTimer = new HashedWheelTimer(newThreadFactory("parsec-shared-netty-timer-%d"));
+    }
+
+    /**
+     * Create a daemon thread factory.
+     *
+     * @param nameFormat thread name format
+     * @return {@link ThreadFactory}
+     */
+    private static ThreadFactory newThreadFactory(final String nameFormat) {
+        return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+    }
+
+    /**
+     * Create a single threaded daemon scheduler.
+     *
+     * @param nameFormat thread name format
+     * @return {@link ScheduledThreadPoolExecutor}
+     */
+    private static ScheduledThreadPoolExecutor newScheduledExecutorService(final String nameFormat) {
+        ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(1, newThreadFactory(nameFormat));
+        executorService.setRemoveOnCancelPolicy(true);
+        return executorService;
+    }
+
+    /**
+     * Take a reference to the resources.
+     *
+     * @return this
+     * @throws IllegalStateException if the resources are shut down
+     */
+    public ParsecClientResources retain() {
+        while (true) {
+            int count = referenceCount.get();
+            Preconditions.checkState(count > 0, "Client resources are shut down");
+            if (referenceCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Release a reference to the resources, shutting them down if it is the last one.
+     *
+     * @return true if the resources are shut down
+     * @throws IllegalStateException if the resources are already shut down
+     */
+    public boolean release() {
+        while (true) {
+            int count = referenceCount.get();
+            Preconditions.checkState(count > 0, "Client resources are shut down");
+            if (referenceCount.compareAndSet(count, count - 1)) {
+                if (count == 1) {
+                    shutdown();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Get the reference count.
+     *
+     * @return reference count, 0 once shut down
+     */
+    public int getReferenceCount() {
+        return referenceCount.get();
+    }
+
+    /**
+     * Whether the resources are shut down.
+     *
+     * @return true if the last reference is released
+     */
+    public boolean isShutdown() {
+        return referenceCount.get() == 0;
+    }
+
+    /**
+     * Shut down all threads.
+     */
+    private void shutdown() {
+        timer.shutdown();
+        cleanUpExecutorService.shutdown();
+        nettyTimer.stop();
+        socketChannelFactory.releaseExternalResources();
+        callbackExecutorService.terminate();
+    }
+
+    /**
+     * Get the timer for issuing retries.
+     *
+     * @return {@link ScheduledExecutorService}
+     */
+    ScheduledExecutorService getTimer() {
+        return timer;
+    }
+
+    /**
+     * Get the scheduler for cleaning up caches and saving their snapshots.
+     *
+     * @return {@link ScheduledExecutorService}
+     */
+    ScheduledExecutorService getCleanUpExecutorService() {
+        return cleanUpExecutorService;
+    }
+
+    /**
+     * Get the executor for response callbacks. The clients shut down their executor when they are closed,
+     * so it ignores {@code shutdown()} until the resources are shut down.
+     *
+     * @return {@link ThreadPoolExecutor}
+     */
+    ThreadPoolExecutor getCallbackExecutorService() {
+        return callbackExecutorService;
+    }
+
+    /**
+     * Get the Netty I/O event loop.
+     *
+     * @return {@link NioClientSocketChannelFactory}
+     */
+    NioClientSocketChannelFactory getSocketChannelFactory() {
+        return socketChannelFactory;
+    }
+
+    /**
+     * Get the Netty timer for request timeouts.
+     *
+     * @return {@link Timer}
+     */
+    Timer getNettyTimer() {
+        return nettyTimer;
+    }
+
+    /**
+     * Get a Netty provider config using the shared I/O event loop and timer, which the provider then leaves running
+     * when its client is closed: a new one, or the given one with them set.
+     *
+     * @param providerConfig provider config already set on the client, possibly null
+     * @return {@link NettyAsyncHttpProviderConfig}
+     * @throws IllegalStateException if the provider config is not a Netty one, or has its own I/O event loop, boss
+     *                               executor or timer
+     */
+    NettyAsyncHttpProviderConfig mergeProviderConfig(final AsyncHttpProviderConfig<?, ?> providerConfig) {
+        if (providerConfig == null) {
+            NettyAsyncHttpProviderConfig nettyProviderConfig = new NettyAsyncHttpProviderConfig();
+            nettyProviderConfig.setSocketChannelFactory(socketChannelFactory);
+            nettyProviderConfig.setNettyTimer(nettyTimer);
+            return nettyProviderConfig;
+        }
+        Preconditions.checkState(providerConfig instanceof NettyAsyncHttpProviderConfig,
+            "Client resources only apply to a Netty provider config, not " + providerConfig.getClass().getName());
+        NettyAsyncHttpProviderConfig nettyProviderConfig = (NettyAsyncHttpProviderConfig) providerConfig;
+        Preconditions.checkState(
+            isUnsetOr(nettyProviderConfig.getSocketChannelFactory(), socketChannelFactory)
+                && nettyProviderConfig.getBossExecutorService() == null
+                && isUnsetOr(nettyProviderConfig.getNettyTimer(), nettyTimer),
+            "Provider config has its own I/O event loop, boss executor or timer, which client resources replace");
+        nettyProviderConfig.setSocketChannelFactory(socketChannelFactory);
+        nettyProviderConfig.setNettyTimer(nettyTimer);
+        return nettyProviderConfig;
+    }
+
+    /**
+     * Whether a provider config setting is unset or already the shared resource.
+     *
+     * @param value  setting
+     * @param shared shared resource
+     * @return true if value is null or shared
+     */
+    private static boolean isUnsetOr(final Object value, final Object shared) {
+        return value == null || value == shared;
+    }
+
+    /**
+     * Callback executor that can only be shut down by its {@link ParsecClientResources}.
+     */
+    private static final class SharedThreadPoolExecutor extends ThreadPoolExecutor {
+
+        /**
+         * Whether the resources are shut down.
+         */
+        private volatile boolean terminating;
+
+        /**
+         * Constructor.
+         *
+         * @param maximumPoolSize maximum number of threads
+         * @param threadFactory   thread factory
+         */
+        private SharedThreadPoolExecutor(final int maximumPoolSize, final ThreadFactory threadFactory) {
+            super(0, maximumPoolSize, CALLBACK_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        /**
+         * Shut down, once the resources are shut down.
+         */
+        @Override
+        public void shutdown() {
+            if (terminating) {
+                super.shutdown();
+            }
+        }
+
+        /**
+         * Shut down now, once the resources are shut down.
+         *
+         * @return tasks that never ran, empty if the resources are not shut down
+         */
+        @Override
+        public List<Runnable> shutdownNow() {
+            if (terminating) {
+                return super.shutdownNow();
+            }
+            return Collections.emptyList();
+        }
+
+        /**
+         * Shut down when the resources are shut down.
+         */
+        private void terminate() {
+            terminating = true;
+            super.shutdown();
+        }
+    }
+
+    /**
+     * Static Builder class for {@link ParsecClientResources}.
+     */
+    public static class Builder {
+
+        /**
+         * Number of Netty I/O threads.
+         */
+        private int ioThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * Maximum number of callback threads.
+         */
+        private int maxCallbackThreads = Integer.MAX_VALUE;
+
+        /**
+         * Set the number of Netty I/O threads shared by the clients. Defaults to twice the number of processors.
+         *
+         * @param ioThreads number of I/O threads
+         * @return {@link ParsecClientResources.Builder}
+         */
+        public Builder setIoThreads(int ioThreads) {
+            Preconditions.checkArgument(ioThreads > 0, "IO threads must be positive");
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of callback threads shared by the clients. Idle threads exit after a minute, and
+         * callbacks beyond the maximum run on the calling thread. Defaults to unbounded, like the executor each
+         * client creates otherwise.
+         *
+         * @param maxCallbackThreads maximum number of callback threads
+         * @return {@link ParsecClientResources.Builder}
+         */
+        public Builder setMaxCallbackThreads(int maxCallbackThreads) {
+            Preconditions.checkArgument(maxCallbackThreads > 0, "Max callback threads must be positive");
+            this.maxCallbackThreads = maxCallbackThreads;
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecClientResources} instance, with one reference held by the caller.
+         *
+         * @return {@link ParsecClientResources}
+         */
+        public ParsecClientResources build() {
+            return new ParsecClientResources(this);
+        }
+    }
+}
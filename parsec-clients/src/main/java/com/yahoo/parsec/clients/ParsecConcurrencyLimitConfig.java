@@ -0,0 +1,255 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Configuration of the adaptive per host concurrency limits of {@link ParsecAsyncHttpClient}.
+ *
+ * <p>The limit of each host follows an AIMD (additive increase, multiplicative decrease) algorithm. It grows
+ * by one per limit's worth of successful requests while the limit is in use, and is multiplied by
+ * {@code backoffRatio} when a request fails, is throttled (429 or 503), or takes longer than {@code rttTolerance}
+ * times the lowest round trip time recently observed for the host. Requests over the limit wait up to
+ * {@code maxQueueTime} in a queue of at most {@code maxQueueSize} requests, and are rejected otherwise.</p>
+ */
+public final class ParsecConcurrencyLimitConfig {
+
+    /**
+     * Initial limit.
+     */
+    private final int initialLimit;
+
+    /**
+     * Minimum limit.
+     */
+    private final int minLimit;
+
+    /**
+     * Maximum limit.
+     */
+    private final int maxLimit;
+
+    /**
+     * Ratio applied to the limit on overload.
+     */
+    private final double backoffRatio;
+
+    /**
+     * Ratio of the lowest round trip time above which a request signals overload.
+     */
+    private final double rttTolerance;
+
+    /**
+     * Maximum number of requests waiting for the limit.
+     */
+    private final int maxQueueSize;
+
+    /**
+     * Maximum time a request waits for the limit.
+     */
+    private final long maxQueueTimeMillis;
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private ParsecConcurrencyLimitConfig(final Builder builder) {
+        Preconditions.checkArgument(builder.minLimit <= builder.maxLimit, "Min limit cannot exceed max limit");
+        initialLimit = Math.max(builder.minLimit, Math.min(builder.initialLimit, builder.maxLimit));
+        minLimit = builder.minLimit;
+        maxLimit = builder.maxLimit;
+        backoffRatio = builder.backoffRatio;
+        rttTolerance = builder.rttTolerance;
+        maxQueueSize = builder.maxQueueSize;
+        maxQueueTimeMillis = builder.maxQueueTimeMillis;
+    }
+
+    /**
+     * Get initial limit.
+     *
+     * @return Initial limit
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * Get minimum limit.
+     *
+     * @return Minimum limit
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Get maximum limit.
+     *
+     * @return Maximum limit
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Get backoff ratio.
+     *
+     * @return Ratio applied to the limit on overload
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Get round trip time tolerance.
+     *
+     * @return Ratio of the lowest round trip time above which a request signals overload
+     */
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    /**
+     * Get maximum queue size.
+     *
+     * @return Maximum number of requests waiting for the limit
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Get maximum queue time.
+     *
+     * @return Maximum time in milliseconds a request waits for the limit
+     */
+    public long getMaxQueueTimeMillis() {
+        return maxQueueTimeMillis;
+    }
+
+    /**
+     * Static Builder class for {@link ParsecConcurrencyLimitConfig}.
+     */
+    public static class Builder {
+        /**
+         * Initial limit.
+         */
+        private int initialLimit = 20;
+
+        /**
+         * Minimum limit.
+         */
+        private int minLimit = 1;
+
+        /**
+         * Maximum limit.
+         */
+        private int maxLimit = 200;
+
+        /**
+         * Ratio applied to the limit on overload.
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * Ratio of the lowest round trip time above which a request signals overload.
+         */
+        private double rttTolerance = 2.0;
+
+        /**
+         * Maximum number of requests waiting for the limit.
+         */
+        private int maxQueueSize;
+
+        /**
+         * Maximum time a request waits for the limit.
+         */
+        private long maxQueueTimeMillis;
+
+        /**
+         * Set initial limit, 20 by default.
+         *
+         * @param initialLimit Initial limit
+         * @return {@link ParsecConcurrencyLimitConfig.Builder}
+         */
+        public Builder setInitialLimit(int initialLimit) {
+            Preconditions.checkArgument(initialLimit > 0, "Initial limit must be positive");
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Set minimum limit, 1 by default.
+         *
+         * @param minLimit Minimum limit
+         * @return {@link ParsecConcurrencyLimitConfig.Builder}
+         */
+        public Builder setMinLimit(int minLimit) {
+            Preconditions.checkArgument(minLimit > 0, "Min limit must be positive");
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Set maximum limit, 200 by default.
+         *
+         * @param maxLimit Maximum limit
+         * @return {@link ParsecConcurrencyLimitConfig.Builder}
+         */
+        public Builder setMaxLimit(int maxLimit) {
+            Preconditions.checkArgument(maxLimit > 0, "Max limit must be positive");
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Set ratio applied to the limit on overload, 0.9 by default.
+         *
+         * @param backoffRatio Backoff ratio, between 0 and 1
+         * @return {@link ParsecConcurrencyLimitConfig.Builder}
+         */
+        public Builder setBackoffRatio(double backoffRatio) {
+            Preconditions.checkArgument(backoffRatio > 0 && backoffRatio < 1, "Backoff ratio must be between 0 and 1");
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Set ratio of the lowest round trip time above which a request signals overload, 2 by default.
+         *
+         * @param rttTolerance Round trip time tolerance, at least 1
+         * @return {@link ParsecConcurrencyLimitConfig.Builder}
+         */
+        public Builder setRttTolerance(double rttTolerance) {
+            Preconditions.checkArgument(rttTolerance >= 1, "Rtt tolerance must be at least 1");
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        /**
+         * Let requests over the limit wait for it instead of being rejected immediately, which is the default.
+         *
+         * @param maxQueueSize Maximum number of requests waiting for the limit
+         * @param maxQueueTimeMillis Maximum time in milliseconds a request waits for the limit
+         * @return {@link ParsecConcurrencyLimitConfig.Builder}
+         */
+        public Builder setQueue(int maxQueueSize, long maxQueueTimeMillis) {
+            Preconditions.checkArgument(maxQueueSize >= 0, "Max queue size cannot be negative");
+            Preconditions.checkArgument(maxQueueTimeMillis >= 0, "Max queue time cannot be negative");
+            this.maxQueueSize = maxQueueSize;
+            this.maxQueueTimeMillis = maxQueueTimeMillis;
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecConcurrencyLimitConfig} instance.
+         *
+         * @return {@link ParsecConcurrencyLimitConfig}
+         */
+        public ParsecConcurrencyLimitConfig build() {
+            return new ParsecConcurrencyLimitConfig(this);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Exception for requests not sent because the concurrency limit of their host is reached.
+ */
+public class ParsecConcurrencyLimitExceededException extends RuntimeException {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Host and port of the concurrency limit.
+     */
+    private final String hostKey;
+
+    /**
+     * Constructor.
+     *
+     * @param hostKey Host and port of the concurrency limit
+     * @param limit   Concurrency limit at the time of the rejection
+     */
+    public ParsecConcurrencyLimitExceededException(String hostKey, int limit) {
+        super("Concurrency limit of " + limit + " exceeded for " + hostKey);
+        this.hostKey = hostKey;
+    }
+
+    /**
+     * Get host key.
+     *
+     * @return Host and port of the concurrency limit
+     */
+    public String getHostKey() {
+        return hostKey;
+    }
+}
@@ -0,0 +1,411 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limit of one host, following an AIMD algorithm driven by round trip times.
+ *
+ * <p>Requests waiting for the limit are queued without holding a thread, and are sent from an executor
+ * once a permit is released, never from the timer or the I/O thread that completed the previous request.</p>
+ *
+ * @see ParsecConcurrencyLimitConfig
+ */
+final class ParsecConcurrencyLimiter {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecConcurrencyLimiter.class);
+
+    /**
+     * Number of round trip times after which the lowest one is re-sampled, so it can follow a slower host.
+     */
+    static final int MIN_RTT_WINDOW = 500;
+
+    /**
+     * Status code for too many requests.
+     */
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Status code for service unavailable.
+     */
+    private static final int STATUS_SERVICE_UNAVAILABLE = 503;
+
+    /**
+     * Host key.
+     */
+    private final String hostKey;
+
+    /**
+     * Config.
+     */
+    private final ParsecConcurrencyLimitConfig config;
+
+    /**
+     * Timer for queue timeouts.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Executor for sending queued requests.
+     */
+    private final Executor executor;
+
+    /**
+     * Clock in nanoseconds.
+     */
+    private final LongSupplier nanoClock;
+
+    /**
+     * Requests waiting for the limit.
+     */
+    private final Deque<Waiter<?>> queue = new ArrayDeque<>();
+
+    /**
+     * Current limit.
+     */
+    private double limit;
+
+    /**
+     * Number of requests in flight.
+     */
+    private int inFlight;
+
+    /**
+     * Lowest round trip time observed, or {@link Long#MAX_VALUE} if none.
+     */
+    private long minRttNanos = Long.MAX_VALUE;
+
+    /**
+     * Lowest round trip time observed in the current window.
+     */
+    private long windowMinRttNanos = Long.MAX_VALUE;
+
+    /**
+     * Number of round trip times observed in the current window.
+     */
+    private int windowSamples;
+
+    /**
+     * Time of the last decrease of the limit, valid once {@link #decreased} is set.
+     */
+    private long lastDecreaseNanos;
+
+    /**
+     * Whether the limit was decreased yet.
+     */
+    private boolean decreased;
+
+    /**
+     * Constructor.
+     *
+     * @param hostKey host key
+     * @param config  config
+     * @param timer    timer for queue timeouts
+     * @param executor executor for sending queued requests
+     */
+    ParsecConcurrencyLimiter(
+        String hostKey,
+        ParsecConcurrencyLimitConfig config,
+        ScheduledExecutorService timer,
+        Executor executor
+    ) {
+        this(hostKey, config, timer, executor, System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param hostKey   host key
+     * @param config    config
+     * @param timer     timer for queue timeouts
+     * @param executor  executor for sending queued requests
+     * @param nanoClock clock in nanoseconds
+     */
+    ParsecConcurrencyLimiter(
+        String hostKey,
+        ParsecConcurrencyLimitConfig config,
+        ScheduledExecutorService timer,
+        Executor executor,
+        LongSupplier nanoClock
+    ) {
+        this.hostKey = hostKey;
+        this.config = config;
+        this.timer = timer;
+        this.executor = executor;
+        this.nanoClock = nanoClock;
+        this.limit = config.getInitialLimit();
+    }
+
+    /**
+     * Get current limit.
+     *
+     * @return limit
+     */
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Get number of requests in flight.
+     *
+     * @return requests in flight
+     */
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Send a request within the limit, queue it, or reject it with {@link ParsecConcurrencyLimitExceededException}.
+     *
+     * @param call supplier that sends the request
+     * @param <T>  response type
+     * @return response future
+     */
+    <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> call) {
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                if (queue.size() >= config.getMaxQueueSize() || config.getMaxQueueTimeMillis() <= 0) {
+                    return rejected();
+                }
+                return enqueue(call);
+            }
+            inFlight++;
+        }
+        return start(call);
+    }
+
+    /**
+     * Queue a request until a permit is released or the queue time is over.
+     * Must be called while holding the lock.
+     *
+     * @param call supplier that sends the request
+     * @param <T>  response type
+     * @return response future
+     */
+    private <T> CompletableFuture<T> enqueue(final Supplier<CompletableFuture<T>> call) {
+        Waiter<T> waiter = new Waiter<>(call);
+        try {
+            waiter.timeout = timer.schedule(() -> {
+                synchronized (this) {
+                    if (!queue.remove(waiter)) {
+                        return;
+                    }
+                }
+                waiter.result.completeExceptionally(new ParsecConcurrencyLimitExceededException(hostKey, getLimit()));
+            }, config.getMaxQueueTimeMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return rejected();
+        }
+        queue.add(waiter);
+        waiter.result.whenComplete((response, throwable) -> {
+            if (waiter.result.isCancelled()) {
+                synchronized (this) {
+                    queue.remove(waiter);
+                }
+                waiter.timeout.cancel(false);
+            }
+        });
+        return waiter.result;
+    }
+
+    /**
+     * Send a request holding a permit, and release the permit on its completion.
+     *
+     * @param call supplier that sends the request
+     * @param <T>  response type
+     * @return response future
+     */
+    private <T> CompletableFuture<T> start(final Supplier<CompletableFuture<T>> call) {
+        final long startNanos = nanoClock.getAsLong();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            release(false, false, 0);
+            throw e;
+        }
+        future.whenComplete((response, throwable) -> {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+            if (cause instanceof CancellationException) {
+                release(false, false, 0);
+            } else {
+                int statusCode = ParsecHttpUtil.getStatusCode(response);
+                boolean dropped = cause != null
+                    || statusCode == STATUS_TOO_MANY_REQUESTS
+                    || statusCode == STATUS_SERVICE_UNAVAILABLE;
+                release(true, dropped, nanoClock.getAsLong() - startNanos);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Release a permit, adjust the limit and send the queued requests that now fit in the limit.
+     *
+     * @param record   whether to adjust the limit from the outcome
+     * @param dropped  whether the request failed or was throttled
+     * @param rttNanos round trip time of the request
+     */
+    private void release(boolean record, boolean dropped, long rttNanos) {
+        List<Waiter<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            if (record) {
+                adjustLimit(dropped, rttNanos);
+            }
+            inFlight--;
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                ready.add(queue.poll());
+                inFlight++;
+            }
+        }
+
+        for (Waiter<?> waiter : ready) {
+            waiter.timeout.cancel(false);
+            try {
+                executor.execute(waiter);
+            } catch (RejectedExecutionException e) {
+                waiter.result.completeExceptionally(e);
+                release(false, false, 0);
+            }
+        }
+    }
+
+    /**
+     * Adjust the limit from the outcome of a request. Must be called while holding the lock.
+     *
+     * @param dropped  whether the request failed or was throttled
+     * @param rttNanos round trip time of the request
+     */
+    private void adjustLimit(boolean dropped, long rttNanos) {
+        long now = nanoClock.getAsLong();
+        boolean slow = minRttNanos != Long.MAX_VALUE && rttNanos > minRttNanos * config.getRttTolerance();
+        updateMinRtt(rttNanos);
+
+        if (dropped || slow) {
+            // Decrease at most once per round trip, as requests sent at the same time see the same overload
+            if (!decreased || now - lastDecreaseNanos >= Math.min(minRttNanos, rttNanos)) {
+                double previous = limit;
+                limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+                lastDecreaseNanos = now;
+                decreased = true;
+                if ((int) previous != (int) limit) {
+                    LOGGER.debug("Concurrency limit for " + hostKey + " decreased to " + (int) limit);
+                }
+            }
+        } else if (inFlight * 2 >= limit) {
+            // Only grow when the limit is actually in use
+            limit = Math.min(config.getMaxLimit(), limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Update the lowest round trip time. Must be called while holding the lock.
+     *
+     * @param rttNanos round trip time of a request
+     */
+    private void updateMinRtt(long rttNanos) {
+        minRttNanos = Math.min(minRttNanos, rttNanos);
+        windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+        if (++windowSamples >= MIN_RTT_WINDOW) {
+            minRttNanos = windowMinRttNanos;
+            windowMinRttNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    /**
+     * Get a future failed with {@link ParsecConcurrencyLimitExceededException}.
+     *
+     * @param <T> response type
+     * @return failed future
+     */
+    private <T> CompletableFuture<T> rejected() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new ParsecConcurrencyLimitExceededException(hostKey, (int) limit));
+        return future;
+    }
+
+    /**
+     * Request waiting for the limit.
+     *
+     * @param <T> response type
+     */
+    private final class Waiter<T> implements Runnable {
+        /**
+         * Supplier that sends the request.
+         */
+        private final Supplier<CompletableFuture<T>> call;
+
+        /**
+         * Response future returned to the caller.
+         */
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        /**
+         * Queue timeout.
+         */
+        private volatile Future<?> timeout;
+
+        /**
+         * Constructor.
+         *
+         * @param call supplier that sends the request
+         */
+        private Waiter(Supplier<CompletableFuture<T>> call) {
+            this.call = call;
+        }
+
+        /**
+         * Send the request, holding the permit given to it.
+         */
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                release(false, false, 0);
+                return;
+            }
+
+            CompletableFuture<T> future;
+            try {
+                future = start(call);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            future.whenComplete((response, throwable) -> {
+                if (throwable == null) {
+                    result.complete(response);
+                } else {
+                    result.completeExceptionally(throwable);
+                }
+            });
+            result.whenComplete((response, throwable) -> {
+                if (result.isCancelled()) {
+                    future.cancel(true);
+                }
+            });
+        }
+    }
+}
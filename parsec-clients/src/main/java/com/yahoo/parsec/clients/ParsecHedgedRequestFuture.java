@@ -0,0 +1,286 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link CompletableFuture} that sends a second, speculative attempt of a request when the first one has not
+ * completed within the hedge delay, completes with whichever attempt succeeds first and cancels the other.
+ *
+ * <p>A failed attempt only fails this future once no other attempt can still succeed. Hedged attempts are
+ * withdrawn from a budget so that hedging cannot add more than a fixed ratio of extra load to a host.</p>
+ *
+ * @param <T> Response type
+ */
+class ParsecHedgedRequestFuture<T> extends CompletableFuture<T> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecHedgedRequestFuture.class);
+
+    /**
+     * Supplier that sends one attempt.
+     */
+    private final Supplier<CompletableFuture<T>> attemptSupplier;
+
+    /**
+     * Delay before sending the hedged attempt.
+     */
+    private final long hedgeDelayMillis;
+
+    /**
+     * Timer that waits out the hedge delay.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Executor that sends the hedged attempt.
+     */
+    private final Executor executor;
+
+    /**
+     * Hedge budget.
+     */
+    private final ParsecRetryBudget hedgeBudget;
+
+    /**
+     * Host key used for the hedge budget.
+     */
+    private final String hostKey;
+
+    /**
+     * Lock guarding the attempt accounting.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Number of attempts sent that have not completed yet.
+     */
+    private int inFlight;
+
+    /**
+     * Whether the hedged attempt is still scheduled, i.e. neither sent nor abandoned.
+     */
+    private boolean hedgeScheduled;
+
+    /**
+     * First failure of an attempt.
+     */
+    private Throwable firstFailure;
+
+    /**
+     * First attempt.
+     */
+    private volatile CompletableFuture<T> primary;
+
+    /**
+     * Hedged attempt, null if not sent.
+     */
+    private volatile CompletableFuture<T> hedge;
+
+    /**
+     * Scheduled hedged attempt.
+     */
+    private volatile Future<?> scheduledHedge;
+
+    /**
+     * Constructor.
+     *
+     * @param attemptSupplier  supplier that sends one attempt
+     * @param hedgeDelayMillis delay before sending the hedged attempt
+     * @param timer            timer that waits out the hedge delay
+     * @param executor         executor that sends the hedged attempt, as sending may block
+     * @param hedgeBudget      hedge budget
+     * @param hostKey          host key used for the hedge budget
+     */
+    ParsecHedgedRequestFuture(
+        final Supplier<CompletableFuture<T>> attemptSupplier,
+        final long hedgeDelayMillis,
+        final ScheduledExecutorService timer,
+        final Executor executor,
+        final ParsecRetryBudget hedgeBudget,
+        final String hostKey
+    ) {
+        this.attemptSupplier = attemptSupplier;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.timer = timer;
+        this.executor = executor;
+        this.hedgeBudget = hedgeBudget;
+        this.hostKey = hostKey;
+    }
+
+    /**
+     * Send the first attempt and schedule the hedged attempt.
+     *
+     * @return this future
+     */
+    ParsecHedgedRequestFuture<T> execute() {
+        synchronized (lock) {
+            inFlight = 1;
+            hedgeScheduled = true;
+        }
+        primary = send();
+        if (isDone()) {
+            return this;
+        }
+
+        try {
+            scheduledHedge = timer.schedule(this::dispatchHedge, hedgeDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            abandonHedge();
+        }
+        return this;
+    }
+
+    /**
+     * Cancel all attempts.
+     *
+     * @param mayInterruptIfRunning mayInterruptIfRunning
+     * @return cancel was success or not
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        cancelAttempts();
+        return cancelled;
+    }
+
+    /**
+     * Whether the hedged attempt was sent (for unit testing).
+     *
+     * @return true if the hedged attempt was sent
+     */
+    boolean isHedged() {
+        return hedge != null;
+    }
+
+    /**
+     * Hand the hedged attempt to the executor once the hedge delay is over, or give up on it if rejected.
+     */
+    private void dispatchHedge() {
+        try {
+            executor.execute(this::sendHedge);
+        } catch (RejectedExecutionException e) {
+            abandonHedge();
+        }
+    }
+
+    /**
+     * Send the hedged attempt unless the request is done or the hedge budget is exhausted.
+     */
+    private void sendHedge() {
+        synchronized (lock) {
+            if (!hedgeScheduled || isDone()) {
+                return;
+            }
+            hedgeScheduled = false;
+            if (!hedgeBudget.tryWithdraw(hostKey)) {
+                LOGGER.debug("Hedge budget exhausted for " + hostKey + ", not hedging");
+                return;
+            }
+            inFlight++;
+        }
+
+        LOGGER.debug("Sending hedged attempt to " + hostKey + " after " + hedgeDelayMillis + "ms");
+        hedge = send();
+        if (isDone()) {
+            cancelIfPending(hedge);
+        }
+    }
+
+    /**
+     * Send one attempt and chain the outcome handling on its completion.
+     *
+     * @return attempt future
+     */
+    private CompletableFuture<T> send() {
+        CompletableFuture<T> attempt;
+        try {
+            attempt = attemptSupplier.get();
+        } catch (RuntimeException e) {
+            attempt = new CompletableFuture<>();
+            attempt.completeExceptionally(e);
+        }
+        attempt.whenComplete(this::onAttemptCompleted);
+        return attempt;
+    }
+
+    /**
+     * Give up on the scheduled hedged attempt, e.g. because the first attempt already failed.
+     */
+    private void abandonHedge() {
+        synchronized (lock) {
+            hedgeScheduled = false;
+        }
+        Future<?> scheduled = scheduledHedge;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * Complete with the first successful attempt, or with the first failure once no other attempt can succeed.
+     *
+     * @param response  response
+     * @param throwable failure, or null if the attempt succeeded
+     */
+    private void onAttemptCompleted(T response, Throwable throwable) {
+        if (throwable == null) {
+            if (complete(response)) {
+                cancelAttempts();
+            }
+            return;
+        }
+
+        Throwable failure;
+        synchronized (lock) {
+            if (firstFailure == null) {
+                firstFailure = throwable;
+            }
+            // Hedging is meant for slow attempts, not failed ones: a failure before the hedge is sent
+            // is not turned into a retry.
+            hedgeScheduled = false;
+            if (--inFlight > 0) {
+                return;
+            }
+            failure = firstFailure;
+        }
+        abandonHedge();
+        completeExceptionally(failure);
+    }
+
+    /**
+     * Cancel the scheduled hedge and the attempts still in flight.
+     */
+    private void cancelAttempts() {
+        Future<?> scheduled = scheduledHedge;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        cancelIfPending(primary);
+        cancelIfPending(hedge);
+    }
+
+    /**
+     * Cancel an attempt if it is still in flight.
+     *
+     * @param attempt attempt, may be null
+     */
+    private static void cancelIfPending(CompletableFuture<?> attempt) {
+        if (attempt != null && !attempt.isDone()) {
+            attempt.cancel(true);
+        }
+    }
+}
@@ -22,7 +22,10 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * {@link Callable} implementation that handles HTTP request retry based on response status code.
+ * @deprecated Blocks the calling thread while a request is in flight or waiting to be retried,
+ * look into {@link ParsecHttpRequestRetryFuture} instead
  */
+@Deprecated
 class ParsecHttpRequestRetryCallable<T> implements Callable<T> {
 
     /**
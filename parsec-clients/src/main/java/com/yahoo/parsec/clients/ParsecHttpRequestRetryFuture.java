@@ -0,0 +1,318 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link CompletableFuture} that executes an HTTP request and handles retry based on response status code
+ * or exception without blocking any thread.
+ *
+ * <p>Each attempt is chained on the completion callback of the previous attempt, and retry delays are
+ * scheduled on a timer, so no thread is held while a request is in flight or waiting to be retried.
+ * Retried attempts are sent from an executor, as sending may block, e.g. to resolve the host name.</p>
+ *
+ * @param <T> Response type
+ */
+class ParsecHttpRequestRetryFuture<T> extends CompletableFuture<T> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecHttpRequestRetryFuture.class);
+
+    /**
+     * Status code for too many requests.
+     */
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Retry-After header.
+     */
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    /**
+     * Longest {@code Retry-After} delay waited for a request without a request timeout, in milliseconds.
+     */
+    static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 60000;
+
+    /**
+     * Supplier that sends one attempt.
+     */
+    private final Supplier<CompletableFuture<T>> attemptSupplier;
+
+    /**
+     * Request.
+     */
+    private final ParsecAsyncHttpRequest request;
+
+    /**
+     * Retry backoff policy.
+     */
+    private final ParsecRetryBackoffPolicy backoffPolicy;
+
+    /**
+     * Timer that waits out the retry delays.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Executor that sends the retried attempts.
+     */
+    private final Executor executor;
+
+    /**
+     * Retry budget, or null if retries are not limited.
+     */
+    private final ParsecRetryBudget retryBudget;
+
+    /**
+     * Number of retries done so far.
+     */
+    private int retries;
+
+    /**
+     * Delay used before the previous retry.
+     */
+    private long previousDelayMillis;
+
+    /**
+     * Future of the in-flight attempt or the scheduled retry.
+     */
+    private volatile Future<?> pending;
+
+    /**
+     * Constructor.
+     *
+     * @param attemptSupplier     supplier that sends one attempt
+     * @param request             request
+     * @param backoffPolicy       retry backoff policy
+     * @param timer               timer that waits out the retry delays
+     * @param executor            executor that sends the retried attempts
+     * @param retryBudget         retry budget, or null if retries are not limited
+     */
+    ParsecHttpRequestRetryFuture(
+        final Supplier<CompletableFuture<T>> attemptSupplier,
+        final ParsecAsyncHttpRequest request,
+        final ParsecRetryBackoffPolicy backoffPolicy,
+        final ScheduledExecutorService timer,
+        final Executor executor,
+        final ParsecRetryBudget retryBudget
+    ) {
+        this.attemptSupplier = attemptSupplier;
+        this.request = request;
+        this.backoffPolicy = backoffPolicy;
+        this.timer = timer;
+        this.executor = executor;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Issue the first attempt.
+     *
+     * @return this future
+     */
+    ParsecHttpRequestRetryFuture<T> execute() {
+        attempt();
+        return this;
+    }
+
+    /**
+     * Cancel the in-flight attempt or the scheduled retry.
+     *
+     * @param mayInterruptIfRunning mayInterruptIfRunning
+     * @return cancel was success or not
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Future<?> current = pending;
+        if (current != null) {
+            current.cancel(mayInterruptIfRunning);
+        }
+        return cancelled;
+    }
+
+    /**
+     * Get retry backoff policy (for unit testing).
+     *
+     * @return retry backoff policy
+     */
+    ParsecRetryBackoffPolicy getBackoffPolicy() {
+        return backoffPolicy;
+    }
+
+    /**
+     * Get number of retries done so far (for unit testing).
+     *
+     * @return retries
+     */
+    int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Execute one attempt and chain the outcome handling on its completion.
+     */
+    private void attempt() {
+        if (isDone()) {
+            return;
+        }
+
+        final CompletableFuture<T> future;
+        try {
+            future = attemptSupplier.get();
+        } catch (RuntimeException e) {
+            completeExceptionally(e);
+            return;
+        }
+
+        pending = future;
+        future.whenComplete(this::onAttemptCompleted);
+    }
+
+    /**
+     * Decide whether to complete or to retry once an attempt is done.
+     *
+     * @param response  response of the attempt
+     * @param throwable failure of the attempt, or null if it succeeded
+     */
+    private void onAttemptCompleted(final T response, final Throwable throwable) {
+        if (isDone()) {
+            return;
+        }
+
+        final int maxRetries = request.getMaxRetries();
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+            Throwable root = ExceptionUtils.getRootCause(cause);
+            List<Class<? extends Throwable>> retryExceptions = request.getRetryExceptions();
+            if (retries >= maxRetries
+                || !retryExceptions.contains((root == null ? cause : root).getClass())
+                || !withdrawRetryBudget()) {
+                completeExceptionally(cause);
+            } else {
+                scheduleRetry(-1);
+            }
+            return;
+        }
+
+        int statusCode = ParsecHttpUtil.getStatusCode(response);
+        if (statusCode == -1 || !request.getRetryStatusCodes().contains(statusCode)) {
+            complete(response);
+        } else if (retries >= maxRetries) {
+            LOGGER.debug("Max retries reached: " + retries + " (max: " + maxRetries + ")");
+            complete(response);
+        } else {
+            long retryAfterMillis = getRetryAfterMillis(response, statusCode);
+            if (Math.min(retryAfterMillis, backoffPolicy.getMaxDelayMillis()) > getMaxRetryAfterMillis()) {
+                LOGGER.debug("Retry-After of " + retryAfterMillis + "ms is too long, not retrying");
+                complete(response);
+            } else if (!withdrawRetryBudget()) {
+                complete(response);
+            } else {
+                scheduleRetry(retryAfterMillis);
+            }
+        }
+    }
+
+    /**
+     * Get the longest delay requested by a server that is waited before retrying, i.e. the request timeout,
+     * or {@link #DEFAULT_MAX_RETRY_AFTER_MILLIS} if the request does not set one.
+     *
+     * @return delay in milliseconds
+     */
+    private long getMaxRetryAfterMillis() {
+        return request.getRequestTimeout() > 0 ? request.getRequestTimeout() : DEFAULT_MAX_RETRY_AFTER_MILLIS;
+    }
+
+    /**
+     * Spend one retry from the retry budget.
+     *
+     * @return true if the retry is allowed
+     */
+    private boolean withdrawRetryBudget() {
+        if (retryBudget == null || retryBudget.tryWithdraw(request.getHostKey())) {
+            return true;
+        }
+        LOGGER.debug("Retry budget exhausted for " + request.getHostKey() + ", not retrying");
+        return false;
+    }
+
+    /**
+     * Schedule the next attempt after the delay given by the backoff policy, or after the delay requested by
+     * the server when it is longer, bounded by the maximum delay of the policy. The timer only waits out the delay,
+     * and the attempt is sent from the executor rather than from the timer or the I/O thread that completed the
+     * previous attempt.
+     *
+     * @param retryAfterMillis delay requested by the server, or -1 if none
+     */
+    private void scheduleRetry(long retryAfterMillis) {
+        retries++;
+        long delayMillis = Math.max(0, backoffPolicy.getDelayMillis(retries, previousDelayMillis));
+        if (retryAfterMillis > delayMillis) {
+            delayMillis = Math.min(retryAfterMillis, backoffPolicy.getMaxDelayMillis());
+        }
+        previousDelayMillis = delayMillis;
+
+        LOGGER.debug("Retry number: " + retries + " (max: " + request.getMaxRetries() + ") in " + delayMillis + "ms");
+        if (delayMillis == 0) {
+            dispatchAttempt();
+            return;
+        }
+        try {
+            pending = timer.schedule(this::dispatchAttempt, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Hand the next attempt to the executor.
+     */
+    private void dispatchAttempt() {
+        try {
+            executor.execute(this::attempt);
+        } catch (RejectedExecutionException e) {
+            completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Gets the delay requested by a 429 or 503 response through the {@code Retry-After} header.
+     *
+     * @param response   T
+     * @param statusCode status code
+     * @return delay in milliseconds, or -1 if none
+     */
+    private long getRetryAfterMillis(T response, int statusCode) {
+        if (statusCode != STATUS_TOO_MANY_REQUESTS && statusCode != Response.Status.SERVICE_UNAVAILABLE.getStatusCode()) {
+            return -1;
+        }
+
+        String retryAfter = null;
+        if (response instanceof Response) {
+            retryAfter = ((Response) response).getHeaderString(HEADER_RETRY_AFTER);
+        } else if (response instanceof ParsecByteResponse) {
+            retryAfter = ((ParsecByteResponse) response).getHeader(HEADER_RETRY_AFTER);
+        } else if (response instanceof com.ning.http.client.Response) {
+            retryAfter = ((com.ning.http.client.Response) response).getHeader(HEADER_RETRY_AFTER);
+        }
+        return ParsecHttpUtil.parseRetryAfterMillis(retryAfter, System.currentTimeMillis());
+    }
+}
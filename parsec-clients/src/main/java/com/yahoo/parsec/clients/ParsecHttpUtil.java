@@ -5,13 +5,18 @@ package com.yahoo.parsec.clients;
 
 import com.ning.http.client.Param;
 import com.ning.http.client.cookie.Cookie;
+import com.ning.http.client.uri.Uri;
 import com.ning.http.util.AsyncHttpProviderUtils;
 
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,6 +26,16 @@ import java.util.stream.Stream;
  * @author sho
  */
 public final class ParsecHttpUtil {
+    /**
+     * Default HTTP port.
+     */
+    private static final int DEFAULT_HTTP_PORT = 80;
+
+    /**
+     * Default HTTPS port.
+     */
+    private static final int DEFAULT_HTTPS_PORT = 443;
+
     /**
      * Unused private constructor.
      */
@@ -107,6 +122,80 @@ public final class ParsecHttpUtil {
         return responseBuilder.build();
     }
 
+    /**
+     * Get host key, i.e. host:port, from Ning {@link Uri}. The default port of the scheme is used when the
+     * {@link Uri} has none.
+     *
+     * @param uri Ning {@link Uri}
+     * @return host key
+     */
+    public static String getHostKey(final Uri uri) {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) || "wss".equalsIgnoreCase(uri.getScheme())
+                ? DEFAULT_HTTPS_PORT : DEFAULT_HTTP_PORT;
+        }
+        return uri.getHost() + ":" + port;
+    }
+
+    /**
+     * Gets status code from {@link Response}, {@link ParsecByteResponse} or Ning {@link com.ning.http.client.Response}.
+     *
+     * @param response response
+     * @return status code or -1 if response is not type of {@link Response}, {@link ParsecByteResponse}
+     *         or Ning {@link com.ning.http.client.Response}
+     */
+    static int getStatusCode(final Object response) {
+        if (response instanceof Response) {
+            return ((Response) response).getStatus();
+        } else if (response instanceof ParsecByteResponse) {
+            return ((ParsecByteResponse) response).getStatus();
+        } else if (response instanceof com.ning.http.client.Response) {
+            return ((com.ning.http.client.Response) response).getStatusCode();
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Parse a {@code Retry-After} header value, given either as delay seconds or as an HTTP date.
+     *
+     * @param retryAfter {@code Retry-After} header value
+     * @param nowMillis current time in milliseconds
+     * @return delay in milliseconds, or -1 if the value is absent or invalid
+     */
+    public static long parseRetryAfterMillis(final String retryAfter, final long nowMillis) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            long dateMillis = parseHttpDateMillis(value);
+            return dateMillis == -1 ? -1 : Math.max(0, dateMillis - nowMillis);
+        }
+    }
+
+    /**
+     * Parse an HTTP date, e.g. a {@code Date} or {@code Expires} header value.
+     *
+     * @param httpDate HTTP date
+     * @return date in milliseconds since the epoch, or -1 if the value is absent or invalid
+     */
+    public static long parseHttpDateMillis(final String httpDate) {
+        if (httpDate == null || httpDate.trim().isEmpty()) {
+            return -1;
+        }
+
+        try {
+            return ZonedDateTime.parse(httpDate.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
     public static String parseCharsetFromContentType(String contentType, String defaultCharset) {
         if (contentType != null) {
             String parseCharset = AsyncHttpProviderUtils.parseCharset(contentType);
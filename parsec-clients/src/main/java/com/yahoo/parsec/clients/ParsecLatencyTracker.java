@@ -0,0 +1,116 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks recent request latencies per host, to derive live latency percentiles.
+ *
+ * <p>Each host keeps the last {@value #SAMPLE_SIZE} latencies in a ring buffer. Percentiles are read from a sorted
+ * copy of the buffer, which is refreshed every {@value #RESORT_INTERVAL} new samples rather than on every read.</p>
+ */
+final class ParsecLatencyTracker {
+
+    /**
+     * Number of latencies kept per host.
+     */
+    static final int SAMPLE_SIZE = 128;
+
+    /**
+     * Minimum number of latencies before percentiles are reported.
+     */
+    static final int MIN_SAMPLES = 20;
+
+    /**
+     * Number of new latencies after which the sorted copy is refreshed.
+     */
+    private static final int RESORT_INTERVAL = 16;
+
+    /**
+     * Samples keyed by host.
+     */
+    private final Map<String, Samples> samplesByHost = new ConcurrentHashMap<>();
+
+    /**
+     * Record a latency for the given host.
+     *
+     * @param hostKey       host key
+     * @param latencyMillis latency in milliseconds
+     */
+    void record(String hostKey, long latencyMillis) {
+        samplesByHost.computeIfAbsent(hostKey, k -> new Samples()).record(latencyMillis);
+    }
+
+    /**
+     * Get a latency percentile of the given host.
+     *
+     * @param hostKey    host key
+     * @param percentile percentile, between 0 and 100
+     * @return latency in milliseconds, or -1 if fewer than {@value #MIN_SAMPLES} latencies were recorded
+     */
+    long getPercentileMillis(String hostKey, double percentile) {
+        Samples samples = samplesByHost.get(hostKey);
+        return samples == null ? -1 : samples.getPercentile(percentile);
+    }
+
+    /**
+     * Ring buffer of latencies of one host.
+     */
+    private static final class Samples {
+        /**
+         * Latencies.
+         */
+        private final long[] latencies = new long[SAMPLE_SIZE];
+
+        /**
+         * Total number of latencies recorded.
+         */
+        private long count;
+
+        /**
+         * Sorted copy of the latencies, or null if it needs refreshing.
+         */
+        private long[] sorted;
+
+        /**
+         * Number of latencies recorded since the sorted copy was refreshed.
+         */
+        private int sinceSort;
+
+        /**
+         * Record a latency.
+         *
+         * @param latencyMillis latency in milliseconds
+         */
+        synchronized void record(long latencyMillis) {
+            latencies[(int) (count % SAMPLE_SIZE)] = latencyMillis;
+            count++;
+            if (++sinceSort >= RESORT_INTERVAL) {
+                sorted = null;
+            }
+        }
+
+        /**
+         * Get a latency percentile.
+         *
+         * @param percentile percentile, between 0 and 100
+         * @return latency in milliseconds, or -1 if there are not enough latencies
+         */
+        synchronized long getPercentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            if (sorted == null) {
+                sorted = Arrays.copyOf(latencies, (int) Math.min(count, SAMPLE_SIZE));
+                Arrays.sort(sorted);
+                sinceSort = 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Strategies of {@link LatencyAwareNameResolver} to choose among the addresses of a name.
+ */
+public enum ParsecLoadBalancingStrategy {
+    /**
+     * Pick two addresses at random and choose the one with the lower cost, the decayed peak latency weighted by the
+     * requests in flight.
+     */
+    POWER_OF_TWO_CHOICES,
+
+    /**
+     * Choose the address with the fewest requests in flight, then the lowest decayed peak latency.
+     */
+    LEAST_OUTSTANDING_REQUESTS
+}
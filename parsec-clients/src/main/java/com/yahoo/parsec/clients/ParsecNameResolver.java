@@ -8,4 +8,34 @@ import java.net.UnknownHostException;
 
 public interface ParsecNameResolver {
     InetAddress resolve(String name) throws UnknownHostException;
+
+    /**
+     * Resolve all the addresses of a name. Defaults to the address returned by {@link #resolve(String)}.
+     *
+     * @param name host name
+     * @return addresses, at least one
+     * @throws UnknownHostException if the name cannot be resolved
+     */
+    default InetAddress[] resolveAll(String name) throws UnknownHostException {
+        return new InetAddress[] {resolve(name)};
+    }
+
+    /**
+     * Called when a request is sent on a new connection to a resolved address. Does nothing by default.
+     *
+     * @param address resolved address
+     */
+    default void onRequestStarted(InetAddress address) {
+    }
+
+    /**
+     * Called when a request started by {@link #onRequestStarted(InetAddress)} completes. Does nothing by default.
+     *
+     * @param address       resolved address
+     * @param statusCode    response status code, -1 if the request failed without a response
+     * @param throwable     failure of the request, null if a response was received
+     * @param latencyMicros time from the address being resolved to the request completing, in microseconds
+     */
+    default void onRequestCompleted(InetAddress address, int statusCode, Throwable throwable, long latencyMicros) {
+    }
 }
@@ -0,0 +1,221 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHandlerExtensions;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.ProgressAsyncHandler;
+import com.ning.http.client.Request;
+
+import java.net.InetAddress;
+import java.util.concurrent.CancellationException;
+
+/**
+ * {@link AsyncHandler} wrapper that feeds the {@link ParsecNameResolver} of a request with the outcome of the
+ * requests sent on new connections, e.g. for {@link LatencyAwareNameResolver} and {@link OutlierEjectingNameResolver}.
+ *
+ * <p>It is attached to every request whose name resolver is a {@link DelegateNameResolver}, whether or not the
+ * profiling filter is enabled.</p>
+ *
+ * @param <T> T
+ */
+class ParsecNameResolverFeedbackHandler<T> implements AsyncHandler<T>, ProgressAsyncHandler<T>, AsyncHandlerExtensions {
+
+    /**
+     * Async handler.
+     */
+    private final AsyncHandler<T> asyncHandler;
+
+    /**
+     * Progress async handler, null if the async handler is not one.
+     */
+    private final ProgressAsyncHandler<T> progressAsyncHandler;
+
+    /**
+     * Extensions, null if the async handler does not implement them.
+     */
+    private final AsyncHandlerExtensions extensions;
+
+    /**
+     * Name resolver of the request.
+     */
+    private final ParsecNameResolver nameResolver;
+
+    /**
+     * Address resolved for the request in flight, or null if it was sent on a pooled connection.
+     */
+    private InetAddress resolvedAddress;
+
+    /**
+     * Time the address was resolved.
+     */
+    private long resolvedNanos;
+
+    /**
+     * Status code of the response, -1 if none was received.
+     */
+    private int statusCode = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param asyncHandler async handler
+     * @param nameResolver name resolver of the request
+     */
+    @SuppressWarnings("unchecked")
+    ParsecNameResolverFeedbackHandler(final AsyncHandler<T> asyncHandler, final ParsecNameResolver nameResolver) {
+        this.asyncHandler = asyncHandler;
+        this.nameResolver = nameResolver;
+        progressAsyncHandler = (asyncHandler instanceof ProgressAsyncHandler)
+            ? (ProgressAsyncHandler<T>) asyncHandler : null;
+        extensions = (asyncHandler instanceof AsyncHandlerExtensions)
+            ? (AsyncHandlerExtensions) asyncHandler : null;
+    }
+
+    /**
+     * Wrap an async handler if the name resolver of the request takes feedback.
+     *
+     * @param asyncHandler async handler
+     * @param ningRequest  ning request
+     * @param <T>          T
+     * @return wrapped async handler, or the async handler itself if the request uses the default name resolver
+     */
+    static <T> AsyncHandler<T> wrap(final AsyncHandler<T> asyncHandler, final Request ningRequest) {
+        if (ningRequest == null || !(ningRequest.getNameResolver() instanceof DelegateNameResolver)) {
+            return asyncHandler;
+        }
+        return new ParsecNameResolverFeedbackHandler<>(asyncHandler,
+            ((DelegateNameResolver) ningRequest.getNameResolver()).getDelegate());
+    }
+
+    @Override
+    public void onThrowable(final Throwable t) {
+        notifyNameResolver(-1, t);
+        asyncHandler.onThrowable(t);
+    }
+
+    @Override
+    public STATE onBodyPartReceived(final HttpResponseBodyPart bodyPart) throws Exception {
+        return asyncHandler.onBodyPartReceived(bodyPart);
+    }
+
+    @Override
+    public STATE onStatusReceived(final HttpResponseStatus responseStatus) throws Exception {
+        statusCode = responseStatus.getStatusCode();
+        return asyncHandler.onStatusReceived(responseStatus);
+    }
+
+    @Override
+    public STATE onHeadersReceived(final HttpResponseHeaders headers) throws Exception {
+        return asyncHandler.onHeadersReceived(headers);
+    }
+
+    @Override
+    public T onCompleted() throws Exception {
+        notifyNameResolver(statusCode, null);
+        return asyncHandler.onCompleted();
+    }
+
+    @Override
+    public STATE onHeaderWriteCompleted() {
+        return progressAsyncHandler == null ? STATE.CONTINUE : progressAsyncHandler.onHeaderWriteCompleted();
+    }
+
+    @Override
+    public STATE onContentWriteCompleted() {
+        return progressAsyncHandler == null ? STATE.CONTINUE : progressAsyncHandler.onContentWriteCompleted();
+    }
+
+    @Override
+    public STATE onContentWriteProgress(final long amount, final long current, final long total) {
+        return progressAsyncHandler == null ? STATE.CONTINUE
+            : progressAsyncHandler.onContentWriteProgress(amount, current, total);
+    }
+
+    @Override
+    public void onOpenConnection() {
+        if (extensions != null) {
+            extensions.onOpenConnection();
+        }
+    }
+
+    @Override
+    public void onConnectionOpen() {
+        if (extensions != null) {
+            extensions.onConnectionOpen();
+        }
+    }
+
+    @Override
+    public void onPoolConnection() {
+        if (extensions != null) {
+            extensions.onPoolConnection();
+        }
+    }
+
+    @Override
+    public void onConnectionPooled() {
+        if (extensions != null) {
+            extensions.onConnectionPooled();
+        }
+    }
+
+    @Override
+    public void onSendRequest(final Object request) {
+        if (extensions != null) {
+            extensions.onSendRequest(request);
+        }
+    }
+
+    @Override
+    public void onRetry() {
+        if (extensions != null) {
+            extensions.onRetry();
+        }
+    }
+
+    @Override
+    public void onDnsResolved(final InetAddress inetAddress) {
+        if (resolvedAddress != null) {
+            // A new connection is opened before the previous one got a response, e.g. to retry a failed connect,
+            // so the previous address is released as cancelled
+            notifyNameResolver(-1, new CancellationException("Superseded by a new connection"));
+        }
+        if (inetAddress != null) {
+            resolvedAddress = inetAddress;
+            resolvedNanos = System.nanoTime();
+            nameResolver.onRequestStarted(inetAddress);
+        }
+        if (extensions != null) {
+            extensions.onDnsResolved(inetAddress);
+        }
+    }
+
+    @Override
+    public void onSslHandshakeCompleted() {
+        if (extensions != null) {
+            extensions.onSslHandshakeCompleted();
+        }
+    }
+
+    /**
+     * Notify the name resolver of the outcome of a request sent on a new connection.
+     *
+     * @param statusCode response status code, -1 if no response was received
+     * @param t          throwable, null if a response was received
+     */
+    private void notifyNameResolver(final int statusCode, final Throwable t) {
+        this.statusCode = -1;
+        if (resolvedAddress == null) {
+            return;
+        }
+        long latencyMicros = Math.max(0, (System.nanoTime() - resolvedNanos) / 1000);
+        InetAddress address = resolvedAddress;
+        resolvedAddress = null;
+        nameResolver.onRequestCompleted(address, statusCode, t, latencyMicros);
+    }
+}
@@ -0,0 +1,197 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Configuration of the negative caching of {@link ParsecAsyncHttpClient}.
+ *
+ * <p>Responses with one of the negative status codes, and loads failing with one of the negative exceptions,
+ * are kept in the response cache for the negative TTL, usually much shorter than the cache expire time, so callers
+ * of a missing or failing resource get the same outcome right away instead of each sending the request again.
+ * By default, {@code 404}, {@code 410} and {@code 5xx} responses, and {@link IOException} and
+ * {@link TimeoutException} failures, are kept for 5 seconds.</p>
+ */
+public final class ParsecNegativeCacheConfig {
+
+    /**
+     * Negative TTL.
+     */
+    private final long ttlMillis;
+
+    /**
+     * Status codes of the responses kept for the negative TTL.
+     */
+    private final Set<Integer> statusCodes;
+
+    /**
+     * Exceptions kept for the negative TTL.
+     */
+    private final List<Class<? extends Throwable>> exceptions;
+
+    /**
+     * Private constructor.
+     * @param builder builder
+     */
+    private ParsecNegativeCacheConfig(final Builder builder) {
+        ttlMillis = builder.ttlMillis;
+        statusCodes = Collections.unmodifiableSet(new HashSet<>(builder.statusCodes));
+        exceptions = Collections.unmodifiableList(new ArrayList<>(builder.exceptions));
+    }
+
+    /**
+     * Get negative TTL.
+     *
+     * @return Negative TTL in milliseconds
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Get status codes of the responses kept for the negative TTL.
+     *
+     * @return Status codes
+     */
+    public Set<Integer> getStatusCodes() {
+        return statusCodes;
+    }
+
+    /**
+     * Get exceptions kept for the negative TTL.
+     *
+     * @return Exception classes
+     */
+    public List<Class<? extends Throwable>> getExceptions() {
+        return exceptions;
+    }
+
+    /**
+     * Whether a response status code is negative.
+     *
+     * @param statusCode status code
+     * @return true if responses with the status code are kept for the negative TTL
+     */
+    boolean isNegative(final int statusCode) {
+        return statusCodes.contains(statusCode);
+    }
+
+    /**
+     * Whether a failure is negative, i.e. it or one of its causes is one of the negative exceptions.
+     *
+     * @param throwable failure
+     * @return true if the failure is kept for the negative TTL
+     */
+    boolean isNegative(final Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            for (Class<? extends Throwable> exception : exceptions) {
+                if (exception.isInstance(cause)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Static Builder class for {@link ParsecNegativeCacheConfig}.
+     */
+    public static class Builder {
+        /**
+         * Lowest status code of server errors.
+         */
+        private static final int SERVER_ERROR_STATUS_CODE = 500;
+
+        /**
+         * Highest status code of server errors.
+         */
+        private static final int MAX_SERVER_ERROR_STATUS_CODE = 599;
+
+        /**
+         * Negative TTL.
+         */
+        private long ttlMillis = 5000;
+
+        /**
+         * Status codes of the responses kept for the negative TTL.
+         */
+        private final Set<Integer> statusCodes = new HashSet<>(Arrays.asList(404, 410));
+
+        /**
+         * Exceptions kept for the negative TTL.
+         */
+        private final List<Class<? extends Throwable>> exceptions = new ArrayList<>();
+
+        /**
+         * Constructor.
+         */
+        public Builder() {
+            for (int statusCode = SERVER_ERROR_STATUS_CODE; statusCode <= MAX_SERVER_ERROR_STATUS_CODE; statusCode++) {
+                statusCodes.add(statusCode);
+            }
+            exceptions.add(IOException.class);
+            exceptions.add(TimeoutException.class);
+        }
+
+        /**
+         * Set negative TTL, 5 seconds by default.
+         *
+         * @param ttlMillis Negative TTL in milliseconds
+         * @return {@link ParsecNegativeCacheConfig.Builder}
+         */
+        public Builder setTtl(long ttlMillis) {
+            Preconditions.checkArgument(ttlMillis > 0, "Negative TTL must be positive");
+            this.ttlMillis = ttlMillis;
+            return this;
+        }
+
+        /**
+         * Set status codes of the responses kept for the negative TTL, {@code 404}, {@code 410} and {@code 5xx}
+         * by default.
+         *
+         * @param statusCodes Status codes, none to not keep any response for the negative TTL
+         * @return {@link ParsecNegativeCacheConfig.Builder}
+         */
+        public Builder setStatusCodes(Integer... statusCodes) {
+            this.statusCodes.clear();
+            this.statusCodes.addAll(Arrays.asList(statusCodes));
+            return this;
+        }
+
+        /**
+         * Set exceptions kept for the negative TTL, {@link IOException} and {@link TimeoutException} by default.
+         * A failure is kept if it, or one of its causes, is an instance of one of them.
+         *
+         * @param exceptions Exception classes, none to not keep any failure
+         * @return {@link ParsecNegativeCacheConfig.Builder}
+         */
+        @SafeVarargs
+        public final Builder setExceptions(Class<? extends Throwable>... exceptions) {
+            this.exceptions.clear();
+            for (Class<? extends Throwable> exception : exceptions) {
+                this.exceptions.add(exception);
+            }
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecNegativeCacheConfig} instance.
+         *
+         * @return new {@link ParsecNegativeCacheConfig} instance
+         */
+        public ParsecNegativeCacheConfig build() {
+            return new ParsecNegativeCacheConfig(this);
+        }
+    }
+}
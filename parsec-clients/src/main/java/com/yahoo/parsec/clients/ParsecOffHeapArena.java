@@ -0,0 +1,240 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.base.Preconditions;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Direct memory of {@link ParsecOffHeapResponseStore}, handed out in fixed size blocks that are freed explicitly and
+ * reused. The memory is allocated in slabs as blocks are needed, up to the capacity, and kept until the arena is
+ * cleared, so storing a response neither allocates a direct buffer of its own nor leaves it for the garbage
+ * collector to free.
+ *
+ * <p>Not thread safe, the store guards it with its own lock.</p>
+ */
+final class ParsecOffHeapArena {
+
+    /**
+     * Blocks of a slab, except the last one if the capacity is not a multiple of it.
+     */
+    private static final int SLAB_BLOCKS = 16384;
+
+    /**
+     * Bytes of a block.
+     */
+    private final int blockSize;
+
+    /**
+     * Number of blocks of the capacity.
+     */
+    private final int capacityBlocks;
+
+    /**
+     * Allocated slabs.
+     */
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    /**
+     * Free blocks of the allocated slabs, as a stack.
+     */
+    private int[] freeBlocks = new int[0];
+
+    /**
+     * Number of free blocks of the allocated slabs.
+     */
+    private int freeCount;
+
+    /**
+     * Number of blocks of the allocated slabs.
+     */
+    private int allocatedBlocks;
+
+    /**
+     * Constructor.
+     *
+     * @param capacityBytes maximum bytes of the slabs
+     * @param blockSize     bytes of a block
+     */
+    ParsecOffHeapArena(final long capacityBytes, final int blockSize) {
+        Preconditions.checkArgument(blockSize > 0, "Block size must be positive");
+        Preconditions.checkArgument(capacityBytes / blockSize <= Integer.MAX_VALUE, "Capacity is too large");
+        this.blockSize = blockSize;
+        this.capacityBlocks = (int) (capacityBytes / blockSize);
+    }
+
+    /**
+     * Get the number of blocks holding a number of bytes.
+     *
+     * @param size bytes
+     * @return number of blocks
+     */
+    int getBlocks(final int size) {
+        return (size + blockSize - 1) / blockSize;
+    }
+
+    /**
+     * Get the number of blocks of the capacity.
+     *
+     * @return number of blocks
+     */
+    int getCapacityBlocks() {
+        return capacityBlocks;
+    }
+
+    /**
+     * Get the bytes of a block.
+     *
+     * @return bytes
+     */
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Allocate the blocks holding a number of bytes, allocating slabs if needed.
+     *
+     * @param size bytes
+     * @return blocks, null if there are not enough free blocks
+     */
+    int[] allocate(final int size) {
+        int count = getBlocks(size);
+        while (freeCount < count && allocatedBlocks < capacityBlocks) {
+            addSlab();
+        }
+        if (freeCount < count) {
+            return null;
+        }
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = freeBlocks[--freeCount];
+        }
+        return blocks;
+    }
+
+    /**
+     * Free blocks, so they are reused.
+     *
+     * @param blocks blocks made by {@link #allocate(int)}
+     */
+    void free(final int[] blocks) {
+        for (int block : blocks) {
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    /**
+     * Free all the blocks and release the slabs.
+     */
+    void clear() {
+        slabs.clear();
+        freeBlocks = new int[0];
+        freeCount = 0;
+        allocatedBlocks = 0;
+    }
+
+    /**
+     * Create a stream writing to blocks, in order.
+     *
+     * @param blocks blocks made by {@link #allocate(int)}
+     * @return output stream
+     */
+    OutputStream newOutputStream(final int[] blocks) {
+        return new OutputStream() {
+            private long position;
+
+            @Override
+            public void write(int b) {
+                slice(blocks, position++, 1).put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                while (len > 0) {
+                    ByteBuffer slice = slice(blocks, position, len);
+                    int length = slice.remaining();
+                    slice.put(b, off, length);
+                    position += length;
+                    off += length;
+                    len -= length;
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a stream reading bytes from blocks, in order.
+     *
+     * @param blocks blocks made by {@link #allocate(int)}
+     * @param size   bytes written to the blocks
+     * @return input stream
+     */
+    InputStream newInputStream(final int[] blocks, final int size) {
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() {
+                return position < size ? slice(blocks, position++, 1).get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (position >= size) {
+                    return -1;
+                }
+                ByteBuffer slice = slice(blocks, position, (int) Math.min(len, size - position));
+                int length = slice.remaining();
+                slice.get(b, off, length);
+                position += length;
+                return length;
+            }
+
+            @Override
+            public int available() {
+                return (int) (size - position);
+            }
+        };
+    }
+
+    /**
+     * Get a view of the bytes at a position of blocks, up to the end of the block.
+     *
+     * @param blocks   blocks
+     * @param position position in the blocks
+     * @param length   maximum number of bytes
+     * @return view of at most length bytes
+     */
+    private ByteBuffer slice(final int[] blocks, final long position, final int length) {
+        int block = blocks[(int) (position / blockSize)];
+        int start = (block % SLAB_BLOCKS) * blockSize + (int) (position % blockSize);
+        int end = start + Math.min(length, blockSize - (int) (position % blockSize));
+        ByteBuffer slice = slabs.get(block / SLAB_BLOCKS).duplicate();
+        slice.limit(end).position(start);
+        return slice;
+    }
+
+    /**
+     * Allocate a slab and add its blocks to the free ones.
+     */
+    private void addSlab() {
+        int count = Math.min(SLAB_BLOCKS, capacityBlocks - allocatedBlocks);
+        slabs.add(ByteBuffer.allocateDirect(count * blockSize));
+        int[] blocks = new int[allocatedBlocks + count];
+        System.arraycopy(freeBlocks, 0, blocks, 0, freeCount);
+        freeBlocks = blocks;
+        for (int i = count - 1; i >= 0; i--) {
+            freeBlocks[freeCount++] = allocatedBlocks + i;
+        }
+        allocatedBlocks += count;
+    }
+}
@@ -0,0 +1,202 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Off-heap tier of {@link ParsecAsyncHttpResponseLoadingCache}. The responses of cache entries are serialised
+ * straight into the blocks of a {@link ParsecOffHeapArena}, with the rest of the entries on heap, and the least
+ * recently used entries are removed, freeing their blocks, when the arena has no room left for a new response.
+ */
+final class ParsecOffHeapResponseStore {
+
+    /**
+     * Default bytes of a block of the arena.
+     */
+    private static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    /**
+     * Arena holding the serialised responses.
+     */
+    private final ParsecOffHeapArena arena;
+
+    /**
+     * Stored entries by cache key, in access order.
+     */
+    private final LinkedHashMap<ParsecRequestKey, StoredEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Bytes of the blocks of the stored entries.
+     */
+    private long bytes;
+
+    /**
+     * Constructor.
+     *
+     * @param maximumBytes maximum bytes of the arena
+     */
+    ParsecOffHeapResponseStore(final long maximumBytes) {
+        this(maximumBytes, (int) Math.min(DEFAULT_BLOCK_SIZE, maximumBytes));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maximumBytes maximum bytes of the arena
+     * @param blockSize    bytes of a block of the arena
+     */
+    ParsecOffHeapResponseStore(final long maximumBytes, final int blockSize) {
+        this.arena = new ParsecOffHeapArena(maximumBytes, blockSize);
+    }
+
+    /**
+     * Store an entry, replacing the one of the same key. Entries without a response, or with a body type
+     * that cannot be serialised or larger than the arena, are not stored.
+     *
+     * @param key   cache key
+     * @param entry cache entry
+     * @return true if the entry is stored
+     */
+    boolean put(final ParsecRequestKey key, final ParsecCacheEntry entry) {
+        if (entry.getResponse() == null) {
+            return false;
+        }
+        ParsecResponseCodec.Encoding encoding = ParsecResponseCodec.prepare(entry.getResponse());
+        if (encoding == null || arena.getBlocks(encoding.getSize()) > arena.getCapacityBlocks()) {
+            return false;
+        }
+
+        synchronized (this) {
+            remove(key);
+            Iterator<StoredEntry> iterator = entries.values().iterator();
+            int[] blocks = arena.allocate(encoding.getSize());
+            while (blocks == null) {
+                StoredEntry evicted = iterator.next();
+                iterator.remove();
+                release(evicted);
+                blocks = arena.allocate(encoding.getSize());
+            }
+            try {
+                encoding.writeTo(arena.newOutputStream(blocks));
+            } catch (IOException e) {
+                arena.free(blocks);
+                throw new IllegalStateException(e);
+            }
+            entries.put(key, new StoredEntry(entry.withResponse(null), blocks, encoding.getSize()));
+            bytes += (long) blocks.length * arena.getBlockSize();
+        }
+        return true;
+    }
+
+    /**
+     * Get an entry, with its response deserialised. An entry that is no longer fresh is removed instead.
+     *
+     * @param key      cache key
+     * @param nowNanos current time
+     * @return cache entry, null if none is fresh
+     */
+    synchronized ParsecCacheEntry get(final ParsecRequestKey key, final long nowNanos) {
+        StoredEntry stored = entries.get(key);
+        if (stored == null) {
+            return null;
+        }
+        if (!stored.entry.isFresh(nowNanos)) {
+            remove(key);
+            return null;
+        }
+        // Decoded under the lock, as the blocks are reused once the entry is removed
+        try {
+            return stored.entry.withResponse(
+                ParsecResponseCodec.decode(arena.newInputStream(stored.blocks, stored.size)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Remove an entry.
+     *
+     * @param key cache key
+     */
+    synchronized void remove(final ParsecRequestKey key) {
+        StoredEntry removed = entries.remove(key);
+        if (removed != null) {
+            release(removed);
+        }
+    }
+
+    /**
+     * Remove all entries, and release the memory of the arena.
+     */
+    synchronized void clear() {
+        entries.clear();
+        arena.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Free the blocks of a removed entry.
+     *
+     * @param removed removed entry
+     */
+    private void release(final StoredEntry removed) {
+        arena.free(removed.blocks);
+        bytes -= (long) removed.blocks.length * arena.getBlockSize();
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return number of entries
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the bytes of the blocks of the stored entries.
+     *
+     * @return bytes
+     */
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Entry kept without its response, and its serialised response.
+     */
+    private static final class StoredEntry {
+
+        /**
+         * Cache entry without its response.
+         */
+        private final ParsecCacheEntry entry;
+
+        /**
+         * Blocks of the serialised response.
+         */
+        private final int[] blocks;
+
+        /**
+         * Bytes of the serialised response.
+         */
+        private final int size;
+
+        /**
+         * Constructor.
+         *
+         * @param entry  cache entry without its response
+         * @param blocks blocks of the serialised response
+         * @param size   bytes of the serialised response
+         */
+        private StoredEntry(final ParsecCacheEntry entry, final int[] blocks, final int size) {
+            this.entry = entry;
+            this.blocks = blocks;
+            this.size = size;
+        }
+    }
+}
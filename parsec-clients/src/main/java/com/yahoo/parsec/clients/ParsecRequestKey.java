@@ -0,0 +1,106 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Canonical key of a {@link ParsecAsyncHttpRequest}, made of the values that identify the request.
+ *
+ * <p>The values are captured once when the request is built, and the hash code is computed on first use then
+ * cached, so hashing and comparing keys does not go through reflection. Byte arrays, e.g. bodies, are hashed with
+ * Murmur3 and compared by content.</p>
+ */
+final class ParsecRequestKey {
+
+    /**
+     * Hash function of byte arrays.
+     */
+    private static final HashFunction BYTES_HASH_FUNCTION = Hashing.murmur3_32();
+
+    /**
+     * Request the key was made from, not part of the key.
+     */
+    private final ParsecAsyncHttpRequest request;
+
+    /**
+     * Values identifying the request, possibly byte arrays or nested arrays.
+     */
+    private final Object[] values;
+
+    /**
+     * Cached hash code, 0 if not computed yet.
+     */
+    private int hash;
+
+    /**
+     * Constructor.
+     *
+     * @param request request the key is made from
+     * @param values  values identifying the request
+     */
+    ParsecRequestKey(ParsecAsyncHttpRequest request, Object... values) {
+        this.request = request;
+        this.values = values;
+    }
+
+    /**
+     * Get the request the key was made from.
+     *
+     * @return request
+     */
+    ParsecAsyncHttpRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (object == this) {
+            return true;
+        }
+
+        if (!(object instanceof ParsecRequestKey)) {
+            return false;
+        }
+
+        ParsecRequestKey other = (ParsecRequestKey) object;
+        return hashCode() == other.hashCode() && Arrays.deepEquals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = hash(values);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Hash values, hashing byte arrays by content and nested arrays deeply.
+     *
+     * @param values values
+     * @return hash code
+     */
+    private static int hash(Object[] values) {
+        int result = 1;
+        for (Object value : values) {
+            int valueHash;
+            if (value instanceof byte[]) {
+                valueHash = BYTES_HASH_FUNCTION.hashBytes((byte[]) value).asInt();
+            } else if (value instanceof Object[]) {
+                valueHash = hash((Object[]) value);
+            } else {
+                valueHash = Objects.hashCode(value);
+            }
+            result = 31 * result + valueHash;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,243 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serialises the status, headers and body of a {@link Response} into a stream, e.g. to the blocks of a
+ * {@link ParsecOffHeapArena}, and back. Only string and byte array bodies are supported.
+ */
+final class ParsecResponseCodec {
+
+    /**
+     * No body.
+     */
+    private static final byte NO_BODY = 0;
+
+    /**
+     * String body.
+     */
+    private static final byte STRING_BODY = 1;
+
+    /**
+     * Byte array body.
+     */
+    private static final byte BYTES_BODY = 2;
+
+    /**
+     * Private constructor.
+     */
+    private ParsecResponseCodec() {
+
+    }
+
+    /**
+     * Prepare the encoding of a response, whose size is then known before it is written.
+     *
+     * @param response response
+     * @return encoding, null if the body type is not supported
+     */
+    static Encoding prepare(final Response response) {
+        Object entity = response.getEntity();
+        byte bodyType;
+        byte[] body;
+        if (entity == null) {
+            bodyType = NO_BODY;
+            body = new byte[0];
+        } else if (entity instanceof String) {
+            bodyType = STRING_BODY;
+            body = ((String) entity).getBytes(StandardCharsets.UTF_8);
+        } else if (entity instanceof byte[]) {
+            bodyType = BYTES_BODY;
+            body = (byte[]) entity;
+        } else {
+            return null;
+        }
+
+        List<byte[]> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> header : response.getStringHeaders().entrySet()) {
+            byte[] name = header.getKey().getBytes(StandardCharsets.UTF_8);
+            for (String value : header.getValue()) {
+                headers.add(name);
+                headers.add(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return new Encoding(response.getStatus(), headers, bodyType, body);
+    }
+
+    /**
+     * Encode a response into a byte array, which {@link #decode(InputStream)} reads.
+     *
+     * @param response response
+     * @return bytes, null if the body type is not supported
+     */
+    static byte[] toBytes(final Response response) {
+        Encoding encoding = prepare(response);
+        if (encoding == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(encoding.getSize());
+        try {
+            encoding.writeTo(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a response.
+     *
+     * @param input input written by {@link Encoding#writeTo(OutputStream)}, whose available bytes are the bytes left
+     * @return response
+     * @throws IOException IO exception, e.g. if the input ends early
+     */
+    static Response decode(final InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        Response.ResponseBuilder builder = Response.status(in.readInt());
+        int headerCount = in.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            builder.header(readString(in), readString(in));
+        }
+
+        byte bodyType = in.readByte();
+        byte[] body = readBytes(in);
+        if (bodyType == STRING_BODY) {
+            builder.entity(new String(body, StandardCharsets.UTF_8));
+        } else if (bodyType == BYTES_BODY) {
+            builder.entity(body);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Write a string as its UTF-8 length and bytes.
+     *
+     * @param out   output
+     * @param bytes UTF-8 bytes of the string
+     * @throws IOException IO exception
+     */
+    private static void writeString(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, byte[])}.
+     *
+     * @param in input
+     * @return string
+     * @throws IOException IO exception
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read bytes written after their length.
+     *
+     * @param in input, whose available bytes are the bytes left to read
+     * @return bytes
+     * @throws IOException IO exception, e.g. if the length is negative or over the bytes left
+     */
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length in encoded response: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Status, headers and body of a response, as bytes ready to be written.
+     */
+    static final class Encoding {
+
+        /**
+         * Status code.
+         */
+        private final int status;
+
+        /**
+         * UTF-8 name and value of each header value, in turn.
+         */
+        private final List<byte[]> headers;
+
+        /**
+         * Body type.
+         */
+        private final byte bodyType;
+
+        /**
+         * Body.
+         */
+        private final byte[] body;
+
+        /**
+         * Size of the encoding.
+         */
+        private final int size;
+
+        /**
+         * Constructor.
+         *
+         * @param status   status code
+         * @param headers  UTF-8 name and value of each header value, in turn
+         * @param bodyType body type
+         * @param body     body
+         */
+        private Encoding(final int status, final List<byte[]> headers, final byte bodyType, final byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.bodyType = bodyType;
+            this.body = body;
+            int headerBytes = 0;
+            for (byte[] bytes : headers) {
+                headerBytes += Integer.BYTES + bytes.length;
+            }
+            this.size = Integer.BYTES * 2 + headerBytes + 1 + Integer.BYTES + body.length;
+        }
+
+        /**
+         * Get the size of the encoding.
+         *
+         * @return bytes
+         */
+        int getSize() {
+            return size;
+        }
+
+        /**
+         * Write the encoding.
+         *
+         * @param output output
+         * @throws IOException IO exception
+         */
+        void writeTo(final OutputStream output) throws IOException {
+            DataOutputStream out = new DataOutputStream(output);
+            out.writeInt(status);
+            out.writeInt(headers.size() / 2);
+            for (byte[] bytes : headers) {
+                writeString(out, bytes);
+            }
+            out.writeByte(bodyType);
+            out.writeInt(body.length);
+            out.write(body);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Policy that decides how long to wait before retrying a request.
+ */
+public interface ParsecRetryBackoffPolicy {
+
+    /**
+     * Get the delay before the given retry.
+     *
+     * @param retryCount          retry about to be made, starting at 1
+     * @param previousDelayMillis delay used before the previous retry, 0 before the first retry
+     * @return delay in milliseconds
+     */
+    long getDelayMillis(int retryCount, long previousDelayMillis);
+
+    /**
+     * Get the maximum delay this policy may wait. It also bounds delays requested by a server
+     * through the {@code Retry-After} header. A request whose {@code Retry-After} delay, once bounded,
+     * is still longer than its request timeout (60 seconds if not set) is not retried.
+     *
+     * @return maximum delay in milliseconds
+     */
+    default long getMaxDelayMillis() {
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,268 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Preconditions;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that caps retries per host to a ratio of the first attempts sent to that host.
+ *
+ * <p>Every first attempt deposits {@code retryRatio} tokens and every retry withdraws one token.
+ * Deposits expire after a sliding window of {@value #WINDOW_SECONDS} seconds, so a budget saved up during
+ * quiet periods cannot be spent in one burst. A small reserve of {@code minRetriesPerSecond} keeps
+ * retries possible for hosts with little traffic.</p>
+ *
+ * <p>The bucket of a host is dropped once it is idle for a whole window, when it holds no deposits anyway, and at
+ * most {@value #MAX_HOSTS} hosts are tracked.</p>
+ */
+final class ParsecRetryBudget {
+
+    /**
+     * Sliding window length in seconds.
+     */
+    static final int WINDOW_SECONDS = 10;
+
+    /**
+     * Maximum number of hosts tracked.
+     */
+    static final int MAX_HOSTS = 10000;
+
+    /**
+     * Time after which the budget exhausted count of a host with no denied retry is dropped, in minutes.
+     */
+    private static final long EXHAUSTED_COUNT_EXPIRY_MINUTES = 60;
+
+    /**
+     * Retry ratio.
+     */
+    private final double retryRatio;
+
+    /**
+     * Minimum retries per second allowed regardless of the ratio.
+     */
+    private final int minRetriesPerSecond;
+
+    /**
+     * Clock in nanoseconds.
+     */
+    private final LongSupplier nanoClock;
+
+    /**
+     * Buckets keyed by host.
+     */
+    private final Cache<String, Bucket> buckets;
+
+    /**
+     * Number of retries allowed.
+     */
+    private final AtomicLong retryCount = new AtomicLong();
+
+    /**
+     * Number of retries denied.
+     */
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    /**
+     * Number of retries denied, keyed by host.
+     */
+    private final Cache<String, AtomicLong> exhaustedCounts;
+
+    /**
+     * Constructor.
+     *
+     * @param retryRatio          retries allowed per first attempt, e.g. 0.1 for 10%
+     * @param minRetriesPerSecond minimum retries per second allowed regardless of the ratio
+     */
+    ParsecRetryBudget(double retryRatio, int minRetriesPerSecond) {
+        this(retryRatio, minRetriesPerSecond, System::nanoTime);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param retryRatio          retries allowed per first attempt, e.g. 0.1 for 10%
+     * @param minRetriesPerSecond minimum retries per second allowed regardless of the ratio
+     * @param nanoClock           clock in nanoseconds
+     */
+    ParsecRetryBudget(double retryRatio, int minRetriesPerSecond, LongSupplier nanoClock) {
+        Preconditions.checkArgument(retryRatio >= 0, "Retry ratio cannot be negative");
+        Preconditions.checkArgument(minRetriesPerSecond >= 0, "Min retries per second cannot be negative");
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.nanoClock = nanoClock;
+        buckets = Caffeine.newBuilder()
+            .ticker(nanoClock::getAsLong)
+            .expireAfterAccess(WINDOW_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(MAX_HOSTS)
+            .build();
+        exhaustedCounts = Caffeine.newBuilder()
+            .ticker(nanoClock::getAsLong)
+            .expireAfterAccess(EXHAUSTED_COUNT_EXPIRY_MINUTES, TimeUnit.MINUTES)
+            .maximumSize(MAX_HOSTS)
+            .build();
+    }
+
+    /**
+     * Record a first attempt to the given host.
+     *
+     * @param hostKey host key
+     */
+    void deposit(String hostKey) {
+        bucket(hostKey).deposit(currentSecond());
+    }
+
+    /**
+     * Try to spend one retry for the given host.
+     *
+     * @param hostKey host key
+     * @return true if the retry is allowed, false if the budget is exhausted
+     */
+    boolean tryWithdraw(String hostKey) {
+        if (bucket(hostKey).tryWithdraw(currentSecond())) {
+            retryCount.incrementAndGet();
+            return true;
+        }
+        exhaustedCount.incrementAndGet();
+        exhaustedCounts.get(hostKey, k -> new AtomicLong()).incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Get number of retries allowed.
+     *
+     * @return retry count
+     */
+    long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Get number of retries denied because the budget was exhausted.
+     *
+     * @return budget exhausted count
+     */
+    long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * Get number of retries denied because the budget was exhausted, keyed by host, for the hosts that had one
+     * denied in the last {@value #EXHAUSTED_COUNT_EXPIRY_MINUTES} minutes.
+     *
+     * @return budget exhausted counts keyed by host
+     */
+    Map<String, Long> getExhaustedCountsByHost() {
+        Map<String, Long> counts = new HashMap<>();
+        exhaustedCounts.asMap().forEach((hostKey, count) -> counts.put(hostKey, count.get()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Get number of hosts whose bucket is tracked.
+     *
+     * @return host count
+     */
+    long getHostCount() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+
+    /**
+     * Get bucket of the given host.
+     *
+     * @param hostKey host key
+     * @return bucket
+     */
+    private Bucket bucket(String hostKey) {
+        return buckets.get(hostKey, k -> new Bucket());
+    }
+
+    /**
+     * Get current time in seconds.
+     *
+     * @return current second
+     */
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+    }
+
+    /**
+     * Per host sliding window of deposits and withdrawals, one slot per second.
+     */
+    private final class Bucket {
+        /**
+         * Deposits per slot.
+         */
+        private final long[] deposits = new long[WINDOW_SECONDS];
+
+        /**
+         * Withdrawals per slot.
+         */
+        private final long[] withdrawals = new long[WINDOW_SECONDS];
+
+        /**
+         * Second each slot was last used for.
+         */
+        private final long[] seconds = new long[WINDOW_SECONDS];
+
+        /**
+         * Record a deposit.
+         *
+         * @param second current second
+         */
+        synchronized void deposit(long second) {
+            deposits[slot(second)]++;
+        }
+
+        /**
+         * Try to record a withdrawal.
+         *
+         * @param second current second
+         * @return true if there was enough balance
+         */
+        synchronized boolean tryWithdraw(long second) {
+            int current = slot(second);
+            long depositSum = 0;
+            long withdrawalSum = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if (second - seconds[i] < WINDOW_SECONDS) {
+                    depositSum += deposits[i];
+                    withdrawalSum += withdrawals[i];
+                }
+            }
+
+            double balance = depositSum * retryRatio + (double) minRetriesPerSecond * WINDOW_SECONDS - withdrawalSum;
+            if (balance < 1) {
+                return false;
+            }
+            withdrawals[current]++;
+            return true;
+        }
+
+        /**
+         * Get the slot of the given second, clearing it if it belongs to an expired second.
+         *
+         * @param second current second
+         * @return slot index
+         */
+        private int slot(long second) {
+            int index = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+            if (seconds[index] != second) {
+                seconds[index] = second;
+                deposits[index] = 0;
+                withdrawals[index] = 0;
+            }
+            return index;
+        }
+    }
+}
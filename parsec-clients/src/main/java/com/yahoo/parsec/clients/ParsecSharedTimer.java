@@ -0,0 +1,59 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Process wide timer used to schedule delayed work (e.g. retry delays) without holding a thread while waiting.
+ * Timer tasks are expected to be short and must never block: sending a request, which may block e.g. to resolve
+ * the host name, is handed to the executor of the client once the delay is over.
+ */
+final class ParsecSharedTimer {
+
+    /**
+     * Timer thread name format.
+     */
+    private static final String THREAD_NAME_FORMAT = "parsec-timer-%d";
+
+    /**
+     * Lazily created shared instance.
+     */
+    private static class Holder {
+        private static final ScheduledExecutorService INSTANCE = create();
+    }
+
+    /**
+     * Unused private constructor.
+     */
+    private ParsecSharedTimer() {
+
+    }
+
+    /**
+     * Get the shared timer.
+     *
+     * @return shared {@link ScheduledExecutorService}
+     */
+    static ScheduledExecutorService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Create a single threaded daemon timer.
+     *
+     * @return {@link ScheduledExecutorService}
+     */
+    private static ScheduledExecutorService create() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+            .setNameFormat(THREAD_NAME_FORMAT)
+            .setDaemon(true)
+            .build());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
@@ -0,0 +1,184 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls into one in-flight call, whose outcome is shared by all callers.
+ *
+ * <p>A call is only tracked while in flight: nothing is retained after it completes, so a later identical call
+ * is sent again. Each caller gets its own future, so a caller cancelling its future does not affect the others;
+ * the shared call is cancelled once every caller has cancelled.</p>
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+final class ParsecSingleFlight<K, V> {
+
+    /**
+     * In-flight calls keyed by call key.
+     */
+    private final Map<K, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Execute a call, or join the identical call already in flight.
+     *
+     * @param key  call key
+     * @param call supplier that sends the call
+     * @return future of the call, specific to this caller
+     */
+    CompletableFuture<V> execute(final K key, final Supplier<CompletableFuture<V>> call) {
+        while (true) {
+            Flight flight = new Flight(key);
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                existing = flight;
+            }
+
+            CompletableFuture<V> follower = existing.join();
+            if (existing == flight) {
+                flight.start(call);
+            }
+            if (follower != null) {
+                return follower;
+            }
+            // The flight completed or was cancelled between the lookup and the join, retry with a new one
+        }
+    }
+
+    /**
+     * Get number of calls in flight.
+     *
+     * @return calls in flight
+     */
+    int size() {
+        return flights.size();
+    }
+
+    /**
+     * One in-flight call and its callers.
+     */
+    private final class Flight {
+        /**
+         * Call key.
+         */
+        private final K key;
+
+        /**
+         * Outcome of the shared call, completed once the call completes.
+         */
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        /**
+         * Future of the shared call, null until sent.
+         */
+        private volatile CompletableFuture<V> upstream;
+
+        /**
+         * Number of callers not cancelled.
+         */
+        private int callers;
+
+        /**
+         * Whether no caller can join anymore.
+         */
+        private boolean closed;
+
+        /**
+         * Constructor.
+         *
+         * @param key call key
+         */
+        private Flight(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Send the shared call.
+         *
+         * @param call supplier that sends the call
+         */
+        private void start(final Supplier<CompletableFuture<V>> call) {
+            CompletableFuture<V> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            upstream = future;
+            future.whenComplete((value, throwable) -> {
+                close();
+                if (throwable == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(throwable);
+                }
+            });
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        }
+
+        /**
+         * Join the shared call.
+         *
+         * @return future specific to the caller, or null if the call can no longer be joined
+         */
+        private CompletableFuture<V> join() {
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                callers++;
+            }
+
+            CompletableFuture<V> follower = new CompletableFuture<>();
+            result.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    follower.complete(value);
+                } else {
+                    follower.completeExceptionally(throwable);
+                }
+            });
+            follower.whenComplete((value, throwable) -> {
+                if (follower.isCancelled()) {
+                    leave();
+                }
+            });
+            return follower;
+        }
+
+        /**
+         * Leave the shared call, cancelling it if no caller is left.
+         */
+        private void leave() {
+            synchronized (this) {
+                if (--callers > 0 || closed) {
+                    return;
+                }
+            }
+            close();
+            result.cancel(true);
+            CompletableFuture<V> future = upstream;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        /**
+         * Stop accepting callers and forget the call.
+         */
+        private void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            flights.remove(key, this);
+        }
+    }
+}
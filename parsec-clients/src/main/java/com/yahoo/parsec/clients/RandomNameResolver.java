@@ -21,4 +21,9 @@ public class RandomNameResolver implements ParsecNameResolver {
         int addressIdx = ThreadLocalRandom.current().nextInt(addresses.length);
         return addresses[addressIdx];
     }
+
+    @Override
+    public InetAddress[] resolveAll(String name) throws UnknownHostException {
+        return InetAddress.getAllByName(name);
+    }
 }
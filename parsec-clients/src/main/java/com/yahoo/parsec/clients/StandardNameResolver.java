@@ -28,4 +28,9 @@ public class StandardNameResolver implements ParsecNameResolver {
     public InetAddress resolve(String name) throws UnknownHostException {
         return InetAddress.getByName(name);
     }
+
+    @Override
+    public InetAddress[] resolveAll(String name) throws UnknownHostException {
+        return InetAddress.getAllByName(name);
+    }
 }
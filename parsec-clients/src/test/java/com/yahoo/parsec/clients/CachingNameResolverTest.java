@@ -0,0 +1,231 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.jboss.netty.util.internal.DeadLockProofWorker;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Test class for {@link CachingNameResolver}.
+ */
+public class CachingNameResolverTest {
+
+    private static final String HOST = "example.test";
+
+    private ParsecNameResolver delegate;
+    private AtomicLong nanos;
+    private InetAddress first;
+    private InetAddress second;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        delegate = Mockito.mock(ParsecNameResolver.class);
+        nanos = new AtomicLong();
+        first = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 1});
+        second = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 2});
+    }
+
+    private CachingNameResolver.Builder resolverBuilder() {
+        return new CachingNameResolver.Builder()
+            .setDelegate(delegate)
+            .setExecutor(Runnable::run)
+            .setTicker(nanos::get)
+            .setTtl(10, TimeUnit.SECONDS)
+            .setMaxStale(20, TimeUnit.SECONDS)
+            .setNegativeTtl(5, TimeUnit.SECONDS);
+    }
+
+    private void advance(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    public void testAddressesAreCachedAndRefreshedBeforeExpiry() throws Exception {
+        when(delegate.resolveAll(HOST))
+            .thenReturn(new InetAddress[] {first, second})
+            .thenReturn(new InetAddress[] {second});
+        CachingNameResolver resolver = resolverBuilder().build();
+
+        resolver.prefetch(HOST);
+        assertEquals(resolver.resolveAll(HOST), new InetAddress[] {first, second});
+        assertEquals(resolver.resolve(HOST), first);
+        verify(delegate, times(1)).resolveAll(HOST);
+
+        // Past the refresh time, the cached addresses are served and refreshed
+        advance(9);
+        assertEquals(resolver.resolve(HOST), first);
+        verify(delegate, times(2)).resolveAll(HOST);
+        assertEquals(resolver.resolve(HOST), second);
+    }
+
+    @Test
+    public void testLastKnownGoodAddressesAreServedWhenLookupFails() throws Exception {
+        when(delegate.resolveAll(HOST))
+            .thenReturn(new InetAddress[] {first})
+            .thenThrow(new UnknownHostException(HOST));
+        CachingNameResolver resolver = resolverBuilder().build();
+
+        assertEquals(resolver.resolve(HOST), first);
+        advance(15);
+        assertEquals(resolver.resolve(HOST), first);
+        assertEquals(resolver.resolve(HOST), first);
+        // Failed lookups are retried after the negative TTL only
+        verify(delegate, times(2)).resolveAll(HOST);
+
+        advance(20);
+        try {
+            resolver.resolve(HOST);
+            fail();
+        } catch (UnknownHostException e) {
+            assertTrue(e.getMessage().startsWith(HOST));
+        }
+    }
+
+    @Test
+    public void testUnknownHostsAreNegativelyCached() throws Exception {
+        when(delegate.resolveAll(HOST))
+            .thenThrow(new UnknownHostException(HOST))
+            .thenReturn(new InetAddress[] {first});
+        CachingNameResolver resolver = resolverBuilder().build();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve(HOST);
+                fail();
+            } catch (UnknownHostException e) {
+                assertTrue(e.getCause() instanceof UnknownHostException);
+            }
+        }
+        verify(delegate, times(1)).resolveAll(HOST);
+
+        advance(5);
+        assertEquals(resolver.resolve(HOST), first);
+    }
+
+    @Test
+    public void testSlowLookupDoesNotBlockStaleAddresses() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.resolveAll(HOST))
+            .thenReturn(new InetAddress[] {first})
+            .thenAnswer(invocation -> {
+                release.await();
+                return new InetAddress[] {second};
+            });
+        when(delegate.resolveAll("other.test")).thenAnswer(invocation -> {
+            release.await();
+            return new InetAddress[] {second};
+        });
+        // The first lookup runs on the calling thread, the next ones on new threads
+        AtomicBoolean direct = new AtomicBoolean(true);
+        CachingNameResolver resolver = resolverBuilder()
+            .setExecutor(command -> {
+                if (direct.getAndSet(false)) {
+                    command.run();
+                } else {
+                    new Thread(command).start();
+                }
+            })
+            .setLookupTimeout(50, TimeUnit.MILLISECONDS)
+            .build();
+
+        resolver.prefetch(HOST);
+        assertEquals(resolver.resolve(HOST), first);
+
+        advance(15);
+        long start = System.nanoTime();
+        assertEquals(resolver.resolve(HOST), first);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        try {
+            resolver.resolve("other.test");
+            fail();
+        } catch (UnknownHostException e) {
+            assertTrue(e.getMessage().contains("timed out"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testColdMissFailsFastOnIoThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.resolveAll(HOST)).thenAnswer(invocation -> {
+            release.await();
+            return new InetAddress[] {first};
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CachingNameResolver resolver = resolverBuilder()
+            .setExecutor(executor)
+            .setLookupTimeout(5, TimeUnit.SECONDS)
+            .build();
+
+        DeadLockProofWorker.PARENT.set(executor);
+        try {
+            assertTrue(CachingNameResolver.isIoThread());
+            resolver.resolve(HOST);
+            fail();
+        } catch (UnknownHostException e) {
+            assertTrue(e.getMessage().contains("not cached yet"));
+        } finally {
+            DeadLockProofWorker.PARENT.remove();
+            release.countDown();
+        }
+
+        // The lookup started by the miss serves the next attempt
+        assertFalse(CachingNameResolver.isIoThread());
+        assertEquals(resolver.resolve(HOST), first);
+        verify(delegate, times(1)).resolveAll(HOST);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCachedNamesAreBounded() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        when(delegate.resolveAll(Mockito.anyString())).thenAnswer(invocation -> {
+            lookups.incrementAndGet();
+            return new InetAddress[] {first};
+        });
+        CachingNameResolver resolver = resolverBuilder().setMaximumSize(1).build();
+
+        resolver.resolve(HOST);
+        resolver.resolve("other.test");
+        assertEquals(lookups.get(), 2);
+
+        // Only one of the names is still cached
+        resolver.resolve(HOST);
+        resolver.resolve("other.test");
+        assertTrue(lookups.get() > 2, String.valueOf(lookups.get()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRefreshAfterCannotExceedTtl() {
+        resolverBuilder().setRefreshAfter(11, TimeUnit.SECONDS).build();
+    }
+
+    @Test
+    public void testDefaultResolveAll() throws Exception {
+        ParsecNameResolver resolver = name -> first;
+        assertEquals(resolver.resolveAll(HOST), new InetAddress[] {first});
+    }
+}
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.parsec.clients;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ning.http.client.Response;
 import org.testng.Assert;
@@ -9,12 +10,20 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.xml.ws.http.HTTPException;
+import java.io.ByteArrayInputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -76,4 +85,64 @@ public class DefaultAsyncCompletionHandlerTest {
                 new DefaultAsyncCompletionHandler<>(String.class, expected);
         handler.onCompleted(mockResponse);
     }
+
+    @Test
+    public void testOnCompletionParsesBodyBytes() throws Exception {
+        when(mockResponse.getStatusCode()).thenReturn(200);
+        when(mockResponse.hasResponseBody()).thenReturn(true);
+        when(mockResponse.getContentType()).thenReturn("application/json");
+        when(mockResponse.getResponseBodyAsStream()).thenReturn(
+            new ByteArrayInputStream("{\"a\":\"\u00e9\"}".getBytes(StandardCharsets.UTF_8)));
+
+        DefaultAsyncCompletionHandler<Map> handler = new DefaultAsyncCompletionHandler<>(Map.class);
+        Assert.assertEquals(handler.onCompleted(mockResponse).get("a"), "\u00e9");
+        verify(mockResponse, never()).getResponseBody();
+    }
+
+    @Test
+    public void testOnCompletionWithTypeReference() throws Exception {
+        when(mockResponse.getStatusCode()).thenReturn(200);
+        when(mockResponse.hasResponseBody()).thenReturn(true);
+        when(mockResponse.getResponseBodyAsStream()).thenReturn(
+            new ByteArrayInputStream("[{\"a\":1},{\"a\":2}]".getBytes(StandardCharsets.UTF_8)));
+
+        DefaultAsyncCompletionHandler<List<Map<String, Integer>>> handler =
+                new DefaultAsyncCompletionHandler<>(new TypeReference<List<Map<String, Integer>>>() { });
+        List<Map<String, Integer>> value = handler.onCompleted(mockResponse);
+        Assert.assertEquals(value.size(), 2);
+        Assert.assertEquals(value.get(1).get("a"), Integer.valueOf(2));
+    }
+
+    @Test
+    public void testOnCompletionDecodesNonUtfCharset() throws Exception {
+        when(mockResponse.getStatusCode()).thenReturn(200);
+        when(mockResponse.hasResponseBody()).thenReturn(true);
+        when(mockResponse.getContentType()).thenReturn("application/json; charset=ISO-8859-1");
+        when(mockResponse.getResponseBody("ISO-8859-1")).thenReturn("[\"\u00e9\"]");
+
+        DefaultAsyncCompletionHandler<List> handler = new DefaultAsyncCompletionHandler<>(List.class);
+        Assert.assertEquals(handler.onCompleted(mockResponse), Arrays.asList("\u00e9"));
+    }
+
+    @Test
+    public void testObjectMapperIsNotRetainedAfterHandler() throws Exception {
+        when(mockResponse.getStatusCode()).thenReturn(200);
+        when(mockResponse.hasResponseBody()).thenReturn(true);
+        when(mockResponse.getResponseBodyAsStream()).thenAnswer(invocation ->
+            new ByteArrayInputStream("{\"a\":1}".getBytes(StandardCharsets.UTF_8)));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        DefaultAsyncCompletionHandler<Map> handler = new DefaultAsyncCompletionHandler<>(Map.class, objectMapper);
+        Assert.assertEquals(handler.onCompleted(mockResponse).get("a"), 1);
+        Assert.assertEquals(handler.onCompleted(mockResponse).get("a"), 1);
+
+        WeakReference<ObjectMapper> reference = new WeakReference<>(objectMapper);
+        objectMapper = null;
+        handler = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(reference.get());
+    }
 }
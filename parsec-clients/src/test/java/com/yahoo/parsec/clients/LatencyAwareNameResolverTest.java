@@ -0,0 +1,186 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHandler;
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link LatencyAwareNameResolver}.
+ */
+public class LatencyAwareNameResolverTest {
+
+    private static final String HOST = "example.test";
+
+    private ParsecNameResolver delegate;
+    private AtomicLong nanos;
+    private InetAddress first;
+    private InetAddress second;
+    private InetAddress third;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        delegate = Mockito.mock(ParsecNameResolver.class);
+        nanos = new AtomicLong();
+        first = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 1});
+        second = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 2});
+        third = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 3});
+        when(delegate.resolveAll(HOST)).thenReturn(new InetAddress[] {first, second});
+    }
+
+    private LatencyAwareNameResolver.Builder resolverBuilder() {
+        return new LatencyAwareNameResolver.Builder()
+            .setDelegate(delegate)
+            .setTicker(nanos::get)
+            .setDecayTime(10, TimeUnit.SECONDS);
+    }
+
+    private void complete(LatencyAwareNameResolver resolver, InetAddress address, int statusCode, long micros) {
+        resolver.onRequestStarted(address);
+        resolver.onRequestCompleted(address, statusCode, statusCode < 0 ? new IOException() : null, micros);
+    }
+
+    @Test
+    public void testPowerOfTwoChoicesAvoidsSlowAddress() throws Exception {
+        LatencyAwareNameResolver resolver = resolverBuilder().build();
+        complete(resolver, first, 200, 100000);
+        complete(resolver, second, 200, 1000);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(resolver.resolve(HOST), second);
+        }
+
+        // Requests in flight outweigh the latency
+        for (int i = 0; i < 200; i++) {
+            resolver.onRequestStarted(second);
+        }
+        assertEquals(resolver.getInFlightRequests(second), 200);
+        assertEquals(resolver.resolve(HOST), first);
+    }
+
+    @Test
+    public void testLeastOutstandingRequests() throws Exception {
+        when(delegate.resolveAll(HOST)).thenReturn(new InetAddress[] {first, second, third});
+        LatencyAwareNameResolver resolver = resolverBuilder()
+            .setStrategy(ParsecLoadBalancingStrategy.LEAST_OUTSTANDING_REQUESTS)
+            .build();
+        complete(resolver, first, 200, 1000);
+        complete(resolver, second, 200, 5000);
+        complete(resolver, third, 200, 3000);
+        resolver.onRequestStarted(first);
+        resolver.onRequestStarted(first);
+        resolver.onRequestStarted(third);
+
+        assertEquals(resolver.resolve(HOST), second);
+
+        // Ties are broken by latency
+        resolver.onRequestStarted(second);
+        assertEquals(resolver.resolve(HOST), third);
+    }
+
+    @Test
+    public void testLatencyDecays() throws Exception {
+        LatencyAwareNameResolver resolver = resolverBuilder().build();
+        complete(resolver, first, 200, 100000);
+        assertEquals(resolver.getLatencyMicros(first), 100000);
+
+        // Slower requests raise the latency at once
+        complete(resolver, first, 200, 200000);
+        assertEquals(resolver.getLatencyMicros(first), 200000);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(resolver.getLatencyMicros(first), Math.round(200000 * Math.exp(-1)));
+
+        // Faster requests lower it gradually
+        complete(resolver, first, 200, 1000);
+        long latency = resolver.getLatencyMicros(first);
+        assertTrue(latency > 1000 && latency < 200000, String.valueOf(latency));
+    }
+
+    @Test
+    public void testFailuresDoNotLowerLatency() throws Exception {
+        LatencyAwareNameResolver resolver = resolverBuilder().build();
+        complete(resolver, first, 200, 100000);
+        complete(resolver, first, -1, 10);
+        complete(resolver, first, 503, 10);
+
+        assertEquals(resolver.getLatencyMicros(first), 100000);
+        assertEquals(resolver.getInFlightRequests(first), 0);
+    }
+
+    @Test
+    public void testSingleAddress() throws Exception {
+        when(delegate.resolveAll(HOST)).thenReturn(new InetAddress[] {first});
+        LatencyAwareNameResolver resolver = resolverBuilder().build();
+
+        assertEquals(resolver.resolve(HOST), first);
+        assertEquals(resolver.resolveAll(HOST), new InetAddress[] {first});
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFeedbackHandlerFeedsResolver() throws Exception {
+        LatencyAwareNameResolver resolver = resolverBuilder().build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://" + HOST + "/")
+            .setNameResolver(resolver)
+            .build();
+        ParsecNameResolverFeedbackHandler<Object> wrapper = (ParsecNameResolverFeedbackHandler<Object>)
+            ParsecNameResolverFeedbackHandler.wrap(Mockito.mock(AsyncHandler.class), request.getNingRequest());
+
+        wrapper.onPoolConnection();
+        wrapper.onDnsResolved(first);
+        assertEquals(resolver.getInFlightRequests(first), 1);
+        verify(delegate).onRequestStarted(first);
+
+        wrapper.onThrowable(new IOException());
+        assertEquals(resolver.getInFlightRequests(first), 0);
+        verify(delegate).onRequestCompleted(eq(first), eq(-1), any(IOException.class), anyLong());
+
+        // Requests on pooled connections are not attributed to an address
+        wrapper.onThrowable(new IOException());
+        verify(delegate).onRequestCompleted(eq(first), eq(-1), any(IOException.class), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFeedbackHandlerReleasesSupersededAddress() throws Exception {
+        LatencyAwareNameResolver resolver = resolverBuilder().build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://" + HOST + "/")
+            .setNameResolver(resolver)
+            .build();
+        ParsecNameResolverFeedbackHandler<Object> wrapper = (ParsecNameResolverFeedbackHandler<Object>)
+            ParsecNameResolverFeedbackHandler.wrap(Mockito.mock(AsyncHandler.class), request.getNingRequest());
+
+        wrapper.onDnsResolved(first);
+        wrapper.onDnsResolved(second);
+        assertEquals(resolver.getInFlightRequests(first), 0);
+        assertEquals(resolver.getInFlightRequests(second), 1);
+        verify(delegate).onRequestCompleted(eq(first), eq(-1), isA(CancellationException.class), anyLong());
+
+        wrapper.onThrowable(new IOException());
+        assertEquals(resolver.getInFlightRequests(second), 0);
+        verify(delegate).onRequestCompleted(eq(second), eq(-1), isA(IOException.class), anyLong());
+        verify(delegate).onRequestCompleted(eq(first), anyInt(), any(Throwable.class), anyLong());
+    }
+}
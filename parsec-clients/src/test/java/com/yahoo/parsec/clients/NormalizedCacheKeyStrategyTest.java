@@ -0,0 +1,108 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.NewCookie;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+
+public class NormalizedCacheKeyStrategyTest {
+
+    private static ParsecAsyncHttpRequest.Builder request(String url) {
+        return new ParsecAsyncHttpRequest.Builder().setUrl(url);
+    }
+
+    @Test
+    public void testFullRequestStrategyKeysOnRequest() throws Exception {
+        ParsecAsyncHttpRequest request = request("http://localhost/a").build();
+
+        assertSame(FullRequestCacheKeyStrategy.getInstance().getCacheKey(request), request);
+    }
+
+    @Test
+    public void testSchemeHostAndDefaultPortAreNormalized() throws Exception {
+        ParsecCacheKeyStrategy strategy = new NormalizedCacheKeyStrategy.Builder().build();
+
+        Object key = strategy.getCacheKey(request("http://LocalHost/a").build());
+        assertEquals(strategy.getCacheKey(request("HTTP://localhost:80/a").build()), key);
+        assertEquals(strategy.getCacheKey(request("http://localhost:80/a").build()).hashCode(), key.hashCode());
+        assertNotEquals(strategy.getCacheKey(request("http://localhost:8080/a").build()), key);
+        assertNotEquals(strategy.getCacheKey(request("http://localhost/b").build()), key);
+    }
+
+    @Test
+    public void testQueryParamsAreDecodedAndSortedWhenEnabled() throws Exception {
+        ParsecCacheKeyStrategy unsorted = new NormalizedCacheKeyStrategy.Builder().build();
+        ParsecCacheKeyStrategy sorted = new NormalizedCacheKeyStrategy.Builder().setSortQueryParams(true).build();
+
+        ParsecAsyncHttpRequest first = request("http://localhost/a?b=2&a=x%20y").build();
+        ParsecAsyncHttpRequest second = request("http://localhost/a").addQueryParam("a", "x y")
+            .addQueryParam("b", "2").build();
+
+        assertNotEquals(unsorted.getCacheKey(first), unsorted.getCacheKey(second));
+        assertEquals(sorted.getCacheKey(first), sorted.getCacheKey(second));
+        assertNotEquals(
+            sorted.getCacheKey(request("http://localhost/a?a=1&a=2").build()),
+            sorted.getCacheKey(request("http://localhost/a?a=1").build())
+        );
+    }
+
+    @Test
+    public void testIgnoredQueryParams() throws Exception {
+        ParsecCacheKeyStrategy strategy = new NormalizedCacheKeyStrategy.Builder().ignoreQueryParams("ts").build();
+
+        assertEquals(
+            strategy.getCacheKey(request("http://localhost/a?q=1&ts=1").build()),
+            strategy.getCacheKey(request("http://localhost/a?q=1&ts=2").build())
+        );
+    }
+
+    @Test
+    public void testOnlyIncludedHeadersTakePart() throws Exception {
+        ParsecCacheKeyStrategy all = new NormalizedCacheKeyStrategy.Builder().build();
+        ParsecCacheKeyStrategy accept = new NormalizedCacheKeyStrategy.Builder().includeHeaders("ACCEPT").build();
+
+        ParsecAsyncHttpRequest first = request("http://localhost/a")
+            .addHeader("Accept", "application/json").addHeader("X-Trace-Id", "1").build();
+        ParsecAsyncHttpRequest second = request("http://localhost/a")
+            .addHeader("accept", "application/json").addHeader("X-Trace-Id", "2").build();
+        ParsecAsyncHttpRequest third = request("http://localhost/a")
+            .addHeader("Accept", "text/plain").addHeader("X-Trace-Id", "1").build();
+
+        assertNotEquals(all.getCacheKey(first), all.getCacheKey(second));
+        assertEquals(accept.getCacheKey(first), accept.getCacheKey(second));
+        assertNotEquals(accept.getCacheKey(first), accept.getCacheKey(third));
+    }
+
+    @Test
+    public void testIgnoredCookies() throws Exception {
+        ParsecCacheKeyStrategy strategy = new NormalizedCacheKeyStrategy.Builder().ignoreCookies("session").build();
+
+        Object key = strategy.getCacheKey(request("http://localhost/a")
+            .addCookie(new NewCookie("session", "1"))
+            .addCookie(new NewCookie("lang", "en"))
+            .build());
+        assertEquals(strategy.getCacheKey(request("http://localhost/a")
+            .addCookie(new NewCookie("lang", "en"))
+            .addCookie(new NewCookie("session", "2"))
+            .build()), key);
+        assertNotEquals(strategy.getCacheKey(request("http://localhost/a")
+            .addCookie(new NewCookie("lang", "fr"))
+            .build()), key);
+    }
+
+    @Test
+    public void testMethodAndBodyTakePart() throws Exception {
+        ParsecCacheKeyStrategy strategy = new NormalizedCacheKeyStrategy.Builder().build();
+
+        Object key = strategy.getCacheKey(request("http://localhost/a").setMethod("POST").setBody("a").build());
+        assertEquals(strategy.getCacheKey(request("http://localhost/a").setMethod("post").setBody("a").build()), key);
+        assertNotEquals(strategy.getCacheKey(request("http://localhost/a").setMethod("POST").setBody("b").build()), key);
+        assertNotEquals(strategy.getCacheKey(request("http://localhost/a").setBody("a").build()), key);
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.mockito.Mockito;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link OutlierEjectingNameResolver}.
+ */
+public class OutlierEjectingNameResolverTest {
+
+    private static final String HOST = "example.test";
+
+    private ParsecNameResolver delegate;
+    private AtomicLong nanos;
+    private InetAddress first;
+    private InetAddress second;
+    private InetAddress third;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        delegate = Mockito.mock(ParsecNameResolver.class);
+        nanos = new AtomicLong();
+        first = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 1});
+        second = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 2});
+        third = InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 3});
+        when(delegate.resolveAll(HOST)).thenReturn(new InetAddress[] {first, second, third});
+        when(delegate.resolve(HOST)).thenReturn(first);
+    }
+
+    private OutlierEjectingNameResolver.Builder resolverBuilder() {
+        return new OutlierEjectingNameResolver.Builder()
+            .setDelegate(delegate)
+            .setTicker(nanos::get)
+            .setConsecutiveFailures(3)
+            .setBaseEjectionTime(10, TimeUnit.SECONDS)
+            .setMaxEjectionTime(30, TimeUnit.SECONDS)
+            .setMinHealthyPercent(0);
+    }
+
+    private void fail(ParsecNameResolver resolver, InetAddress address, int times) {
+        for (int i = 0; i < times; i++) {
+            resolver.onRequestCompleted(address, -1, new TimeoutException(), 1000);
+        }
+    }
+
+    private void advance(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    public void testConsecutiveFailuresEjectAddress() throws Exception {
+        OutlierEjectingNameResolver resolver = resolverBuilder().build();
+        fail(resolver, first, 2);
+        resolver.onRequestCompleted(first, 200, null, 1000);
+        fail(resolver, first, 2);
+        assertFalse(resolver.isEjected(first));
+
+        resolver.onRequestCompleted(first, 503, null, 1000);
+        assertTrue(resolver.isEjected(first));
+        assertEquals(resolver.resolveAll(HOST), new InetAddress[] {second, third});
+        assertNotEquals(resolver.resolve(HOST), first);
+        verify(delegate).onRequestCompleted(first, 503, null, 1000);
+
+        advance(10);
+        assertFalse(resolver.isEjected(first));
+        assertEquals(resolver.resolve(HOST), first);
+    }
+
+    @Test
+    public void testEjectionTimeBacksOff() throws Exception {
+        OutlierEjectingNameResolver resolver = resolverBuilder().build();
+        fail(resolver, first, 3);
+        advance(10);
+        assertFalse(resolver.isEjected(first));
+
+        fail(resolver, first, 3);
+        advance(19);
+        assertTrue(resolver.isEjected(first));
+        advance(1);
+        assertFalse(resolver.isEjected(first));
+
+        // Capped at the max ejection time
+        fail(resolver, first, 3);
+        advance(30);
+        assertFalse(resolver.isEjected(first));
+
+        // Reset by a success once back for as long as the last ejection
+        advance(30);
+        resolver.onRequestCompleted(first, 200, null, 1000);
+        fail(resolver, first, 3);
+        advance(10);
+        assertFalse(resolver.isEjected(first));
+    }
+
+    @Test
+    public void testMinHealthyPercent() throws Exception {
+        OutlierEjectingNameResolver resolver = resolverBuilder().setMinHealthyPercent(50).build();
+        fail(resolver, second, 3);
+        assertEquals(resolver.resolveAll(HOST), new InetAddress[] {first, third});
+
+        // The address that is due back first is kept
+        advance(1);
+        fail(resolver, first, 3);
+        advance(1);
+        fail(resolver, third, 3);
+        assertEquals(resolver.resolveAll(HOST), new InetAddress[] {first, second});
+
+        // At least one address is always returned
+        resolver = resolverBuilder().build();
+        fail(resolver, first, 3);
+        fail(resolver, second, 3);
+        fail(resolver, third, 3);
+        assertEquals(resolver.resolveAll(HOST), new InetAddress[] {first});
+    }
+
+    @Test
+    public void testCancelledRequestsAreIgnored() throws Exception {
+        OutlierEjectingNameResolver resolver = resolverBuilder().build();
+        for (int i = 0; i < 3; i++) {
+            resolver.onRequestCompleted(first, -1, new CancellationException(), 1000);
+        }
+        assertFalse(resolver.isEjected(first));
+    }
+
+    @Test
+    public void testLatencyAwareResolverSkipsEjectedAddress() throws Exception {
+        OutlierEjectingNameResolver outlierEjectingResolver = resolverBuilder().build();
+        LatencyAwareNameResolver resolver = new LatencyAwareNameResolver.Builder()
+            .setDelegate(outlierEjectingResolver)
+            .build();
+
+        // A failing address fails fast, so it looks faster than the others
+        resolver.onRequestStarted(second);
+        resolver.onRequestCompleted(second, 200, null, 100000);
+        resolver.onRequestStarted(third);
+        resolver.onRequestCompleted(third, 200, null, 100000);
+        for (int i = 0; i < 3; i++) {
+            resolver.onRequestStarted(first);
+            resolver.onRequestCompleted(first, -1, new TimeoutException(), 10);
+        }
+
+        assertTrue(outlierEjectingResolver.isEjected(first));
+        for (int i = 0; i < 10; i++) {
+            assertNotEquals(resolver.resolve(HOST), first);
+        }
+    }
+}
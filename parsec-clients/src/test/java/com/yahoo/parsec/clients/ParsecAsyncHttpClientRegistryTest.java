@@ -0,0 +1,145 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHttpClientConfig;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecAsyncHttpClientRegistryTest {
+
+    private ParsecAsyncHttpClientRegistry registry;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        registry = new ParsecAsyncHttpClientRegistry();
+    }
+
+    @Test
+    public void testIdenticalBuildersShareClient() throws Exception {
+        ParsecAsyncHttpClientRegistry.Handle first = registry.acquire(new ParsecAsyncHttpClient.Builder()
+            .setConnectTimeout(300)
+            .addCacheTtlRoute("/a", 1)
+            .setCircuitBreaker(new ParsecCircuitBreakerConfig.Builder().build()));
+        ParsecAsyncHttpClientRegistry.Handle second = registry.acquire(new ParsecAsyncHttpClient.Builder()
+            .setConnectTimeout(300)
+            .addCacheTtlRoute("/a", 1)
+            .setCircuitBreaker(new ParsecCircuitBreakerConfig.Builder().build()));
+
+        assertSame(first.getClient(), second.getClient());
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertEquals(registry.size(), 1);
+        assertEquals(registry.getReferenceCount(first.getFingerprint()), 2);
+
+        first.release();
+        first.release();
+        assertEquals(registry.getReferenceCount(first.getFingerprint()), 1);
+        assertFalse(second.getClient().isClosed());
+
+        second.close();
+        assertEquals(registry.size(), 0);
+        assertEquals(registry.getReferenceCount(first.getFingerprint()), 0);
+    }
+
+    @Test
+    public void testLastReleaseClosesClient() throws Exception {
+        ParsecAsyncHttpClientRegistry.Handle handle = registry.acquire(new ParsecAsyncHttpClient.Builder());
+        ParsecAsyncHttpClient client = handle.getClient();
+        handle.release();
+
+        assertTrue(client.isClosed());
+        ParsecAsyncHttpClientRegistry.Handle next = registry.acquire(new ParsecAsyncHttpClient.Builder());
+        assertFalse(next.getClient().isClosed());
+        next.release();
+    }
+
+    @Test
+    public void testBuilderIsReusableAfterItsClientIsClosed() throws Exception {
+        ParsecAsyncHttpClient.Builder builder = new ParsecAsyncHttpClient.Builder();
+        ParsecClientFingerprint fingerprint = builder.fingerprint();
+        registry.acquire(builder).release();
+
+        assertEquals(builder.fingerprint(), fingerprint);
+        ParsecAsyncHttpClientRegistry.Handle handle = registry.acquire(builder);
+        assertFalse(handle.getClient().getExecutorService().isShutdown());
+        handle.release();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testReleasedHandle() throws Exception {
+        ParsecAsyncHttpClientRegistry.Handle handle = registry.acquire(new ParsecAsyncHttpClient.Builder());
+        handle.release();
+        handle.getClient();
+    }
+
+    @Test
+    public void testFingerprint() throws Exception {
+        assertEquals(new ParsecAsyncHttpClient.Builder().fingerprint(),
+            new ParsecAsyncHttpClient.Builder().fingerprint());
+        assertNotEquals(new ParsecAsyncHttpClient.Builder().setMaxRedirects(4).fingerprint(),
+            new ParsecAsyncHttpClient.Builder().fingerprint());
+        assertNotEquals(
+            new ParsecAsyncHttpClient.Builder().addCacheTtlRoute("/a", 1).addCacheTtlRoute("/b", 2).fingerprint(),
+            new ParsecAsyncHttpClient.Builder().addCacheTtlRoute("/b", 2).addCacheTtlRoute("/a", 1).fingerprint());
+        assertEquals(new ParsecAsyncHttpClient.Builder().setRetryBackoffPolicy(new FixedBackoffPolicy(100)).fingerprint(),
+            new ParsecAsyncHttpClient.Builder().setRetryBackoffPolicy(new FixedBackoffPolicy(100)).fingerprint());
+
+        ParsecAsyncHttpClient.Builder builder = new ParsecAsyncHttpClient.Builder().enableProfilingFilter(true);
+        ParsecClientFingerprint fingerprint = builder.fingerprint();
+        builder.build().close();
+        assertEquals(builder.fingerprint(), fingerprint);
+        assertEquals(new ParsecAsyncHttpClient.Builder().enableProfilingFilter(true).fingerprint(), fingerprint);
+    }
+
+    @Test
+    public void testFingerprintDoesNotChangeBuilder() throws Exception {
+        AsyncHttpClientConfig.Builder configBuilder = new AsyncHttpClientConfig.Builder();
+        ParsecAsyncHttpClient.Builder builder = new ParsecAsyncHttpClient.Builder(configBuilder)
+            .enableProfilingFilter(true);
+        builder.fingerprint();
+
+        AsyncHttpClientConfig config = configBuilder.build();
+        assertTrue(config.getRequestFilters().isEmpty());
+        config.executorService().shutdown();
+    }
+
+    @Test
+    public void testFingerprintComparesClientResourcesByIdentity() throws Exception {
+        ParsecClientResources resources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        ParsecClientResources otherResources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        try {
+            assertEquals(new ParsecAsyncHttpClient.Builder().setClientResources(resources).fingerprint(),
+                new ParsecAsyncHttpClient.Builder().setClientResources(resources).fingerprint());
+            assertNotEquals(new ParsecAsyncHttpClient.Builder().setClientResources(resources).fingerprint(),
+                new ParsecAsyncHttpClient.Builder().setClientResources(otherResources).fingerprint());
+        } finally {
+            resources.release();
+            otherResources.release();
+        }
+    }
+
+    @Test
+    public void testGetPoolStats() throws Exception {
+        ParsecAsyncHttpClientRegistry.Handle handle = registry.acquire(new ParsecAsyncHttpClient.Builder()
+            .setMaxConnections(10));
+        try {
+            Map<ParsecClientFingerprint, ParsecAsyncHttpClient.PoolStats> poolStats = registry.getPoolStats();
+            assertEquals(poolStats.size(), 1);
+            ParsecAsyncHttpClient.PoolStats stats = poolStats.get(handle.getFingerprint());
+            assertEquals(stats.maxConnections(), 10);
+            assertEquals(stats.inFlightRequests(), 0);
+        } finally {
+            handle.release();
+        }
+        assertTrue(registry.getPoolStats().isEmpty());
+    }
+}
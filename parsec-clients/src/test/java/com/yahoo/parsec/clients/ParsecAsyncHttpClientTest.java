@@ -9,6 +9,8 @@ import com.ning.http.client.filter.FilterContext;
 import com.ning.http.client.filter.IOExceptionFilter;
 import com.ning.http.client.filter.RequestFilter;
 import com.ning.http.client.filter.ResponseFilter;
+import com.ning.http.client.providers.netty.NettyAsyncHttpProviderConfig;
+import org.jboss.netty.util.HashedWheelTimer;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
@@ -20,6 +22,7 @@ import org.testng.annotations.Test;
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.core.Response;
 import java.lang.reflect.Constructor;
+import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -28,10 +31,14 @@ import java.util.List;
 import java.util.concurrent.*;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -152,6 +159,47 @@ public class ParsecAsyncHttpClientTest {
         assertNotNull(client);
     }
 
+    @Test
+    public void testNameResolverIsFedWithProfilingFilter() throws Exception {
+        ParsecNameResolver nameResolver = mock(ParsecNameResolver.class);
+        InetAddress address = InetAddress.getByName(jettyHttpTestServer.getHost());
+        when(nameResolver.resolve(jettyHttpTestServer.getHost())).thenReturn(address);
+        ParsecAsyncHttpClient profilingClient = new ParsecAsyncHttpClient.Builder().enableProfilingFilter(true).build();
+        try {
+            Response response = profilingClient.criticalExecute(new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200")
+                .setNameResolver(nameResolver)
+                .build()).get(5, TimeUnit.SECONDS);
+
+            assertEquals(response.getStatus(), 200);
+            verify(nameResolver).onRequestStarted(address);
+            verify(nameResolver).onRequestCompleted(eq(address), eq(200), isNull(Throwable.class), anyLong());
+        } finally {
+            profilingClient.close();
+        }
+    }
+
+    @Test
+    public void testLatencyAwareNameResolverIsSampledWithProfilingFilter() throws Exception {
+        ParsecNameResolver delegate = mock(ParsecNameResolver.class);
+        InetAddress address = InetAddress.getByName(jettyHttpTestServer.getHost());
+        when(delegate.resolveAll(jettyHttpTestServer.getHost())).thenReturn(new InetAddress[] {address});
+        LatencyAwareNameResolver nameResolver = new LatencyAwareNameResolver.Builder().setDelegate(delegate).build();
+        ParsecAsyncHttpClient profilingClient = new ParsecAsyncHttpClient.Builder().enableProfilingFilter(true).build();
+        try {
+            CompletableFuture<Response> future = profilingClient.criticalExecute(new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200")
+                .setNameResolver(nameResolver)
+                .build());
+
+            assertEquals(future.get(5, TimeUnit.SECONDS).getStatus(), 200);
+            assertEquals(nameResolver.getInFlightRequests(address), 0);
+            assertTrue(nameResolver.getLatencyMicros(address) > 0);
+        } finally {
+            profilingClient.close();
+        }
+    }
+
     @Test
     public void testBuilderListExec() throws Exception {
         List<ParsecAsyncHttpRequest> builders = new ArrayList<>();
@@ -524,12 +572,11 @@ public class ParsecAsyncHttpClientTest {
 
         CompletableFuture completableFuture = client.execute(request);
         assertNotNull(completableFuture);
-        assertTrue(completableFuture instanceof ParsecCompletableFuture);
+        assertTrue(completableFuture instanceof ParsecHttpRequestRetryFuture);
+        assertEquals(((ParsecHttpRequestRetryFuture) completableFuture).getBackoffPolicy(), new FixedBackoffPolicy(100));
 
-        ArgumentCaptor<ParsecHttpRequestRetryCallable> argumentCaptor = ArgumentCaptor.forClass(ParsecHttpRequestRetryCallable.class);
-        verify(executorService, times(1)).submit(argumentCaptor.capture());
-        ParsecHttpRequestRetryCallable retryCallable = argumentCaptor.getValue();
-        assertEquals(100, retryCallable.getRetryDelayer().getRetryIntervalMillis());
+        // retries must not occupy an executor thread while waiting
+        verify(executorService, never()).submit(any(Callable.class));
     }
 
     @Test
@@ -611,4 +658,371 @@ public class ParsecAsyncHttpClientTest {
         assertEquals(cacheStats.hitCount(), 1);
         assertEquals(cacheStats.missCount(), 1);
     }
+
+    @Test
+    public void testNegativeCacheCountsNegativeHits() throws Exception {
+        ParsecAsyncHttpClient negativeCacheClient = new ParsecAsyncHttpClient.Builder()
+            .recordCacheStats()
+            .setNegativeCache(new ParsecNegativeCacheConfig.Builder().build())
+            .build();
+
+        try {
+            ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().setUrl(baseUrl + "/404").build();
+            assertEquals(negativeCacheClient.execute(request).get().getStatus(), 404);
+            assertEquals(negativeCacheClient.execute(request).get().getStatus(), 404);
+
+            ParsecAsyncHttpClient.CacheStats cacheStats = negativeCacheClient.getCacheStats();
+            assertEquals(cacheStats.hitCount(), 1);
+            assertEquals(cacheStats.negativeHitCount(), 1);
+        } finally {
+            negativeCacheClient.close();
+        }
+    }
+
+    @Test
+    public void testPoolStatsCountInFlightRequests() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/sleep/200")
+            .build();
+
+        CompletableFuture<Response> future = client.execute(request);
+        assertEquals(client.getPoolStats().inFlightRequests(), 1);
+        assertEquals(future.get().getStatus(), 200);
+        // Counted down once the callers of the request are notified
+        long deadline = System.currentTimeMillis() + 1000;
+        while (client.getPoolStats().inFlightRequests() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(client.getPoolStats().inFlightRequests(), 0);
+    }
+
+    @Test
+    public void testClientResourcesAreSharedUntilLastClientIsClosed() throws Exception {
+        ParsecClientResources resources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        ParsecAsyncHttpClient first = new ParsecAsyncHttpClient.Builder().setClientResources(resources).build();
+        ParsecAsyncHttpClient second = new ParsecAsyncHttpClient.Builder().setClientResources(resources).build();
+        assertEquals(resources.getReferenceCount(), 3);
+        assertSame(first.getExecutorService(), second.getExecutorService());
+
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/200")
+            .build();
+        assertEquals(first.execute(request).get().getStatus(), 200);
+
+        first.close();
+        first.close();
+        assertEquals(resources.getReferenceCount(), 2);
+        assertFalse(second.getExecutorService().isShutdown());
+        assertEquals(second.execute(request).get().getStatus(), 200);
+
+        resources.release();
+        assertFalse(resources.isShutdown());
+        second.close();
+        assertTrue(resources.isShutdown());
+        assertTrue(second.getExecutorService().isShutdown());
+    }
+
+    @Test
+    public void testClientResourcesKeepProviderConfig() throws Exception {
+        ParsecClientResources resources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        NettyAsyncHttpProviderConfig providerConfig = new NettyAsyncHttpProviderConfig();
+        providerConfig.setHttpClientCodecMaxHeaderSize(16384);
+        ParsecAsyncHttpClient client = new ParsecAsyncHttpClient.Builder(new AsyncHttpClientConfig.Builder()
+            .setAsyncHttpClientProviderConfig(providerConfig))
+            .setClientResources(resources)
+            .build();
+        assertSame(client.getNingClientConfig().getAsyncHttpProviderConfig(), providerConfig);
+        assertEquals(providerConfig.getHttpClientCodecMaxHeaderSize(), 16384);
+        assertSame(providerConfig.getNettyTimer(), resources.getNettyTimer());
+        assertNotNull(providerConfig.getSocketChannelFactory());
+
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/200")
+            .build();
+        assertEquals(client.execute(request).get().getStatus(), 200);
+        client.close();
+
+        NettyAsyncHttpProviderConfig ownTimerConfig = new NettyAsyncHttpProviderConfig();
+        HashedWheelTimer ownTimer = new HashedWheelTimer();
+        ownTimerConfig.setNettyTimer(ownTimer);
+        try {
+            new ParsecAsyncHttpClient.Builder(new AsyncHttpClientConfig.Builder()
+                .setAsyncHttpClientProviderConfig(ownTimerConfig))
+                .setClientResources(resources)
+                .build();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            ownTimer.stop();
+        }
+        assertEquals(resources.getReferenceCount(), 1);
+        resources.release();
+    }
+
+    @Test
+    public void testCacheKeyStrategySharesNormalizedRequests() throws Exception {
+        ParsecAsyncHttpClient normalizedClient = new ParsecAsyncHttpClient.Builder()
+            .recordCacheStats()
+            .setCacheKeyStrategy(new NormalizedCacheKeyStrategy.Builder()
+                .includeHeaders("Accept")
+                .setSortQueryParams(true)
+                .build())
+            .build();
+
+        try {
+            normalizedClient.execute(new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200?a=1&b=2")
+                .addHeader("X-Trace-Id", "1")
+                .build()).get();
+            normalizedClient.execute(new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200?b=2&a=1")
+                .addHeader("X-Trace-Id", "2")
+                .build()).get();
+
+            assertEquals(normalizedClient.getCacheStats().hitCount(), 1);
+        } finally {
+            normalizedClient.close();
+        }
+    }
+
+    @Test
+    public void testOpenCircuitBreakerFailsFast() throws Exception {
+        List<ParsecCircuitBreakerState> transitions = new CopyOnWriteArrayList<>();
+        ParsecAsyncHttpClient circuitBreakerClient = new ParsecAsyncHttpClient.Builder()
+            .setCircuitBreaker(new ParsecCircuitBreakerConfig.Builder()
+                .setSlidingWindowSize(4)
+                .setMinimumNumberOfCalls(4)
+                .addListener((hostKey, from, to) -> transitions.add(to))
+                .build())
+            .build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/500")
+            .build();
+
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(circuitBreakerClient.criticalExecute(request).get().getStatus(), 500);
+            }
+            // Outcomes are recorded on the I/O thread, possibly after the response is returned
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (transitions.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(transitions, Arrays.asList(ParsecCircuitBreakerState.OPEN));
+            assertEquals(circuitBreakerClient.getCircuitBreakerStates().get(request.getHostKey()),
+                ParsecCircuitBreakerState.OPEN);
+
+            try {
+                circuitBreakerClient.criticalExecute(request).get();
+                fail("expected exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ParsecCircuitBreakerOpenException);
+            }
+        } finally {
+            circuitBreakerClient.close();
+        }
+    }
+
+    @Test
+    public void testRetryBudgetStats() throws Exception {
+        assertNull(client.getRetryBudgetStats());
+
+        ParsecAsyncHttpClient retryBudgetClient = new ParsecAsyncHttpClient.Builder().setRetryBudget(0, 0).build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/500")
+            .addRetryStatusCode(500)
+            .build();
+
+        try {
+            assertEquals(retryBudgetClient.criticalExecute(request).get().getStatus(), 500);
+            ParsecAsyncHttpClient.RetryBudgetStats retryBudgetStats = retryBudgetClient.getRetryBudgetStats();
+            assertEquals(retryBudgetStats.retryCount(), 0);
+            assertEquals(retryBudgetStats.budgetExhaustedCount(), 1);
+            assertEquals(retryBudgetStats.budgetExhaustedCountsByHost().get(request.getHostKey()), Long.valueOf(1));
+        } finally {
+            retryBudgetClient.close();
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimitRejectsRequestsOverLimit() throws Exception {
+        ParsecAsyncHttpClient limitedClient = new ParsecAsyncHttpClient.Builder()
+            .setConcurrencyLimit(new ParsecConcurrencyLimitConfig.Builder().setInitialLimit(1).setMinLimit(1).build())
+            .build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/sleep/200")
+            .build();
+
+        try {
+            CompletableFuture<Response> first = limitedClient.criticalExecute(request);
+            try {
+                limitedClient.criticalExecute(request).get();
+                fail("expected exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ParsecConcurrencyLimitExceededException);
+            }
+            assertEquals(first.get().getStatus(), 200);
+            assertTrue(limitedClient.getConcurrencyLimits().get(request.getHostKey()) >= 1);
+        } finally {
+            limitedClient.close();
+        }
+    }
+
+    @Test
+    public void testCancelledQueuedRequestReleasesHalfOpenPermit() throws Exception {
+        ParsecAsyncHttpClient guardedClient = new ParsecAsyncHttpClient.Builder()
+            .setCircuitBreaker(new ParsecCircuitBreakerConfig.Builder()
+                .setSlidingWindowSize(2)
+                .setMinimumNumberOfCalls(2)
+                .setWaitDurationInOpenState(100)
+                .setPermittedCallsInHalfOpenState(2)
+                .build())
+            .setConcurrencyLimit(new ParsecConcurrencyLimitConfig.Builder()
+                .setInitialLimit(1)
+                .setMinLimit(1)
+                .setMaxLimit(1)
+                .setQueue(10, 5000)
+                .build())
+            .build();
+        ParsecAsyncHttpRequest failing = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/500")
+            .build();
+        ParsecAsyncHttpRequest slow = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/sleep/300")
+            .build();
+        ParsecAsyncHttpRequest fast = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/sleep/10")
+            .build();
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                assertEquals(guardedClient.criticalExecute(failing).get().getStatus(), 500);
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (guardedClient.getCircuitBreakerStates().get(failing.getHostKey()) != ParsecCircuitBreakerState.OPEN
+                && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(150);
+
+            // Both half open permits are taken, the second request waits for the concurrency limit
+            CompletableFuture<Response> sent = guardedClient.criticalExecute(slow);
+            CompletableFuture<Response> queued = guardedClient.criticalExecute(slow);
+            assertEquals(guardedClient.getCircuitBreakerStates().get(slow.getHostKey()),
+                ParsecCircuitBreakerState.HALF_OPEN);
+            queued.cancel(true);
+            assertEquals(sent.get().getStatus(), 200);
+
+            // The permit of the cancelled request is given back
+            assertEquals(guardedClient.criticalExecute(fast).get().getStatus(), 200);
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (guardedClient.getCircuitBreakerStates().get(fast.getHostKey()) != ParsecCircuitBreakerState.CLOSED
+                && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(guardedClient.getCircuitBreakerStates().get(fast.getHostKey()),
+                ParsecCircuitBreakerState.CLOSED);
+        } finally {
+            guardedClient.close();
+        }
+    }
+
+    @Test
+    public void testSingleFlightSharesIdenticalRequests() throws Exception {
+        ParsecAsyncHttpClient singleFlightClient = new ParsecAsyncHttpClient.Builder()
+            .setConcurrencyLimit(new ParsecConcurrencyLimitConfig.Builder().setInitialLimit(1).setMinLimit(1).build())
+            .enableSingleFlight(true)
+            .build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/sleep/200")
+            .build();
+
+        try {
+            // Over the limit of one request in flight, unless shared
+            CompletableFuture<Response> first = singleFlightClient.criticalExecute(request);
+            CompletableFuture<Response> second = singleFlightClient.criticalExecute(request);
+            assertEquals(first.get().getStatus(), 200);
+            assertSame(second.get(), first.get());
+        } finally {
+            singleFlightClient.close();
+        }
+    }
+
+    @Test
+    public void testBatchExecute() throws Exception {
+        ParsecAsyncHttpClient batchClient = new ParsecAsyncHttpClient.Builder().build();
+        List<ParsecAsyncHttpRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(new ParsecAsyncHttpRequest.Builder()
+                .setCriticalGet(true)
+                .setUrl(baseUrl + "/sleep/" + (50 + i))
+                .build());
+        }
+
+        try {
+            List<ParsecBatchResult> results = batchClient.criticalExecute(
+                requests,
+                new ParsecBatchConfig.Builder().setParallelism(2).setDeadline(5, TimeUnit.SECONDS).build()
+            ).get();
+
+            assertEquals(results.size(), 4);
+            for (int i = 0; i < 4; i++) {
+                assertSame(results.get(i).getRequest(), requests.get(i));
+                assertNull(results.get(i).getThrowable());
+                assertEquals(results.get(i).getResponse().getStatus(), 200);
+            }
+        } finally {
+            batchClient.close();
+        }
+    }
+
+    @Test
+    public void testScatterGatherReturnsPartialResultsAtDeadline() throws Exception {
+        ParsecAsyncHttpClient scatterClient = new ParsecAsyncHttpClient.Builder().build();
+        List<ParsecAsyncHttpRequest> requests = Arrays.asList(
+            new ParsecAsyncHttpRequest.Builder().setUrl(baseUrl + "/sleep/10").build(),
+            new ParsecAsyncHttpRequest.Builder().setUrl(baseUrl + "/sleep/3000").build(),
+            new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost:1/").build()
+        );
+
+        try {
+            long start = System.nanoTime();
+            List<ParsecBatchResult> results = scatterClient.scatterGather(requests, 500, TimeUnit.MILLISECONDS).get();
+
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2000));
+            assertEquals(results.get(0).getStatus(), ParsecBatchResultStatus.DONE);
+            assertEquals(results.get(0).getResponse().getStatus(), 200);
+            assertEquals(results.get(1).getStatus(), ParsecBatchResultStatus.TIMED_OUT);
+            assertEquals(results.get(2).getStatus(), ParsecBatchResultStatus.FAILED);
+        } finally {
+            scatterClient.close();
+        }
+    }
+
+    @Test
+    public void testCriticalExecuteByteResponse() throws Exception {
+        ParsecAsyncHttpClient byteClient = new ParsecAsyncHttpClient.Builder().build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setUrl(baseUrl + "/201")
+            .build();
+
+        try {
+            ParsecByteResponse response = byteClient.criticalExecute(request, ParsecByteResponseCompletionHandler::new).get();
+            assertEquals(response.getStatus(), 201);
+            assertEquals(response.getHeader("SocketPort"), Integer.toString(jettyHttpTestServer.getPort()));
+        } finally {
+            byteClient.close();
+        }
+    }
 }
@@ -218,6 +218,128 @@ public class ParsecAsyncHttpRequestTest {
         assertEquals("POST", builder.setMethod("POST").build().getMethod());
     }
 
+    @Test
+    public void testHedging() throws Exception {
+        // Test default value
+        assertFalse(builder.build().isHedged());
+        assertEquals(-1, builder.build().getHedgeDelayMillis());
+
+        // Test set and get
+        ParsecAsyncHttpRequest request = builder.setHedgeDelay(50).setHedgePercentile(95).build();
+        assertTrue(request.isHedged());
+        assertEquals(50, request.getHedgeDelayMillis());
+        assertEquals(95.0, request.getHedgePercentile());
+
+        // Test non idempotent methods are not hedged
+        assertFalse(builder.setMethod("POST").build().isHedged());
+    }
+
+    @Test
+    public void testCacheTtl() throws Exception {
+        // Test default value
+        ParsecAsyncHttpRequest request = builder.build();
+        assertEquals(-1, request.getCacheTtlMillis());
+
+        // Test set and get, the cache TTL does not make requests different
+        ParsecAsyncHttpRequest ttlRequest = builder.setCacheTtl(500).build();
+        assertEquals(500, ttlRequest.getCacheTtlMillis());
+        assertEquals(ttlRequest, request);
+        assertEquals(ttlRequest.withHeaders(Collections.singletonMap("Accept", "text/plain")).getCacheTtlMillis(), 500);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeCacheTtl() throws Exception {
+        builder.setCacheTtl(-1);
+    }
+
+    @Test
+    public void testIsIdempotent() throws Exception {
+        assertTrue(builder.build().isIdempotent());
+        assertTrue(builder.setMethod("HEAD").build().isIdempotent());
+        assertTrue(builder.setMethod("OPTIONS").build().isIdempotent());
+        assertFalse(builder.setMethod("POST").build().isIdempotent());
+        assertFalse(builder.setMethod("PUT").build().isIdempotent());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/path?a=1")
+            .addHeader("header1", "value1")
+            .setBody(new byte[]{1, 2, 3})
+            .build();
+        ParsecAsyncHttpRequest same = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/path?a=1")
+            .addHeader("header1", "value1")
+            .setBody(new byte[]{1, 2, 3})
+            .setRetryBackoffPolicy(new FixedBackoffPolicy(10))
+            .setHedgeDelay(50)
+            .build();
+
+        assertEquals(request, same);
+        assertEquals(request.hashCode(), same.hashCode());
+        assertEquals(request.getKey(), same.getKey());
+
+        assertNotEquals(request, new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/path?a=1")
+            .addHeader("header1", "value2")
+            .setBody(new byte[]{1, 2, 3})
+            .build());
+        assertNotEquals(request, new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/path?a=1")
+            .addHeader("header1", "value1")
+            .setBody(new byte[]{1, 2, 4})
+            .build());
+        assertNotEquals(request, builder.setUrl("http://localhost/path?a=1").setMethod("POST").build());
+    }
+
+    @Test
+    public void testEqualsAndHashCodeWithBodyParts() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .addBodyPart("part1", "value")
+            .addBodyPart("part2", new byte[]{4, 5}, null)
+            .build();
+        ParsecAsyncHttpRequest same = new ParsecAsyncHttpRequest.Builder()
+            .addBodyPart("part1", "value")
+            .addBodyPart("part2", new byte[]{4, 5}, null)
+            .build();
+
+        assertEquals(request, same);
+        assertEquals(request.hashCode(), same.hashCode());
+        assertNotEquals(request, new ParsecAsyncHttpRequest.Builder()
+            .addBodyPart("part1", "value")
+            .addBodyPart("part2", new byte[]{4, 6}, null)
+            .build());
+    }
+
+    @Test
+    public void testBuilderChangesDoNotAffectBuiltRequest() throws Exception {
+        ParsecAsyncHttpRequest request = builder.addRetryStatusCode(503).build();
+        int hashCode = request.hashCode();
+
+        builder.addRetryStatusCode(502);
+
+        assertEquals(request.hashCode(), hashCode);
+        assertEquals(request.getRetryStatusCodes(), Collections.singletonList(503));
+        assertNotEquals(request, builder.build());
+    }
+
+    @Test
+    public void testWithHeaders() throws Exception {
+        ParsecAsyncHttpRequest request = builder.setUrl("http://localhost/a").addHeader("If-None-Match", "\"1\"")
+            .addHeader("Accept", "text/plain").setMaxRetries(2).build();
+
+        ParsecAsyncHttpRequest conditional = request.withHeaders(Collections.singletonMap("If-None-Match", "\"2\""));
+
+        assertEquals(conditional.getHeaderString("If-None-Match"), "\"2\"");
+        assertEquals(conditional.getHeaderString("Accept"), "text/plain");
+        assertEquals(conditional.getUrl(), request.getUrl());
+        assertEquals(conditional.getMaxRetries(), 2);
+        assertEquals(conditional.getNameResolver(), request.getNameResolver());
+        assertEquals(request.getHeaderString("If-None-Match"), "\"1\"");
+        assertNotEquals(conditional, request);
+    }
+
     @Test
     public void testGetNingRequest() throws Exception {
         assertNotNull(builder.build().getNingRequest());
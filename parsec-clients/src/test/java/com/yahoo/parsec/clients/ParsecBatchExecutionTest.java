@@ -0,0 +1,259 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecBatchExecutionTest {
+    private ScheduledExecutorService timer;
+    private ExecutorService executor;
+    private List<ParsecAsyncHttpRequest> requests;
+    private List<CompletableFuture<Response>> sent;
+    private Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> call;
+
+    private CompletableFuture<List<ParsecBatchResult>> execute(ParsecBatchConfig config) {
+        return new ParsecBatchExecution(requests, config, call, timer, executor).execute();
+    }
+
+    private void waitForSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(sent.size(), count);
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newSingleThreadExecutor();
+        requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/" + i).build());
+        }
+        sent = Collections.synchronizedList(new ArrayList<>());
+        call = request -> {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            sent.add(future);
+            return future;
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws Exception {
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(
+            new ParsecBatchConfig.Builder().setParallelism(2).build());
+        assertEquals(sent.size(), 2);
+
+        sent.get(1).complete(Response.ok("1").build());
+        waitForSent(3);
+        Thread.sleep(50);
+        assertEquals(sent.size(), 3);
+
+        sent.get(0).complete(Response.ok("0").build());
+        waitForSent(4);
+        sent.get(2).complete(Response.ok("2").build());
+        waitForSent(5);
+        sent.get(3).complete(Response.ok("3").build());
+        sent.get(4).complete(Response.ok("4").build());
+
+        List<ParsecBatchResult> results = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(results.size(), 5);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(results.get(i).getIndex(), i);
+            assertSame(results.get(i).getRequest(), requests.get(i));
+            assertTrue(results.get(i).isSuccessful());
+        }
+        // Sent in order, the second request completed first
+        assertEquals(results.get(1).getResponse().getEntity(), "1");
+    }
+
+    @Test
+    public void testAllWaitsForFailures() throws Exception {
+        requests = requests.subList(0, 2);
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(new ParsecBatchConfig.Builder().build());
+        IllegalStateException failure = new IllegalStateException("failed");
+
+        sent.get(0).completeExceptionally(failure);
+        assertFalse(batch.isDone());
+        sent.get(1).complete(Response.ok().build());
+
+        List<ParsecBatchResult> results = batch.get(5, TimeUnit.SECONDS);
+        assertFalse(results.get(0).isSuccessful());
+        assertEquals(results.get(0).getStatus(), ParsecBatchResultStatus.FAILED);
+        assertSame(results.get(0).getThrowable(), failure);
+        assertNull(results.get(0).getResponse());
+        assertTrue(results.get(1).isSuccessful());
+    }
+
+    @Test
+    public void testFirstNCancelsRemainingRequests() throws Exception {
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(
+            new ParsecBatchConfig.Builder().setParallelism(3).setFirstN(2).build());
+
+        sent.get(2).complete(Response.ok().build());
+        sent.get(0).completeExceptionally(new IllegalStateException("failed"));
+        waitForSent(5);
+        sent.get(3).complete(Response.ok().build());
+
+        List<ParsecBatchResult> results = batch.get(5, TimeUnit.SECONDS);
+        assertTrue(results.get(2).isSuccessful());
+        assertTrue(results.get(3).isSuccessful());
+        assertTrue(sent.get(1).isCancelled());
+        assertTrue(sent.get(4).isCancelled());
+        assertTrue(results.get(1).getThrowable() instanceof CancellationException);
+        assertEquals(results.get(1).getStatus(), ParsecBatchResultStatus.CANCELLED);
+        assertTrue(results.get(4).getThrowable() instanceof CancellationException);
+    }
+
+    @Test
+    public void testRequestsAfterCompletionAreNeverSent() throws Exception {
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(
+            new ParsecBatchConfig.Builder().setParallelism(1).setCompletionMode(ParsecBatchCompletionMode.ANY).build());
+
+        sent.get(0).complete(Response.ok().build());
+
+        List<ParsecBatchResult> results = batch.get(5, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertEquals(sent.size(), 1);
+        assertTrue(results.get(4).getThrowable() instanceof CancellationException);
+    }
+
+    @Test
+    public void testAnyCompletesOnFirstSuccess() throws Exception {
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(new ParsecBatchConfig.Builder()
+            .setParallelism(5)
+            .setCompletionMode(ParsecBatchCompletionMode.ANY)
+            .build());
+
+        sent.get(0).completeExceptionally(new IllegalStateException("failed"));
+        assertFalse(batch.isDone());
+        sent.get(4).complete(Response.ok().build());
+
+        List<ParsecBatchResult> results = batch.get(5, TimeUnit.SECONDS);
+        assertTrue(results.get(4).isSuccessful());
+        for (int i = 1; i < 4; i++) {
+            assertTrue(sent.get(i).isCancelled());
+        }
+    }
+
+    @Test
+    public void testFirstNCompletesWhenItCanNoLongerBeMet() throws Exception {
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(
+            new ParsecBatchConfig.Builder().setParallelism(5).setFirstN(5).build());
+
+        sent.get(3).completeExceptionally(new IllegalStateException("failed"));
+
+        List<ParsecBatchResult> results = batch.get(5, TimeUnit.SECONDS);
+        assertFalse(results.get(3).isSuccessful());
+        assertTrue(sent.get(0).isCancelled());
+    }
+
+    @Test
+    public void testDeadlineCompletesWithPartialResults() throws Exception {
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(new ParsecBatchConfig.Builder()
+            .setParallelism(2)
+            .setDeadline(100, TimeUnit.MILLISECONDS)
+            .build());
+        sent.get(0).complete(Response.ok().build());
+        waitForSent(3);
+
+        List<ParsecBatchResult> results = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(results.get(0).getStatus(), ParsecBatchResultStatus.DONE);
+        for (int i = 1; i < 5; i++) {
+            assertEquals(results.get(i).getStatus(), ParsecBatchResultStatus.TIMED_OUT);
+            assertTrue(results.get(i).getThrowable() instanceof TimeoutException);
+        }
+        assertTrue(sent.get(1).isCancelled());
+        assertTrue(sent.get(2).isCancelled());
+        assertEquals(sent.size(), 3);
+    }
+
+    @Test
+    public void testRequestTimeoutIsFailedNotTimedOut() throws Exception {
+        requests = requests.subList(0, 1);
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(new ParsecBatchConfig.Builder()
+            .setDeadline(5, TimeUnit.SECONDS)
+            .build());
+
+        sent.get(0).completeExceptionally(new TimeoutException("request timeout"));
+
+        assertEquals(batch.get(5, TimeUnit.SECONDS).get(0).getStatus(), ParsecBatchResultStatus.FAILED);
+    }
+
+    @Test
+    public void testCancellingBatchCancelsRequestsInFlight() throws Exception {
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(
+            new ParsecBatchConfig.Builder().setParallelism(2).build());
+
+        batch.cancel(true);
+
+        assertTrue(sent.get(0).isCancelled());
+        assertTrue(sent.get(1).isCancelled());
+        Thread.sleep(50);
+        assertEquals(sent.size(), 2);
+    }
+
+    @Test
+    public void testResultListenerIsCalledAsResultsComplete() throws Exception {
+        requests = requests.subList(0, 2);
+        List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<List<ParsecBatchResult>> batch = execute(new ParsecBatchConfig.Builder()
+            .setResultListener(result -> completed.add(result.getIndex()))
+            .build());
+
+        sent.get(1).complete(Response.ok().build());
+        assertEquals(completed, Collections.singletonList(1));
+        sent.get(0).complete(Response.ok().build());
+
+        batch.get(5, TimeUnit.SECONDS);
+        assertEquals(completed.size(), 2);
+        assertEquals(completed.get(1), Integer.valueOf(0));
+    }
+
+    @Test
+    public void testExceptionSendingRequestFailsItsResult() throws Exception {
+        requests = requests.subList(0, 1);
+        IllegalStateException failure = new IllegalStateException("failed");
+        call = request -> {
+            throw failure;
+        };
+
+        List<ParsecBatchResult> results = execute(new ParsecBatchConfig.Builder().build()).get(5, TimeUnit.SECONDS);
+        assertSame(results.get(0).getThrowable(), failure);
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+        requests = Collections.emptyList();
+        assertTrue(execute(new ParsecBatchConfig.Builder().build()).get().isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.FluentCaseInsensitiveStringsMap;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.cookie.Cookie;
+import com.ning.http.client.providers.netty.response.NettyResponse;
+import com.ning.http.client.providers.netty.response.NettyResponseBodyPart;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecByteResponseTest {
+
+    private static NettyResponseBodyPart bodyPart(String content, boolean last) {
+        return new NettyResponseBodyPart(
+            mock(HttpResponse.class),
+            new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(content.getBytes(StandardCharsets.UTF_8))),
+            last
+        );
+    }
+
+    private static NettyResponse nettyResponse(String... parts) {
+        HttpResponseStatus status = mock(HttpResponseStatus.class);
+        when(status.getStatusCode()).thenReturn(200);
+        FluentCaseInsensitiveStringsMap headers = new FluentCaseInsensitiveStringsMap();
+        headers.add("Content-Type", "application/json; charset=UTF-8");
+        HttpResponseHeaders responseHeaders = mock(HttpResponseHeaders.class);
+        when(responseHeaders.getHeaders()).thenReturn(headers);
+
+        HttpResponseBodyPart[] bodyParts = new HttpResponseBodyPart[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            bodyParts[i] = bodyPart(parts[i], i == parts.length - 1);
+        }
+        return new NettyResponse(status, responseHeaders, Arrays.asList(bodyParts));
+    }
+
+    @Test
+    public void testBodyIsReadAcrossBodyParts() throws Exception {
+        ParsecByteResponse response = new ParsecByteResponse(nettyResponse("{\"a\":", "\"\u00e9\"", "}"));
+
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getContentType(), "application/json; charset=UTF-8");
+        assertEquals(response.getHeader("content-type"), "application/json; charset=UTF-8");
+        assertTrue(response.hasBody());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = response.getBodyAsStream()) {
+            byte[] buffer = new byte[2];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8), "{\"a\":\"\u00e9\"}");
+        assertEquals(new String(response.getBodyAsBytes(), StandardCharsets.UTF_8), "{\"a\":\"\u00e9\"}");
+        assertEquals(response.getBodyAsByteBuffer().remaining(), response.getBodyAsBytes().length);
+        assertEquals(response.getBody(), "{\"a\":\"\u00e9\"}");
+    }
+
+    @Test
+    public void testHeadersAndCookiesAreConvertedOnlyWhenAsked() throws Exception {
+        com.ning.http.client.Response ningResponse = mock(com.ning.http.client.Response.class);
+        when(ningResponse.getStatusCode()).thenReturn(200);
+        when(ningResponse.getCookies()).thenReturn(Collections.singletonList(
+            Cookie.newValidCookie("name", "value", false, "localhost", "/", 10, false, false)));
+
+        ParsecByteResponse response = new ParsecByteResponse(ningResponse);
+        assertEquals(response.getStatus(), 200);
+        verify(ningResponse, never()).getHeaders();
+        verify(ningResponse, never()).getCookies();
+
+        assertEquals(response.getCookies().size(), 1);
+        assertEquals(response.getCookies().get(0).getValue(), "value");
+    }
+
+    @Test
+    public void testToResponse() throws Exception {
+        Response response = new ParsecByteResponse(nettyResponse("body")).toResponse();
+
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getEntity(), "body");
+    }
+
+    @Test
+    public void testCompletionHandler() throws Exception {
+        com.ning.http.client.Response ningResponse = mock(com.ning.http.client.Response.class);
+        when(ningResponse.getStatusCode()).thenReturn(404);
+
+        ParsecByteResponse response = new ParsecByteResponseCompletionHandler().onCompleted(ningResponse);
+        assertEquals(response.getStatus(), 404);
+        assertEquals(ParsecHttpUtil.getStatusCode(response), 404);
+    }
+}
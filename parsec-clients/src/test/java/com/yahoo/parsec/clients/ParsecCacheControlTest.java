@@ -0,0 +1,45 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecCacheControlTest {
+
+    @Test
+    public void testParse() throws Exception {
+        ParsecCacheControl cacheControl = ParsecCacheControl.parse(
+            "Public, MAX-AGE=60, s-maxage=\"30\", no-cache=\"Set-Cookie, X-Token\", must-revalidate, "
+                + "stale-while-revalidate=5, stale-if-error=86400");
+
+        assertEquals(cacheControl.getMaxAgeSeconds(), 60);
+        assertEquals(cacheControl.getSharedMaxAgeSeconds(), 30);
+        assertTrue(cacheControl.isNoCache());
+        assertFalse(cacheControl.isNoStore());
+        assertFalse(cacheControl.isPrivate());
+        assertTrue(cacheControl.isMustRevalidate());
+        assertEquals(cacheControl.getStaleWhileRevalidateSeconds(), 5);
+        assertEquals(cacheControl.getStaleIfErrorSeconds(), 86400);
+    }
+
+    @Test
+    public void testParseAbsentAndInvalidValues() throws Exception {
+        ParsecCacheControl absent = ParsecCacheControl.parse(null);
+        assertEquals(absent.getMaxAgeSeconds(), -1);
+        assertEquals(absent.getSharedMaxAgeSeconds(), -1);
+        assertEquals(absent.getStaleWhileRevalidateSeconds(), -1);
+        assertEquals(absent.getStaleIfErrorSeconds(), -1);
+        assertFalse(absent.isMustRevalidate());
+
+        ParsecCacheControl invalid = ParsecCacheControl.parse("max-age=soon, s-maxage, no-store, private");
+        assertEquals(invalid.getMaxAgeSeconds(), 0);
+        assertEquals(invalid.getSharedMaxAgeSeconds(), 0);
+        assertTrue(invalid.isNoStore());
+        assertTrue(invalid.isPrivate());
+    }
+}
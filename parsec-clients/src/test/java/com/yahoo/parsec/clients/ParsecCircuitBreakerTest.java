@@ -0,0 +1,153 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.yahoo.parsec.clients.ParsecCircuitBreaker.NOT_PERMITTED;
+import static com.yahoo.parsec.clients.ParsecCircuitBreaker.PERMITTED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecCircuitBreakerTest {
+    private static final String HOST = "localhost:80";
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long nanos;
+    private List<ParsecCircuitBreakerState> transitions;
+    private ParsecCircuitBreaker circuitBreaker;
+
+    @BeforeMethod
+    public void setUp() {
+        nanos = TimeUnit.HOURS.toNanos(1);
+        transitions = new ArrayList<>();
+        circuitBreaker = new ParsecCircuitBreaker(HOST, new ParsecCircuitBreakerConfig.Builder()
+            .setSlidingWindowSize(10)
+            .setMinimumNumberOfCalls(4)
+            .setFailureRateThreshold(50)
+            .setSlowCallRateThreshold(50)
+            .setSlowCallDurationThreshold(100)
+            .setWaitDurationInOpenState(1000)
+            .setPermittedCallsInHalfOpenState(2)
+            .addListener((hostKey, from, to) -> transitions.add(to))
+            .build(), () -> nanos);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(circuitBreaker.tryAcquirePermission(), PERMITTED);
+            circuitBreaker.onResult(PERMITTED, true, FAST);
+        }
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testStaysClosedBelowMinimumNumberOfCalls() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onResult(PERMITTED, true, FAST);
+        }
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.CLOSED);
+    }
+
+    @Test
+    public void testStaysClosedBelowFailureRateThreshold() {
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onResult(PERMITTED, i % 3 == 1, FAST);
+        }
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.CLOSED);
+    }
+
+    @Test
+    public void testOpensOnFailures() {
+        open();
+        assertEquals(circuitBreaker.tryAcquirePermission(), NOT_PERMITTED);
+        assertEquals(transitions, Arrays.asList(ParsecCircuitBreakerState.OPEN));
+    }
+
+    @Test
+    public void testOpensOnSlowCalls() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(PERMITTED, false, TimeUnit.MILLISECONDS.toNanos(200));
+        }
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.OPEN);
+    }
+
+    @Test
+    public void testHalfOpenProbesClose() {
+        open();
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+
+        long probe = circuitBreaker.tryAcquirePermission();
+        assertTrue(probe > PERMITTED);
+        assertEquals(circuitBreaker.tryAcquirePermission(), probe);
+        assertEquals(circuitBreaker.tryAcquirePermission(), NOT_PERMITTED);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.HALF_OPEN);
+
+        circuitBreaker.onResult(probe, false, FAST);
+        circuitBreaker.onResult(probe, false, FAST);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.CLOSED);
+        assertEquals(transitions, Arrays.asList(
+            ParsecCircuitBreakerState.OPEN, ParsecCircuitBreakerState.HALF_OPEN, ParsecCircuitBreakerState.CLOSED));
+    }
+
+    @Test
+    public void testHalfOpenProbesOpenAgain() {
+        open();
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+
+        long probe = circuitBreaker.tryAcquirePermission();
+        assertEquals(circuitBreaker.tryAcquirePermission(), probe);
+        circuitBreaker.onResult(probe, true, FAST);
+        circuitBreaker.onResult(probe, false, FAST);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.OPEN);
+        assertEquals(circuitBreaker.tryAcquirePermission(), NOT_PERMITTED);
+    }
+
+    @Test
+    public void testIgnoredCallReleasesHalfOpenPermit() {
+        open();
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+
+        long probe = circuitBreaker.tryAcquirePermission();
+        assertEquals(circuitBreaker.tryAcquirePermission(), probe);
+        circuitBreaker.onIgnored(probe);
+        assertEquals(circuitBreaker.tryAcquirePermission(), probe);
+    }
+
+    @Test
+    public void testCallsSentBeforeHalfOpenDoNotTakeProbePermits() {
+        long closed = circuitBreaker.tryAcquirePermission();
+        open();
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+
+        long probe = circuitBreaker.tryAcquirePermission();
+        assertEquals(circuitBreaker.tryAcquirePermission(), probe);
+        circuitBreaker.onIgnored(closed);
+        assertEquals(circuitBreaker.tryAcquirePermission(), NOT_PERMITTED);
+
+        // Neither the outcome of a call sent while closed, nor a probe of an earlier half open state, is recorded
+        circuitBreaker.onResult(closed, false, FAST);
+        circuitBreaker.onResult(closed, false, FAST);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.HALF_OPEN);
+        circuitBreaker.onResult(probe, true, FAST);
+        circuitBreaker.onResult(probe, true, FAST);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.OPEN);
+
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        long nextProbe = circuitBreaker.tryAcquirePermission();
+        assertNotEquals(nextProbe, probe);
+        assertEquals(circuitBreaker.tryAcquirePermission(), nextProbe);
+        circuitBreaker.onIgnored(probe);
+        circuitBreaker.onResult(probe, false, FAST);
+        assertEquals(circuitBreaker.tryAcquirePermission(), NOT_PERMITTED);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreakerState.HALF_OPEN);
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecClientResourcesTest {
+
+    @Test
+    public void testShutdownOnLastRelease() {
+        ParsecClientResources resources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        assertEquals(resources.getReferenceCount(), 1);
+
+        assertTrue(resources.retain() == resources);
+        assertEquals(resources.getReferenceCount(), 2);
+        assertFalse(resources.release());
+        assertFalse(resources.isShutdown());
+        assertFalse(resources.getTimer().isShutdown());
+
+        assertTrue(resources.release());
+        assertTrue(resources.isShutdown());
+        assertTrue(resources.getTimer().isShutdown());
+        assertTrue(resources.getCleanUpExecutorService().isShutdown());
+        assertTrue(resources.getCallbackExecutorService().isShutdown());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testRetainAfterShutdown() {
+        ParsecClientResources resources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        resources.release();
+        resources.retain();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testReleaseAfterShutdown() {
+        ParsecClientResources resources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        resources.release();
+        resources.release();
+    }
+
+    @Test
+    public void testCallbackExecutorServiceIgnoresShutdownUntilReleased() throws Exception {
+        ParsecClientResources resources = new ParsecClientResources.Builder().setIoThreads(1).build();
+        ThreadPoolExecutor executorService = resources.getCallbackExecutorService();
+
+        executorService.shutdown();
+        assertTrue(executorService.shutdownNow().isEmpty());
+        assertFalse(executorService.isShutdown());
+        assertEquals(executorService.submit(() -> "a").get(), "a");
+
+        resources.release();
+        assertTrue(executorService.isShutdown());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidIoThreads() {
+        new ParsecClientResources.Builder().setIoThreads(0);
+    }
+}
@@ -0,0 +1,205 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecConcurrencyLimiterTest {
+    private static final String HOST = "localhost:80";
+
+    private long nanos;
+    private ScheduledExecutorService timer;
+    private ExecutorService executor;
+    private List<CompletableFuture<String>> calls;
+    private Supplier<CompletableFuture<String>> call;
+
+    private ParsecConcurrencyLimiter newLimiter(ParsecConcurrencyLimitConfig.Builder builder) {
+        return new ParsecConcurrencyLimiter(HOST, builder.build(), timer, executor, () -> nanos);
+    }
+
+    private void waitForCalls(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(calls.size(), count);
+    }
+
+    private void assertRejected(CompletableFuture<String> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ParsecConcurrencyLimitExceededException);
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        nanos = TimeUnit.HOURS.toNanos(1);
+        timer = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+        calls = Collections.synchronizedList(new ArrayList<>());
+        call = () -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            calls.add(future);
+            return future;
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRequestsOverLimitAreRejected() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder().setInitialLimit(2));
+        limiter.submit(call);
+        limiter.submit(call);
+
+        assertRejected(limiter.submit(call));
+        assertEquals(calls.size(), 2);
+        assertEquals(limiter.getInFlight(), 2);
+    }
+
+    @Test
+    public void testQueuedRequestIsSentWhenPermitIsReleased() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder()
+            .setInitialLimit(1)
+            .setQueue(1, 5000));
+        limiter.submit(call);
+        CompletableFuture<String> queued = limiter.submit(call);
+        assertRejected(limiter.submit(call));
+        assertEquals(calls.size(), 1);
+
+        calls.get(0).complete("first");
+        waitForCalls(2);
+        calls.get(1).complete("second");
+        assertEquals(queued.get(5, TimeUnit.SECONDS), "second");
+    }
+
+    @Test
+    public void testQueuedRequestTimesOut() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder()
+            .setInitialLimit(1)
+            .setQueue(1, 20));
+        limiter.submit(call);
+
+        assertRejected(limiter.submit(call));
+        calls.get(0).complete("first");
+        Thread.sleep(50);
+        assertEquals(calls.size(), 1);
+        assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void testCancelledQueuedRequestIsNotSent() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder()
+            .setInitialLimit(1)
+            .setQueue(1, 5000));
+        limiter.submit(call);
+        limiter.submit(call).cancel(true);
+
+        calls.get(0).complete("first");
+        Thread.sleep(50);
+        assertEquals(calls.size(), 1);
+        assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void testLimitDecreasesOnFailure() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder()
+            .setInitialLimit(10)
+            .setBackoffRatio(0.5));
+        limiter.submit(call);
+        nanos += TimeUnit.MILLISECONDS.toNanos(10);
+        calls.get(0).completeExceptionally(new IllegalStateException("boom"));
+
+        assertEquals(limiter.getLimit(), 5);
+        assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void testFirstDecreaseWithNegativeClock() throws Exception {
+        // System.nanoTime() may be negative
+        nanos = -TimeUnit.HOURS.toNanos(1);
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder()
+            .setInitialLimit(10)
+            .setBackoffRatio(0.5));
+        limiter.submit(call);
+        nanos += TimeUnit.MILLISECONDS.toNanos(10);
+        calls.get(0).completeExceptionally(new IllegalStateException("boom"));
+
+        assertEquals(limiter.getLimit(), 5);
+    }
+
+    @Test
+    public void testLimitDecreasesOnSlowRoundTrip() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder()
+            .setInitialLimit(10)
+            .setBackoffRatio(0.5)
+            .setRttTolerance(2));
+        limiter.submit(call);
+        nanos += TimeUnit.MILLISECONDS.toNanos(10);
+        calls.get(0).complete("fast");
+        assertEquals(limiter.getLimit(), 10);
+
+        limiter.submit(call);
+        nanos += TimeUnit.MILLISECONDS.toNanos(30);
+        calls.get(1).complete("slow");
+        assertEquals(limiter.getLimit(), 5);
+    }
+
+    @Test
+    public void testLimitIncreasesOnlyWhenInUse() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder().setInitialLimit(4));
+        for (int i = 0; i < 20; i++) {
+            limiter.submit(call);
+            calls.get(calls.size() - 1).complete("unused");
+        }
+        assertEquals(limiter.getLimit(), 4);
+
+        for (int round = 0; round < 10; round++) {
+            int sent = calls.size();
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++) {
+                limiter.submit(call);
+            }
+            for (int i = sent; i < calls.size(); i++) {
+                calls.get(i).complete("used");
+            }
+        }
+        assertTrue(limiter.getLimit() > 4);
+    }
+
+    @Test
+    public void testCancelledRequestReleasesPermitWithoutAdjustingLimit() throws Exception {
+        ParsecConcurrencyLimiter limiter = newLimiter(new ParsecConcurrencyLimitConfig.Builder().setInitialLimit(1));
+        limiter.submit(call).cancel(true);
+
+        assertEquals(limiter.getInFlight(), 0);
+        assertEquals(limiter.getLimit(), 1);
+        assertFalse(limiter.submit(call).isDone());
+    }
+}
@@ -0,0 +1,169 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecHedgedRequestFutureTest {
+    private static final String HOST = "localhost:80";
+
+    private ScheduledExecutorService timer;
+    private ExecutorService executor;
+    private List<CompletableFuture<String>> attempts;
+    private Supplier<CompletableFuture<String>> attemptSupplier;
+
+    private ParsecHedgedRequestFuture<String> newHedgedFuture(long hedgeDelayMillis, ParsecRetryBudget hedgeBudget) {
+        return new ParsecHedgedRequestFuture<>(attemptSupplier, hedgeDelayMillis, timer, executor, hedgeBudget,
+            HOST);
+    }
+
+    private void waitForAttempts(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (attempts.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(attempts.size(), count);
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+        attempts = Collections.synchronizedList(new ArrayList<>());
+        attemptSupplier = () -> {
+            CompletableFuture<String> attempt = new CompletableFuture<>();
+            attempts.add(attempt);
+            return attempt;
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testNoHedgeWhenFirstAttemptIsFast() throws Exception {
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(200, new ParsecRetryBudget(1, 1)).execute();
+        waitForAttempts(1);
+        attempts.get(0).complete("first");
+
+        assertEquals(future.get(), "first");
+        Thread.sleep(300);
+        assertFalse(future.isHedged());
+        assertEquals(attempts.size(), 1);
+    }
+
+    @Test
+    public void testHedgeWinsAndFirstAttemptIsCancelled() throws Exception {
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(10, new ParsecRetryBudget(1, 1)).execute();
+        waitForAttempts(2);
+        attempts.get(1).complete("hedge");
+
+        assertEquals(future.get(), "hedge");
+        assertTrue(future.isHedged());
+        assertTrue(attempts.get(0).isCancelled());
+    }
+
+    @Test
+    public void testHedgeIsSentFromExecutorRatherThanTimer() throws Exception {
+        Thread timerThread = timer.submit(Thread::currentThread).get();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        Supplier<CompletableFuture<String>> supplier = attemptSupplier;
+        attemptSupplier = () -> {
+            threads.add(Thread.currentThread());
+            return supplier.get();
+        };
+
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(10, new ParsecRetryBudget(1, 1)).execute();
+        waitForAttempts(2);
+        attempts.get(1).complete("hedge");
+
+        assertEquals(future.get(), "hedge");
+        assertEquals(threads.get(0), Thread.currentThread());
+        assertNotEquals(threads.get(1), timerThread);
+    }
+
+    @Test
+    public void testFirstAttemptWinsAndHedgeIsCancelled() throws Exception {
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(10, new ParsecRetryBudget(1, 1)).execute();
+        waitForAttempts(2);
+        attempts.get(0).complete("first");
+
+        assertEquals(future.get(), "first");
+        assertTrue(attempts.get(1).isCancelled());
+    }
+
+    @Test
+    public void testNoHedgeWhenBudgetIsExhausted() throws Exception {
+        ParsecRetryBudget hedgeBudget = new ParsecRetryBudget(0, 0);
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(10, hedgeBudget).execute();
+        Thread.sleep(100);
+        assertEquals(attempts.size(), 1);
+        attempts.get(0).complete("first");
+
+        assertEquals(future.get(), "first");
+        assertFalse(future.isHedged());
+        assertEquals(hedgeBudget.getExhaustedCount(), 1);
+    }
+
+    @Test
+    public void testFailureBeforeHedgeIsNotRetried() throws Exception {
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(100, new ParsecRetryBudget(1, 1)).execute();
+        waitForAttempts(1);
+        IllegalStateException failure = new IllegalStateException("boom");
+        attempts.get(0).completeExceptionally(failure);
+
+        try {
+            future.get();
+            fail("expected exception");
+        } catch (ExecutionException e) {
+            assertSame(e.getCause(), failure);
+        }
+        Thread.sleep(200);
+        assertEquals(attempts.size(), 1);
+    }
+
+    @Test
+    public void testFailureWaitsForHedgeInFlight() throws Exception {
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(10, new ParsecRetryBudget(1, 1)).execute();
+        waitForAttempts(2);
+        attempts.get(0).completeExceptionally(new IllegalStateException("boom"));
+        assertFalse(future.isDone());
+
+        attempts.get(1).complete("hedge");
+        assertEquals(future.get(), "hedge");
+    }
+
+    @Test
+    public void testCancelCancelsAllAttempts() throws Exception {
+        ParsecHedgedRequestFuture<String> future = newHedgedFuture(10, new ParsecRetryBudget(1, 1)).execute();
+        waitForAttempts(2);
+
+        future.cancel(true);
+        assertTrue(attempts.get(0).isCancelled());
+        assertTrue(attempts.get(1).isCancelled());
+    }
+}
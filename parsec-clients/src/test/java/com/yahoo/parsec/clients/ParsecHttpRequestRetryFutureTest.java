@@ -0,0 +1,306 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+import org.mockito.AdditionalAnswers;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecHttpRequestRetryFutureTest {
+    private ParsecAsyncHttpRequest request;
+    private AsyncHttpClient mockClient;
+    private ScheduledExecutorService timer;
+    private ExecutorService executor;
+
+    @SuppressWarnings("unchecked")
+    private ListenableFuture<Response> completedFuture(Response response, Throwable throwable) throws Exception {
+        ListenableFuture<Response> future = mock(ListenableFuture.class);
+        if (throwable == null) {
+            when(future.get()).thenReturn(response);
+        } else {
+            when(future.get()).thenThrow(new ExecutionException(throwable));
+        }
+        when(future.addListener(any(Runnable.class), any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return future;
+        });
+        return future;
+    }
+
+    private void setMockClientReturnStatusCodes(int... returnStatusCodes) throws Exception {
+        List<ListenableFuture<Response>> futures = new ArrayList<>();
+
+        for (int returnStatusCode: returnStatusCodes) {
+            Response response = mock(Response.class);
+            when(response.getStatusCode()).thenReturn(returnStatusCode);
+            futures.add(completedFuture(response, null));
+        }
+
+        when(mockClient.executeRequest(request.getNingRequest()))
+            .thenAnswer(AdditionalAnswers.returnsElementsOf(futures));
+    }
+
+    private ParsecHttpRequestRetryFuture<Response> newRetryFuture(long retryIntervalMillis) {
+        return newRetryFuture(new FixedBackoffPolicy(retryIntervalMillis));
+    }
+
+    private ParsecHttpRequestRetryFuture<Response> newRetryFuture(ParsecRetryBackoffPolicy backoffPolicy) {
+        return newRetryFuture(backoffPolicy, null);
+    }
+
+    private ParsecHttpRequestRetryFuture<Response> newRetryFuture(
+        ParsecRetryBackoffPolicy backoffPolicy,
+        ParsecRetryBudget retryBudget
+    ) {
+        return new ParsecHttpRequestRetryFuture<>(
+            () -> new ParsecCompletableFuture<>(mockClient.executeRequest(request.getNingRequest())),
+            request, backoffPolicy, timer, executor, retryBudget);
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        mockClient = mock(AsyncHttpClient.class);
+        timer = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAutoRetryForHttpStatus500() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(500)
+            .build();
+        setMockClientReturnStatusCodes(500, 500, 500, 500, 500);
+
+        ParsecHttpRequestRetryFuture<Response> future = newRetryFuture(0).execute();
+
+        // Default max retries is 3
+        assertEquals(future.get().getStatusCode(), 500);
+        assertEquals(future.getRetries(), 3);
+        verify(mockClient, times(4)).executeRequest(request.getNingRequest());
+    }
+
+    @Test
+    public void testRetryAndSuccessBeforeReachMaxRetries() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(408)
+            .setMaxRetries(3)
+            .build();
+        setMockClientReturnStatusCodes(408, 408, 200);
+
+        ParsecHttpRequestRetryFuture<Response> future = newRetryFuture(0).execute();
+
+        assertEquals(future.get().getStatusCode(), 200);
+        assertEquals(future.getRetries(), 2);
+    }
+
+    @Test
+    public void testRetriesAreSentFromExecutorRatherThanTimer() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(500)
+            .setMaxRetries(2)
+            .build();
+        setMockClientReturnStatusCodes(500, 500, 200);
+        Thread timerThread = timer.submit(Thread::currentThread).get();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+        ParsecHttpRequestRetryFuture<Response> future = new ParsecHttpRequestRetryFuture<>(() -> {
+            threads.add(Thread.currentThread());
+            return new ParsecCompletableFuture<>(mockClient.executeRequest(request.getNingRequest()));
+        }, request, new FixedBackoffPolicy(10), timer, executor, null).execute();
+
+        assertEquals(future.get(5, TimeUnit.SECONDS).getStatusCode(), 200);
+        assertEquals(threads.size(), 3);
+        assertFalse(threads.contains(timerThread));
+    }
+
+    @Test
+    public void testRetryIsDelayedWithoutBlockingCaller() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(408)
+            .setMaxRetries(1)
+            .build();
+        setMockClientReturnStatusCodes(408, 200);
+
+        long start = System.nanoTime();
+        ParsecHttpRequestRetryFuture<Response> future = newRetryFuture(100).execute();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+
+        assertEquals(future.get().getStatusCode(), 200);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+    }
+
+    @Test
+    public void testBackoffPolicyIsAskedForEveryRetry() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(500)
+            .setMaxRetries(3)
+            .build();
+        setMockClientReturnStatusCodes(500, 500, 500, 200);
+        ParsecRetryBackoffPolicy backoffPolicy = mock(ParsecRetryBackoffPolicy.class);
+        when(backoffPolicy.getDelayMillis(anyInt(), anyLong())).thenReturn(1L, 2L, 3L);
+
+        assertEquals(newRetryFuture(backoffPolicy).execute().get().getStatusCode(), 200);
+        verify(backoffPolicy).getDelayMillis(1, 0L);
+        verify(backoffPolicy).getDelayMillis(2, 1L);
+        verify(backoffPolicy).getDelayMillis(3, 2L);
+    }
+
+    @Test
+    public void testRetryAfterHeaderIsHonoured() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(503)
+            .setMaxRetries(1)
+            .build();
+        Response unavailable = mock(Response.class);
+        when(unavailable.getStatusCode()).thenReturn(503);
+        when(unavailable.getHeader("Retry-After")).thenReturn("1");
+        Response ok = mock(Response.class);
+        when(ok.getStatusCode()).thenReturn(200);
+        List<ListenableFuture<Response>> futures = new ArrayList<>();
+        futures.add(completedFuture(unavailable, null));
+        futures.add(completedFuture(ok, null));
+        when(mockClient.executeRequest(request.getNingRequest()))
+            .thenAnswer(AdditionalAnswers.returnsElementsOf(futures));
+
+        long start = System.nanoTime();
+        assertEquals(newRetryFuture(0).execute().get().getStatusCode(), 200);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+    }
+
+    @Test
+    public void testRetryAfterHeaderIsCappedByPolicy() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(429)
+            .setMaxRetries(1)
+            .build();
+        Response tooMany = mock(Response.class);
+        when(tooMany.getStatusCode()).thenReturn(429);
+        when(tooMany.getHeader("Retry-After")).thenReturn("3600");
+        Response ok = mock(Response.class);
+        when(ok.getStatusCode()).thenReturn(200);
+        List<ListenableFuture<Response>> futures = new ArrayList<>();
+        futures.add(completedFuture(tooMany, null));
+        futures.add(completedFuture(ok, null));
+        when(mockClient.executeRequest(request.getNingRequest()))
+            .thenAnswer(AdditionalAnswers.returnsElementsOf(futures));
+
+        ParsecHttpRequestRetryFuture<Response> future =
+            newRetryFuture(new CappedBackoffPolicy(new FixedBackoffPolicy(0), 50)).execute();
+        assertEquals(future.get(5, TimeUnit.SECONDS).getStatusCode(), 200);
+    }
+
+    @Test
+    public void testNoRetryWhenRetryAfterIsLongerThanRequestTimeout() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(503)
+            .setMaxRetries(1)
+            .build();
+        Response unavailable = mock(Response.class);
+        when(unavailable.getStatusCode()).thenReturn(503);
+        when(unavailable.getHeader("Retry-After")).thenReturn("86400");
+        ListenableFuture<Response> unavailableFuture = completedFuture(unavailable, null);
+        when(mockClient.executeRequest(request.getNingRequest())).thenReturn(unavailableFuture);
+
+        ParsecHttpRequestRetryFuture<Response> future = newRetryFuture(0).execute();
+        assertEquals(future.get(1, TimeUnit.SECONDS).getStatusCode(), 503);
+        assertEquals(future.getRetries(), 0);
+
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(503)
+            .setMaxRetries(1)
+            .setRequestTimeout(500)
+            .build();
+        when(unavailable.getHeader("Retry-After")).thenReturn("1");
+        when(mockClient.executeRequest(request.getNingRequest())).thenReturn(unavailableFuture);
+
+        future = newRetryFuture(0).execute();
+        assertEquals(future.get(1, TimeUnit.SECONDS).getStatusCode(), 503);
+        assertEquals(future.getRetries(), 0);
+        verify(mockClient, times(2)).executeRequest(any(com.ning.http.client.Request.class));
+    }
+
+    @Test
+    public void testNoRetryWhenRetryBudgetIsExhausted() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(500)
+            .setMaxRetries(3)
+            .build();
+        setMockClientReturnStatusCodes(500, 500, 200);
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(0, 0);
+
+        ParsecHttpRequestRetryFuture<Response> future =
+            newRetryFuture(new FixedBackoffPolicy(0), retryBudget).execute();
+
+        assertEquals(future.get().getStatusCode(), 500);
+        assertEquals(future.getRetries(), 0);
+        assertEquals(retryBudget.getExhaustedCount(), 1);
+        verify(mockClient, times(1)).executeRequest(request.getNingRequest());
+    }
+
+    @Test
+    public void testRetryOnException() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryException(TimeoutException.class)
+            .setMaxRetries(2)
+            .build();
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(200);
+        List<ListenableFuture<Response>> futures = new ArrayList<>();
+        futures.add(completedFuture(null, new TimeoutException()));
+        futures.add(completedFuture(response, null));
+        when(mockClient.executeRequest(request.getNingRequest()))
+            .thenAnswer(AdditionalAnswers.returnsElementsOf(futures));
+
+        assertEquals(newRetryFuture(0).execute().get().getStatusCode(), 200);
+    }
+
+    @Test
+    public void testNoRetryOnUnexpectedException() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryException(TimeoutException.class)
+            .build();
+        ListenableFuture<Response> future = completedFuture(null, new IllegalStateException("boom"));
+        when(mockClient.executeRequest(request.getNingRequest())).thenReturn(future);
+
+        try {
+            newRetryFuture(0).execute().get();
+            fail("expected exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verify(mockClient, times(1)).executeRequest(request.getNingRequest());
+    }
+}
@@ -5,6 +5,7 @@ package com.yahoo.parsec.clients;
 
 import com.ning.http.client.Param;
 import com.ning.http.client.cookie.Cookie;
+import com.ning.http.client.uri.Uri;
 import org.testng.annotations.Test;
 
 import javax.ws.rs.core.NewCookie;
@@ -125,4 +126,28 @@ public class ParsecHttpUtilTest {
         charset = ParsecHttpUtil.parseCharsetFromContentType("application/json", utf8);
         assertTrue(utf8.equalsIgnoreCase(charset), "actual charset is " + charset);
     }
+
+    @Test
+    public void testParseRetryAfterMillis() throws Exception {
+        assertEquals(ParsecHttpUtil.parseRetryAfterMillis(null, 0), -1);
+        assertEquals(ParsecHttpUtil.parseRetryAfterMillis("", 0), -1);
+        assertEquals(ParsecHttpUtil.parseRetryAfterMillis("invalid", 0), -1);
+        assertEquals(ParsecHttpUtil.parseRetryAfterMillis("120", 0), 120000);
+        assertEquals(ParsecHttpUtil.parseRetryAfterMillis("Thu, 01 Jan 1970 00:00:10 GMT", 4000), 6000);
+        assertEquals(ParsecHttpUtil.parseRetryAfterMillis("Thu, 01 Jan 1970 00:00:10 GMT", 20000), 0);
+    }
+
+    @Test
+    public void testParseHttpDateMillis() throws Exception {
+        assertEquals(ParsecHttpUtil.parseHttpDateMillis(null), -1);
+        assertEquals(ParsecHttpUtil.parseHttpDateMillis("0"), -1);
+        assertEquals(ParsecHttpUtil.parseHttpDateMillis(" Thu, 01 Jan 1970 00:00:10 GMT "), 10000);
+    }
+
+    @Test
+    public void testGetHostKey() throws Exception {
+        assertEquals(ParsecHttpUtil.getHostKey(Uri.create("http://example.com/path")), "example.com:80");
+        assertEquals(ParsecHttpUtil.getHostKey(Uri.create("https://example.com/path")), "example.com:443");
+        assertEquals(ParsecHttpUtil.getHostKey(Uri.create("https://example.com:8443/path")), "example.com:8443");
+    }
 }
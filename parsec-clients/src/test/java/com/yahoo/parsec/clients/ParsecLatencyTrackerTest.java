@@ -0,0 +1,48 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class ParsecLatencyTrackerTest {
+    private static final String HOST = "localhost:80";
+
+    @Test
+    public void testNoPercentileBeforeMinSamples() {
+        ParsecLatencyTracker tracker = new ParsecLatencyTracker();
+        assertEquals(tracker.getPercentileMillis(HOST, 95), -1);
+
+        for (int i = 1; i < ParsecLatencyTracker.MIN_SAMPLES; i++) {
+            tracker.record(HOST, i);
+        }
+        assertEquals(tracker.getPercentileMillis(HOST, 95), -1);
+    }
+
+    @Test
+    public void testPercentile() {
+        ParsecLatencyTracker tracker = new ParsecLatencyTracker();
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(HOST, i);
+        }
+
+        assertEquals(tracker.getPercentileMillis(HOST, 50), 50);
+        assertEquals(tracker.getPercentileMillis(HOST, 95), 95);
+        assertEquals(tracker.getPercentileMillis("other:80", 95), -1);
+    }
+
+    @Test
+    public void testOnlyRecentLatenciesAreKept() {
+        ParsecLatencyTracker tracker = new ParsecLatencyTracker();
+        for (int i = 0; i < ParsecLatencyTracker.SAMPLE_SIZE; i++) {
+            tracker.record(HOST, 1000);
+        }
+        for (int i = 0; i < ParsecLatencyTracker.SAMPLE_SIZE; i++) {
+            tracker.record(HOST, 10);
+        }
+
+        assertEquals(tracker.getPercentileMillis(HOST, 99), 10);
+    }
+}
@@ -0,0 +1,133 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecOffHeapResponseStoreTest {
+
+    private static ParsecRequestKey key(String path) throws Exception {
+        return new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/" + path).build().getKey();
+    }
+
+    private static ParsecCacheEntry entry(Response response, long freshUntilNanos) {
+        return new ParsecCacheEntry(response, freshUntilNanos, freshUntilNanos, freshUntilNanos, freshUntilNanos,
+            "\"1\"", null, null);
+    }
+
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+        Response response = Response.status(404)
+            .header(HttpHeaders.CONTENT_TYPE, "text/plain; charset=utf-8")
+            .header("X-Values", "a")
+            .header("X-Values", "b")
+            .entity("caf\u00e9")
+            .build();
+
+        byte[] encoded = ParsecResponseCodec.toBytes(response);
+        assertEquals(encoded.length, ParsecResponseCodec.prepare(response).getSize());
+        Response decoded = ParsecResponseCodec.decode(new ByteArrayInputStream(encoded));
+        assertEquals(decoded.getStatus(), 404);
+        assertEquals(decoded.getEntity(), "caf\u00e9");
+        assertEquals(decoded.getHeaderString(HttpHeaders.CONTENT_TYPE), "text/plain; charset=utf-8");
+        assertEquals(decoded.getStringHeaders().get("X-Values"), Arrays.asList("a", "b"));
+
+        byte[] bytes = {1, 2, 3};
+        assertEquals(decode(Response.ok(bytes).build()).getEntity(), bytes);
+        assertNull(decode(Response.noContent().build()).getEntity());
+        assertNull(ParsecResponseCodec.prepare(Response.ok(new ByteArrayInputStream(bytes)).build()));
+    }
+
+    @Test
+    public void testCodecRejectsLengthsOverBytesLeft() throws Exception {
+        byte[] encoded = ParsecResponseCodec.toBytes(Response.ok("body").build());
+        for (byte[] corrupt : Arrays.asList(Arrays.copyOf(encoded, encoded.length - 1),
+            ByteBuffer.wrap(encoded.clone()).putInt(encoded.length - 8, Integer.MAX_VALUE).array(),
+            ByteBuffer.wrap(encoded.clone()).putInt(encoded.length - 8, -1).array())) {
+            try {
+                ParsecResponseCodec.decode(new ByteArrayInputStream(corrupt));
+                fail();
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private static Response decode(Response response) throws Exception {
+        return ParsecResponseCodec.decode(new ByteArrayInputStream(ParsecResponseCodec.toBytes(response)));
+    }
+
+    @Test
+    public void testArenaBlocksAreFreedAndReused() throws Exception {
+        ParsecOffHeapArena arena = new ParsecOffHeapArena(64, 16);
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        int[] blocks = arena.allocate(bytes.length);
+        assertEquals(blocks.length, 3);
+        assertNull(arena.allocate(17));
+        try (OutputStream out = arena.newOutputStream(blocks)) {
+            out.write(bytes[0]);
+            out.write(bytes, 1, bytes.length - 1);
+        }
+        byte[] read = new byte[bytes.length];
+        new DataInputStream(arena.newInputStream(blocks, bytes.length)).readFully(read);
+        assertEquals(read, bytes);
+        assertEquals(arena.newInputStream(blocks, 0).read(), -1);
+
+        arena.free(blocks);
+        assertEquals(arena.allocate(64).length, 4);
+        arena.clear();
+        assertEquals(arena.allocate(64).length, 4);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreRemovedOverMaximumSize() throws Exception {
+        int entryBytes = ParsecResponseCodec.prepare(Response.ok("a").build()).getSize();
+        ParsecOffHeapResponseStore store = new ParsecOffHeapResponseStore(entryBytes * 2, entryBytes);
+
+        assertTrue(store.put(key("a"), entry(Response.ok("a").build(), 10)));
+        assertTrue(store.put(key("b"), entry(Response.ok("b").build(), 10)));
+        assertEquals(store.get(key("a"), 0).getResponse().getEntity(), "a");
+        assertTrue(store.put(key("c"), entry(Response.ok("c").build(), 10)));
+
+        assertEquals(store.size(), 2);
+        assertEquals(store.getBytes(), entryBytes * 2);
+        assertNull(store.get(key("b"), 0));
+        ParsecCacheEntry entry = store.get(key("a"), 0);
+        assertEquals(entry.getResponse().getEntity(), "a");
+        assertEquals(entry.getETag(), "\"1\"");
+        assertEquals(entry.getFreshUntilNanos(), 10);
+
+        assertFalse(store.put(key("d"), entry(Response.ok(new String(new char[100])).build(), 10)));
+        assertFalse(store.put(key("e"), new ParsecCacheEntry(null, new IllegalStateException(), 10, null)));
+    }
+
+    @Test
+    public void testStaleEntriesAreRemoved() throws Exception {
+        ParsecOffHeapResponseStore store = new ParsecOffHeapResponseStore(1024);
+        store.put(key("a"), entry(Response.ok("a").build(), 10));
+
+        assertNull(store.get(key("a"), 10));
+        assertEquals(store.size(), 0);
+        assertEquals(store.getBytes(), 0);
+    }
+}
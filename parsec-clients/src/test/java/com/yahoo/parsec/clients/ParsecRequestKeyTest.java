@@ -0,0 +1,51 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+public class ParsecRequestKeyTest {
+
+    @Test
+    public void testByteArraysAreComparedByContent() throws Exception {
+        ParsecRequestKey key = new ParsecRequestKey(null, "GET", new byte[]{1, 2, 3});
+
+        assertEquals(key, new ParsecRequestKey(null, "GET", new byte[]{1, 2, 3}));
+        assertEquals(key.hashCode(), new ParsecRequestKey(null, "GET", new byte[]{1, 2, 3}).hashCode());
+        assertNotEquals(key, new ParsecRequestKey(null, "GET", new byte[]{1, 2, 4}));
+    }
+
+    @Test
+    public void testNestedArraysAreComparedDeeply() throws Exception {
+        ParsecRequestKey key = new ParsecRequestKey(null, "GET", new Object[]{"part", new byte[]{1}});
+
+        assertEquals(key, new ParsecRequestKey(null, "GET", new Object[]{"part", new byte[]{1}}));
+        assertEquals(key.hashCode(), new ParsecRequestKey(null, "GET", new Object[]{"part", new byte[]{1}}).hashCode());
+        assertNotEquals(key, new ParsecRequestKey(null, "GET", new Object[]{"part", new byte[]{2}}));
+    }
+
+    @Test
+    public void testRequestIsNotPartOfKey() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().build();
+        ParsecRequestKey key = new ParsecRequestKey(request, "GET", Arrays.asList(1, 2), null);
+
+        assertEquals(key, new ParsecRequestKey(null, "GET", Arrays.asList(1, 2), null));
+        assertEquals(key.getRequest(), request);
+        assertNull(new ParsecRequestKey(null).getRequest());
+    }
+
+    @Test
+    public void testHashCodeIsStable() throws Exception {
+        ParsecRequestKey key = new ParsecRequestKey(null, "GET", "http://localhost", 1L, true);
+
+        assertEquals(key.hashCode(), key.hashCode());
+        assertNotEquals(key, new ParsecRequestKey(null, "GET", "http://localhost", 1L, false));
+    }
+}
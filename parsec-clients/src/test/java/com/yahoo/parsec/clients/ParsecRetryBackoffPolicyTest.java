@@ -0,0 +1,68 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test class for {@link ParsecRetryBackoffPolicy} implementations.
+ */
+public class ParsecRetryBackoffPolicyTest {
+
+    @Test
+    public void testFixedBackoff() throws Exception {
+        ParsecRetryBackoffPolicy policy = new FixedBackoffPolicy(100);
+        assertEquals(policy.getDelayMillis(1, 0), 100);
+        assertEquals(policy.getDelayMillis(5, 100), 100);
+        assertEquals(policy.getMaxDelayMillis(), Long.MAX_VALUE);
+        assertEquals(policy, new FixedBackoffPolicy(100));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testFixedBackoffRejectsNegativeInterval() throws Exception {
+        new FixedBackoffPolicy(-1);
+    }
+
+    @Test
+    public void testExponentialBackoff() throws Exception {
+        ParsecRetryBackoffPolicy policy = new ExponentialBackoffPolicy(100);
+        assertEquals(policy.getDelayMillis(1, 0), 100);
+        assertEquals(policy.getDelayMillis(2, 100), 200);
+        assertEquals(policy.getDelayMillis(3, 200), 400);
+        assertEquals(policy.getDelayMillis(100, 0), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testExponentialBackoffWithFullJitter() throws Exception {
+        ParsecRetryBackoffPolicy policy = new ExponentialBackoffPolicy(100, 3, true);
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.getDelayMillis(3, 0);
+            assertTrue(delay >= 0 && delay <= 900);
+        }
+    }
+
+    @Test
+    public void testDecorrelatedJitterBackoff() throws Exception {
+        ParsecRetryBackoffPolicy policy = new DecorrelatedJitterBackoffPolicy(100, 1000);
+        long previous = 0;
+        for (int i = 1; i <= 100; i++) {
+            long delay = policy.getDelayMillis(i, previous);
+            assertTrue(delay >= 100 && delay <= Math.min(1000, Math.max(100, previous) * 3));
+            previous = delay;
+        }
+        assertEquals(policy.getMaxDelayMillis(), 1000);
+    }
+
+    @Test
+    public void testCappedBackoff() throws Exception {
+        ParsecRetryBackoffPolicy policy = new CappedBackoffPolicy(new ExponentialBackoffPolicy(100), 250);
+        assertEquals(policy.getDelayMillis(1, 0), 100);
+        assertEquals(policy.getDelayMillis(2, 100), 200);
+        assertEquals(policy.getDelayMillis(3, 200), 250);
+        assertEquals(policy.getMaxDelayMillis(), 250);
+    }
+}
@@ -0,0 +1,123 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecRetryBudgetTest {
+    private static final String HOST = "localhost:80";
+    private static final String OTHER_HOST = "localhost:8080";
+
+    private long nanos;
+
+    private void advanceSeconds(long seconds) {
+        nanos += TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        nanos = TimeUnit.HOURS.toNanos(1);
+    }
+
+    @Test
+    public void testRetriesAreCappedToRatioOfFirstAttempts() {
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(0.2, 0, () -> nanos);
+        for (int i = 0; i < 10; i++) {
+            retryBudget.deposit(HOST);
+        }
+
+        assertTrue(retryBudget.tryWithdraw(HOST));
+        assertTrue(retryBudget.tryWithdraw(HOST));
+        assertFalse(retryBudget.tryWithdraw(HOST));
+        assertEquals(retryBudget.getRetryCount(), 2);
+        assertEquals(retryBudget.getExhaustedCount(), 1);
+    }
+
+    @Test
+    public void testBudgetIsTrackedPerHost() {
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(1, 0, () -> nanos);
+        retryBudget.deposit(HOST);
+
+        assertFalse(retryBudget.tryWithdraw(OTHER_HOST));
+        assertTrue(retryBudget.tryWithdraw(HOST));
+        assertEquals(retryBudget.getExhaustedCountsByHost().get(OTHER_HOST), Long.valueOf(1));
+        assertEquals(retryBudget.getExhaustedCountsByHost().get(HOST), null);
+    }
+
+    @Test
+    public void testMinRetriesPerSecondAllowsRetriesWithoutTraffic() {
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(0, 1, () -> nanos);
+
+        for (int i = 0; i < ParsecRetryBudget.WINDOW_SECONDS; i++) {
+            assertTrue(retryBudget.tryWithdraw(HOST));
+        }
+        assertFalse(retryBudget.tryWithdraw(HOST));
+    }
+
+    @Test
+    public void testDepositsExpireAfterWindow() {
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(1, 0, () -> nanos);
+        retryBudget.deposit(HOST);
+        retryBudget.deposit(HOST);
+
+        advanceSeconds(ParsecRetryBudget.WINDOW_SECONDS - 1);
+        assertTrue(retryBudget.tryWithdraw(HOST));
+
+        advanceSeconds(1);
+        assertFalse(retryBudget.tryWithdraw(HOST));
+    }
+
+    @Test
+    public void testWithdrawalsExpireAfterWindow() {
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(0, 1, () -> nanos);
+        for (int i = 0; i < ParsecRetryBudget.WINDOW_SECONDS; i++) {
+            assertTrue(retryBudget.tryWithdraw(HOST));
+        }
+        assertFalse(retryBudget.tryWithdraw(HOST));
+
+        advanceSeconds(ParsecRetryBudget.WINDOW_SECONDS);
+        assertTrue(retryBudget.tryWithdraw(HOST));
+    }
+
+    @Test
+    public void testIdleHostsAreDropped() {
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(0, 0, () -> nanos);
+        for (int i = 0; i < 100; i++) {
+            retryBudget.deposit("host" + i + ":80");
+        }
+        assertFalse(retryBudget.tryWithdraw(HOST));
+        assertEquals(retryBudget.getHostCount(), 101);
+
+        advanceSeconds(ParsecRetryBudget.WINDOW_SECONDS - 1);
+        retryBudget.deposit(OTHER_HOST);
+        advanceSeconds(1);
+        assertEquals(retryBudget.getHostCount(), 1);
+
+        advanceSeconds(TimeUnit.HOURS.toSeconds(1));
+        assertEquals(retryBudget.getHostCount(), 0);
+        assertTrue(retryBudget.getExhaustedCountsByHost().isEmpty());
+        assertEquals(retryBudget.getExhaustedCount(), 1);
+    }
+
+    @Test
+    public void testHostCountIsBounded() {
+        ParsecRetryBudget retryBudget = new ParsecRetryBudget(1, 0, () -> nanos);
+        for (int i = 0; i < ParsecRetryBudget.MAX_HOSTS * 2; i++) {
+            retryBudget.deposit("host" + i + ":80");
+        }
+        assertTrue(retryBudget.getHostCount() <= ParsecRetryBudget.MAX_HOSTS);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeRatioIsRejected() {
+        new ParsecRetryBudget(-0.1, 0);
+    }
+}
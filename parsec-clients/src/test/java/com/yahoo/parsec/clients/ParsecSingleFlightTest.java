@@ -0,0 +1,134 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecSingleFlightTest {
+    private ParsecSingleFlight<String, String> singleFlight;
+    private List<CompletableFuture<String>> calls;
+    private Supplier<CompletableFuture<String>> call;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        singleFlight = new ParsecSingleFlight<>();
+        calls = new ArrayList<>();
+        call = () -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            calls.add(future);
+            return future;
+        };
+    }
+
+    @Test
+    public void testConcurrentIdenticalCallsShareOneCall() throws Exception {
+        CompletableFuture<String> first = singleFlight.execute("a", call);
+        CompletableFuture<String> second = singleFlight.execute("a", call);
+
+        assertEquals(calls.size(), 1);
+        assertNotSame(first, second);
+        assertEquals(singleFlight.size(), 1);
+
+        calls.get(0).complete("response");
+        assertEquals(first.get(), "response");
+        assertSame(second.get(), first.get());
+    }
+
+    @Test
+    public void testDifferentCallsAreNotShared() throws Exception {
+        singleFlight.execute("a", call);
+        singleFlight.execute("b", call);
+
+        assertEquals(calls.size(), 2);
+        assertEquals(singleFlight.size(), 2);
+    }
+
+    @Test
+    public void testNothingIsRetainedAfterCompletion() throws Exception {
+        CompletableFuture<String> first = singleFlight.execute("a", call);
+        calls.get(0).complete("response");
+
+        assertEquals(first.get(), "response");
+        assertEquals(singleFlight.size(), 0);
+
+        singleFlight.execute("a", call);
+        assertEquals(calls.size(), 2);
+    }
+
+    @Test
+    public void testFailureIsSharedAndNotRetained() throws Exception {
+        CompletableFuture<String> first = singleFlight.execute("a", call);
+        CompletableFuture<String> second = singleFlight.execute("a", call);
+        IllegalStateException failure = new IllegalStateException("failed");
+        calls.get(0).completeExceptionally(failure);
+
+        for (CompletableFuture<String> future : new CompletableFuture[]{first, second}) {
+            try {
+                future.get();
+                fail("expected exception");
+            } catch (ExecutionException e) {
+                assertSame(e.getCause(), failure);
+            }
+        }
+        assertEquals(singleFlight.size(), 0);
+    }
+
+    @Test
+    public void testSupplierExceptionFailsCall() throws Exception {
+        IllegalStateException failure = new IllegalStateException("failed");
+        CompletableFuture<String> future = singleFlight.execute("a", () -> {
+            throw failure;
+        });
+
+        try {
+            future.get();
+            fail("expected exception");
+        } catch (ExecutionException e) {
+            assertSame(e.getCause(), failure);
+        }
+        assertEquals(singleFlight.size(), 0);
+    }
+
+    @Test
+    public void testCancellingOneCallerDoesNotAffectOthers() throws Exception {
+        CompletableFuture<String> first = singleFlight.execute("a", call);
+        CompletableFuture<String> second = singleFlight.execute("a", call);
+
+        first.cancel(true);
+        assertFalse(calls.get(0).isCancelled());
+
+        calls.get(0).complete("response");
+        assertEquals(second.get(), "response");
+    }
+
+    @Test
+    public void testCancellingAllCallersCancelsCall() throws Exception {
+        CompletableFuture<String> first = singleFlight.execute("a", call);
+        CompletableFuture<String> second = singleFlight.execute("a", call);
+
+        first.cancel(true);
+        second.cancel(true);
+
+        assertTrue(calls.get(0).isCancelled());
+        assertEquals(singleFlight.size(), 0);
+
+        CompletableFuture<String> third = singleFlight.execute("a", call);
+        assertEquals(calls.size(), 2);
+        assertFalse(third.isDone());
+    }
+}